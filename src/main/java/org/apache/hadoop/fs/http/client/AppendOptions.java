@@ -0,0 +1,54 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of an <b>APPEND</b>:
+ *
+ * <pre>
+ * [&amp;buffersize=&lt;INT&gt;]
+ * </pre>
+ *
+ * Parameters that are not set are left to the server defaults.
+ */
+public class AppendOptions {
+
+	private Integer bufferSize;
+
+	public AppendOptions() {
+	}
+
+	public Integer getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @param bufferSize
+	 * 			the buffer size used by the DataNode, or null for the server default
+	 */
+	public void setBufferSize(Integer bufferSize) {
+		if(bufferSize != null && bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		return bufferSize == null ? "" : "&buffersize=" + bufferSize;
+	}
+}
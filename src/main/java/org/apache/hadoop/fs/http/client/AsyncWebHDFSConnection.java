@@ -0,0 +1,245 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link WebHDFSConnection}.
+ * <p>
+ * Every operation returns immediately with a {@link CompletableFuture} that is completed
+ * from the HTTP engine's event loop once the response has arrived. Error responses
+ * (4xx, 5xx) complete normally with the status code and error body in the
+ * {@link WebHDFSResponse}; the future only completes exceptionally when no response
+ * could be obtained (connection refused, authentication failure, ...).
+ *
+ * @see WebHDFSConnection
+ */
+public interface AsyncWebHDFSConnection extends Closeable {
+
+/*
+ * ========================================================================
+ * GET
+ * ========================================================================
+ */
+	/**
+	 * <b>GETHOMEDIRECTORY</b>
+	 *
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> getHomeDirectory();
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * The body is written to {@code os} as it arrives, and {@code os} is closed once the
+	 * whole body has been written.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @param os An output stream object to write to
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> open(String path, OutputStream os);
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Reads {@code length} bytes starting at {@code offset}, see {@link #open(String, OutputStream)}.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @param offset The position of the first byte to read
+	 * @param length The number of bytes to read, or {@link WebHDFSConnection#UNKNOWN_LENGTH} to read to the end of the file
+	 * @param os An output stream object to write to
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> open(String path, long offset, long length, OutputStream os);
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>
+	 *
+	 * @param path The HDFS path to the object to get a summary for
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> getContentSummary(String path);
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> listStatus(String path);
+
+	/**
+	 * <b>GETFILESTATUS</b>
+	 *
+	 * @param path The HDFS path to the file to the list the status of
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> getFileStatus(String path);
+
+	/**
+	 * <b>GETFILECHECKSUM</b>
+	 *
+	 * @param path The HDFS path to the file to get a checksum for
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> getFileCheckSum(String path);
+
+/*
+ * ========================================================================
+ * PUT
+ * ========================================================================
+ */
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Follows the 307 redirect from the NameNode/HttpFS to the node that accepts the data.
+	 * {@code is} is read by the HTTP engine as the data is sent, with chunked transfer encoding.
+	 *
+	 * @param path The HDFS path at which the file should be created
+	 * @param is The InputStream to read the data from
+	 * @param overwrite Whether or not to overwrite an existing file with the same name
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> create(String path, InputStream is, boolean overwrite);
+
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Same as {@link #create(String, InputStream, boolean)}, but sends a {@code Content-Length}
+	 * when {@code length} is known.
+	 *
+	 * @param path The HDFS path at which the file should be created
+	 * @param is The InputStream to read the data from
+	 * @param length The number of bytes {@code is} will supply, or {@link WebHDFSConnection#UNKNOWN_LENGTH}
+	 * @param overwrite Whether or not to overwrite an existing file with the same name
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> create(String path, InputStream is, long length, boolean overwrite);
+
+	/**
+	 * <b>MKDIRS</b>
+	 *
+	 * @param path The path to the directory to make, including any missing parents
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> mkdirs(String path);
+
+	/**
+	 * <b>CREATESYMLINK</b>
+	 *
+	 * @param srcPath  The HDFS path that the link will point to
+	 * @param destPath The HDFS path that the link will be created at
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> createSymLink(String srcPath, String destPath);
+
+	/**
+	 * <b>RENAME</b>
+	 *
+	 * @param srcPath The HDFS path to the object to be renamed
+	 * @param destPath The new HDFS path that the object should be renamed to
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> rename(String srcPath, String destPath);
+
+	/**
+	 * <b>SETPERMISSION</b>
+	 *
+	 * @param path The HDFS path to the object upon which permissions should be set
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> setPermission(String path);
+
+	/**
+	 * <b>SETOWNER</b>
+	 *
+	 * @param path The HDFS path to the object of which the owner should be set
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> setOwner(String path);
+
+	/**
+	 * <b>SETREPLICATION</b>
+	 *
+	 * @param path The HDFS path to the object for which replication should be set.
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> setReplication(String path);
+
+	/**
+	 * <b>SETTIMES</b>
+	 *
+	 * @param path The HDFS path to the object for which to set the times
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> setTimes(String path);
+
+/*
+ * ========================================================================
+ * POST
+ * ========================================================================
+ */
+	/**
+	 * <b>APPEND</b>
+	 * <p>
+	 * Follows the 307 redirect from the NameNode/HttpFS to the node that accepts the data.
+	 *
+	 * @param path The HDFS path to the file which should be appended to
+	 * @param is The InputStream to read data from
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> append(String path, InputStream is);
+
+	/**
+	 * <b>APPEND</b>
+	 * <p>
+	 * Same as {@link #append(String, InputStream)}, but sends a {@code Content-Length} when
+	 * {@code length} is known.
+	 *
+	 * @param path The HDFS path to the file which should be appended to
+	 * @param is The InputStream to read data from
+	 * @param length The number of bytes {@code is} will supply, or {@link WebHDFSConnection#UNKNOWN_LENGTH}
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> append(String path, InputStream is, long length);
+
+/*
+ * ========================================================================
+ * DELETE
+ * ========================================================================
+ */
+	/**
+	 * <b>DELETE</b>
+	 *
+	 * @param path The HDFS path to the object to be deleted
+	 * @return the pending response
+	 */
+	CompletableFuture<WebHDFSResponse> delete(String path);
+
+	/**
+	 * Releases what this connection holds on the server, e.g. cancels a delegation token it
+	 * obtained. Calls still pending may fail. The default does nothing.
+	 *
+	 * @throws IOException
+	 */
+	default void close() throws IOException {
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs many blocking {@link WebHDFSConnection} calls concurrently.
+ * <p>
+ * On a JDK with virtual threads every call gets its own virtual thread, and a semaphore caps
+ * how many are talking to the server at once, so tens of thousands of calls can be queued
+ * without a large thread pool. On older JDKs a fixed pool of {@code maxConcurrency} platform
+ * threads is used instead.
+ * <p>
+ * The connection's {@link org.apache.hadoop.fs.http.client.transport.HttpTransport} should allow
+ * at least {@code maxConcurrency} connections per host, otherwise calls queue for a connection.
+ */
+public class BulkWebHDFSOperations implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(BulkWebHDFSOperations.class);
+
+	/** The default maximum number of calls in flight at once */
+	public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+	/**
+	 * A call against a {@link WebHDFSConnection}
+	 */
+	public interface WebHDFSCall<T> {
+		T call(WebHDFSConnection connection) throws IOException, AuthenticationException;
+	}
+
+	/**
+	 * A single-path {@link WebHDFSConnection} operation, e.g. {@code WebHDFSConnection::getFileStatus}
+	 */
+	public interface PathOperation {
+		WebHDFSResponse apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException;
+	}
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final boolean ownsExecutor;
+	private final boolean virtualThreads;
+
+	/**
+	 * Creates a new BulkWebHDFSOperations instance with {@link #DEFAULT_MAX_CONCURRENCY}.
+	 *
+	 * @param connection
+	 * 			the connection to run calls against
+	 */
+	public BulkWebHDFSOperations(WebHDFSConnection connection) {
+		this(connection, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new BulkWebHDFSOperations instance running calls on virtual threads when the
+	 * JDK supports them.
+	 *
+	 * @param connection
+	 * 			the connection to run calls against
+	 * @param maxConcurrency
+	 * 			the maximum number of calls in flight at once
+	 */
+	public BulkWebHDFSOperations(WebHDFSConnection connection, int maxConcurrency) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+
+		ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+
+		this.connection = connection;
+		this.ownsExecutor = true;
+		this.virtualThreads = virtual != null;
+
+		if(virtual != null) {
+			this.executor = virtual;
+			this.permits = new Semaphore(maxConcurrency);
+		}
+		else {
+			logger.debug("Virtual threads are not available, using " + maxConcurrency + " platform threads");
+			this.executor = Executors.newFixedThreadPool(maxConcurrency);
+			this.permits = null;
+		}
+	}
+
+	/**
+	 * Creates a new BulkWebHDFSOperations instance running calls on {@code executor}.
+	 * The executor is not shut down by {@link #close()}.
+	 *
+	 * @param connection
+	 * 			the connection to run calls against
+	 * @param executor
+	 * 			the executor to run calls on
+	 * @param maxConcurrency
+	 * 			the maximum number of calls in flight at once
+	 */
+	public BulkWebHDFSOperations(WebHDFSConnection connection, ExecutorService executor, int maxConcurrency) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+
+		this.connection = connection;
+		this.executor = executor;
+		this.permits = new Semaphore(maxConcurrency);
+		this.ownsExecutor = false;
+		this.virtualThreads = false;
+	}
+
+	/**
+	 * Schedules {@code call}
+	 *
+	 * @param call
+	 * 			the call to run
+	 * @return a future completed with the result of {@code call}, or exceptionally with the
+	 * 			{@link IOException} or {@link AuthenticationException} it threw
+	 */
+	public <T> CompletableFuture<T> submit(final WebHDFSCall<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				if(permits != null) {
+					permits.acquire();
+				}
+				try {
+					return call.call(connection);
+				}
+				finally {
+					if(permits != null) {
+						permits.release();
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			}
+			catch(IOException | AuthenticationException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Runs {@code operation} against every path in {@code paths}
+	 *
+	 * @param paths
+	 * 			the HDFS paths
+	 * @param operation
+	 * 			the operation, e.g. {@code WebHDFSConnection::getFileStatus}
+	 * @return the pending responses, in the iteration order of {@code paths}
+	 */
+	public Map<String, CompletableFuture<WebHDFSResponse>> forEach(Collection<String> paths, final PathOperation operation) {
+		Map<String, CompletableFuture<WebHDFSResponse>> results = new LinkedHashMap<String, CompletableFuture<WebHDFSResponse>>();
+
+		for(final String path : paths) {
+			results.put(path, submit(c -> operation.apply(c, path)));
+		}
+
+		return results;
+	}
+
+	public Map<String, CompletableFuture<WebHDFSResponse>> getFileStatus(Collection<String> paths) {
+		return forEach(paths, WebHDFSConnection::getFileStatus);
+	}
+
+	public Map<String, CompletableFuture<WebHDFSResponse>> listStatus(Collection<String> paths) {
+		return forEach(paths, WebHDFSConnection::listStatus);
+	}
+
+	public Map<String, CompletableFuture<WebHDFSResponse>> getContentSummary(Collection<String> paths) {
+		return forEach(paths, WebHDFSConnection::getContentSummary);
+	}
+
+	/**
+	 * Summarises every path in {@code paths}, decoding each response into a
+	 * {@link ContentSummary}
+	 *
+	 * @param paths
+	 * 			the HDFS paths
+	 * @return the pending summaries, in the iteration order of {@code paths}
+	 */
+	public Map<String, CompletableFuture<ContentSummary>> getContentSummaryTyped(Collection<String> paths) {
+		Map<String, CompletableFuture<ContentSummary>> results = new LinkedHashMap<String, CompletableFuture<ContentSummary>>();
+
+		for(final String path : paths) {
+			results.put(path, submit(c -> c.getContentSummaryTyped(path)));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Summarises every path in {@code paths} at once and adds the summaries up with
+	 * {@link ContentSummary#add(ContentSummary)}. Nested paths are counted once for each path
+	 * they are below.
+	 *
+	 * @param paths
+	 * 			the HDFS paths
+	 * @return a future completed with the total, or exceptionally if any summary failed
+	 */
+	public CompletableFuture<ContentSummary> sumContentSummaries(Collection<String> paths) {
+		CompletableFuture<ContentSummary> total = CompletableFuture.completedFuture(new ContentSummary());
+
+		for(CompletableFuture<ContentSummary> summary : getContentSummaryTyped(paths).values()) {
+			total = total.thenCombine(summary, ContentSummary::add);
+		}
+
+		return total;
+	}
+
+	public Map<String, CompletableFuture<WebHDFSResponse>> mkdirs(Collection<String> paths) {
+		return forEach(paths, WebHDFSConnection::mkdirs);
+	}
+
+	public Map<String, CompletableFuture<WebHDFSResponse>> delete(Collection<String> paths) {
+		return forEach(paths, WebHDFSConnection::delete);
+	}
+
+	/**
+	 * @return true if calls run on virtual threads
+	 */
+	public boolean isUsingVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Stops accepting new calls. Calls already submitted still run to completion.
+	 */
+	public void close() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor() only exists from Java 21 on, so it is looked up
+	 * reflectively to keep the library usable on older JDKs.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
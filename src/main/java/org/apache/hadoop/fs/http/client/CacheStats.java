@@ -0,0 +1,95 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * Immutable snapshot of the counters of a {@link CachingWebHDFSConnection}.
+ */
+public class CacheStats {
+
+	private final int size;
+	private final int maxSize;
+	private final long hitCount;
+	private final long negativeHitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long expiredCount;
+	private final long invalidationCount;
+
+	public CacheStats(int size, int maxSize, long hitCount, long negativeHitCount, long missCount, long evictionCount,
+			long expiredCount, long invalidationCount) {
+		this.size = size;
+		this.maxSize = maxSize;
+		this.hitCount = hitCount;
+		this.negativeHitCount = negativeHitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.expiredCount = expiredCount;
+		this.invalidationCount = invalidationCount;
+	}
+
+	/** @return the number of entries currently cached */
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** @return the number of lookups answered from the cache, including negative hits */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/** @return the number of lookups answered with a cached 404 */
+	public long getNegativeHitCount() {
+		return negativeHitCount;
+	}
+
+	/** @return the number of lookups that went to the server */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/** @return the number of entries dropped to stay within the maximum size */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/** @return the number of entries dropped because their time to live had passed */
+	public long getExpiredCount() {
+		return expiredCount;
+	}
+
+	/** @return the number of entries dropped because of a write through the cache */
+	public long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/** @return the share of lookups answered from the cache, 0 when there were none */
+	public double getHitRate() {
+		long lookups = hitCount + missCount;
+		return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats [size=" + size + ", maxSize=" + maxSize + ", hitCount=" + hitCount
+				+ ", negativeHitCount=" + negativeHitCount + ", missCount=" + missCount
+				+ ", evictionCount=" + evictionCount + ", expiredCount=" + expiredCount
+				+ ", invalidationCount=" + invalidationCount + "]";
+	}
+}
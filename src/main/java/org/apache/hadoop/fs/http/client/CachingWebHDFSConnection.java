@@ -0,0 +1,639 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * A {@link WebHDFSConnection} that caches GETFILESTATUS and LISTSTATUS responses.
+ * <p>
+ * Entries live for a fixed time, and the least recently used entry is dropped once the cache is
+ * full. A 404 is cached as well, for its own, usually shorter, time. Every write made through this
+ * connection drops the entries of the paths it touches: the path itself, everything below it for
+ * a delete or rename, and every ancestor, whose listing or modification time changed. Writes made
+ * by other clients are only seen once the entries expire.
+ * <p>
+ * The streaming listings, reads and content summaries are passed straight through.
+ */
+public class CachingWebHDFSConnection implements WebHDFSConnection {
+
+	/** The default maximum number of cached responses */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** The default time a response is cached */
+	public static final long DEFAULT_TTL_MILLIS = 5000L;
+
+	/** The default time a 404 is cached */
+	public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 1000L;
+
+	private static final String STATUS = "S";
+	private static final String LISTING = "L";
+
+	private final WebHDFSConnection delegate;
+	private final int maxSize;
+	private final long ttlNanos;
+	private volatile long negativeTtlNanos = DEFAULT_NEGATIVE_TTL_MILLIS * 1000000L;
+
+	// guarded by itself
+	private final LinkedHashMap<String, CachedResponse> entries;
+
+	// bumped by every invalidation, so that a response fetched before a write is not cached after it
+	private long generation;
+
+	private long hitCount;
+	private long negativeHitCount;
+	private long missCount;
+	private long evictionCount;
+	private long expiredCount;
+	private long invalidationCount;
+
+	/**
+	 * Creates a new CachingWebHDFSConnection instance with {@link #DEFAULT_MAX_SIZE} and
+	 * {@link #DEFAULT_TTL_MILLIS}.
+	 *
+	 * @param delegate
+	 * 			the connection to cache the responses of
+	 */
+	public CachingWebHDFSConnection(WebHDFSConnection delegate) {
+		this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+	}
+
+	/**
+	 * Creates a new CachingWebHDFSConnection instance.
+	 *
+	 * @param delegate
+	 * 			the connection to cache the responses of
+	 * @param maxSize
+	 * 			the maximum number of cached responses
+	 * @param ttlMillis
+	 * 			the time a response is cached
+	 */
+	public CachingWebHDFSConnection(WebHDFSConnection delegate, int maxSize, long ttlMillis) {
+		Assert.notNull(delegate, "Property <delegate> must not be null");
+		if(maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		if(ttlMillis <= 0) {
+			throw new IllegalArgumentException("ttlMillis must be positive");
+		}
+
+		this.delegate = delegate;
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1000000L;
+		this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				if(size() > CachingWebHDFSConnection.this.maxSize) {
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/*
+	 * ========================================================================
+	 * Cached
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse getFileStatus(final String path) throws IOException, AuthenticationException {
+		return cached(STATUS, path, () -> delegate.getFileStatus(path));
+	}
+
+	public WebHDFSResponse listStatus(final String path) throws IOException, AuthenticationException {
+		return cached(LISTING, path, () -> delegate.listStatus(path));
+	}
+
+	public FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException {
+		FileStatus status = SerializationUtils.getFileStatus(succeeded("GETFILESTATUS", path, getFileStatus(path)));
+		status.setPath(path);
+		return status;
+	}
+
+	public List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException {
+		return SerializationUtils.getFileStatuses(succeeded("LISTSTATUS", path, listStatus(path)));
+	}
+
+	public FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException {
+		return SerializationUtils.getFileStatusBatch(succeeded("LISTSTATUS", path, listStatus(path)));
+	}
+
+	/*
+	 * ========================================================================
+	 * Writes, which invalidate
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException, AuthenticationException {
+		try {
+			return delegate.create(path, is, overwrite);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException,
+			AuthenticationException {
+		try {
+			return delegate.create(path, is, length, overwrite);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.create(path, is, length, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.upload(localFile, path, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse mkdirs(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.mkdirs(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse createSymLink(String srcPath, String destPath) throws IOException, AuthenticationException {
+		try {
+			return delegate.createSymLink(srcPath, destPath);
+		}
+		finally {
+			invalidate(destPath, false);
+		}
+	}
+
+	public WebHDFSResponse rename(String srcPath, String destPath) throws IOException, AuthenticationException {
+		try {
+			return delegate.rename(srcPath, destPath);
+		}
+		finally {
+			invalidate(srcPath, true);
+			invalidate(destPath, true);
+		}
+	}
+
+	public WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.setPermission(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.setPermission(path, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.setOwner(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.setOwner(path, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.setReplication(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.setReplication(path, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.setTimes(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.setTimes(path, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse append(String path, InputStream is) throws IOException, AuthenticationException {
+		try {
+			return delegate.append(path, is);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length) throws IOException, AuthenticationException {
+		try {
+			return delegate.append(path, is, length);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException, AuthenticationException {
+		try {
+			return delegate.append(path, is, length, options);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public WebHDFSResponse delete(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.delete(path);
+		}
+		finally {
+			invalidate(path, true);
+		}
+	}
+
+	public boolean mkdirsTyped(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.mkdirsTyped(path);
+		}
+		finally {
+			invalidate(path, false);
+		}
+	}
+
+	public boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException {
+		try {
+			return delegate.renameTyped(srcPath, destPath);
+		}
+		finally {
+			invalidate(srcPath, true);
+			invalidate(destPath, true);
+		}
+	}
+
+	public boolean deleteTyped(String path) throws IOException, AuthenticationException {
+		try {
+			return delegate.deleteTyped(path);
+		}
+		finally {
+			invalidate(path, true);
+		}
+	}
+
+	/*
+	 * ========================================================================
+	 * Passed through
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse getHomeDirectory() throws IOException, AuthenticationException {
+		return delegate.getHomeDirectory();
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException {
+		return delegate.open(path, os);
+	}
+
+	public WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException,
+			AuthenticationException {
+		return delegate.open(path, offset, length, os);
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException {
+		return delegate.open(path, os, options);
+	}
+
+	public SeekableWebHDFSInputStream openStream(String path) throws IOException, AuthenticationException {
+		return delegate.openStream(path);
+	}
+
+	public long download(String path, Path localFile) throws IOException, AuthenticationException {
+		return delegate.download(path, localFile);
+	}
+
+	public long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException {
+		return delegate.download(path, localFile, preallocate);
+	}
+
+	public WebHDFSResponse getContentSummary(String path) throws IOException, AuthenticationException {
+		return delegate.getContentSummary(path);
+	}
+
+	public FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException {
+		return delegate.listStatusIterator(path);
+	}
+
+	public WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException {
+		return delegate.listStatusBatch(path, startAfter);
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path) throws IOException, AuthenticationException {
+		return delegate.listStatusBatchIterator(path);
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path, Executor prefetch) throws IOException, AuthenticationException {
+		return delegate.listStatusBatchIterator(path, prefetch);
+	}
+
+	public WebHDFSResponse getFileCheckSum(String path) throws IOException, AuthenticationException {
+		return delegate.getFileCheckSum(path);
+	}
+
+	public String getHomeDirectoryTyped() throws IOException, AuthenticationException {
+		return delegate.getHomeDirectoryTyped();
+	}
+
+	public ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException {
+		return delegate.getContentSummaryTyped(path);
+	}
+
+	public FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException {
+		return delegate.getFileChecksumTyped(path);
+	}
+
+	public String getDelegationToken(String renewer) throws IOException, AuthenticationException {
+		return delegate.getDelegationToken(renewer);
+	}
+
+	public long renewDelegationToken(String token) throws IOException, AuthenticationException {
+		return delegate.renewDelegationToken(token);
+	}
+
+	public void cancelDelegationToken(String token) throws IOException, AuthenticationException {
+		delegate.cancelDelegationToken(token);
+	}
+
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	/*
+	 * ========================================================================
+	 * Cache management
+	 * ========================================================================
+	 */
+
+	/**
+	 * @param negativeTtlMillis
+	 * 			the time a 404 is cached, 0 to not cache them
+	 */
+	public void setNegativeTtlMillis(long negativeTtlMillis) {
+		if(negativeTtlMillis < 0) {
+			throw new IllegalArgumentException("negativeTtlMillis must not be negative");
+		}
+		this.negativeTtlNanos = negativeTtlMillis * 1000000L;
+	}
+
+	public long getNegativeTtlMillis() {
+		return negativeTtlNanos / 1000000L;
+	}
+
+	public long getTtlMillis() {
+		return ttlNanos / 1000000L;
+	}
+
+	/**
+	 * Drops the cached responses of {@code path}, of its ancestors and, optionally, of
+	 * everything below it. Use this after changing {@code path} through another connection.
+	 *
+	 * @param path
+	 * 			the HDFS path
+	 * @param descendants
+	 * 			whether to drop the entries below {@code path} as well
+	 */
+	public void invalidate(String path, boolean descendants) {
+		String key = normalize(path);
+
+		synchronized(entries) {
+			generation++;
+			remove(STATUS + key);
+			remove(LISTING + key);
+
+			if(descendants) {
+				String prefix = "/".equals(key) ? "/" : key + "/";
+				Iterator<String> keys = entries.keySet().iterator();
+				while(keys.hasNext()) {
+					if(keys.next().startsWith(prefix, 1)) {
+						keys.remove();
+						invalidationCount++;
+					}
+				}
+			}
+
+			// a write changes the listing and modification time of the parent, and may create
+			// missing ancestors that were cached as 404s
+			for(String ancestor = parent(key); ancestor != null; ancestor = parent(ancestor)) {
+				remove(STATUS + ancestor);
+				remove(LISTING + ancestor);
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached response.
+	 */
+	public void invalidateAll() {
+		synchronized(entries) {
+			generation++;
+			invalidationCount += entries.size();
+			entries.clear();
+		}
+	}
+
+	public CacheStats getStats() {
+		synchronized(entries) {
+			return new CacheStats(entries.size(), maxSize, hitCount, negativeHitCount, missCount, evictionCount,
+					expiredCount, invalidationCount);
+		}
+	}
+
+	public WebHDFSConnection getDelegate() {
+		return delegate;
+	}
+
+	/*
+	 * A GETFILESTATUS or LISTSTATUS call
+	 */
+	private interface Lookup {
+		WebHDFSResponse call() throws IOException, AuthenticationException;
+	}
+
+	private WebHDFSResponse cached(String kind, String path, Lookup lookup) throws IOException, AuthenticationException {
+		String key = kind + normalize(path);
+		long fetchedGeneration;
+
+		synchronized(entries) {
+			CachedResponse entry = entries.get(key);
+
+			if(entry != null && entry.expires - System.nanoTime() > 0) {
+				hitCount++;
+				if(entry.response == null || entry.response.getResponseCode() == 404) {
+					negativeHitCount++;
+				}
+				if(entry.response == null) {
+					throw new FileNotFoundException(entry.notFound);
+				}
+				return entry.response;
+			}
+			if(entry != null) {
+				entries.remove(key);
+				expiredCount++;
+			}
+
+			missCount++;
+			fetchedGeneration = generation;
+		}
+
+		WebHDFSResponse response;
+		try {
+			response = lookup.call();
+		}
+		catch(FileNotFoundException e) {
+			// the Kerberos connection reports a 404 by throwing
+			store(key, fetchedGeneration, new CachedResponse(null, e.getMessage(), negativeTtlNanos));
+			throw e;
+		}
+
+		if(response.getResponseCode() == 200) {
+			store(key, fetchedGeneration, new CachedResponse(response, null, ttlNanos));
+		}
+		else if(response.getResponseCode() == 404) {
+			store(key, fetchedGeneration, new CachedResponse(response, null, negativeTtlNanos));
+		}
+		return response;
+	}
+
+	private void store(String key, long fetchedGeneration, CachedResponse entry) {
+		if(entry.ttlNanos <= 0) {
+			return;
+		}
+
+		synchronized(entries) {
+			if(fetchedGeneration == generation) {
+				entries.put(key, entry);
+			}
+		}
+	}
+
+	private void remove(String key) {
+		if(entries.remove(key) != null) {
+			invalidationCount++;
+		}
+	}
+
+	/*
+	 * "user/a/", "/user//a" and "/user/a" are the same path to the server
+	 */
+	static String normalize(String path) {
+		String key = ("/" + path).replaceAll("/+", "/");
+		return key.length() > 1 && key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+	}
+
+	/*
+	 * The body of a cached response, or the exception its error status stands for
+	 */
+	private static String succeeded(String op, String path, WebHDFSResponse response) throws IOException {
+		if(response.getResponseCode() >= 400) {
+			throw ResponseUtil.toException(op, path, response.getResponseCode(), response.getResponseMessage(),
+					response.getRawResponse());
+		}
+		return response.getRawResponse();
+	}
+
+	private static String parent(String key) {
+		if("/".equals(key)) {
+			return null;
+		}
+		int slash = key.lastIndexOf('/');
+		return slash == 0 ? "/" : key.substring(0, slash);
+	}
+
+	private static class CachedResponse {
+		final WebHDFSResponse response;
+		final String notFound;
+		final long ttlNanos;
+		final long expires;
+
+		CachedResponse(WebHDFSResponse response, String notFound, long ttlNanos) {
+			this.response = response;
+			this.notFound = notFound;
+			this.ttlNanos = ttlNanos;
+			this.expires = System.nanoTime() + ttlNanos;
+		}
+	}
+}
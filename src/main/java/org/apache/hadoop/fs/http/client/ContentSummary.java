@@ -16,121 +16,173 @@ package org.apache.hadoop.fs.http.client;
 
 import java.io.IOException;
 
-import com.google.gson.TypeAdapter;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-import com.google.gson.stream.JsonWriter;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class ContentSummary {
+
+	/** The value of {@link #getQuota()} and {@link #getSpaceQuota()} when no quota is set */
+	public static final long QUOTA_NOT_SET = -1L;
 	
-	private int directoryCount;
-	private int fileCount;
-	private int length;
-	private int quota;
-	private int spaceConsumed;
-	private int spaceQuota;
+	private long directoryCount;
+	private long fileCount;
+	private long length;
+	private long quota = QUOTA_NOT_SET;
+	private long spaceConsumed;
+	private long spaceQuota = QUOTA_NOT_SET;
 	
 	public ContentSummary() {
 	}
 
-	public int getDirectoryCount() {
+	public long getDirectoryCount() {
 		return directoryCount;
 	}
 
-	public void setDirectoryCount(int directoryCount) {
+	public void setDirectoryCount(long directoryCount) {
 		this.directoryCount = directoryCount;
 	}
 
-	public int getFileCount() {
+	public long getFileCount() {
 		return fileCount;
 	}
 
-	public void setFileCount(int fileCount) {
+	public void setFileCount(long fileCount) {
 		this.fileCount = fileCount;
 	}
 
-	public int getLength() {
+	/**
+	 * @return the number of bytes in the files, before replication
+	 */
+	public long getLength() {
 		return length;
 	}
 
-	public void setLength(int length) {
+	public void setLength(long length) {
 		this.length = length;
 	}
 
-	public int getQuota() {
+	/**
+	 * @return the namespace quota, or {@link #QUOTA_NOT_SET}
+	 */
+	public long getQuota() {
 		return quota;
 	}
 
-	public void setQuota(int quota) {
+	public void setQuota(long quota) {
 		this.quota = quota;
 	}
 
-	public int getSpaceConsumed() {
+	/**
+	 * @return true if a namespace quota is set
+	 */
+	public boolean isQuotaSet() {
+		return quota != QUOTA_NOT_SET;
+	}
+
+	/**
+	 * @return the number of bytes used on disk, after replication
+	 */
+	public long getSpaceConsumed() {
 		return spaceConsumed;
 	}
 
-	public void setSpaceConsumed(int spaceConsumed) {
+	public void setSpaceConsumed(long spaceConsumed) {
 		this.spaceConsumed = spaceConsumed;
 	}
 
-	public int getSpaceQuota() {
+	/**
+	 * @return the space quota in bytes, or {@link #QUOTA_NOT_SET}
+	 */
+	public long getSpaceQuota() {
 		return spaceQuota;
 	}
 
-	public void setSpaceQuota(int spaceQuota) {
+	public void setSpaceQuota(long spaceQuota) {
 		this.spaceQuota = spaceQuota;
 	}
-	
-	public static TypeAdapter adapter() {
-		return new TypeAdapter<ContentSummary>() {
-			@Override
-			public void write(JsonWriter out, ContentSummary value) throws IOException {
-				// not implemented
-			}
 
-			@Override
-			public ContentSummary read(JsonReader in) throws IOException {
-				ContentSummary instance = null;
-				in.setLenient(true);
-				
-				if(in.peek() == JsonToken.BEGIN_OBJECT) {
-					in.beginObject();
-					
-					if(in.nextName().equalsIgnoreCase("ContentSummary")) {
-						String name;
-						in.beginObject();
-						instance = new ContentSummary();
-
-						while(in.hasNext()) {
-							name = in.nextName();
-							
-							if(name.equalsIgnoreCase("directoryCount")) {
-								instance.directoryCount = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("fileCount")) {
-								instance.fileCount = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("length")) {
-								instance.length = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("quota")) {
-								instance.quota = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("spaceConsumed")) {
-								instance.spaceConsumed = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("spaceQuota")) {
-								instance.spaceQuota = in.nextInt();
-							}
-						}
-						
-						in.endObject();
-					}
-	
-					in.endObject();
-				}
-				return instance;
+	/**
+	 * @return true if a space quota is set
+	 */
+	public boolean isSpaceQuotaSet() {
+		return spaceQuota != QUOTA_NOT_SET;
+	}
+
+	/**
+	 * Adds {@code other} to this summary. Counts, lengths and consumed space are summed; quotas
+	 * are summed over the summaries that have one, and stay {@link #QUOTA_NOT_SET} if none has.
+	 * 
+	 * @param other
+	 * 			the summary to add
+	 * @return this summary
+	 */
+	public ContentSummary add(ContentSummary other) {
+		directoryCount += other.directoryCount;
+		fileCount += other.fileCount;
+		length += other.length;
+		spaceConsumed += other.spaceConsumed;
+		quota = addQuota(quota, other.quota);
+		spaceQuota = addQuota(spaceQuota, other.spaceQuota);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "ContentSummary [directoryCount=" + directoryCount + ", fileCount=" + fileCount + ", length=" + length
+				+ ", quota=" + quota + ", spaceConsumed=" + spaceConsumed + ", spaceQuota=" + spaceQuota + "]";
+	}
+
+	/**
+	 * Reads a bare ContentSummary object. Unknown properties, such as {@code typeQuota}, are
+	 * skipped.
+	 * <p>
+	 * Property names are matched with a {@code switch}, which compares hash codes first, and
+	 * numbers are read straight from the parser's buffer, so decoding allocates nothing but the
+	 * summary itself.
+	 * 
+	 * @param p
+	 * 			the parser, positioned on the start of the object
+	 * @return a new {@link ContentSummary} instance
+	 * @throws IOException
+	 */
+	public static ContentSummary read(JsonParser p) throws IOException {
+		ContentSummary instance = new ContentSummary();
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+			
+			switch(name) {
+			case "directoryCount":
+				instance.directoryCount = p.getLongValue();
+				break;
+			case "fileCount":
+				instance.fileCount = p.getLongValue();
+				break;
+			case "length":
+				instance.length = p.getLongValue();
+				break;
+			case "quota":
+				instance.quota = p.getLongValue();
+				break;
+			case "spaceConsumed":
+				instance.spaceConsumed = p.getLongValue();
+				break;
+			case "spaceQuota":
+				instance.spaceQuota = p.getLongValue();
+				break;
+			default:
+				p.skipChildren();
 			}
-		};
+		}
+		
+		return instance;
+	}
+
+	private static long addQuota(long a, long b) {
+		if(a == QUOTA_NOT_SET) {
+			return b;
+		}
+		return b == QUOTA_NOT_SET ? a : a + b;
 	}
 }
@@ -0,0 +1,130 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of a <b>CREATE</b>:
+ *
+ * <pre>
+ * [&amp;overwrite=&lt;true|false&gt;][&amp;blocksize=&lt;LONG&gt;][&amp;replication=&lt;SHORT&gt;]
+ * [&amp;permission=&lt;OCTAL&gt;][&amp;buffersize=&lt;INT&gt;]
+ * </pre>
+ *
+ * Parameters that are not set are left to the server defaults.
+ */
+public class CreateOptions {
+
+	private boolean overwrite;
+	private Long blockSize;
+	private Short replication;
+	private String permission;
+	private Integer bufferSize;
+
+	public CreateOptions() {
+	}
+
+	public CreateOptions(boolean overwrite) {
+		this.overwrite = overwrite;
+	}
+
+	public boolean isOverwrite() {
+		return overwrite;
+	}
+
+	public void setOverwrite(boolean overwrite) {
+		this.overwrite = overwrite;
+	}
+
+	public Long getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @param blockSize
+	 * 			the block size of the new file in bytes, or null for the server default
+	 */
+	public void setBlockSize(Long blockSize) {
+		if(blockSize != null && blockSize <= 0) {
+			throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	public Short getReplication() {
+		return replication;
+	}
+
+	/**
+	 * @param replication
+	 * 			the number of replicas of the new file, or null for the server default
+	 */
+	public void setReplication(Short replication) {
+		if(replication != null && replication <= 0) {
+			throw new IllegalArgumentException("replication must be positive: " + replication);
+		}
+		this.replication = replication;
+	}
+
+	public String getPermission() {
+		return permission;
+	}
+
+	/**
+	 * @param permission
+	 * 			the octal permission of the new file, e.g. {@code 644}, or null for the server default
+	 */
+	public void setPermission(String permission) {
+		if(permission != null && !permission.matches("[0-1]?[0-7]{1,3}")) {
+			throw new IllegalArgumentException("permission must be octal: " + permission);
+		}
+		this.permission = permission;
+	}
+
+	public Integer getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @param bufferSize
+	 * 			the buffer size used by the DataNode, or null for the server default
+	 */
+	public void setBufferSize(Integer bufferSize) {
+		if(bufferSize != null && bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}
+	 */
+	public String toArguments() {
+		StringBuilder arguments = new StringBuilder("&overwrite=").append(overwrite);
+
+		if(blockSize != null) {
+			arguments.append("&blocksize=").append(blockSize);
+		}
+		if(replication != null) {
+			arguments.append("&replication=").append(replication);
+		}
+		if(permission != null) {
+			arguments.append("&permission=").append(permission);
+		}
+		if(bufferSize != null) {
+			arguments.append("&buffersize=").append(bufferSize);
+		}
+		return arguments.toString();
+	}
+}
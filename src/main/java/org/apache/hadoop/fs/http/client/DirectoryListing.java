@@ -0,0 +1,133 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * One page of a LISTSTATUS_BATCH response:
+ *
+ * <pre>
+ * {"DirectoryListing":{"partialListing":{"FileStatuses":{"FileStatus":[...]}},"remainingEntries":N}}
+ * </pre>
+ */
+public class DirectoryListing {
+
+	private final List<FileStatus> partialListing;
+	private final long remainingEntries;
+
+	public DirectoryListing(List<FileStatus> partialListing, long remainingEntries) {
+		this.partialListing = Collections.unmodifiableList(partialListing);
+		this.remainingEntries = remainingEntries;
+	}
+
+	/**
+	 * @return the entries of this page, in the server's order
+	 */
+	public List<FileStatus> getPartialListing() {
+		return partialListing;
+	}
+
+	/**
+	 * @return the number of entries after this page, 0 on the last page
+	 */
+	public long getRemainingEntries() {
+		return remainingEntries;
+	}
+
+	/**
+	 * @return the {@code startAfter} argument for the next page, or null if this page is empty
+	 */
+	public String getLastPathSuffix() {
+		return partialListing.isEmpty() ? null : partialListing.get(partialListing.size() - 1).getSuffix();
+	}
+
+	/**
+	 * Parses a LISTSTATUS_BATCH response. Unknown properties are skipped.
+	 *
+	 * @param is
+	 * 			the response body, closed when done
+	 * @return a new {@link DirectoryListing} instance
+	 * @throws IOException
+	 */
+	public static DirectoryListing read(InputStream is) throws IOException {
+		List<FileStatus> entries = new ArrayList<FileStatus>();
+		long remaining = 0L;
+
+		try (JsonParser p = SerializationUtils.createParser(is)) {
+			if(p.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Not a LISTSTATUS_BATCH response");
+			}
+
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String wrapper = p.getCurrentName();
+				p.nextToken();
+
+				if(wrapper.equals("RemoteException")) {
+					throw RemoteException.read(p);
+				}
+				if(!wrapper.equals("DirectoryListing")) {
+					p.skipChildren();
+					continue;
+				}
+
+				while(p.nextToken() == JsonToken.FIELD_NAME) {
+					String name = p.getCurrentName();
+					p.nextToken();
+
+					if(name.equals("partialListing")) {
+						readPartialListing(p, entries);
+					}
+					else if(name.equals("remainingEntries")) {
+						remaining = p.getLongValue();
+					}
+					else {
+						p.skipChildren();
+					}
+				}
+			}
+		}
+
+		return new DirectoryListing(entries, remaining);
+	}
+
+	private static void readPartialListing(JsonParser p, List<FileStatus> entries) throws IOException {
+		if(p.getCurrentToken() != JsonToken.START_OBJECT) {
+			p.skipChildren();
+			return;
+		}
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			if(name.equals("FileStatuses")) {
+				entries.addAll(SerializationUtils.readFileStatuses(p));
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+	}
+}
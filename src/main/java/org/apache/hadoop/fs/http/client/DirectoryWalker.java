@@ -0,0 +1,301 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a directory tree, listing many directories at once.
+ * <p>
+ * Every directory found is listed as its own task, so a wide tree is listed with up to
+ * {@code maxConcurrency} LISTSTATUS requests in flight, and entries reach the consumer as soon as
+ * their directory's listing arrives. Directories are listed with
+ * {@link WebHDFSConnection#listStatusBatchIterator(String, java.util.concurrent.Executor)}, so a huge
+ * directory is paged rather than returned in one response. Its pages are fetched one after the
+ * other by the task listing it, not prefetched, so they count against {@code maxConcurrency} too.
+ * <p>
+ * Entries carry their full path in {@link FileStatus#getPath()}. The consumer is called from
+ * several threads at once and must be thread-safe.
+ */
+public class DirectoryWalker implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(DirectoryWalker.class);
+
+	/** The default maximum number of directories listed at once */
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+	/** Walk the whole tree */
+	public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final boolean ownsExecutor;
+
+	/**
+	 * Creates a new DirectoryWalker instance with {@link #DEFAULT_MAX_CONCURRENCY}.
+	 *
+	 * @param connection
+	 * 			the connection to list directories with
+	 */
+	public DirectoryWalker(WebHDFSConnection connection) {
+		this(connection, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new DirectoryWalker instance listing on its own {@link ForkJoinPool}.
+	 *
+	 * @param connection
+	 * 			the connection to list directories with
+	 * @param maxConcurrency
+	 * 			the maximum number of directories listed at once
+	 */
+	public DirectoryWalker(WebHDFSConnection connection, int maxConcurrency) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+
+		this.connection = connection;
+		// one worker per permitted request, so the pool size is the cap
+		this.executor = new ForkJoinPool(maxConcurrency);
+		this.permits = null;
+		this.ownsExecutor = true;
+	}
+
+	/**
+	 * Creates a new DirectoryWalker instance listing on {@code executor}.
+	 * The executor is not shut down by {@link #close()}.
+	 *
+	 * @param connection
+	 * 			the connection to list directories with
+	 * @param executor
+	 * 			the executor to list on
+	 * @param maxConcurrency
+	 * 			the maximum number of directories listed at once
+	 */
+	public DirectoryWalker(WebHDFSConnection connection, ExecutorService executor, int maxConcurrency) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+
+		this.connection = connection;
+		this.executor = executor;
+		this.permits = new Semaphore(maxConcurrency);
+		this.ownsExecutor = false;
+	}
+
+	/**
+	 * Walks the tree below {@code root} and waits for it to finish.
+	 *
+	 * @param root
+	 * 			the HDFS path to start at
+	 * @param maxDepth
+	 * 			how deep to go: 1 only lists {@code root}, {@link #UNLIMITED_DEPTH} the whole tree
+	 * @param filter
+	 * 			selects the entries passed to {@code consumer}; directories it rejects are not
+	 * 			walked into either. Null accepts everything.
+	 * @param consumer
+	 * 			receives the entries, from several threads at once
+	 * @return the number of entries passed to {@code consumer}
+	 * @throws FileNotFoundException if {@code root} does not exist
+	 * @throws IOException if a directory could not be listed
+	 * @throws AuthenticationException
+	 */
+	public long walk(String root, int maxDepth, Predicate<FileStatus> filter, Consumer<FileStatus> consumer)
+			throws IOException, AuthenticationException {
+		try {
+			return walkAsync(root, maxDepth, filter, consumer).get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while walking " + root);
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if(cause instanceof AuthenticationException) {
+				throw (AuthenticationException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Starts walking the tree below {@code root}.
+	 *
+	 * @param root
+	 * 			the HDFS path to start at
+	 * @param maxDepth
+	 * 			how deep to go: 1 only lists {@code root}, {@link #UNLIMITED_DEPTH} the whole tree
+	 * @param filter
+	 * 			selects the entries passed to {@code consumer}; directories it rejects are not
+	 * 			walked into either. Null accepts everything.
+	 * @param consumer
+	 * 			receives the entries, from several threads at once
+	 * @return a future completed with the number of entries passed to {@code consumer}, or
+	 * 			exceptionally with the first error, after which no more directories are listed
+	 */
+	public CompletableFuture<Long> walkAsync(String root, int maxDepth, Predicate<FileStatus> filter,
+			Consumer<FileStatus> consumer) {
+		Assert.notNull(root, "Property <root> must not be null");
+		Assert.notNull(consumer, "Property <consumer> must not be null");
+		if(maxDepth <= 0) {
+			throw new IllegalArgumentException("maxDepth must be positive");
+		}
+
+		Walk walk = new Walk(maxDepth, filter, consumer);
+		walk.schedule(root, 1, true);
+		return walk.result;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Stops accepting new walks. Walks still running fail when they find their next directory.
+	 */
+	public void close() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * The state of one walk: the directories still to be listed, and the outcome
+	 */
+	private class Walk {
+		final int maxDepth;
+		final Predicate<FileStatus> filter;
+		final Consumer<FileStatus> consumer;
+		final CompletableFuture<Long> result = new CompletableFuture<Long>();
+		final AtomicInteger pending = new AtomicInteger();
+		final AtomicLong count = new AtomicLong();
+
+		Walk(int maxDepth, Predicate<FileStatus> filter, Consumer<FileStatus> consumer) {
+			this.maxDepth = maxDepth;
+			this.filter = filter;
+			this.consumer = consumer;
+		}
+
+		void schedule(final String directory, final int depth, final boolean root) {
+			pending.incrementAndGet();
+
+			try {
+				executor.execute(() -> {
+					try {
+						if(!result.isDone()) {
+							list(directory, depth, root);
+						}
+					}
+					catch(FileNotFoundException e) {
+						if(root) {
+							result.completeExceptionally(e);
+						}
+						else {
+							// deleted while walking
+							logger.debug("Skipping " + directory + ", it no longer exists");
+						}
+					}
+					catch(IOException | AuthenticationException | RuntimeException e) {
+						result.completeExceptionally(e instanceof UncheckedIOException ? e.getCause() : e);
+					}
+					finally {
+						done();
+					}
+				});
+			}
+			catch(RejectedExecutionException e) {
+				result.completeExceptionally(e);
+				done();
+			}
+		}
+
+		void list(String directory, int depth, boolean root) throws IOException, AuthenticationException {
+			acquire();
+			try (PagedFileStatusIterator entries = connection.listStatusBatchIterator(directory, null)) {
+				String prefix = directory.endsWith("/") ? directory : directory + "/";
+
+				while(entries.hasNext() && !result.isDone()) {
+					FileStatus status = entries.next();
+					// listing a file returns the file itself, with an empty suffix
+					status.setPath(status.getSuffix().isEmpty() ? directory : prefix + status.getSuffix());
+
+					if(filter != null && !filter.test(status)) {
+						continue;
+					}
+
+					consumer.accept(status);
+					count.incrementAndGet();
+
+					if(status.getType() == FileType.DIRECTORY && depth < maxDepth) {
+						schedule(status.getPath(), depth + 1, false);
+					}
+				}
+			}
+			finally {
+				release();
+			}
+		}
+
+		void done() {
+			if(pending.decrementAndGet() == 0) {
+				result.complete(count.get());
+			}
+		}
+
+		void acquire() throws InterruptedIOException {
+			if(permits != null) {
+				try {
+					permits.acquire();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to list");
+				}
+			}
+		}
+
+		void release() {
+			if(permits != null) {
+				permits.release();
+			}
+		}
+	}
+}
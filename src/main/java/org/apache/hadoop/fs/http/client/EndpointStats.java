@@ -0,0 +1,89 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * Immutable snapshot of the state and counters of one endpoint of a
+ * {@link FailoverWebHDFSConnection}.
+ */
+public class EndpointStats {
+
+	private final String url;
+	private final boolean active;
+	private final boolean standby;
+	private final boolean ejected;
+	private final int outstanding;
+	private final long requestCount;
+	private final long failureCount;
+	private final long ejectionCount;
+
+	public EndpointStats(String url, boolean active, boolean standby, boolean ejected, int outstanding,
+			long requestCount, long failureCount, long ejectionCount) {
+		this.url = url;
+		this.active = active;
+		this.standby = standby;
+		this.ejected = ejected;
+		this.outstanding = outstanding;
+		this.requestCount = requestCount;
+		this.failureCount = failureCount;
+		this.ejectionCount = ejectionCount;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/** @return whether requests are routed to this endpoint first, with the active/standby strategy */
+	public boolean isActive() {
+		return active;
+	}
+
+	/** @return whether the endpoint last answered as a standby NameNode */
+	public boolean isStandby() {
+		return standby;
+	}
+
+	/** @return whether the endpoint is currently skipped after a failure */
+	public boolean isEjected() {
+		return ejected;
+	}
+
+	/** @return the number of requests currently in flight */
+	public int getOutstanding() {
+		return outstanding;
+	}
+
+	/** @return the number of requests sent to the endpoint */
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+	/** @return the number of requests that failed because of the endpoint */
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	/** @return the number of times the endpoint was ejected */
+	public long getEjectionCount() {
+		return ejectionCount;
+	}
+
+	@Override
+	public String toString() {
+		return "EndpointStats [url=" + url + ", active=" + active + ", standby=" + standby + ", ejected=" + ejected
+				+ ", outstanding=" + outstanding + ", requestCount=" + requestCount + ", failureCount="
+				+ failureCount + ", ejectionCount=" + ejectionCount + "]";
+	}
+}
@@ -0,0 +1,681 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.hadoop.fs.http.client.RetryPolicy.Failure;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.CountingInputStream;
+import org.apache.hadoop.fs.http.client.util.CountingOutputStream;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebHDFSConnection} that spreads requests over several endpoints of one cluster: the
+ * NameNodes of an HA pair, or HttpFS gateways.
+ * <p>
+ * Each request is sent to one endpoint, chosen by the {@link Strategy}, with its connect and
+ * read timeouts capped to {@link #getRequestTimeoutMillis()}, so that an endpoint that hangs fails
+ * the request with a {@link java.net.SocketTimeoutException}. An endpoint that fails is ejected,
+ * skipped for {@link #getEjectionMillis()} or until a probe finds it healthy again, and a request
+ * it {@linkplain Failure#REJECTED rejected} without running, e.g. because it is the standby
+ * NameNode or refused the connection, is sent to the next endpoint right away. An error of the
+ * request itself, a {@linkplain Failure#FINAL final} one such as an {@code AccessControlException},
+ * leaves the endpoint in place. Requests that may have run are not sent elsewhere; wrap this connection in a
+ * {@link RetryingWebHDFSConnection} to retry the idempotent ones. When every endpoint is ejected,
+ * they are tried anyway.
+ * <p>
+ * Every {@link #getProbeIntervalMillis()} a GETFILESTATUS of {@code /} is sent to each endpoint,
+ * which brings back recovered endpoints and, with {@link Strategy#ACTIVE_STANDBY}, finds the active
+ * NameNode after a failover. Each endpoint is probed by a thread of its own, with timeouts capped
+ * to {@link #getProbeTimeoutMillis()}, so an endpoint that does not answer cannot hold up the probes
+ * of the others. {@link #close()} stops the probes and closes the connections of the endpoints.
+ * <p>
+ * Streams and iterators returned by a call keep using the endpoint that answered it.
+ */
+public class FailoverWebHDFSConnection implements WebHDFSConnection {
+
+	protected static final Logger logger = LoggerFactory.getLogger(FailoverWebHDFSConnection.class);
+
+	/** The default time a failed endpoint is skipped */
+	public static final long DEFAULT_EJECTION_MILLIS = 30000L;
+
+	/** The default time between two health probes of the endpoints */
+	public static final long DEFAULT_PROBE_INTERVAL_MILLIS = 5000L;
+
+	/** The default longest connect and read timeout of a request */
+	public static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
+
+	/** The default longest connect and read timeout of a health probe */
+	public static final int DEFAULT_PROBE_TIMEOUT_MILLIS = 2000;
+
+	/**
+	 * How requests are spread over the endpoints
+	 */
+	public enum Strategy {
+		/**
+		 * Every request goes to the active endpoint, the first one in order until one fails. The
+		 * endpoint that answers in its place becomes the active one. Use this for the NameNodes of
+		 * an HA pair.
+		 */
+		ACTIVE_STANDBY,
+		/**
+		 * Requests go to the healthy endpoints in turn. Use this for HttpFS gateways.
+		 */
+		ROUND_ROBIN,
+		/**
+		 * Each request goes to the healthy endpoint with the fewest requests in flight, which keeps
+		 * a slow gateway from piling up requests.
+		 */
+		LEAST_OUTSTANDING
+	}
+
+	private final Endpoint[] endpoints;
+	private final Strategy strategy;
+	private final RetryPolicy policy;
+	private final long ejectionNanos;
+	private final long probeIntervalMillis;
+	private final int requestTimeoutMillis;
+	private final int probeTimeoutMillis;
+	private final AtomicInteger next = new AtomicInteger();
+	private final ScheduledThreadPoolExecutor probes;
+
+	private volatile int active;
+
+	/**
+	 * Creates a new FailoverWebHDFSConnection instance with {@link #DEFAULT_EJECTION_MILLIS},
+	 * {@link #DEFAULT_PROBE_INTERVAL_MILLIS} and the default timeouts.
+	 *
+	 * @param endpoints
+	 * 			the connections to each endpoint by their URL, in order of preference
+	 * @param strategy
+	 * 			how requests are spread over the endpoints
+	 */
+	public FailoverWebHDFSConnection(Map<String, WebHDFSConnection> endpoints, Strategy strategy) {
+		this(endpoints, strategy, new RetryPolicy(), DEFAULT_EJECTION_MILLIS, DEFAULT_PROBE_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Creates a new FailoverWebHDFSConnection instance with {@link #DEFAULT_REQUEST_TIMEOUT_MILLIS}
+	 * and {@link #DEFAULT_PROBE_TIMEOUT_MILLIS}.
+	 *
+	 * @param endpoints
+	 * 			the connections to each endpoint by their URL, in order of preference
+	 * @param strategy
+	 * 			how requests are spread over the endpoints
+	 * @param policy
+	 * 			classifies the failures, see {@link RetryPolicy#classify(IOException)}; its attempts and
+	 * 			delays are not used
+	 * @param ejectionMillis
+	 * 			the time a failed endpoint is skipped
+	 * @param probeIntervalMillis
+	 * 			the time between two health probes of the endpoints, 0 to not probe them
+	 */
+	public FailoverWebHDFSConnection(Map<String, WebHDFSConnection> endpoints, Strategy strategy, RetryPolicy policy,
+			long ejectionMillis, long probeIntervalMillis) {
+		this(endpoints, strategy, policy, ejectionMillis, probeIntervalMillis, DEFAULT_REQUEST_TIMEOUT_MILLIS,
+				DEFAULT_PROBE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Creates a new FailoverWebHDFSConnection instance.
+	 *
+	 * @param endpoints
+	 * 			the connections to each endpoint by their URL, in order of preference
+	 * @param strategy
+	 * 			how requests are spread over the endpoints
+	 * @param policy
+	 * 			classifies the failures, see {@link RetryPolicy#classify(IOException)}; its attempts and
+	 * 			delays are not used
+	 * @param ejectionMillis
+	 * 			the time a failed endpoint is skipped
+	 * @param probeIntervalMillis
+	 * 			the time between two health probes of the endpoints, 0 to not probe them
+	 * @param requestTimeoutMillis
+	 * 			the longest connect and read timeout of a request, 0 to keep those of the transport
+	 * @param probeTimeoutMillis
+	 * 			the longest connect and read timeout of a health probe, 0 to keep those of the transport
+	 */
+	public FailoverWebHDFSConnection(Map<String, WebHDFSConnection> endpoints, Strategy strategy, RetryPolicy policy,
+			long ejectionMillis, long probeIntervalMillis, int requestTimeoutMillis, int probeTimeoutMillis) {
+		Assert.notNull(endpoints, "Property <endpoints> must not be null");
+		Assert.notNull(strategy, "Property <strategy> must not be null");
+		Assert.notNull(policy, "Property <policy> must not be null");
+		if(endpoints.isEmpty()) {
+			throw new IllegalArgumentException("endpoints must not be empty");
+		}
+		if(ejectionMillis < 0) {
+			throw new IllegalArgumentException("ejectionMillis must not be negative: " + ejectionMillis);
+		}
+		if(probeIntervalMillis < 0) {
+			throw new IllegalArgumentException("probeIntervalMillis must not be negative: " + probeIntervalMillis);
+		}
+		if(requestTimeoutMillis < 0 || probeTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Timeouts must not be negative");
+		}
+
+		this.endpoints = new Endpoint[endpoints.size()];
+		int i = 0;
+		for(Map.Entry<String, WebHDFSConnection> entry : endpoints.entrySet()) {
+			Assert.notNull(entry.getValue(), "Property <endpoints> must not hold null connections");
+			this.endpoints[i] = new Endpoint(i, entry.getKey(), entry.getValue());
+			i++;
+		}
+		this.strategy = strategy;
+		this.policy = policy;
+		this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+		this.probeIntervalMillis = probeIntervalMillis;
+		this.requestTimeoutMillis = requestTimeoutMillis;
+		this.probeTimeoutMillis = probeTimeoutMillis;
+		this.probes = probeIntervalMillis == 0 ? null : startProbes();
+	}
+
+	/*
+	 * One thread and one schedule per endpoint, so that a probe that hangs only delays the next
+	 * probe of the same endpoint
+	 */
+	private ScheduledThreadPoolExecutor startProbes() {
+		AtomicInteger threads = new AtomicInteger();
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(endpoints.length, r -> {
+			Thread thread = new Thread(r, "webhdfs-endpoint-prober-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+
+		for(Endpoint endpoint : endpoints) {
+			executor.scheduleWithFixedDelay(() -> probe(endpoint), probeIntervalMillis, probeIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+		return executor;
+	}
+
+	/*
+	 * ========================================================================
+	 * Routed
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse getHomeDirectory() throws IOException, AuthenticationException {
+		return route("GETHOMEDIRECTORY", null, c -> c.getHomeDirectory());
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return route("OPEN", counted::isUntouched, c -> c.open(path, counted));
+	}
+
+	public WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException,
+			AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return route("OPEN", counted::isUntouched, c -> c.open(path, offset, length, counted));
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return route("OPEN", counted::isUntouched, c -> c.open(path, counted, options));
+	}
+
+	public SeekableWebHDFSInputStream openStream(String path) throws IOException, AuthenticationException {
+		return route("OPEN", null, c -> c.openStream(path));
+	}
+
+	public long download(String path, Path localFile) throws IOException, AuthenticationException {
+		return route("OPEN", null, c -> c.download(path, localFile));
+	}
+
+	public long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException {
+		return route("OPEN", null, c -> c.download(path, localFile, preallocate));
+	}
+
+	public WebHDFSResponse getContentSummary(String path) throws IOException, AuthenticationException {
+		return route("GETCONTENTSUMMARY", null, c -> c.getContentSummary(path));
+	}
+
+	public WebHDFSResponse listStatus(String path) throws IOException, AuthenticationException {
+		return route("LISTSTATUS", null, c -> c.listStatus(path));
+	}
+
+	public FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException {
+		return route("LISTSTATUS", null, c -> c.listStatusIterator(path));
+	}
+
+	public WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException {
+		return route("LISTSTATUS_BATCH", null, c -> c.listStatusBatch(path, startAfter));
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path) throws IOException, AuthenticationException {
+		return route("LISTSTATUS_BATCH", null, c -> c.listStatusBatchIterator(path));
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path, Executor prefetch) throws IOException, AuthenticationException {
+		return route("LISTSTATUS_BATCH", null, c -> c.listStatusBatchIterator(path, prefetch));
+	}
+
+	public WebHDFSResponse getFileStatus(String path) throws IOException, AuthenticationException {
+		return route("GETFILESTATUS", null, c -> c.getFileStatus(path));
+	}
+
+	public WebHDFSResponse getFileCheckSum(String path) throws IOException, AuthenticationException {
+		return route("GETFILECHECKSUM", null, c -> c.getFileCheckSum(path));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("CREATE", counted::isUntouched, c -> c.create(path, counted, overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException,
+			AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("CREATE", counted::isUntouched, c -> c.create(path, counted, length, overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("CREATE", counted::isUntouched, c -> c.create(path, counted, length, options));
+	}
+
+	public WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException, AuthenticationException {
+		return route("CREATE", null, c -> c.upload(localFile, path, options));
+	}
+
+	public WebHDFSResponse mkdirs(String path) throws IOException, AuthenticationException {
+		return route("MKDIRS", null, c -> c.mkdirs(path));
+	}
+
+	public WebHDFSResponse createSymLink(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return route("CREATESYMLINK", null, c -> c.createSymLink(srcPath, destPath));
+	}
+
+	public WebHDFSResponse rename(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return route("RENAME", null, c -> c.rename(srcPath, destPath));
+	}
+
+	public WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException {
+		return route("SETPERMISSION", null, c -> c.setPermission(path));
+	}
+
+	public WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException {
+		return route("SETPERMISSION", null, c -> c.setPermission(path, options));
+	}
+
+	public WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException {
+		return route("SETOWNER", null, c -> c.setOwner(path));
+	}
+
+	public WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException {
+		return route("SETOWNER", null, c -> c.setOwner(path, options));
+	}
+
+	public WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException {
+		return route("SETREPLICATION", null, c -> c.setReplication(path));
+	}
+
+	public WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException {
+		return route("SETREPLICATION", null, c -> c.setReplication(path, options));
+	}
+
+	public WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException {
+		return route("SETTIMES", null, c -> c.setTimes(path));
+	}
+
+	public WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException {
+		return route("SETTIMES", null, c -> c.setTimes(path, options));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("APPEND", counted::isUntouched, c -> c.append(path, counted));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("APPEND", counted::isUntouched, c -> c.append(path, counted, length));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return route("APPEND", counted::isUntouched, c -> c.append(path, counted, length, options));
+	}
+
+	public WebHDFSResponse delete(String path) throws IOException, AuthenticationException {
+		return route("DELETE", null, c -> c.delete(path));
+	}
+
+	public FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException {
+		return route("GETFILESTATUS", null, c -> c.getFileStatusTyped(path));
+	}
+
+	public List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException {
+		return route("LISTSTATUS", null, c -> c.listStatusTyped(path));
+	}
+
+	public FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException {
+		return route("LISTSTATUS", null, c -> c.listStatusColumnar(path));
+	}
+
+	public String getHomeDirectoryTyped() throws IOException, AuthenticationException {
+		return route("GETHOMEDIRECTORY", null, c -> c.getHomeDirectoryTyped());
+	}
+
+	public ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException {
+		return route("GETCONTENTSUMMARY", null, c -> c.getContentSummaryTyped(path));
+	}
+
+	public FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException {
+		return route("GETFILECHECKSUM", null, c -> c.getFileChecksumTyped(path));
+	}
+
+	public boolean mkdirsTyped(String path) throws IOException, AuthenticationException {
+		return route("MKDIRS", null, c -> c.mkdirsTyped(path));
+	}
+
+	public boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return route("RENAME", null, c -> c.renameTyped(srcPath, destPath));
+	}
+
+	public boolean deleteTyped(String path) throws IOException, AuthenticationException {
+		return route("DELETE", null, c -> c.deleteTyped(path));
+	}
+
+	public String getDelegationToken(String renewer) throws IOException, AuthenticationException {
+		return route("GETDELEGATIONTOKEN", null, c -> c.getDelegationToken(renewer));
+	}
+
+	public long renewDelegationToken(String token) throws IOException, AuthenticationException {
+		return route("RENEWDELEGATIONTOKEN", null, c -> c.renewDelegationToken(token));
+	}
+
+	public void cancelDelegationToken(String token) throws IOException, AuthenticationException {
+		route("CANCELDELEGATIONTOKEN", null, c -> {
+			c.cancelDelegationToken(token);
+			return null;
+		});
+	}
+
+	/**
+	 * Stops the health probes and closes the connections of the endpoints.
+	 */
+	public void close() throws IOException {
+		if(probes != null) {
+			probes.shutdownNow();
+		}
+
+		IOException error = null;
+		for(Endpoint endpoint : endpoints) {
+			try {
+				endpoint.connection.close();
+			}
+			catch(IOException e) {
+				if(error == null) {
+					error = e;
+				}
+				else {
+					error.addSuppressed(e);
+				}
+			}
+		}
+		if(error != null) {
+			throw error;
+		}
+	}
+
+	/*
+	 * ========================================================================
+	 * Endpoints
+	 * ========================================================================
+	 */
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	public long getEjectionMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(ejectionNanos);
+	}
+
+	public long getProbeIntervalMillis() {
+		return probeIntervalMillis;
+	}
+
+	public int getRequestTimeoutMillis() {
+		return requestTimeoutMillis;
+	}
+
+	public int getProbeTimeoutMillis() {
+		return probeTimeoutMillis;
+	}
+
+	/**
+	 * @return the URL of the endpoint requests are routed to first with
+	 * 			{@link Strategy#ACTIVE_STANDBY}
+	 */
+	public String getActiveUrl() {
+		return endpoints[active].url;
+	}
+
+	/**
+	 * @return the state and counters of each endpoint, in order of preference
+	 */
+	public List<EndpointStats> getStats() {
+		long now = System.nanoTime();
+		List<EndpointStats> stats = new ArrayList<EndpointStats>(endpoints.length);
+		for(Endpoint endpoint : endpoints) {
+			stats.add(new EndpointStats(endpoint.url, endpoint.index == active, endpoint.standby, !endpoint.isUsable(now),
+					endpoint.outstanding.get(), endpoint.requestCount.get(), endpoint.failureCount.get(),
+					endpoint.ejectionCount.get()));
+		}
+		return stats;
+	}
+
+	/*
+	 * One call on the connection of an endpoint
+	 */
+	private interface Call<T> {
+		T call(WebHDFSConnection connection) throws IOException, AuthenticationException;
+	}
+
+	/*
+	 * Sends the call to the chosen endpoint, and to the next ones for as long as they reject it
+	 *
+	 * replayable tells whether the request can be sent again, null if it always can
+	 */
+	private <T> T route(String op, BooleanSupplier replayable, Call<T> call) throws IOException, AuthenticationException {
+		boolean[] tried = new boolean[endpoints.length];
+
+		for(int attempt = 1; ; attempt++) {
+			Endpoint endpoint = choose(tried);
+			tried[endpoint.index] = true;
+
+			T result = null;
+			IOException error = null;
+			Failure failure;
+			endpoint.requestCount.incrementAndGet();
+			endpoint.outstanding.incrementAndGet();
+			// an endpoint that hangs times out, and is ejected like one that refuses the request
+			int previous = Timeouts.enterLimit(requestTimeoutMillis);
+			try {
+				result = call.call(endpoint.connection);
+				failure = result instanceof WebHDFSResponse ? policy.classify((WebHDFSResponse) result) : Failure.FINAL;
+			}
+			catch(IOException e) {
+				error = e;
+				failure = policy.classify(e);
+			}
+			finally {
+				Timeouts.exitLimit(previous);
+				endpoint.outstanding.decrementAndGet();
+			}
+
+			if(failure == Failure.FINAL) {
+				// the endpoint answered, even if with an error of the request
+				healthy(endpoint);
+				return outcome(result, error);
+			}
+
+			eject(endpoint, isStandby(result, error));
+			if(failure != Failure.REJECTED || attempt == endpoints.length
+					|| (replayable != null && !replayable.getAsBoolean())) {
+				return outcome(result, error);
+			}
+			logger.debug(op + " rejected by " + endpoint.url + ", sending it to the next endpoint");
+		}
+	}
+
+	/*
+	 * The endpoint to send a request to, among those not tried yet: a usable one if there is,
+	 * otherwise the first in order
+	 */
+	private Endpoint choose(boolean[] tried) {
+		int n = endpoints.length;
+		int start = strategy == Strategy.ACTIVE_STANDBY ? active : Math.floorMod(next.getAndIncrement(), n);
+		long now = System.nanoTime();
+		Endpoint chosen = null;
+		Endpoint fallback = null;
+
+		for(int i = 0; i < n; i++) {
+			Endpoint endpoint = endpoints[(start + i) % n];
+			if(tried[endpoint.index]) {
+				continue;
+			}
+			if(fallback == null) {
+				fallback = endpoint;
+			}
+			if(!endpoint.isUsable(now)) {
+				continue;
+			}
+			if(strategy != Strategy.LEAST_OUTSTANDING) {
+				return endpoint;
+			}
+			if(chosen == null || endpoint.outstanding.get() < chosen.outstanding.get()) {
+				chosen = endpoint;
+			}
+		}
+		return chosen != null ? chosen : fallback;
+	}
+
+	private void healthy(Endpoint endpoint) {
+		endpoint.ejectedUntil = 0L;
+		endpoint.standby = false;
+		if(strategy == Strategy.ACTIVE_STANDBY && active != endpoint.index) {
+			Endpoint previous = endpoints[active];
+			if(!previous.isUsable(System.nanoTime())) {
+				logger.info("Switching the active endpoint from " + previous.url + " to " + endpoint.url);
+				active = endpoint.index;
+			}
+		}
+	}
+
+	private void eject(Endpoint endpoint, boolean standby) {
+		endpoint.failureCount.incrementAndGet();
+		endpoint.standby = standby;
+		if(endpoint.isUsable(System.nanoTime())) {
+			endpoint.ejectionCount.incrementAndGet();
+			logger.info("Ejecting endpoint " + endpoint.url + (standby ? ", a standby NameNode" : ""));
+		}
+		// never 0, which stands for not ejected
+		endpoint.ejectedUntil = (System.nanoTime() + ejectionNanos) | 1L;
+	}
+
+	/*
+	 * Checks an endpoint, so that a recovered one comes back and a new active NameNode is found
+	 */
+	private void probe(Endpoint endpoint) {
+		int previous = Timeouts.enterLimit(probeTimeoutMillis);
+		try {
+			WebHDFSResponse response = endpoint.connection.getFileStatus("/");
+			if(policy.classify(response) == Failure.FINAL) {
+				healthy(endpoint);
+			}
+			else {
+				eject(endpoint, isStandby(response, null));
+			}
+		}
+		catch(IOException e) {
+			if(policy.classify(e) == Failure.FINAL) {
+				healthy(endpoint);
+			}
+			else {
+				eject(endpoint, isStandby(null, e));
+			}
+		}
+		catch(AuthenticationException | RuntimeException e) {
+			logger.warn("Could not probe endpoint " + endpoint.url, e);
+		}
+		finally {
+			Timeouts.exitLimit(previous);
+		}
+	}
+
+	private static boolean isStandby(Object result, IOException error) {
+		RemoteException remote = null;
+		if(error instanceof RemoteException) {
+			remote = (RemoteException) error;
+		}
+		else if(result instanceof WebHDFSResponse && ((WebHDFSResponse) result).getRawResponse() != null) {
+			remote = SerializationUtils.getRemoteException(((WebHDFSResponse) result).getRawResponse());
+		}
+		return remote != null && "StandbyException".equals(remote.getException());
+	}
+
+	private static <T> T outcome(T result, IOException error) throws IOException {
+		if(error != null) {
+			throw error;
+		}
+		return result;
+	}
+
+	private static final class Endpoint {
+		final int index;
+		final String url;
+		final WebHDFSConnection connection;
+		final AtomicInteger outstanding = new AtomicInteger();
+		final AtomicLong requestCount = new AtomicLong();
+		final AtomicLong failureCount = new AtomicLong();
+		final AtomicLong ejectionCount = new AtomicLong();
+
+		// System.nanoTime() until which the endpoint is skipped, 0 if it is not
+		volatile long ejectedUntil;
+		volatile boolean standby;
+
+		Endpoint(int index, String url, WebHDFSConnection connection) {
+			this.index = index;
+			this.url = url;
+			this.connection = connection;
+		}
+
+		boolean isUsable(long now) {
+			long until = ejectedUntil;
+			return until == 0L || until - now <= 0;
+		}
+	}
+}
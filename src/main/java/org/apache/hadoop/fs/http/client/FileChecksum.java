@@ -0,0 +1,103 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The result of GETFILECHECKSUM:
+ *
+ * <pre>
+ * {"FileChecksum":{"algorithm":"MD5-of-1MD5-of-512CRC32","bytes":"eadb10de24aa315748930df6e185c0d...","length":28}}
+ * </pre>
+ */
+public class FileChecksum {
+
+	private String algorithm;
+	private String bytes;
+	private int length;
+
+	public FileChecksum() {
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @return the checksum as a hex string
+	 */
+	public String getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(String bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return the length of the checksum in bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	public void setLength(int length) {
+		this.length = length;
+	}
+
+	@Override
+	public String toString() {
+		return algorithm + ":" + bytes;
+	}
+
+	/**
+	 * Reads a bare FileChecksum object. Unknown properties are skipped.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the start of the object
+	 * @return a new {@link FileChecksum} instance
+	 * @throws IOException
+	 */
+	public static FileChecksum read(JsonParser p) throws IOException {
+		FileChecksum instance = new FileChecksum();
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			if(name.equals("algorithm")) {
+				instance.algorithm = p.getValueAsString();
+			}
+			else if(name.equals("bytes")) {
+				instance.bytes = p.getValueAsString();
+			}
+			else if(name.equals("length")) {
+				instance.length = p.getIntValue();
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		return instance;
+	}
+}
@@ -16,10 +16,8 @@ package org.apache.hadoop.fs.http.client;
 
 import java.io.IOException;
 
-import com.google.gson.TypeAdapter;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-import com.google.gson.stream.JsonWriter;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class FileStatus {
 
@@ -30,6 +28,7 @@ public class FileStatus {
 	private long modTime;
 	private String owner;
 	private String suffix;
+	private String path;
 	private String permission;
 	private int replication;
 	private FileType type;
@@ -93,6 +92,18 @@ public class FileStatus {
 		this.suffix = suffix;
 	}
 
+	/**
+	 * @return the full path of the entry, or null if it was read from a listing on its own, in
+	 * 			which case only {@link #getSuffix()} relative to the listed directory is known
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
 	public String getPermission() {
 		return permission;
 	}
@@ -117,68 +128,61 @@ public class FileStatus {
 		this.type = type;
 	}
 	
-	public static TypeAdapter adapter() {
-		return new TypeAdapter<FileStatus>() {
-			@Override
-			public void write(JsonWriter out, FileStatus value) throws IOException {
-				/* not implemented */
+	/**
+	 * Reads a single bare FileStatus object, as found in the {@code FileStatus} array of a
+	 * LISTSTATUS response. Unknown properties are skipped.
+	 * <p>
+	 * Property names are matched with a {@code switch}, as WebHDFS spells them exactly so.
+	 * 
+	 * @param p
+	 * 			the parser, positioned on the start of the object
+	 * @return a new {@link FileStatus} instance
+	 * @throws IOException
+	 */
+	public static FileStatus read(JsonParser p) throws IOException {
+		FileStatus instance = new FileStatus();
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			switch(name) {
+			case "accessTime":
+				instance.accessTime = p.getLongValue();
+				break;
+			case "blockSize":
+				instance.blockSize = p.getIntValue();
+				break;
+			case "length":
+				instance.length = p.getLongValue();
+				break;
+			case "modificationTime":
+				instance.modTime = p.getLongValue();
+				break;
+			case "replication":
+				instance.replication = p.getIntValue();
+				break;
+			case "group":
+				instance.group = p.getValueAsString();
+				break;
+			case "owner":
+				instance.owner = p.getValueAsString();
+				break;
+			case "pathSuffix":
+				instance.suffix = p.getValueAsString();
+				break;
+			case "permission":
+				instance.permission = p.getValueAsString();
+				break;
+			case "type":
+				instance.type = FileType.valueOf(p.getValueAsString());
+				break;
+			default:
+				// e.g. fileId, childrenNum or storagePolicy from newer servers
+				p.skipChildren();
 			}
+		}
 
-			@Override
-			public FileStatus read(JsonReader in) throws IOException {
-				FileStatus instance = null;
-				in.setLenient(true);
-				
-				if(in.peek() == JsonToken.BEGIN_OBJECT) {
-					in.beginObject();
-					
-					if(in.nextName().equalsIgnoreCase("FileStatus")) {
-						String name;
-						in.beginObject();
-						instance = new FileStatus();
-
-						while(in.hasNext()) {
-							name = in.nextName();
-							
-							if(name.equalsIgnoreCase("accessTime")) {
-								instance.accessTime = in.nextLong();
-							}
-							else if(name.equalsIgnoreCase("blockSize")) {
-								instance.blockSize = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("length")) {
-								instance.length = in.nextLong();
-							}
-							else if(name.equalsIgnoreCase("modificationTime")) {
-								instance.modTime = in.nextLong();
-							}
-							else if(name.equalsIgnoreCase("replication")) {
-								instance.replication = in.nextInt();
-							}
-							else if(name.equalsIgnoreCase("group")) {
-								instance.group = in.nextString();
-							}
-							else if(name.equalsIgnoreCase("owner")) {
-								instance.owner = in.nextString();
-							}
-							else if(name.equalsIgnoreCase("pathSuffix")) {
-								instance.suffix = in.nextString();
-							}
-							else if(name.equalsIgnoreCase("permission")) {
-								instance.permission = in.nextString();
-							}
-							else if(name.equalsIgnoreCase("type")) {
-								instance.type = FileType.valueOf(in.nextString());
-							}							
-						}
-						
-						in.endObject();
-					}
-	
-					in.endObject();
-				}
-				return instance;
-			}
-		};
+		return instance;
 	}
 }
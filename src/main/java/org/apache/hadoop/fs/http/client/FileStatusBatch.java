@@ -0,0 +1,621 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A directory listing stored column by column.
+ * <p>
+ * The numeric properties of every entry live in primitive arrays, the path suffixes share one
+ * {@code char[]}, and owner, group and permission, which repeat across a listing, are stored once
+ * in small dictionaries and referenced by index. A million entries take a few dozen MB instead
+ * of the hundreds a list of {@link FileStatus} objects needs, and scanning one property touches
+ * one contiguous array.
+ * <p>
+ * Entries are addressed by index, from 0 to {@link #size()} - 1, in the server's order.
+ * {@link #filter(IntPredicate)} and {@link #sort(int[], IndexComparator)} work on arrays of
+ * indices rather than moving entries around; {@link #cursor()} gives a reusable view of one
+ * entry. Instances are not thread-safe while being filled.
+ */
+public class FileStatusBatch {
+
+	/**
+	 * Compares two entries of a batch by index.
+	 */
+	public interface IndexComparator {
+
+		int compare(int i, int j);
+	}
+
+	private static final FileType[] TYPES = FileType.values();
+
+	private int size;
+	private long[] lengths;
+	private long[] modificationTimes;
+	private long[] accessTimes;
+	private long[] blockSizes;
+	private short[] replications;
+	private byte[] types;
+	private int[] owners;
+	private int[] groups;
+	private int[] permissions;
+	private int[] suffixEnds;
+	private char[] suffixChars;
+
+	private final Dictionary ownerDictionary = new Dictionary();
+	private final Dictionary groupDictionary = new Dictionary();
+	private final Dictionary permissionDictionary = new Dictionary();
+
+	public FileStatusBatch() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 * 			the number of entries to make room for up front
+	 */
+	public FileStatusBatch(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+
+		lengths = new long[capacity];
+		modificationTimes = new long[capacity];
+		accessTimes = new long[capacity];
+		blockSizes = new long[capacity];
+		replications = new short[capacity];
+		types = new byte[capacity];
+		owners = new int[capacity];
+		groups = new int[capacity];
+		permissions = new int[capacity];
+		suffixEnds = new int[capacity];
+		suffixChars = new char[capacity * 16];
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	public String getSuffix(int i) {
+		check(i);
+		int start = i == 0 ? 0 : suffixEnds[i - 1];
+		return new String(suffixChars, start, suffixEnds[i] - start);
+	}
+
+	/**
+	 * Compares the suffixes of two entries without creating Strings.
+	 *
+	 * @param i
+	 * 			the index of the first entry
+	 * @param j
+	 * 			the index of the second entry
+	 * @return the lexicographic comparison of the suffixes, as {@link String#compareTo(String)}
+	 */
+	public int compareSuffixes(int i, int j) {
+		check(i);
+		check(j);
+		int a = i == 0 ? 0 : suffixEnds[i - 1];
+		int b = j == 0 ? 0 : suffixEnds[j - 1];
+		int aEnd = suffixEnds[i];
+		int bEnd = suffixEnds[j];
+
+		for(; a < aEnd && b < bEnd; a++, b++) {
+			if(suffixChars[a] != suffixChars[b]) {
+				return suffixChars[a] - suffixChars[b];
+			}
+		}
+		return (aEnd - a) - (bEnd - b);
+	}
+
+	public long getLength(int i) {
+		check(i);
+		return lengths[i];
+	}
+
+	public long getModificationTime(int i) {
+		check(i);
+		return modificationTimes[i];
+	}
+
+	public long getAccessTime(int i) {
+		check(i);
+		return accessTimes[i];
+	}
+
+	public long getBlockSize(int i) {
+		check(i);
+		return blockSizes[i];
+	}
+
+	public short getReplication(int i) {
+		check(i);
+		return replications[i];
+	}
+
+	public FileType getType(int i) {
+		check(i);
+		return types[i] < 0 ? null : TYPES[types[i]];
+	}
+
+	public String getOwner(int i) {
+		check(i);
+		return ownerDictionary.get(owners[i]);
+	}
+
+	public String getGroup(int i) {
+		check(i);
+		return groupDictionary.get(groups[i]);
+	}
+
+	public String getPermission(int i) {
+		check(i);
+		return permissionDictionary.get(permissions[i]);
+	}
+
+	/**
+	 * @return the distinct owners of this batch, the same instances {@link #getOwner(int)} returns
+	 */
+	public List<String> getOwners() {
+		return ownerDictionary.values();
+	}
+
+	/**
+	 * @return the distinct groups of this batch, the same instances {@link #getGroup(int)} returns
+	 */
+	public List<String> getGroups() {
+		return groupDictionary.values();
+	}
+
+	/**
+	 * Copies entry {@code i} into a new {@link FileStatus}.
+	 *
+	 * @param i
+	 * 			the index of the entry
+	 * @return a new {@link FileStatus} instance
+	 */
+	public FileStatus toFileStatus(int i) {
+		FileStatus status = new FileStatus();
+		status.setSuffix(getSuffix(i));
+		status.setLength(lengths[i]);
+		status.setModificationTime(modificationTimes[i]);
+		status.setAccessTime(accessTimes[i]);
+		status.setBlockSize((int) blockSizes[i]);
+		status.setReplication(replications[i]);
+		status.setType(getType(i));
+		status.setOwner(getOwner(i));
+		status.setGroup(getGroup(i));
+		status.setPermission(getPermission(i));
+		return status;
+	}
+
+	/**
+	 * @param predicate
+	 * 			tests an entry by index
+	 * @return the indices of the entries {@code predicate} accepts, in ascending order
+	 */
+	public int[] filter(IntPredicate predicate) {
+		int[] selected = new int[size];
+		int count = 0;
+
+		for(int i = 0; i < size; i++) {
+			if(predicate.test(i)) {
+				selected[count++] = i;
+			}
+		}
+		return Arrays.copyOf(selected, count);
+	}
+
+	/**
+	 * @return the indices of all entries, in ascending order
+	 */
+	public int[] indices() {
+		int[] all = new int[size];
+		for(int i = 0; i < size; i++) {
+			all[i] = i;
+		}
+		return all;
+	}
+
+	/**
+	 * Sorts {@code indices} in place with a stable merge sort, without boxing.
+	 *
+	 * @param indices
+	 * 			entry indices, e.g. from {@link #indices()} or {@link #filter(IntPredicate)}
+	 * @param comparator
+	 * 			orders two entries, e.g. {@code (i, j) -> Long.compare(batch.getLength(j), batch.getLength(i))}
+	 * @return {@code indices}
+	 */
+	public int[] sort(int[] indices, IndexComparator comparator) {
+		if(indices.length > 1) {
+			int[] buffer = indices.clone();
+			mergeSort(buffer, indices, 0, indices.length, comparator);
+		}
+		return indices;
+	}
+
+	/**
+	 * @return a new reusable view, positioned on entry 0
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Appends one entry.
+	 *
+	 * @param status
+	 * 			the entry to copy in
+	 */
+	public void add(FileStatus status) {
+		int i = grow();
+		lengths[i] = status.getLength();
+		modificationTimes[i] = status.getModificationTime();
+		accessTimes[i] = status.getAccessTime();
+		blockSizes[i] = status.getBlockSize();
+		replications[i] = (short) status.getReplication();
+		types[i] = status.getType() == null ? -1 : (byte) status.getType().ordinal();
+		owners[i] = ownerDictionary.code(status.getOwner());
+		groups[i] = groupDictionary.code(status.getGroup());
+		permissions[i] = permissionDictionary.code(status.getPermission());
+
+		String suffix = status.getSuffix() == null ? "" : status.getSuffix();
+		int start = appendSuffix(suffix.length());
+		suffix.getChars(0, suffix.length(), suffixChars, start);
+	}
+
+	/**
+	 * Reads the {@code FileStatus} array of a {@code FileStatuses} object straight into a new
+	 * batch. No {@link FileStatus} objects are created, and owner, group, permission and type
+	 * are matched against the dictionaries from the parser's buffer, so only the first
+	 * occurrence of each value creates a String. Unknown properties are skipped.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the start of the {@code FileStatuses} object
+	 * @return a new {@link FileStatusBatch} instance
+	 * @throws IOException
+	 */
+	public static FileStatusBatch read(JsonParser p) throws IOException {
+		FileStatusBatch batch = new FileStatusBatch();
+		if(p.getCurrentToken() != JsonToken.START_OBJECT) {
+			p.skipChildren();
+			return batch;
+		}
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			if(name.equals("FileStatus") && p.getCurrentToken() == JsonToken.START_ARRAY) {
+				while(p.nextToken() == JsonToken.START_OBJECT) {
+					batch.readEntry(p);
+				}
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		return batch;
+	}
+
+	private void readEntry(JsonParser p) throws IOException {
+		int i = grow();
+		types[i] = -1;
+		owners[i] = -1;
+		groups[i] = -1;
+		permissions[i] = -1;
+		boolean suffix = false;
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			JsonToken token = p.nextToken();
+
+			if(token == JsonToken.VALUE_NULL) {
+				continue;
+			}
+
+			switch(name) {
+			case "length":
+				lengths[i] = p.getLongValue();
+				break;
+			case "modificationTime":
+				modificationTimes[i] = p.getLongValue();
+				break;
+			case "accessTime":
+				accessTimes[i] = p.getLongValue();
+				break;
+			case "blockSize":
+				blockSizes[i] = p.getLongValue();
+				break;
+			case "replication":
+				replications[i] = p.getShortValue();
+				break;
+			case "type":
+				types[i] = type(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+				break;
+			case "owner":
+				owners[i] = ownerDictionary.code(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+				break;
+			case "group":
+				groups[i] = groupDictionary.code(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+				break;
+			case "permission":
+				permissions[i] = permissionDictionary.code(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+				break;
+			case "pathSuffix":
+				if(!suffix) {
+					int length = p.getTextLength();
+					System.arraycopy(p.getTextCharacters(), p.getTextOffset(), suffixChars, appendSuffix(length), length);
+					suffix = true;
+				}
+				break;
+			default:
+				// e.g. fileId, childrenNum or storagePolicy from newer servers
+				p.skipChildren();
+			}
+		}
+
+		if(!suffix) {
+			appendSuffix(0);
+		}
+	}
+
+	/*
+	 * Makes room for one more entry and returns its index
+	 */
+	private int grow() {
+		if(size == lengths.length) {
+			int capacity = Math.max(16, size + (size >> 1));
+			lengths = Arrays.copyOf(lengths, capacity);
+			modificationTimes = Arrays.copyOf(modificationTimes, capacity);
+			accessTimes = Arrays.copyOf(accessTimes, capacity);
+			blockSizes = Arrays.copyOf(blockSizes, capacity);
+			replications = Arrays.copyOf(replications, capacity);
+			types = Arrays.copyOf(types, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			groups = Arrays.copyOf(groups, capacity);
+			permissions = Arrays.copyOf(permissions, capacity);
+			suffixEnds = Arrays.copyOf(suffixEnds, capacity);
+		}
+		// the suffix end is set by appendSuffix, until then the entry is not visible
+		return size;
+	}
+
+	/*
+	 * Reserves length chars for the suffix of the entry being added, completes the entry and
+	 * returns where its suffix starts
+	 */
+	private int appendSuffix(int length) {
+		int start = size == 0 ? 0 : suffixEnds[size - 1];
+		if(start + length > suffixChars.length) {
+			suffixChars = Arrays.copyOf(suffixChars, Math.max(start + length, suffixChars.length * 2));
+		}
+		suffixEnds[size++] = start + length;
+		return start;
+	}
+
+	private static byte type(char[] chars, int offset, int length) throws IOException {
+		for(FileType type : TYPES) {
+			if(Dictionary.equals(type.name(), chars, offset, length)) {
+				return (byte) type.ordinal();
+			}
+		}
+		throw new IOException("Unknown file type " + new String(chars, offset, length));
+	}
+
+	private void check(int i) {
+		if(i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+		}
+	}
+
+	private static void mergeSort(int[] source, int[] target, int from, int to, IndexComparator comparator) {
+		if(to - from < 8) {
+			// insertion sort; source and target hold the same run here
+			for(int i = from + 1; i < to; i++) {
+				int value = target[i];
+				int j = i - 1;
+				while(j >= from && comparator.compare(target[j], value) > 0) {
+					target[j + 1] = target[j];
+					j--;
+				}
+				target[j + 1] = value;
+			}
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(target, source, from, middle, comparator);
+		mergeSort(target, source, middle, to, comparator);
+
+		for(int i = from, left = from, right = middle; i < to; i++) {
+			if(right >= to || (left < middle && comparator.compare(source[left], source[right]) <= 0)) {
+				target[i] = source[left++];
+			}
+			else {
+				target[i] = source[right++];
+			}
+		}
+	}
+
+	/**
+	 * A view of one entry, moved with {@link #moveTo(int)} or {@link #next()}, so a batch is
+	 * scanned without creating an object per entry.
+	 */
+	public class Cursor {
+
+		private int index;
+
+		private Cursor() {
+		}
+
+		/**
+		 * @param i
+		 * 			the index of the entry to view
+		 * @return this cursor
+		 */
+		public Cursor moveTo(int i) {
+			check(i);
+			index = i;
+			return this;
+		}
+
+		/**
+		 * Moves to the next entry.
+		 *
+		 * @return false if this cursor was on the last entry, in which case it stays there
+		 */
+		public boolean next() {
+			if(index + 1 >= size) {
+				return false;
+			}
+			index++;
+			return true;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getSuffix() {
+			return FileStatusBatch.this.getSuffix(index);
+		}
+
+		public long getLength() {
+			return lengths[index];
+		}
+
+		public long getModificationTime() {
+			return modificationTimes[index];
+		}
+
+		public long getAccessTime() {
+			return accessTimes[index];
+		}
+
+		public long getBlockSize() {
+			return blockSizes[index];
+		}
+
+		public short getReplication() {
+			return replications[index];
+		}
+
+		public FileType getType() {
+			return FileStatusBatch.this.getType(index);
+		}
+
+		public String getOwner() {
+			return ownerDictionary.get(owners[index]);
+		}
+
+		public String getGroup() {
+			return groupDictionary.get(groups[index]);
+		}
+
+		public String getPermission() {
+			return permissionDictionary.get(permissions[index]);
+		}
+	}
+
+	/*
+	 * Distinct strings by code, with a lookup that works on a char range
+	 */
+	private static class Dictionary {
+
+		private final List<String> values = new ArrayList<String>();
+		private int[] slots = new int[16];
+
+		String get(int code) {
+			return code < 0 ? null : values.get(code);
+		}
+
+		List<String> values() {
+			return Collections.unmodifiableList(values);
+		}
+
+		int code(String value) {
+			if(value == null) {
+				return -1;
+			}
+			char[] chars = value.toCharArray();
+			return code(chars, 0, chars.length);
+		}
+
+		int code(char[] chars, int offset, int length) {
+			int hash = 0;
+			for(int i = offset; i < offset + length; i++) {
+				hash = 31 * hash + chars[i];
+			}
+
+			// open addressing; a slot holds code + 1, 0 when empty
+			int mask = slots.length - 1;
+			for(int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+				int entry = slots[slot];
+				if(entry == 0) {
+					values.add(new String(chars, offset, length));
+					slots[slot] = values.size();
+					if(values.size() * 2 > slots.length) {
+						rehash();
+					}
+					return values.size() - 1;
+				}
+				if(equals(values.get(entry - 1), chars, offset, length)) {
+					return entry - 1;
+				}
+			}
+		}
+
+		private void rehash() {
+			slots = new int[slots.length * 2];
+			int mask = slots.length - 1;
+
+			for(int code = 0; code < values.size(); code++) {
+				int slot = mix(values.get(code).hashCode()) & mask;
+				while(slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = code + 1;
+			}
+		}
+
+		private static int mix(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+
+		static boolean equals(String value, char[] chars, int offset, int length) {
+			if(value.length() != length) {
+				return false;
+			}
+			for(int i = 0; i < length; i++) {
+				if(value.charAt(i) != chars[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads the entries of a LISTSTATUS response one at a time, straight from the response body.
+ * <p>
+ * Only the entry being parsed is held in memory, so a directory of any size is listed in constant
+ * memory, and the first entries are available before the server has sent the last one. The
+ * response is released when the last entry has been read or when the iterator is closed; close it
+ * when abandoning the listing early, or its connection counts against the limits of the transport
+ * until the iterator is garbage collected.
+ * <p>
+ * I/O errors while iterating are thrown as {@link UncheckedIOException}.
+ */
+public class FileStatusIterator implements Iterator<FileStatus>, Closeable {
+
+	private final InputStream is;
+	private final JsonParser parser;
+	private boolean peeked;
+	private boolean closed;
+
+	/**
+	 * Creates a new FileStatusIterator instance, reading up to the first entry of {@code is}.
+	 *
+	 * @param is
+	 * 			the body of a LISTSTATUS response, closed by this iterator
+	 * @throws IOException if {@code is} cannot be read, or holds a {@code RemoteException}
+	 */
+	public FileStatusIterator(InputStream is) throws IOException {
+		this.is = is;
+		this.parser = SerializationUtils.createParser(is);
+
+		boolean positioned = false;
+		try {
+			positioned = moveToEntries();
+		}
+		finally {
+			if(!positioned) {
+				close();
+			}
+		}
+	}
+
+	public boolean hasNext() {
+		if(closed) {
+			return false;
+		}
+
+		try {
+			// the next entry, or the end of the array
+			if(!peeked) {
+				parser.nextToken();
+				peeked = true;
+			}
+			if(parser.getCurrentToken() == JsonToken.START_OBJECT) {
+				return true;
+			}
+			close();
+			return false;
+		}
+		catch(IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public FileStatus next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+			peeked = false;
+			return FileStatus.read(parser);
+		}
+		catch(IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the remaining entries as a sequential {@link Stream}, which closes this iterator
+	 * 			when closed
+	 */
+	public Stream<FileStatus> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Releases the response. Entries not read yet are discarded.
+	 */
+	public void close() {
+		if(!closed) {
+			closed = true;
+			Closeables.closeQuietly(parser);
+			Closeables.closeQuietly(is);
+		}
+	}
+
+	/*
+	 * Walks {"FileStatuses":{"FileStatus":[ and stops inside the array
+	 */
+	private boolean moveToEntries() throws IOException {
+		if(parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new IOException("Not a LISTSTATUS response");
+		}
+
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			parser.nextToken();
+
+			if(name.equals("FileStatuses")) {
+				while(parser.nextToken() == JsonToken.FIELD_NAME) {
+					String inner = parser.getCurrentName();
+					if(parser.nextToken() == JsonToken.START_ARRAY && inner.equals("FileStatus")) {
+						return true;
+					}
+					parser.skipChildren();
+				}
+			}
+			else if(name.equals("RemoteException")) {
+				throw RemoteException.read(parser);
+			}
+			else {
+				parser.skipChildren();
+			}
+		}
+
+		throw new IOException("Not a LISTSTATUS response");
+	}
+}
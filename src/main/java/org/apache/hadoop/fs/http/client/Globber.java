@@ -0,0 +1,277 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.GlobPattern;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expands glob patterns such as <code>/data/2026/&#42;/events-&#42;.parquet</code> against the server.
+ * <p>
+ * The pattern is expanded one path component at a time, and only directories that can still
+ * match are listed: components without wildcards are appended to the candidates without any
+ * request, and a wildcard component lists each candidate directory once, keeping the entries
+ * its {@link GlobPattern} accepts. The directories of one level are listed in parallel, and
+ * the pages of each directory one after the other by the thread listing it, so no more than
+ * {@code maxConcurrency} requests are in flight. A
+ * pattern ending in a literal component costs one GETFILESTATUS per candidate instead of a
+ * listing.
+ * <p>
+ * For the example above, {@code /data/2026} is listed once, then every directory in it, and
+ * nothing else below {@code /data}.
+ * <p>
+ * An alternative ({@code {a,b}}) must lie within one path component.
+ */
+public class Globber implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(Globber.class);
+
+	/** The default maximum number of directories listed at once */
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+	private static final Comparator<FileStatus> BY_PATH = Comparator.comparing(FileStatus::getPath);
+
+	private final WebHDFSConnection connection;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a new Globber instance with {@link #DEFAULT_MAX_CONCURRENCY}.
+	 *
+	 * @param connection
+	 * 			the connection to list directories with
+	 */
+	public Globber(WebHDFSConnection connection) {
+		this(connection, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new Globber instance.
+	 *
+	 * @param connection
+	 * 			the connection to list directories with
+	 * @param maxConcurrency
+	 * 			the maximum number of directories listed at once
+	 */
+	public Globber(WebHDFSConnection connection, int maxConcurrency) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+
+		this.connection = connection;
+		this.pool = new ForkJoinPool(maxConcurrency);
+	}
+
+	/**
+	 * Returns the entries matching {@code pattern}, sorted by path. Entries carry their full
+	 * path in {@link FileStatus#getPath()}. A pattern matching nothing gives an empty stream.
+	 *
+	 * @param pattern
+	 * 			the glob; like every path of a {@link WebHDFSConnection} it starts at the root,
+	 * 			with or without a leading {@code /}
+	 * @return the matching entries
+	 * @throws IllegalArgumentException if {@code pattern} is empty or malformed
+	 * @throws IOException if a directory could not be listed
+	 * @throws AuthenticationException
+	 */
+	public Stream<FileStatus> globStatus(String pattern) throws IOException, AuthenticationException {
+		Assert.notNull(pattern, "Property <pattern> must not be null");
+		if(pattern.isEmpty()) {
+			throw new IllegalArgumentException("pattern must not be empty");
+		}
+
+		List<String> components = new ArrayList<String>();
+		for(String component : pattern.split("/")) {
+			if(!component.isEmpty()) {
+				components.add(component);
+			}
+		}
+
+		String root = "/";
+		if(components.isEmpty()) {
+			return status(Collections.singletonList(root)).stream();
+		}
+
+		List<String> candidates = Collections.singletonList(root);
+		List<FileStatus> matches = Collections.emptyList();
+
+		for(int i = 0; i < components.size() && !candidates.isEmpty(); i++) {
+			String component = components.get(i);
+			boolean last = i == components.size() - 1;
+
+			if(!GlobPattern.hasWildcard(component)) {
+				String name = GlobPattern.unescape(component);
+				List<String> children = new ArrayList<String>(candidates.size());
+				for(String candidate : candidates) {
+					children.add(child(candidate, name));
+				}
+
+				if(last) {
+					matches = status(children);
+				}
+				candidates = children;
+				continue;
+			}
+
+			matches = list(candidates, GlobPattern.compile(component), !last);
+			candidates = new ArrayList<String>(matches.size());
+			for(FileStatus match : matches) {
+				candidates.add(match.getPath());
+			}
+		}
+
+		matches.sort(BY_PATH);
+		return matches.stream();
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Shuts down the listing threads.
+	 */
+	public void close() {
+		pool.shutdown();
+	}
+
+	/*
+	 * Lists every directory, keeping the entries whose name matches; directoriesOnly on inner levels
+	 */
+	private List<FileStatus> list(List<String> directories, Pattern pattern, boolean directoriesOnly)
+			throws IOException, AuthenticationException {
+		List<CompletableFuture<List<FileStatus>>> listings = new ArrayList<CompletableFuture<List<FileStatus>>>();
+
+		for(String directory : directories) {
+			listings.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return list(directory, pattern, directoriesOnly);
+				}
+				catch(IOException | AuthenticationException e) {
+					throw new CompletionException(e);
+				}
+			}, pool));
+		}
+		return join(listings);
+	}
+
+	private List<FileStatus> list(String directory, Pattern pattern, boolean directoriesOnly)
+			throws IOException, AuthenticationException {
+		List<FileStatus> matches = new ArrayList<FileStatus>();
+
+		try (PagedFileStatusIterator entries = connection.listStatusBatchIterator(directory, null)) {
+			while(entries.hasNext()) {
+				FileStatus status = entries.next();
+
+				// listing a file returns the file itself, with an empty suffix
+				if(status.getSuffix().isEmpty() || !pattern.matcher(status.getSuffix()).matches()
+						|| (directoriesOnly && status.getType() != FileType.DIRECTORY)) {
+					continue;
+				}
+
+				status.setPath(child(directory, status.getSuffix()));
+				matches.add(status);
+			}
+		}
+		catch(FileNotFoundException e) {
+			logger.debug("Skipping " + directory + ", it does not exist");
+		}
+		catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return matches;
+	}
+
+	/*
+	 * Looks up every path, leaving out the ones that do not exist
+	 */
+	private List<FileStatus> status(List<String> paths) throws IOException, AuthenticationException {
+		List<CompletableFuture<List<FileStatus>>> lookups = new ArrayList<CompletableFuture<List<FileStatus>>>();
+
+		for(String path : paths) {
+			lookups.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return status(path);
+				}
+				catch(IOException | AuthenticationException e) {
+					throw new CompletionException(e);
+				}
+			}, pool));
+		}
+		return join(lookups);
+	}
+
+	private List<FileStatus> status(String path) throws IOException, AuthenticationException {
+		try {
+			return Collections.singletonList(connection.getFileStatusTyped(path));
+		}
+		catch(FileNotFoundException e) {
+			return Collections.emptyList();
+		}
+	}
+
+	private List<FileStatus> join(List<CompletableFuture<List<FileStatus>>> futures)
+			throws IOException, AuthenticationException {
+		List<FileStatus> result = new ArrayList<FileStatus>();
+
+		try {
+			for(CompletableFuture<List<FileStatus>> future : futures) {
+				result.addAll(future.get());
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while expanding glob");
+		}
+		catch(ExecutionException e) {
+			for(CompletableFuture<List<FileStatus>> future : futures) {
+				future.cancel(false);
+			}
+
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if(cause instanceof AuthenticationException) {
+				throw (AuthenticationException) cause;
+			}
+			throw new IOException(cause);
+		}
+		return result;
+	}
+
+	private static String child(String parent, String name) {
+		return parent.endsWith("/") ? parent + name : parent + "/" + name;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import org.apache.hadoop.fs.http.client.util.URLUtil;
+
+/**
+ * The optional parameters of an <b>OPEN</b>:
+ *
+ * <pre>
+ * [&amp;offset=&lt;LONG&gt;][&amp;length=&lt;LONG&gt;][&amp;buffersize=&lt;INT&gt;]
+ * </pre>
+ *
+ * Parameters that are not set are left to the server defaults, i.e. the whole file is read.
+ */
+public class OpenOptions {
+
+	private long offset;
+	private long length = WebHDFSConnection.UNKNOWN_LENGTH;
+	private Integer bufferSize;
+
+	public OpenOptions() {
+	}
+
+	/**
+	 * @param offset
+	 * 			the position of the first byte to read
+	 * @param length
+	 * 			the number of bytes to read, or {@link WebHDFSConnection#UNKNOWN_LENGTH} to read to the end
+	 */
+	public OpenOptions(long offset, long length) {
+		setOffset(offset);
+		setLength(length);
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @param offset
+	 * 			the position of the first byte to read, 0 by default
+	 */
+	public void setOffset(long offset) {
+		if(offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative: " + offset);
+		}
+		this.offset = offset;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @param length
+	 * 			the number of bytes to read, or {@link WebHDFSConnection#UNKNOWN_LENGTH} to read to
+	 * 			the end of the file
+	 */
+	public void setLength(long length) {
+		this.length = length < 0 ? WebHDFSConnection.UNKNOWN_LENGTH : length;
+	}
+
+	public Integer getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @param bufferSize
+	 * 			the buffer size used by the DataNode, or null for the server default
+	 */
+	public void setBufferSize(Integer bufferSize) {
+		if(bufferSize != null && bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		String range = URLUtil.rangeArguments(offset, length);
+		return bufferSize == null ? range : range + "&buffersize=" + bufferSize;
+	}
+}
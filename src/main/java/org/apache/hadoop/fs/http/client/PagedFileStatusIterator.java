@@ -0,0 +1,248 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over a directory page by page with LISTSTATUS_BATCH.
+ * <p>
+ * As soon as a page arrives the next one is requested in the background, so while the caller
+ * works through one page the next is already on its way and iteration is not held up by round
+ * trips. Servers without LISTSTATUS_BATCH, such as older HttpFS, are listed with a single
+ * streamed LISTSTATUS instead.
+ * <p>
+ * I/O errors while iterating are thrown as {@link UncheckedIOException}.
+ */
+public class PagedFileStatusIterator implements Iterator<FileStatus>, Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(PagedFileStatusIterator.class);
+
+	/**
+	 * Fetches pages of a directory listing
+	 */
+	public interface PageSource {
+		/**
+		 * @param startAfter the last path suffix of the previous page, or null for the first page
+		 * @return the page, or null if the server does not support LISTSTATUS_BATCH
+		 */
+		DirectoryListing fetch(String startAfter) throws IOException, AuthenticationException;
+	}
+
+	/**
+	 * Lists the whole directory at once when paging is not supported
+	 */
+	public interface FallbackSource {
+		FileStatusIterator open() throws IOException, AuthenticationException;
+	}
+
+	private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "webhdfs-list-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final PageSource source;
+	private final Executor executor;
+	private FileStatusIterator fallback;
+
+	private Iterator<FileStatus> page;
+	private String startAfter;
+	private CompletableFuture<DirectoryListing> next;
+	private int pageCount;
+	private boolean closed;
+
+	/**
+	 * Creates a new PagedFileStatusIterator instance that prefetches on a shared pool of daemon
+	 * threads. The first page is fetched right away.
+	 *
+	 * @param source
+	 * 			fetches the pages
+	 * @param fallback
+	 * 			lists the directory if the server does not support paging
+	 * @throws java.io.FileNotFoundException if the directory does not exist
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator(PageSource source, FallbackSource fallback) throws IOException, AuthenticationException {
+		this(source, fallback, PREFETCH_EXECUTOR);
+	}
+
+	/**
+	 * Creates a new PagedFileStatusIterator instance. The first page is fetched right away.
+	 *
+	 * @param source
+	 * 			fetches the pages
+	 * @param fallback
+	 * 			lists the directory if the server does not support paging
+	 * @param executor
+	 * 			fetches the next page in the background, or null to fetch pages on demand
+	 * @throws java.io.FileNotFoundException if the directory does not exist
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator(PageSource source, FallbackSource fallback, Executor executor)
+			throws IOException, AuthenticationException {
+		Assert.notNull(source, "Property <source> must not be null");
+		Assert.notNull(fallback, "Property <fallback> must not be null");
+		this.source = source;
+		this.executor = executor;
+
+		DirectoryListing first = source.fetch(null);
+		if(first == null) {
+			logger.debug("LISTSTATUS_BATCH is not supported, falling back to LISTSTATUS");
+			this.fallback = fallback.open();
+		}
+		else {
+			accept(first);
+		}
+	}
+
+	public synchronized boolean hasNext() {
+		if(closed) {
+			return false;
+		}
+		if(fallback != null) {
+			return fallback.hasNext();
+		}
+
+		// pages may be empty, e.g. when entries were deleted between requests
+		while(!page.hasNext()) {
+			if(startAfter == null) {
+				return false;
+			}
+			accept(awaitNext());
+		}
+		return true;
+	}
+
+	public synchronized FileStatus next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return fallback != null ? fallback.next() : page.next();
+	}
+
+	/**
+	 * @return the remaining entries as a sequential {@link Stream}, which closes this iterator
+	 * 			when closed
+	 */
+	public Stream<FileStatus> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * @return the number of LISTSTATUS_BATCH pages received so far, 0 after falling back
+	 */
+	public synchronized int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return true if the server did not support LISTSTATUS_BATCH
+	 */
+	public synchronized boolean isFallback() {
+		return fallback != null;
+	}
+
+	/**
+	 * Stops iterating. A page being prefetched is discarded.
+	 */
+	public synchronized void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+
+		if(next != null) {
+			next.cancel(false);
+			next = null;
+		}
+		if(fallback != null) {
+			fallback.close();
+		}
+	}
+
+	/*
+	 * Makes {@code listing} the current page and starts fetching the one after it
+	 */
+	private void accept(DirectoryListing listing) {
+		pageCount++;
+		page = listing.getPartialListing().iterator();
+		startAfter = listing.getRemainingEntries() > 0 ? listing.getLastPathSuffix() : null;
+
+		if(startAfter != null && executor != null) {
+			final String after = startAfter;
+			next = CompletableFuture.supplyAsync(() -> fetch(after), executor);
+		}
+	}
+
+	private DirectoryListing fetch(String startAfter) {
+		try {
+			DirectoryListing listing = source.fetch(startAfter);
+			if(listing == null) {
+				throw new IOException("LISTSTATUS_BATCH stopped being supported while listing");
+			}
+			return listing;
+		}
+		catch(IOException | AuthenticationException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private DirectoryListing awaitNext() {
+		CompletableFuture<DirectoryListing> pending = next;
+		next = null;
+
+		try {
+			return pending != null ? pending.get() : fetch(startAfter);
+		}
+		catch(CompletionException e) {
+			close();
+			throw new UncheckedIOException(e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause()));
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the next page"));
+		}
+		catch(ExecutionException e) {
+			close();
+			Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+			throw new UncheckedIOException(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+		}
+	}
+}
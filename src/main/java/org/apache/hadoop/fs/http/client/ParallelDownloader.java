@@ -0,0 +1,281 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.FileChannelOutputStream;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a file over several concurrent ranged OPEN requests.
+ * <p>
+ * The file is split into at most {@code streams} byte ranges. Ranges larger than a block are
+ * rounded up to whole blocks, so each one is served by as few DataNodes as possible. Every range is
+ * written at its own position into a {@link FileChannel}, so the ranges may complete in any order.
+ * <p>
+ * When a range fails, the others are not interrupted, which would close the channel in the middle
+ * of a write: they stop at their next write instead, and {@code download} returns once they have.
+ */
+public class ParallelDownloader implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(ParallelDownloader.class);
+
+	/** The default number of concurrent streams per file */
+	public static final int DEFAULT_STREAMS = 4;
+
+	/** Files are not split into ranges smaller than this by default */
+	public static final long DEFAULT_MIN_RANGE_SIZE = 8L * 1024 * 1024;
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final int streams;
+	private final boolean ownsExecutor;
+	private long minRangeSize = DEFAULT_MIN_RANGE_SIZE;
+
+	/**
+	 * Creates a new ParallelDownloader instance with {@link #DEFAULT_STREAMS}.
+	 *
+	 * @param connection
+	 * 			the connection to download through
+	 */
+	public ParallelDownloader(WebHDFSConnection connection) {
+		this(connection, DEFAULT_STREAMS);
+	}
+
+	/**
+	 * Creates a new ParallelDownloader instance with a thread for each stream.
+	 *
+	 * @param connection
+	 * 			the connection to download through
+	 * @param streams
+	 * 			the maximum number of concurrent requests per file
+	 */
+	public ParallelDownloader(WebHDFSConnection connection, int streams) {
+		this(connection, Executors.newFixedThreadPool(checkStreams(streams)), streams, true);
+	}
+
+	/**
+	 * Creates a new ParallelDownloader instance running its requests on {@code executor}.
+	 * The executor is not shut down by {@link #close()}.
+	 *
+	 * @param connection
+	 * 			the connection to download through
+	 * @param executor
+	 * 			the executor to run the ranged requests on
+	 * @param streams
+	 * 			the maximum number of concurrent requests per file
+	 */
+	public ParallelDownloader(WebHDFSConnection connection, ExecutorService executor, int streams) {
+		this(connection, executor, checkStreams(streams), false);
+	}
+
+	private ParallelDownloader(WebHDFSConnection connection, ExecutorService executor, int streams, boolean ownsExecutor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.executor = executor;
+		this.streams = streams;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Downloads {@code path} into {@code channel}, starting at position 0. The channel is truncated
+	 * to the length of the file.
+	 *
+	 * @param path
+	 * 			the HDFS path of the file
+	 * @param channel
+	 * 			the channel to write to, it is not closed
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long download(String path, FileChannel channel) throws IOException, AuthenticationException {
+		FileStatus status = connection.getFileStatusTyped(path);
+		long length = status.getLength();
+		long blockSize = status.getBlockSize();
+
+		List<long[]> ranges = split(length, blockSize, streams, minRangeSize);
+		logger.debug("Downloading " + path + " (" + length + " bytes) in " + ranges.size() + " range(s)");
+
+		if(ranges.size() == 1) {
+			fetch(path, ranges.get(0), channel, new AtomicBoolean());
+		}
+		else {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(ranges.size());
+			final AtomicBoolean aborted = new AtomicBoolean();
+
+			try {
+				for(final long[] range : ranges) {
+					futures.add(executor.submit(() -> {
+						fetch(path, range, channel, aborted);
+						return null;
+					}));
+				}
+				for(Future<Void> future : futures) {
+					future.get();
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while downloading " + path);
+			}
+			catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if(cause instanceof AuthenticationException) {
+					throw (AuthenticationException) cause;
+				}
+				throw new IOException("Failed to download " + path, cause);
+			}
+			finally {
+				aborted.set(true);
+				for(Future<Void> future : futures) {
+					future.cancel(false);
+				}
+				awaitAll(futures);
+			}
+		}
+
+		if(channel.size() > length) {
+			channel.truncate(length);
+		}
+
+		return length;
+	}
+
+	/**
+	 * @return the maximum number of concurrent requests per file
+	 */
+	public int getStreams() {
+		return streams;
+	}
+
+	public long getMinRangeSize() {
+		return minRangeSize;
+	}
+
+	/**
+	 * @param minRangeSize
+	 * 			files are not split into ranges smaller than this
+	 */
+	public void setMinRangeSize(long minRangeSize) {
+		this.minRangeSize = minRangeSize;
+	}
+
+	public void close() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	private void fetch(final String path, long[] range, FileChannel channel, final AtomicBoolean aborted)
+			throws IOException, AuthenticationException {
+		if(aborted.get()) {
+			return;
+		}
+
+		FileChannelOutputStream os = new FileChannelOutputStream(channel, range[0]) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if(aborted.get()) {
+					throw new InterruptedIOException("Download of " + path + " aborted");
+				}
+				super.write(b, off, len);
+			}
+		};
+		WebHDFSResponse response = connection.open(path, range[0], range[1], os);
+
+		if(response.getResponseCode() != 200) {
+			throw new IOException("OPEN " + path + " at " + range[0] + " failed: " + response.getResponseCode() + " "
+					+ response.getResponseMessage());
+		}
+		if(os.getCount() != range[1]) {
+			throw new IOException("OPEN " + path + " at " + range[0] + " returned " + os.getCount() + " bytes, expected "
+					+ range[1]);
+		}
+	}
+
+	/*
+	 * Waits for the ranges still running, so that none writes to the channel once download returns
+	 */
+	private static void awaitAll(List<Future<Void>> futures) {
+		boolean interrupted = false;
+
+		for(Future<Void> future : futures) {
+			while(true) {
+				try {
+					future.get();
+					break;
+				}
+				catch(InterruptedException e) {
+					interrupted = true;
+				}
+				catch(ExecutionException | CancellationException e) {
+					break;
+				}
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Splits [0, length) into at most `streams` ranges of {offset, length}. Ranges are at least
+	 * minRangeSize long, and rounded up to whole blocks once they are longer than a block.
+	 */
+	static List<long[]> split(long length, long blockSize, int streams, long minRangeSize) {
+		long rangeSize = Math.max((length + streams - 1) / streams, Math.max(minRangeSize, 1L));
+		if(blockSize > 0 && rangeSize > blockSize) {
+			rangeSize = (rangeSize + blockSize - 1) / blockSize * blockSize;
+		}
+
+		List<long[]> ranges = new ArrayList<long[]>();
+		long offset = 0L;
+		do {
+			long size = Math.min(rangeSize, length - offset);
+			ranges.add(new long[] { offset, size });
+			offset += size;
+		}
+		while(offset < length);
+
+		return ranges;
+	}
+
+	private static int checkStreams(int streams) {
+		if(streams <= 0) {
+			throw new IllegalArgumentException("streams must be positive");
+		}
+		return streams;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * An error reported by the server in the body of a failed request:
+ *
+ * <pre>
+ * {"RemoteException":{"exception":"FileNotFoundException","javaClassName":"java.io.FileNotFoundException","message":"..."}}
+ * </pre>
+ */
+public class RemoteException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String exception;
+	private final String javaClassName;
+
+	public RemoteException(String exception, String javaClassName, String message) {
+		super(message);
+		this.exception = exception;
+		this.javaClassName = javaClassName;
+	}
+
+	/**
+	 * @return the simple name of the server-side exception, e.g. {@code FileNotFoundException}
+	 */
+	public String getException() {
+		return exception;
+	}
+
+	/**
+	 * @return the fully qualified name of the server-side exception
+	 */
+	public String getJavaClassName() {
+		return javaClassName;
+	}
+
+	@Override
+	public String toString() {
+		return exception + ": " + getMessage();
+	}
+
+	/**
+	 * Reads a bare RemoteException object. Unknown properties are skipped.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the start of the object
+	 * @return a new {@link RemoteException} instance
+	 * @throws IOException
+	 */
+	public static RemoteException read(JsonParser p) throws IOException {
+		String exception = null;
+		String javaClassName = null;
+		String message = null;
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			if(name.equals("exception")) {
+				exception = p.getValueAsString();
+			}
+			else if(name.equals("javaClassName")) {
+				javaClassName = p.getValueAsString();
+			}
+			else if(name.equals("message")) {
+				message = p.getValueAsString();
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		return new RemoteException(exception, javaClassName, message);
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.FileNotFoundException;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.FileSystemException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+
+/**
+ * When and how often a {@link RetryingWebHDFSConnection} sends a failed request again.
+ * <p>
+ * A call is attempted at most {@link #getMaxAttempts()} times, and no retry is started once
+ * {@link #getDeadlineMillis()} would be passed. The delay before each retry follows the
+ * "decorrelated jitter" backoff: a random value between the base delay and three times the
+ * previous delay, capped at the maximum delay, so that clients that failed together do not all
+ * come back together.
+ * <p>
+ * Errors are {@linkplain #classify(IOException) classified}; override the {@code classify}
+ * methods to retry other errors.
+ */
+public class RetryPolicy {
+
+	/** The default number of attempts per call, the first one included */
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+	/** The default shortest delay before a retry */
+	public static final long DEFAULT_BASE_DELAY_MILLIS = 100L;
+
+	/** The default longest delay before a retry */
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 10000L;
+
+	/** The default time after which a call is not retried any more */
+	public static final long DEFAULT_DEADLINE_MILLIS = 60000L;
+
+	/**
+	 * What a failure says about the request that caused it
+	 */
+	public enum Failure {
+		/**
+		 * The server refused the request without running it: the connection was refused, or the
+		 * NameNode is busy (503), in standby or in safe mode. Any request can be sent again.
+		 */
+		REJECTED,
+		/**
+		 * The request may or may not have been run, e.g. the connection was reset or timed out.
+		 * Only idempotent requests can be sent again.
+		 */
+		TRANSIENT,
+		/**
+		 * The outcome is final: a success, or an error that sending the request again cannot fix.
+		 */
+		FINAL
+	}
+
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+	private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+	private long deadlineMillis = DEFAULT_DEADLINE_MILLIS;
+
+	public RetryPolicy() {
+	}
+
+	/**
+	 * @param maxAttempts
+	 * 			the number of attempts per call, the first one included
+	 * @param baseDelayMillis
+	 * 			the shortest delay before a retry
+	 * @param maxDelayMillis
+	 * 			the longest delay before a retry
+	 * @param deadlineMillis
+	 * 			the time after which a call is not retried any more
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+		setMaxAttempts(maxAttempts);
+		setDelayMillis(baseDelayMillis, maxDelayMillis);
+		setDeadlineMillis(deadlineMillis);
+	}
+
+	/**
+	 * @return a policy that never retries
+	 */
+	public static RetryPolicy never() {
+		return new RetryPolicy(1, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_DEADLINE_MILLIS);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param maxAttempts
+	 * 			the number of attempts per call, the first one included; 1 disables retries
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if(maxAttempts <= 0) {
+			throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getBaseDelayMillis() {
+		return baseDelayMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	/**
+	 * @param baseDelayMillis
+	 * 			the shortest delay before a retry
+	 * @param maxDelayMillis
+	 * 			the longest delay before a retry
+	 */
+	public void setDelayMillis(long baseDelayMillis, long maxDelayMillis) {
+		if(baseDelayMillis <= 0) {
+			throw new IllegalArgumentException("baseDelayMillis must be positive: " + baseDelayMillis);
+		}
+		if(maxDelayMillis < baseDelayMillis) {
+			throw new IllegalArgumentException("maxDelayMillis must not be less than baseDelayMillis: " + maxDelayMillis);
+		}
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	public long getDeadlineMillis() {
+		return deadlineMillis;
+	}
+
+	/**
+	 * @param deadlineMillis
+	 * 			the time, counted from the first attempt, after which a call is not retried any more.
+	 * 			It bounds the waiting between attempts, and the connect and read timeouts of each
+	 * 			attempt are capped to the time left before it.
+	 */
+	public void setDeadlineMillis(long deadlineMillis) {
+		if(deadlineMillis <= 0) {
+			throw new IllegalArgumentException("deadlineMillis must be positive: " + deadlineMillis);
+		}
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	/**
+	 * @param previousDelayMillis
+	 * 			the delay before the previous retry of the call, or 0 before its first retry
+	 * @return the delay before the next retry, between the base delay and three times
+	 * 			{@code previousDelayMillis}, at most the maximum delay
+	 */
+	public long nextDelayMillis(long previousDelayMillis) {
+		long upper = Math.min(maxDelayMillis, Math.max(baseDelayMillis, previousDelayMillis) * 3);
+		if(upper <= baseDelayMillis) {
+			return baseDelayMillis;
+		}
+		return ThreadLocalRandom.current().nextLong(baseDelayMillis, upper + 1);
+	}
+
+	/**
+	 * @param e
+	 * 			the error of a request
+	 * @return {@link Failure#REJECTED} for a refused connection and a {@code StandbyException},
+	 * 			{@code RetriableException} or {@code SafeModeException} from the server,
+	 * 			{@link Failure#FINAL} for other server errors, missing files, malformed or unknown
+	 * 			hosts, TLS and local file errors and interruptions, an {@link HttpStatusException}
+	 * 			classified by its status as a response would be, see {@link #classify(WebHDFSResponse)},
+	 * 			and {@link Failure#TRANSIENT} for the remaining I/O errors, such as timeouts and
+	 * 			reset connections
+	 */
+	public Failure classify(IOException e) {
+		if(e instanceof RemoteException) {
+			return isRejection(((RemoteException) e).getException()) ? Failure.REJECTED : Failure.FINAL;
+		}
+		if(e instanceof HttpStatusException) {
+			return classify(((HttpStatusException) e).getStatusCode());
+		}
+		if(e instanceof ConnectException || e instanceof NoRouteToHostException) {
+			return Failure.REJECTED;
+		}
+		if(e instanceof SocketTimeoutException) {
+			return Failure.TRANSIENT;
+		}
+		if(e instanceof FileNotFoundException || e instanceof MalformedURLException || e instanceof UnknownHostException
+				|| e instanceof SSLException || e instanceof FileSystemException || e instanceof InterruptedIOException) {
+			return Failure.FINAL;
+		}
+		return Failure.TRANSIENT;
+	}
+
+	/**
+	 * @param response
+	 * 			the response of a request
+	 * @return {@link Failure#REJECTED} for a 503 or a response carrying a rejection, see
+	 * 			{@link #classify(IOException)}, {@link Failure#TRANSIENT} for a 502 or 504 from a
+	 * 			gateway in front of the server, and {@link Failure#FINAL} otherwise
+	 */
+	public Failure classify(WebHDFSResponse response) {
+		int code = response.getResponseCode();
+		if(code < 400) {
+			return Failure.FINAL;
+		}
+
+		String body = response.getRawResponse();
+		RemoteException remote = body == null ? null : SerializationUtils.getRemoteException(body);
+		return remote != null && isRejection(remote.getException()) ? Failure.REJECTED : classify(code);
+	}
+
+	/*
+	 * An error status whose body says nothing more, e.g. an unparseable 4xx, is final
+	 */
+	private static Failure classify(int code) {
+		if(code == 503) {
+			return Failure.REJECTED;
+		}
+		if(code == 502 || code == 504) {
+			return Failure.TRANSIENT;
+		}
+		return Failure.FINAL;
+	}
+
+	/*
+	 * Server-side exceptions thrown before the operation runs
+	 */
+	private static boolean isRejection(String exception) {
+		return "StandbyException".equals(exception) || "RetriableException".equals(exception)
+				|| "SafeModeException".equals(exception);
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy [maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis
+				+ ", maxDelayMillis=" + maxDelayMillis + ", deadlineMillis=" + deadlineMillis + "]";
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the counters of a {@link RetryingWebHDFSConnection}.
+ */
+public class RetryStats {
+
+	private final long callCount;
+	private final long retryCount;
+	private final long recoveredCount;
+	private final long exhaustedCount;
+	private final long deadlineExceededCount;
+	private final long unsafeCount;
+	private final Map<String, Long> retriesByOp;
+
+	public RetryStats(long callCount, long retryCount, long recoveredCount, long exhaustedCount,
+			long deadlineExceededCount, long unsafeCount, Map<String, Long> retriesByOp) {
+		this.callCount = callCount;
+		this.retryCount = retryCount;
+		this.recoveredCount = recoveredCount;
+		this.exhaustedCount = exhaustedCount;
+		this.deadlineExceededCount = deadlineExceededCount;
+		this.unsafeCount = unsafeCount;
+		this.retriesByOp = Collections.unmodifiableMap(retriesByOp);
+	}
+
+	/** @return the number of calls made through the connection */
+	public long getCallCount() {
+		return callCount;
+	}
+
+	/** @return the number of requests sent again after a failure */
+	public long getRetryCount() {
+		return retryCount;
+	}
+
+	/** @return the number of calls that succeeded after at least one retry */
+	public long getRecoveredCount() {
+		return recoveredCount;
+	}
+
+	/** @return the number of calls that failed after the maximum number of attempts */
+	public long getExhaustedCount() {
+		return exhaustedCount;
+	}
+
+	/** @return the number of calls that failed because a retry would have passed the deadline */
+	public long getDeadlineExceededCount() {
+		return deadlineExceededCount;
+	}
+
+	/**
+	 * @return the number of calls that failed with a retriable error but were not retried, because
+	 * 			the request may have been run and is not idempotent, or its body was already sent
+	 */
+	public long getUnsafeCount() {
+		return unsafeCount;
+	}
+
+	/** @return the number of retries per WebHDFS operation, e.g. {@code GETFILESTATUS} */
+	public Map<String, Long> getRetriesByOp() {
+		return retriesByOp;
+	}
+
+	@Override
+	public String toString() {
+		return "RetryStats [callCount=" + callCount + ", retryCount=" + retryCount + ", recoveredCount="
+				+ recoveredCount + ", exhaustedCount=" + exhaustedCount + ", deadlineExceededCount="
+				+ deadlineExceededCount + ", unsafeCount=" + unsafeCount + ", retriesByOp=" + retriesByOp + "]";
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.hadoop.fs.http.client.RetryPolicy.Failure;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.CountingInputStream;
+import org.apache.hadoop.fs.http.client.util.CountingOutputStream;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebHDFSConnection} that sends a request again when it fails for a reason that may go
+ * away, such as a NameNode busy with a garbage collection or failing over, or a connection reset
+ * on the way to a DataNode.
+ * <p>
+ * What is retried depends on the {@linkplain RetryPolicy#classify(IOException) failure} and on the
+ * operation:
+ * <ul>
+ * 	<li>a request the server {@linkplain Failure#REJECTED rejected} without running it is always
+ * 		sent again;</li>
+ * 	<li>a request that failed {@linkplain Failure#TRANSIENT half way} is only sent again if it is
+ * 		idempotent: the reads, MKDIRS, the SET* operations, RENEWDELEGATIONTOKEN and a CREATE that
+ * 		overwrites. DELETE, RENAME, CREATESYMLINK, CANCELDELEGATIONTOKEN, APPEND and a CREATE that
+ * 		does not overwrite are not;</li>
+ * 	<li>a request with a body, CREATE or APPEND from a stream, is only sent again if none of the
+ * 		stream was read, and an OPEN into a stream only if nothing was written to it yet. An
+ * 		{@link #upload(Path, String, CreateOptions)} reads its file again and a
+ * 		{@link #download(String, Path)} starts its file over.</li>
+ * </ul>
+ * The iterators only retry the request that fetches their first page.
+ * <p>
+ * The connect and read timeouts of each attempt are capped to the time left before the
+ * {@linkplain RetryPolicy#getDeadlineMillis() deadline}, so a server that stops answering fails
+ * the call with a {@link java.net.SocketTimeoutException} by then. The requests that a stream
+ * returned by {@link #openStream(String)} or an iterator sends after the call has returned get the
+ * timeouts of the transport.
+ * <p>
+ * When the retries run out, the last error is thrown, or the last response returned, as the
+ * wrapped connection would have. {@link #getStats()} reports how often calls were retried.
+ */
+public class RetryingWebHDFSConnection implements WebHDFSConnection {
+
+	protected static final Logger logger = LoggerFactory.getLogger(RetryingWebHDFSConnection.class);
+
+	private final WebHDFSConnection delegate;
+	private final RetryPolicy policy;
+
+	private final AtomicLong callCount = new AtomicLong();
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong recoveredCount = new AtomicLong();
+	private final AtomicLong exhaustedCount = new AtomicLong();
+	private final AtomicLong deadlineExceededCount = new AtomicLong();
+	private final AtomicLong unsafeCount = new AtomicLong();
+	private final Map<String, AtomicLong> retriesByOp = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Creates a new RetryingWebHDFSConnection instance with the default {@link RetryPolicy}.
+	 *
+	 * @param delegate
+	 * 			the connection to retry the requests of
+	 */
+	public RetryingWebHDFSConnection(WebHDFSConnection delegate) {
+		this(delegate, new RetryPolicy());
+	}
+
+	/**
+	 * Creates a new RetryingWebHDFSConnection instance.
+	 *
+	 * @param delegate
+	 * 			the connection to retry the requests of
+	 * @param policy
+	 * 			when and how often to retry
+	 */
+	public RetryingWebHDFSConnection(WebHDFSConnection delegate, RetryPolicy policy) {
+		Assert.notNull(delegate, "Property <delegate> must not be null");
+		Assert.notNull(policy, "Property <policy> must not be null");
+		this.delegate = delegate;
+		this.policy = policy;
+	}
+
+	/*
+	 * ========================================================================
+	 * Idempotent
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse getHomeDirectory() throws IOException, AuthenticationException {
+		return idempotent("GETHOMEDIRECTORY", () -> delegate.getHomeDirectory());
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return retry("OPEN", true, counted::isUntouched, () -> delegate.open(path, counted));
+	}
+
+	public WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException,
+			AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return retry("OPEN", true, counted::isUntouched, () -> delegate.open(path, offset, length, counted));
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException {
+		CountingOutputStream counted = new CountingOutputStream(os);
+		return retry("OPEN", true, counted::isUntouched, () -> delegate.open(path, counted, options));
+	}
+
+	public SeekableWebHDFSInputStream openStream(String path) throws IOException, AuthenticationException {
+		return idempotent("OPEN", () -> delegate.openStream(path));
+	}
+
+	public long download(String path, Path localFile) throws IOException, AuthenticationException {
+		// every attempt truncates the file
+		return idempotent("OPEN", () -> delegate.download(path, localFile));
+	}
+
+	public long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException {
+		return idempotent("OPEN", () -> delegate.download(path, localFile, preallocate));
+	}
+
+	public WebHDFSResponse getContentSummary(String path) throws IOException, AuthenticationException {
+		return idempotent("GETCONTENTSUMMARY", () -> delegate.getContentSummary(path));
+	}
+
+	public WebHDFSResponse listStatus(String path) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS", () -> delegate.listStatus(path));
+	}
+
+	public FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS", () -> delegate.listStatusIterator(path));
+	}
+
+	public WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS_BATCH", () -> delegate.listStatusBatch(path, startAfter));
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS_BATCH", () -> delegate.listStatusBatchIterator(path));
+	}
+
+	public PagedFileStatusIterator listStatusBatchIterator(String path, Executor prefetch) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS_BATCH", () -> delegate.listStatusBatchIterator(path, prefetch));
+	}
+
+	public WebHDFSResponse getFileStatus(String path) throws IOException, AuthenticationException {
+		return idempotent("GETFILESTATUS", () -> delegate.getFileStatus(path));
+	}
+
+	public WebHDFSResponse getFileCheckSum(String path) throws IOException, AuthenticationException {
+		return idempotent("GETFILECHECKSUM", () -> delegate.getFileCheckSum(path));
+	}
+
+	public WebHDFSResponse mkdirs(String path) throws IOException, AuthenticationException {
+		return idempotent("MKDIRS", () -> delegate.mkdirs(path));
+	}
+
+	public WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException {
+		return idempotent("SETPERMISSION", () -> delegate.setPermission(path));
+	}
+
+	public WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException {
+		return idempotent("SETPERMISSION", () -> delegate.setPermission(path, options));
+	}
+
+	public WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException {
+		return idempotent("SETOWNER", () -> delegate.setOwner(path));
+	}
+
+	public WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException {
+		return idempotent("SETOWNER", () -> delegate.setOwner(path, options));
+	}
+
+	public WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException {
+		return idempotent("SETREPLICATION", () -> delegate.setReplication(path));
+	}
+
+	public WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException {
+		return idempotent("SETREPLICATION", () -> delegate.setReplication(path, options));
+	}
+
+	public WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException {
+		return idempotent("SETTIMES", () -> delegate.setTimes(path));
+	}
+
+	public WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException {
+		return idempotent("SETTIMES", () -> delegate.setTimes(path, options));
+	}
+
+	public FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException {
+		return idempotent("GETFILESTATUS", () -> delegate.getFileStatusTyped(path));
+	}
+
+	public List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS", () -> delegate.listStatusTyped(path));
+	}
+
+	public FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException {
+		return idempotent("LISTSTATUS", () -> delegate.listStatusColumnar(path));
+	}
+
+	public String getHomeDirectoryTyped() throws IOException, AuthenticationException {
+		return idempotent("GETHOMEDIRECTORY", () -> delegate.getHomeDirectoryTyped());
+	}
+
+	public ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException {
+		return idempotent("GETCONTENTSUMMARY", () -> delegate.getContentSummaryTyped(path));
+	}
+
+	public FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException {
+		return idempotent("GETFILECHECKSUM", () -> delegate.getFileChecksumTyped(path));
+	}
+
+	public boolean mkdirsTyped(String path) throws IOException, AuthenticationException {
+		return idempotent("MKDIRS", () -> delegate.mkdirsTyped(path));
+	}
+
+	public String getDelegationToken(String renewer) throws IOException, AuthenticationException {
+		return idempotent("GETDELEGATIONTOKEN", () -> delegate.getDelegationToken(renewer));
+	}
+
+	public long renewDelegationToken(String token) throws IOException, AuthenticationException {
+		return idempotent("RENEWDELEGATIONTOKEN", () -> delegate.renewDelegationToken(token));
+	}
+
+	/*
+	 * ========================================================================
+	 * Uploads, idempotent when they overwrite
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("CREATE", overwrite, counted::isUntouched, () -> delegate.create(path, counted, overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException,
+			AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("CREATE", overwrite, counted::isUntouched, () -> delegate.create(path, counted, length, overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("CREATE", overwrites(options), counted::isUntouched,
+				() -> delegate.create(path, counted, length, options));
+	}
+
+	public WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException, AuthenticationException {
+		// every attempt reads the file from the start
+		return retry("CREATE", overwrites(options), null, () -> delegate.upload(localFile, path, options));
+	}
+
+	/*
+	 * ========================================================================
+	 * Not idempotent, only retried when rejected
+	 * ========================================================================
+	 */
+
+	public WebHDFSResponse createSymLink(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return retry("CREATESYMLINK", false, null, () -> delegate.createSymLink(srcPath, destPath));
+	}
+
+	public WebHDFSResponse rename(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return retry("RENAME", false, null, () -> delegate.rename(srcPath, destPath));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("APPEND", false, counted::isUntouched, () -> delegate.append(path, counted));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("APPEND", false, counted::isUntouched, () -> delegate.append(path, counted, length));
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException, AuthenticationException {
+		CountingInputStream counted = new CountingInputStream(is);
+		return retry("APPEND", false, counted::isUntouched, () -> delegate.append(path, counted, length, options));
+	}
+
+	public WebHDFSResponse delete(String path) throws IOException, AuthenticationException {
+		return retry("DELETE", false, null, () -> delegate.delete(path));
+	}
+
+	public boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException {
+		return retry("RENAME", false, null, () -> delegate.renameTyped(srcPath, destPath));
+	}
+
+	public boolean deleteTyped(String path) throws IOException, AuthenticationException {
+		return retry("DELETE", false, null, () -> delegate.deleteTyped(path));
+	}
+
+	public void cancelDelegationToken(String token) throws IOException, AuthenticationException {
+		retry("CANCELDELEGATIONTOKEN", false, null, () -> {
+			delegate.cancelDelegationToken(token);
+			return null;
+		});
+	}
+
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	/*
+	 * ========================================================================
+	 * Retries
+	 * ========================================================================
+	 */
+
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	public RetryStats getStats() {
+		Map<String, Long> byOp = new TreeMap<String, Long>();
+		for(Map.Entry<String, AtomicLong> entry : retriesByOp.entrySet()) {
+			byOp.put(entry.getKey(), entry.getValue().get());
+		}
+		return new RetryStats(callCount.get(), retryCount.get(), recoveredCount.get(), exhaustedCount.get(),
+				deadlineExceededCount.get(), unsafeCount.get(), byOp);
+	}
+
+	public WebHDFSConnection getDelegate() {
+		return delegate;
+	}
+
+	/*
+	 * One attempt of a call
+	 */
+	private interface Call<T> {
+		T call() throws IOException, AuthenticationException;
+	}
+
+	private <T> T idempotent(String op, Call<T> call) throws IOException, AuthenticationException {
+		return retry(op, true, null, call);
+	}
+
+	/*
+	 * Makes the call until it succeeds, fails for good, or may not be retried any more
+	 *
+	 * replayable tells whether the request can be sent again, null if it always can
+	 */
+	private <T> T retry(String op, boolean idempotent, BooleanSupplier replayable, Call<T> call) throws IOException,
+			AuthenticationException {
+		callCount.incrementAndGet();
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+		long delay = 0L;
+
+		for(int attempt = 1; ; attempt++) {
+			T result = null;
+			IOException error = null;
+			Failure failure;
+			// no attempt may wait on the network for longer than the call has left
+			long[] previous = Timeouts.enterDeadline(deadline);
+			try {
+				result = call.call();
+				failure = result instanceof WebHDFSResponse ? policy.classify((WebHDFSResponse) result) : Failure.FINAL;
+			}
+			catch(IOException e) {
+				error = e;
+				failure = policy.classify(e);
+			}
+			finally {
+				Timeouts.exitDeadline(previous);
+			}
+
+			if(failure == Failure.FINAL) {
+				if(attempt > 1 && error == null && !(result instanceof WebHDFSResponse && ((WebHDFSResponse) result).getResponseCode() >= 400)) {
+					recoveredCount.incrementAndGet();
+				}
+				return outcome(result, error);
+			}
+			if((failure == Failure.TRANSIENT && !idempotent) || (replayable != null && !replayable.getAsBoolean())) {
+				unsafeCount.incrementAndGet();
+				return outcome(result, error);
+			}
+			if(attempt >= policy.getMaxAttempts()) {
+				exhaustedCount.incrementAndGet();
+				logger.warn(op + " failed after " + attempt + " attempts: " + describe(result, error));
+				return outcome(result, error);
+			}
+
+			delay = policy.nextDelayMillis(delay);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if(elapsed + delay > policy.getDeadlineMillis()) {
+				deadlineExceededCount.incrementAndGet();
+				logger.warn(op + " failed, and the next retry would pass the deadline of " + policy.getDeadlineMillis()
+						+ " ms: " + describe(result, error));
+				return outcome(result, error);
+			}
+
+			logger.debug(op + " failed (" + describe(result, error) + "), attempt " + (attempt + 1) + " in " + delay + " ms");
+			retryCount.incrementAndGet();
+			retriesByOp.computeIfAbsent(op, k -> new AtomicLong()).incrementAndGet();
+			sleep(delay);
+		}
+	}
+
+	private static <T> T outcome(T result, IOException error) throws IOException {
+		if(error != null) {
+			throw error;
+		}
+		return result;
+	}
+
+	private static String describe(Object result, IOException error) {
+		if(error != null) {
+			return error.toString();
+		}
+		WebHDFSResponse response = (WebHDFSResponse) result;
+		return response.getResponseCode() + " " + response.getResponseMessage();
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+
+	private static boolean overwrites(CreateOptions options) {
+		return options != null && options.isOverwrite();
+	}
+}
@@ -0,0 +1,510 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A seekable {@link InputStream} over a file, read with ranged OPEN requests.
+ * <p>
+ * <ul>
+ * <li>{@link #seek(long)} is lazy. A forward seek within the forward seek window skips bytes on
+ * the open HTTP stream. Any other seek opens a new request at the target offset.</li>
+ * <li>Read-ahead adapts to the access pattern. Sequential reads double the read-ahead size up to
+ * the maximum, read the rest of the file over one request, and prefetch the next chunk in the
+ * background. A random seek resets read-ahead to the minimum and only requests that many
+ * bytes, so footer-then-column-chunk access does not download whole files.</li>
+ * <li>{@link #read(long, byte[], int, int)} reads at a position without moving the stream,
+ * using a separate request when the data is not buffered.</li>
+ * </ul>
+ * All methods are thread-safe. Close the stream when done with it: an open request holds a
+ * connection of the transport until then.
+ */
+public class SeekableWebHDFSInputStream extends InputStream {
+
+	protected static final Logger logger = LoggerFactory.getLogger(SeekableWebHDFSInputStream.class);
+
+	/**
+	 * Opens the body of a ranged OPEN request
+	 */
+	public interface RangeSource {
+		/**
+		 * @param offset the position of the first byte
+		 * @param length the number of bytes
+		 * @return the body, closing it releases the request
+		 */
+		InputStream open(long offset, long length) throws IOException, AuthenticationException;
+	}
+
+	/** The initial and minimum read-ahead size */
+	public static final int DEFAULT_MIN_READ_AHEAD = 64 * 1024;
+
+	/** The default maximum read-ahead size */
+	public static final int DEFAULT_MAX_READ_AHEAD = 4 * 1024 * 1024;
+
+	/** The default distance a forward seek may skip on the open HTTP stream */
+	public static final long DEFAULT_FORWARD_SEEK_WINDOW = 1024 * 1024;
+
+	private static final ExecutorService READ_AHEAD_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "webhdfs-read-ahead");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RangeSource source;
+	private final long length;
+	private final Executor executor;
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private long forwardSeekWindow = DEFAULT_FORWARD_SEEK_WINDOW;
+	private int maxReadAhead = DEFAULT_MAX_READ_AHEAD;
+	private int readAhead = DEFAULT_MIN_READ_AHEAD;
+
+	private long pos;
+	private Chunk buffer = new Chunk(0L, new byte[0], 0);
+	private CompletableFuture<Chunk> prefetch;
+
+	// only touched by the thread holding the lock, or by the pending prefetch
+	private InputStream stream;
+	private long streamPos;
+	private long streamEnd;
+
+	private boolean closed;
+
+	/**
+	 * Creates a new SeekableWebHDFSInputStream instance that reads ahead on a shared pool of
+	 * daemon threads.
+	 *
+	 * @param source
+	 * 			opens ranged requests on the file
+	 * @param length
+	 * 			the length of the file
+	 */
+	public SeekableWebHDFSInputStream(RangeSource source, long length) {
+		this(source, length, READ_AHEAD_EXECUTOR);
+	}
+
+	/**
+	 * Creates a new SeekableWebHDFSInputStream instance.
+	 *
+	 * @param source
+	 * 			opens ranged requests on the file
+	 * @param length
+	 * 			the length of the file
+	 * @param executor
+	 * 			runs the background read-ahead, or null to only read on demand
+	 */
+	public SeekableWebHDFSInputStream(RangeSource source, long length, Executor executor) {
+		Assert.notNull(source, "Property <source> must not be null");
+		this.source = source;
+		this.length = length;
+		this.executor = executor;
+	}
+
+	@Override
+	public synchronized int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if(off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if(len == 0) {
+			return 0;
+		}
+		if(pos >= length) {
+			return -1;
+		}
+
+		if(!buffer.contains(pos)) {
+			fill();
+		}
+
+		int n = (int) Math.min(len, buffer.end() - pos);
+		System.arraycopy(buffer.data, (int) (pos - buffer.start), b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/**
+	 * Reads up to {@code len} bytes at {@code position} without changing the position of the stream
+	 *
+	 * @param position
+	 * 			the position in the file
+	 * @param b
+	 * 			the buffer to read into
+	 * @param off
+	 * 			the offset in {@code b}
+	 * @param len
+	 * 			the maximum number of bytes to read
+	 * @return the number of bytes read, or -1 at the end of the file
+	 * @throws IOException
+	 */
+	public int read(long position, byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || len > b.length - off || position < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		synchronized(this) {
+			checkOpen();
+			if(position >= length) {
+				return -1;
+			}
+			if(len == 0) {
+				return 0;
+			}
+			if(buffer.contains(position)) {
+				int n = (int) Math.min(len, buffer.end() - position);
+				System.arraycopy(buffer.data, (int) (position - buffer.start), b, off, n);
+				return n;
+			}
+		}
+
+		// a separate request, so the sequential stream stays where it is
+		int n = (int) Math.min(len, length - position);
+		InputStream in = open(position, n);
+		try {
+			int read = readFully(in, b, off, n);
+			if(read == 0) {
+				throw new EOFException("Unexpected end of stream at " + position);
+			}
+			return read;
+		}
+		finally {
+			Closeables.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Reads exactly {@code len} bytes at {@code position} without changing the position of the stream
+	 *
+	 * @param position
+	 * 			the position in the file
+	 * @param b
+	 * 			the buffer to read into
+	 * @param off
+	 * 			the offset in {@code b}
+	 * @param len
+	 * 			the number of bytes to read
+	 * @throws EOFException if the file ends before {@code len} bytes were read
+	 * @throws IOException
+	 */
+	public void readFully(long position, byte[] b, int off, int len) throws IOException {
+		int total = 0;
+
+		while(total < len) {
+			int n = read(position + total, b, off + total, len - total);
+			if(n == -1) {
+				throw new EOFException("End of file reached after " + total + " of " + len + " bytes at " + position);
+			}
+			total += n;
+		}
+	}
+
+	public void readFully(long position, byte[] b) throws IOException {
+		readFully(position, b, 0, b.length);
+	}
+
+	/**
+	 * Moves the position of the stream. Nothing is read until the next read.
+	 *
+	 * @param newPos
+	 * 			the new position, between 0 and the length of the file
+	 * @throws EOFException if {@code newPos} is outside the file
+	 * @throws IOException
+	 */
+	public synchronized void seek(long newPos) throws IOException {
+		checkOpen();
+		if(newPos < 0 || newPos > length) {
+			throw new EOFException("Cannot seek to " + newPos + ", the file is " + length + " bytes long");
+		}
+		pos = newPos;
+	}
+
+	@Override
+	public synchronized long skip(long n) throws IOException {
+		checkOpen();
+		if(n <= 0) {
+			return 0;
+		}
+		long target = Math.min(pos + n, length);
+		long skipped = target - pos;
+		pos = target;
+		return skipped;
+	}
+
+	/**
+	 * @return the number of bytes that can be read without a request
+	 */
+	@Override
+	public synchronized int available() throws IOException {
+		checkOpen();
+		return buffer.contains(pos) ? (int) (buffer.end() - pos) : 0;
+	}
+
+	@Override
+	public synchronized void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		awaitPrefetch();
+		closeStream();
+		buffer = null;
+	}
+
+	public synchronized long getPos() {
+		return pos;
+	}
+
+	/**
+	 * @return the length of the file
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * @return the number of OPEN requests issued so far
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the current read-ahead size
+	 */
+	public synchronized int getReadAhead() {
+		return readAhead;
+	}
+
+	public synchronized long getForwardSeekWindow() {
+		return forwardSeekWindow;
+	}
+
+	/**
+	 * @param forwardSeekWindow
+	 * 			forward seeks up to this many bytes skip data on the open request instead of opening a new one
+	 */
+	public synchronized void setForwardSeekWindow(long forwardSeekWindow) {
+		this.forwardSeekWindow = forwardSeekWindow;
+	}
+
+	public synchronized int getMaxReadAhead() {
+		return maxReadAhead;
+	}
+
+	/**
+	 * @param maxReadAhead
+	 * 			the size sequential read-ahead grows to
+	 */
+	public synchronized void setMaxReadAhead(int maxReadAhead) {
+		this.maxReadAhead = Math.max(maxReadAhead, DEFAULT_MIN_READ_AHEAD);
+		this.readAhead = Math.min(readAhead, this.maxReadAhead);
+	}
+
+	/*
+	 * Loads the chunk containing pos into the buffer
+	 */
+	private void fill() throws IOException {
+		long bufferEnd = buffer.end();
+		Chunk prefetched = awaitPrefetch();
+
+		if(prefetched != null && prefetched.contains(pos)) {
+			buffer = prefetched;
+			readAhead = Math.min(readAhead * 2, maxReadAhead);
+			schedulePrefetch();
+			return;
+		}
+
+		boolean sequential;
+		if(pos == bufferEnd && buffer.length > 0) {
+			readAhead = Math.min(readAhead * 2, maxReadAhead);
+			sequential = true;
+		}
+		else if(pos >= bufferEnd && pos - bufferEnd <= forwardSeekWindow) {
+			sequential = true;
+		}
+		else {
+			readAhead = DEFAULT_MIN_READ_AHEAD;
+			sequential = false;
+		}
+
+		Chunk chunk = readChunk(pos, readAhead, sequential);
+		if(chunk.length == 0) {
+			throw new EOFException("Unexpected end of stream at " + pos + ", the file is " + length + " bytes long");
+		}
+		buffer = chunk;
+
+		if(sequential) {
+			schedulePrefetch();
+		}
+	}
+
+	private void schedulePrefetch() {
+		final long next = buffer.end();
+		final int size = readAhead;
+
+		if(executor == null || next >= length) {
+			return;
+		}
+
+		prefetch = CompletableFuture.supplyAsync(() -> {
+			try {
+				return readChunk(next, size, true);
+			}
+			catch(IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/*
+	 * Waits for the pending prefetch, if any, so that the stream can be used again. A failed
+	 * prefetch is dropped, the data is requested again if it is needed.
+	 */
+	private Chunk awaitPrefetch() {
+		CompletableFuture<Chunk> pending = prefetch;
+		prefetch = null;
+
+		if(pending == null) {
+			return null;
+		}
+
+		try {
+			return pending.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			closeStream();
+			return null;
+		}
+		catch(ExecutionException e) {
+			logger.debug("Read-ahead failed, dropping it", e.getCause());
+			closeStream();
+			return null;
+		}
+	}
+
+	/*
+	 * Reads up to size bytes at start from the open request, after moving it to start. Sequential
+	 * reads open the rest of the file, random ones only size bytes.
+	 */
+	private Chunk readChunk(long start, int size, boolean sequential) throws IOException {
+		int n = (int) Math.min(size, length - start);
+
+		if(stream != null && start >= streamPos && start - streamPos <= forwardSeekWindow && start + n <= streamEnd) {
+			skipFully(stream, start - streamPos);
+			streamPos = start;
+		}
+		else {
+			closeStream();
+			long requested = sequential ? length - start : n;
+			stream = open(start, requested);
+			streamPos = start;
+			streamEnd = start + requested;
+		}
+
+		byte[] data = new byte[n];
+		int read = readFully(stream, data, 0, n);
+		streamPos += read;
+
+		return new Chunk(start, data, read);
+	}
+
+	private InputStream open(long offset, long len) throws IOException {
+		requestCount.incrementAndGet();
+		try {
+			return source.open(offset, len);
+		}
+		catch(AuthenticationException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void closeStream() {
+		Closeables.closeQuietly(stream);
+		stream = null;
+	}
+
+	private void checkOpen() throws IOException {
+		if(closed) {
+			throw new IOException("Stream is closed");
+		}
+	}
+
+	private static int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+		int total = 0;
+		int n;
+
+		while(total < len && -1 != (n = in.read(b, off + total, len - total))) {
+			total += n;
+		}
+
+		return total;
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while(n > 0) {
+			long skipped = in.skip(n);
+			if(skipped <= 0) {
+				if(in.read() == -1) {
+					throw new EOFException("Unexpected end of stream while skipping");
+				}
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
+	private static class Chunk {
+		final long start;
+		final byte[] data;
+		final int length;
+
+		Chunk(long start, byte[] data, int length) {
+			this.start = start;
+			this.data = data;
+			this.length = length;
+		}
+
+		long end() {
+			return start + length;
+		}
+
+		boolean contains(long position) {
+			return position >= start && position < end();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import org.apache.hadoop.fs.http.client.util.URLUtil;
+
+/**
+ * The optional parameters of a <b>SETOWNER</b>:
+ *
+ * <pre>
+ * [&amp;owner=&lt;USER&gt;][&amp;group=&lt;GROUP&gt;]
+ * </pre>
+ *
+ * The owner or group that is not set is left unchanged.
+ */
+public class SetOwnerOptions {
+
+	private String owner;
+	private String group;
+
+	public SetOwnerOptions() {
+	}
+
+	/**
+	 * @param owner
+	 * 			the new owner, or null to keep it
+	 * @param group
+	 * 			the new group, or null to keep it
+	 */
+	public SetOwnerOptions(String owner, String group) {
+		this.owner = owner;
+		this.group = group;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		return URLUtil.argument("owner", owner) + URLUtil.argument("group", group);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of a <b>SETPERMISSION</b>:
+ *
+ * <pre>
+ * [&amp;permission=&lt;OCTAL&gt;]
+ * </pre>
+ *
+ * Without a permission the server applies its default, 644 for files and 755 for directories.
+ */
+public class SetPermissionOptions {
+
+	private String permission;
+
+	public SetPermissionOptions() {
+	}
+
+	/**
+	 * @param permission
+	 * 			the octal permission, e.g. {@code 644}
+	 */
+	public SetPermissionOptions(String permission) {
+		setPermission(permission);
+	}
+
+	public String getPermission() {
+		return permission;
+	}
+
+	/**
+	 * @param permission
+	 * 			the octal permission, e.g. {@code 644}, or null for the server default
+	 */
+	public void setPermission(String permission) {
+		if(permission != null && !permission.matches("[0-1]?[0-7]{1,3}")) {
+			throw new IllegalArgumentException("permission must be octal: " + permission);
+		}
+		this.permission = permission;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		return permission == null ? "" : "&permission=" + permission;
+	}
+}
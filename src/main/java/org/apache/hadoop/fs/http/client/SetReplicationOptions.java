@@ -0,0 +1,62 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of a <b>SETREPLICATION</b>:
+ *
+ * <pre>
+ * [&amp;replication=&lt;SHORT&gt;]
+ * </pre>
+ *
+ * Without a replication factor the server applies its default.
+ */
+public class SetReplicationOptions {
+
+	private Short replication;
+
+	public SetReplicationOptions() {
+	}
+
+	/**
+	 * @param replication
+	 * 			the number of replicas
+	 */
+	public SetReplicationOptions(short replication) {
+		setReplication(replication);
+	}
+
+	public Short getReplication() {
+		return replication;
+	}
+
+	/**
+	 * @param replication
+	 * 			the number of replicas, or null for the server default
+	 */
+	public void setReplication(Short replication) {
+		if(replication != null && replication <= 0) {
+			throw new IllegalArgumentException("replication must be positive: " + replication);
+		}
+		this.replication = replication;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		return replication == null ? "" : "&replication=" + replication;
+	}
+}
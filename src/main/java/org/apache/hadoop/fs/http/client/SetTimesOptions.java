@@ -0,0 +1,80 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of a <b>SETTIMES</b>:
+ *
+ * <pre>
+ * [&amp;modificationtime=&lt;TIME&gt;][&amp;accesstime=&lt;TIME&gt;]
+ * </pre>
+ *
+ * Times are in milliseconds since the epoch; a time that is not set is left unchanged.
+ */
+public class SetTimesOptions {
+
+	private Long modificationTime;
+	private Long accessTime;
+
+	public SetTimesOptions() {
+	}
+
+	/**
+	 * @param modificationTime
+	 * 			the new modification time, or null to keep it
+	 * @param accessTime
+	 * 			the new access time, or null to keep it
+	 */
+	public SetTimesOptions(Long modificationTime, Long accessTime) {
+		setModificationTime(modificationTime);
+		setAccessTime(accessTime);
+	}
+
+	public Long getModificationTime() {
+		return modificationTime;
+	}
+
+	public void setModificationTime(Long modificationTime) {
+		if(modificationTime != null && modificationTime < 0) {
+			throw new IllegalArgumentException("modificationTime must not be negative: " + modificationTime);
+		}
+		this.modificationTime = modificationTime;
+	}
+
+	public Long getAccessTime() {
+		return accessTime;
+	}
+
+	public void setAccessTime(Long accessTime) {
+		if(accessTime != null && accessTime < 0) {
+			throw new IllegalArgumentException("accessTime must not be negative: " + accessTime);
+		}
+		this.accessTime = accessTime;
+	}
+
+	/**
+	 * @return the query arguments for these options, each starting with {@code &}, or an empty string
+	 */
+	public String toArguments() {
+		StringBuilder arguments = new StringBuilder();
+		if(modificationTime != null) {
+			arguments.append("&modificationtime=").append(modificationTime);
+		}
+		if(accessTime != null) {
+			arguments.append("&accesstime=").append(accessTime);
+		}
+		return arguments.toString();
+	}
+}
@@ -0,0 +1,615 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves many files between the local file system and HDFS concurrently, like a small distcp.
+ * <p>
+ * Every file is a separate task on a {@link BulkWebHDFSOperations}, so the NameNode and DataNode
+ * round trips of different files overlap. Besides the number of files in flight, the number of
+ * bytes in flight is bounded; a file larger than that bound is transferred on its own. A file that
+ * fails is retried by itself and, if it keeps failing, recorded in {@link Transfer#getFailures()}
+ * without stopping the other files.
+ * <p>
+ * An upload that breaks once the DataNode has created its file leaves part of the file behind,
+ * which its retries overwrite. They recognise it by its status: modified since the first attempt
+ * started, give or take {@link #CLOCK_SKEW_MILLIS}, and no longer than the local file. Any other
+ * file at the path is only overwritten if {@link CreateOptions#isOverwrite()} says so.
+ */
+public class TransferManager implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(TransferManager.class);
+
+	/** The default number of files transferred at once */
+	public static final int DEFAULT_PARALLELISM = 16;
+
+	/** The default number of bytes in flight at once */
+	public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 256L * 1024 * 1024;
+
+	/** The default number of attempts per file */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	/** The default pause before the first retry, doubled for every further retry */
+	public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 500L;
+
+	/** How far the clock of the NameNode may be behind ours for a partial upload to be recognised */
+	public static final long CLOCK_SKEW_MILLIS = 1000L;
+
+	private final BulkWebHDFSOperations operations;
+	private final ByteWindow window;
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+	private volatile CreateOptions createOptions = new CreateOptions();
+
+	/**
+	 * Creates a new TransferManager instance with {@link #DEFAULT_PARALLELISM} and
+	 * {@link #DEFAULT_MAX_IN_FLIGHT_BYTES}.
+	 *
+	 * @param connection
+	 * 			the connection to transfer files with
+	 */
+	public TransferManager(WebHDFSConnection connection) {
+		this(connection, DEFAULT_PARALLELISM, DEFAULT_MAX_IN_FLIGHT_BYTES);
+	}
+
+	/**
+	 * Creates a new TransferManager instance.
+	 *
+	 * @param connection
+	 * 			the connection to transfer files with
+	 * @param parallelism
+	 * 			the maximum number of files transferred at once
+	 * @param maxInFlightBytes
+	 * 			the maximum number of bytes of the files transferred at once
+	 */
+	public TransferManager(WebHDFSConnection connection, int parallelism, long maxInFlightBytes) {
+		if(maxInFlightBytes <= 0) {
+			throw new IllegalArgumentException("maxInFlightBytes must be positive");
+		}
+		this.operations = new BulkWebHDFSOperations(connection, parallelism);
+		this.window = new ByteWindow(maxInFlightBytes);
+	}
+
+	/**
+	 * Uploads every file below {@code localDirectory} to the same relative path below
+	 * {@code hdfsDirectory}. Empty local directories are created as well.
+	 *
+	 * @param localDirectory
+	 * 			the local directory to upload
+	 * @param hdfsDirectory
+	 * 			the HDFS directory to upload to
+	 * @return the running transfer
+	 * @throws IOException if {@code localDirectory} cannot be walked
+	 */
+	public Transfer uploadDirectory(Path localDirectory, String hdfsDirectory) throws IOException {
+		Assert.notNull(localDirectory, "Property <localDirectory> must not be null");
+		Assert.notNull(hdfsDirectory, "Property <hdfsDirectory> must not be null");
+
+		List<Path> files = new ArrayList<Path>();
+		List<Path> emptyDirectories = new ArrayList<Path>();
+
+		try (Stream<Path> paths = Files.walk(localDirectory)) {
+			for(Path path : (Iterable<Path>) paths::iterator) {
+				if(Files.isRegularFile(path)) {
+					files.add(path);
+				}
+				else if(Files.isDirectory(path) && isEmpty(path)) {
+					emptyDirectories.add(path);
+				}
+			}
+		}
+
+		Transfer transfer = new Transfer(files.size() + emptyDirectories.size());
+		for(Path directory : emptyDirectories) {
+			final String hdfsPath = child(hdfsDirectory, localDirectory.relativize(directory));
+			schedule(transfer, hdfsPath, 0L, c -> {
+				check(c.mkdirs(hdfsPath), hdfsPath);
+				return 0L;
+			});
+		}
+		for(Path file : files) {
+			scheduleUpload(transfer, file, child(hdfsDirectory, localDirectory.relativize(file)));
+		}
+		return transfer.start();
+	}
+
+	/**
+	 * Uploads {@code localFiles} into {@code hdfsDirectory}, keeping their file names.
+	 *
+	 * @param localFiles
+	 * 			the local files to upload
+	 * @param hdfsDirectory
+	 * 			the HDFS directory to upload to
+	 * @return the running transfer
+	 */
+	public Transfer upload(Collection<Path> localFiles, String hdfsDirectory) {
+		Assert.notNull(localFiles, "Property <localFiles> must not be null");
+		Assert.notNull(hdfsDirectory, "Property <hdfsDirectory> must not be null");
+
+		Transfer transfer = new Transfer(localFiles.size());
+		for(Path file : localFiles) {
+			scheduleUpload(transfer, file, child(hdfsDirectory, file.getFileName()));
+		}
+		return transfer.start();
+	}
+
+	/**
+	 * Downloads every file below {@code hdfsDirectory} to the same relative path below
+	 * {@code localDirectory}. The directory tree is listed before the first file is scheduled.
+	 *
+	 * @param hdfsDirectory
+	 * 			the HDFS directory to download
+	 * @param localDirectory
+	 * 			the local directory to download to
+	 * @return the running transfer
+	 * @throws IOException if {@code hdfsDirectory} cannot be listed
+	 * @throws AuthenticationException
+	 */
+	public Transfer downloadDirectory(String hdfsDirectory, Path localDirectory) throws IOException, AuthenticationException {
+		Assert.notNull(hdfsDirectory, "Property <hdfsDirectory> must not be null");
+		Assert.notNull(localDirectory, "Property <localDirectory> must not be null");
+
+		Map<String, Long> files = new LinkedHashMap<String, Long>();
+		list(hdfsDirectory, "", files, localDirectory);
+
+		Transfer transfer = new Transfer(files.size());
+		for(Map.Entry<String, Long> file : files.entrySet()) {
+			scheduleDownload(transfer, child(hdfsDirectory, file.getKey()), file.getValue(),
+					localDirectory.resolve(file.getKey()));
+		}
+		return transfer.start();
+	}
+
+	/**
+	 * Downloads {@code hdfsFiles} into {@code localDirectory}, keeping their file names.
+	 *
+	 * @param hdfsFiles
+	 * 			the HDFS files to download
+	 * @param localDirectory
+	 * 			the local directory to download to
+	 * @return the running transfer
+	 */
+	public Transfer download(Collection<String> hdfsFiles, Path localDirectory) {
+		Assert.notNull(hdfsFiles, "Property <hdfsFiles> must not be null");
+		Assert.notNull(localDirectory, "Property <localDirectory> must not be null");
+
+		Transfer transfer = new Transfer(hdfsFiles.size());
+		for(String file : hdfsFiles) {
+			String name = file.substring(file.lastIndexOf('/') + 1);
+			// the length is not known without a GETFILESTATUS, so these only count against the
+			// number of files in flight
+			scheduleDownload(transfer, file, 0L, localDirectory.resolve(name));
+		}
+		return transfer.start();
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param maxAttempts
+	 * 			the number of times a file is tried before it is recorded as failed
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if(maxAttempts <= 0) {
+			throw new IllegalArgumentException("maxAttempts must be positive");
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getRetryBackoffMillis() {
+		return retryBackoffMillis;
+	}
+
+	/**
+	 * @param retryBackoffMillis
+	 * 			the pause before the first retry of a file, doubled for every further retry
+	 */
+	public void setRetryBackoffMillis(long retryBackoffMillis) {
+		if(retryBackoffMillis < 0) {
+			throw new IllegalArgumentException("retryBackoffMillis must not be negative");
+		}
+		this.retryBackoffMillis = retryBackoffMillis;
+	}
+
+	public CreateOptions getCreateOptions() {
+		return createOptions;
+	}
+
+	/**
+	 * @param createOptions
+	 * 			the CREATE parameters of every upload
+	 */
+	public void setCreateOptions(CreateOptions createOptions) {
+		Assert.notNull(createOptions, "Property <createOptions> must not be null");
+		this.createOptions = createOptions;
+	}
+
+	public long getMaxInFlightBytes() {
+		return window.max;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return operations.getConnection();
+	}
+
+	/**
+	 * Stops accepting new transfers. Files already scheduled are still transferred.
+	 */
+	public void close() {
+		operations.close();
+	}
+
+	private void scheduleUpload(Transfer transfer, final Path file, final String hdfsPath) {
+		long size;
+		try {
+			size = Files.size(file);
+		}
+		catch(IOException e) {
+			transfer.failed(file.toString(), e);
+			return;
+		}
+
+		final CreateOptions options = createOptions;
+		final CreateOptions retryOptions = overwriting(options);
+		final AtomicLong firstAttempt = new AtomicLong();
+		schedule(transfer, file.toString(), size, c -> {
+			// a failed attempt may have left a partial file, which only an overwrite can replace
+			boolean retry = !firstAttempt.compareAndSet(0L, System.currentTimeMillis());
+			CreateOptions o = retry && !options.isOverwrite() && isPartial(c, hdfsPath, size, firstAttempt.get())
+					? retryOptions : options;
+			check(c.upload(file, hdfsPath, o), hdfsPath);
+			return Files.size(file);
+		});
+	}
+
+	private void scheduleDownload(Transfer transfer, final String hdfsPath, long size, final Path localFile) {
+		schedule(transfer, hdfsPath, size, c -> {
+			Path parent = localFile.getParent();
+			if(parent != null) {
+				Files.createDirectories(parent);
+			}
+			return c.download(hdfsPath, localFile);
+		});
+	}
+
+	/*
+	 * Runs one file as its own task: it waits for room in the byte window, and is retried with
+	 * exponential backoff until it succeeds or runs out of attempts
+	 */
+	private void schedule(final Transfer transfer, final String name, final long size,
+			final BulkWebHDFSOperations.WebHDFSCall<Long> call) {
+		transfer.add(operations.submit(c -> {
+			long reserved = window.acquire(size);
+			try {
+				long bytes = attempt(name, call, c);
+				transfer.completed(bytes);
+				return bytes;
+			}
+			catch(IOException | AuthenticationException | RuntimeException e) {
+				transfer.failed(name, e);
+				return 0L;
+			}
+			finally {
+				window.release(reserved);
+			}
+		}));
+	}
+
+	private long attempt(String name, BulkWebHDFSOperations.WebHDFSCall<Long> call, WebHDFSConnection c)
+			throws IOException, AuthenticationException {
+		long backoff = retryBackoffMillis;
+
+		for(int attempt = 1;; attempt++) {
+			try {
+				return call.call(c);
+			}
+			catch(IOException e) {
+				if(attempt >= maxAttempts || isFinal(e)) {
+					throw e;
+				}
+				logger.warn("Attempt " + attempt + " of " + maxAttempts + " for " + name + " failed, retrying: " + e.getMessage());
+			}
+
+			try {
+				Thread.sleep(backoff);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while retrying " + name);
+			}
+			backoff *= 2;
+		}
+	}
+
+	private void list(String hdfsDirectory, String relative, Map<String, Long> files, Path localDirectory)
+			throws IOException, AuthenticationException {
+		String directory = relative.isEmpty() ? hdfsDirectory : child(hdfsDirectory, relative);
+		List<String> subdirectories = new ArrayList<String>();
+
+		// subdirectories are listed once this listing is closed, so only one response is open at a time
+		try (FileStatusIterator entries = operations.getConnection().listStatusIterator(directory)) {
+			while(entries.hasNext()) {
+				FileStatus status = entries.next();
+				String name = relative.isEmpty() ? status.getSuffix() : relative + "/" + status.getSuffix();
+
+				if(status.getType() == FileType.DIRECTORY) {
+					subdirectories.add(name);
+				}
+				else {
+					files.put(name, status.getLength());
+				}
+			}
+		}
+		catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		for(String name : subdirectories) {
+			Files.createDirectories(localDirectory.resolve(name));
+			list(hdfsDirectory, name, files, localDirectory);
+		}
+	}
+
+	/*
+	 * The pseudo connection hands back error responses instead of throwing, so both kinds of
+	 * failure end up as exceptions here; only server errors are worth retrying
+	 */
+	private static WebHDFSResponse check(WebHDFSResponse response, String path) throws IOException {
+		int code = response.getResponseCode();
+
+		if(code == 404) {
+			throw new FileNotFoundException(path);
+		}
+		if(code >= 400 && code < 500) {
+			throw new ClientError(path + ": " + code + " " + response.getResponseMessage());
+		}
+		if(code >= 500) {
+			throw new IOException(path + ": " + code + " " + response.getResponseMessage());
+		}
+		return response;
+	}
+
+	/*
+	 * Whether the file at hdfsPath is one a failed attempt of this upload left behind
+	 */
+	private static boolean isPartial(WebHDFSConnection c, String hdfsPath, long size, long firstAttempt)
+			throws IOException, AuthenticationException {
+		FileStatus status;
+		try {
+			status = c.getFileStatusTyped(hdfsPath);
+		}
+		catch(FileNotFoundException e) {
+			return false;
+		}
+		return status.getType() == FileType.FILE && status.getLength() <= size
+				&& status.getModificationTime() >= firstAttempt - CLOCK_SKEW_MILLIS;
+	}
+
+	/*
+	 * Downloads and typed calls throw the client errors that the untyped calls hand back, as the
+	 * RemoteException of the error body or, without one, an HttpStatusException
+	 */
+	private static boolean isFinal(IOException e) {
+		if(e instanceof FileNotFoundException || e instanceof ClientError) {
+			return true;
+		}
+		if(e instanceof HttpStatusException) {
+			int code = ((HttpStatusException) e).getStatusCode();
+			return code >= 400 && code < 500;
+		}
+		if(e instanceof RemoteException) {
+			String exception = ((RemoteException) e).getException();
+			return "FileAlreadyExistsException".equals(exception) || "AccessControlException".equals(exception)
+					|| "ParentNotDirectoryException".equals(exception);
+		}
+		return false;
+	}
+
+	private static CreateOptions overwriting(CreateOptions options) {
+		CreateOptions copy = new CreateOptions(true);
+		copy.setBlockSize(options.getBlockSize());
+		copy.setReplication(options.getReplication());
+		copy.setPermission(options.getPermission());
+		copy.setBufferSize(options.getBufferSize());
+		return copy;
+	}
+
+	private static String child(String directory, Object relative) {
+		String name = relative.toString().replace('\\', '/');
+		return directory.endsWith("/") ? directory + name : directory + "/" + name;
+	}
+
+	private static boolean isEmpty(Path directory) throws IOException {
+		try (Stream<Path> children = Files.list(directory)) {
+			return !children.findAny().isPresent();
+		}
+	}
+
+	/*
+	 * A 4xx response, which a retry will not fix
+	 */
+	private static class ClientError extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		ClientError(String message) {
+			super(message);
+		}
+	}
+
+	/*
+	 * Bounds the bytes in flight. A file larger than the whole window is let through once
+	 * nothing else is in flight, so it cannot wait forever.
+	 */
+	private static class ByteWindow {
+		private final long max;
+		private long inFlight;
+
+		ByteWindow(long max) {
+			this.max = max;
+		}
+
+		synchronized long acquire(long bytes) throws IOException {
+			long reserved = Math.min(bytes, max);
+
+			try {
+				while(inFlight > 0 && inFlight + reserved > max) {
+					wait();
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the transfer window");
+			}
+
+			inFlight += reserved;
+			return reserved;
+		}
+
+		synchronized void release(long reserved) {
+			inFlight -= reserved;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * The progress and outcome of a group of files scheduled together
+	 */
+	public static class Transfer {
+
+		private final int fileCount;
+		private final List<CompletableFuture<Long>> tasks;
+		private final AtomicInteger completedFiles = new AtomicInteger();
+		private final AtomicLong bytes = new AtomicLong();
+		private final Map<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+		private final long startNanos = System.nanoTime();
+		private volatile long endNanos;
+		private CompletableFuture<Void> completion;
+
+		Transfer(int fileCount) {
+			this.fileCount = fileCount;
+			this.tasks = new ArrayList<CompletableFuture<Long>>(fileCount);
+		}
+
+		void add(CompletableFuture<Long> task) {
+			tasks.add(task);
+		}
+
+		void completed(long transferred) {
+			bytes.addAndGet(transferred);
+			completedFiles.incrementAndGet();
+		}
+
+		void failed(String name, Throwable cause) {
+			logger.error("Transfer of " + name + " failed", cause);
+			failures.put(name, cause);
+		}
+
+		Transfer start() {
+			completion = CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+					.whenComplete((v, e) -> endNanos = System.nanoTime());
+			return this;
+		}
+
+		/**
+		 * Waits until every file has either been transferred or failed.
+		 *
+		 * @return this transfer
+		 */
+		public Transfer await() {
+			completion.join();
+			return this;
+		}
+
+		/**
+		 * @return a future completed when every file has either been transferred or failed
+		 */
+		public CompletableFuture<Void> getCompletion() {
+			return completion;
+		}
+
+		public boolean isDone() {
+			return completion.isDone();
+		}
+
+		/**
+		 * @return the number of files (and empty directories) in this transfer
+		 */
+		public int getFileCount() {
+			return fileCount;
+		}
+
+		/**
+		 * @return the number of files transferred successfully so far
+		 */
+		public int getCompletedFiles() {
+			return completedFiles.get();
+		}
+
+		/**
+		 * @return the number of bytes of the files transferred successfully so far
+		 */
+		public long getBytesTransferred() {
+			return bytes.get();
+		}
+
+		/**
+		 * @return the files that failed after all attempts, keyed by path, with the last error
+		 */
+		public Map<String, Throwable> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return the time since the transfer started, or its total duration once done
+		 */
+		public long getElapsedMillis() {
+			long end = endNanos != 0 ? endNanos : System.nanoTime();
+			return (end - startNanos) / 1000000L;
+		}
+
+		/**
+		 * @return the aggregate throughput of the successful files in bytes per second
+		 */
+		public double getThroughput() {
+			long elapsed = Math.max(1L, getElapsedMillis());
+			return getBytesTransferred() * 1000.0 / elapsed;
+		}
+	}
+}
@@ -1,8 +1,12 @@
 package org.apache.hadoop.fs.http.client;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.net.MalformedURLException;
 
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
@@ -38,7 +42,19 @@ APPEND (see FileSystem.append)
 DELETE (see FileSystem.delete)
 
  */
-public interface WebHDFSConnection {
+public interface WebHDFSConnection extends Closeable {
+
+	/** Passed as the length of an upload whose size is not known in advance */
+	long UNKNOWN_LENGTH = -1L;
+
+	/**
+	 * Releases what this connection holds on the server, e.g. cancels a delegation token it
+	 * obtained. The default does nothing.
+	 *
+	 * @throws IOException
+	 */
+	default void close() throws IOException {
+	}
 	
 	
 	
@@ -72,6 +88,77 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Reads {@code length} bytes starting at {@code offset} and writes them to {@code os}.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @param offset The position of the first byte to read
+	 * @param length The number of bytes to read, or {@link #UNKNOWN_LENGTH} to read to the end of the file
+	 * @param os An output stream object to write to
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Reads the file, or the range of it given by {@code options}, and writes it to {@code os}.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @param os An output stream object to write to
+	 * @param options The OPEN parameters, or null to read the whole file with the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Opens a seekable stream over the file. Data is fetched with ranged OPEN requests as it is read.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @return the stream, positioned at the start of the file, which must be closed
+	 * @throws java.io.FileNotFoundException if there is no file at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 SeekableWebHDFSInputStream openStream(String path) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Downloads the file into {@code localFile}, replacing its contents. The data is written
+	 * through large pooled direct buffers straight into a {@link java.nio.channels.FileChannel}.
+	 *
+	 * @param path The HDFS path to the file to download
+	 * @param localFile The local file to write to, created if missing
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 long download(String path, Path localFile) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Same as {@link #download(String, Path)}, optionally sizing {@code localFile} to the length
+	 * reported by GETFILESTATUS before any data is written.
+	 *
+	 * @param path The HDFS path to the file to download
+	 * @param localFile The local file to write to, created if missing
+	 * @param preallocate Whether to set the length of {@code localFile} up front
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException ;
 	
 	/**
 	 * <b>GETCONTENTSUMMARY</b>
@@ -98,6 +185,65 @@ public interface WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	 WebHDFSResponse listStatus(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Same as {@link #listStatus(String)}, but parses the entries one at a time straight from the
+	 * response body, so memory use does not grow with the size of the directory.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries, which must be read to the end or closed to release the connection
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * 
+	 * curl -i  "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=LISTSTATUS_BATCH&startAfter=<CHILD>"
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param startAfter The last path suffix of the previous page, or null for the first page
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * Iterates over the directory page by page, fetching the next page in the background while
+	 * the current one is consumed. Servers without LISTSTATUS_BATCH, such as older HttpFS, are
+	 * listed with {@link #listStatusIterator(String)} instead.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 PagedFileStatusIterator listStatusBatchIterator(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * As {@link #listStatusBatchIterator(String)}, fetching the next page on {@code prefetch}. A
+	 * caller that bounds the requests it has in flight passes null, so that every page is fetched
+	 * by the thread reading the entries.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param prefetch The executor fetching the next page in the background, or null to fetch each
+	 * 			page when it is reached
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 PagedFileStatusIterator listStatusBatchIterator(String path, Executor prefetch) throws IOException, AuthenticationException;
 	
 	/**
 	 * <b>GETFILESTATUS</b>
@@ -136,6 +282,10 @@ public interface WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=CREATE
                     [&overwrite=<true|false>][&blocksize=<LONG>][&replication=<SHORT>]
                     [&permission=<OCTAL>][&buffersize=<INT>]"
+	 * <p>
+	 * The data is streamed with chunked transfer encoding, so {@code is} may be of any size
+	 * and is never buffered in memory.
+	 *
 	 * @param path The HDFS path at which the file should be created
 	 * @param is The InputStream to read the data from
 	 * @param overwrite Whether or not to overwrite an existing file with the same name
@@ -145,6 +295,52 @@ public interface WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	 WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Same as {@link #create(String, InputStream, boolean)}, but sends a {@code Content-Length}
+	 * when {@code length} is known.
+	 *
+	 * @param path The HDFS path at which the file should be created
+	 * @param is The InputStream to read the data from
+	 * @param length The number of bytes {@code is} will supply, or {@link #UNKNOWN_LENGTH}
+	 * @param overwrite Whether or not to overwrite an existing file with the same name
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Same as {@link #create(String, InputStream, long, boolean)}, with every CREATE parameter.
+	 *
+	 * @param path The HDFS path at which the file should be created
+	 * @param is The InputStream to read the data from
+	 * @param length The number of bytes {@code is} will supply, or {@link #UNKNOWN_LENGTH}
+	 * @param options The CREATE parameters, or null for the server defaults without overwriting
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException, AuthenticationException;
+	
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Uploads {@code localFile}. Its size is read up front and sent as the {@code Content-Length},
+	 * and the data is read from a {@link java.nio.channels.FileChannel} through pooled direct buffers.
+	 *
+	 * @param localFile The local file to upload
+	 * @param path The HDFS path at which the file should be created
+	 * @param options The CREATE parameters, or null for the server defaults without overwriting
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException, AuthenticationException;
 	
 	/**
 	 * <b>MKDIRS</b>
@@ -200,6 +396,17 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>SETPERMISSION</b>
+	 *
+	 * @param path The HDFS path to the object upon which permissions should be set
+	 * @param options The new permission, or null for the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException;
 	
 	/**
 	 * <b>SETOWNER</b>
@@ -214,6 +421,17 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>SETOWNER</b>
+	 *
+	 * @param path The HDFS path to the object of which the owner should be set
+	 * @param options The new owner and group, or null for the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException;
 	
 	/**
 	 * <b>SETREPLICATION</b>
@@ -228,6 +446,17 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>SETREPLICATION</b>
+	 *
+	 * @param path The HDFS path to the object for which replication should be set.
+	 * @param options The new replication factor, or null for the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException;
 	
 	/**
 	 * <b>SETTIMES</b>
@@ -242,6 +471,17 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>SETTIMES</b>
+	 *
+	 * @param path The HDFS path to the object for which to set the times
+	 * @param options The new modification and access times, or null for the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException;
 	
 /*
  * ========================================================================
@@ -250,6 +490,9 @@ public interface WebHDFSConnection {
  */
 	/**
 	 * curl -i -X POST "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=APPEND[&buffersize=<INT>]"
+	 * <p>
+	 * The data is streamed with chunked transfer encoding.
+	 *
 	 * @param path The HDFS path to the file which should be appended to
 	 * @param is The InputStream to read data from
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
@@ -258,6 +501,36 @@ public interface WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	 WebHDFSResponse append(String path, InputStream is) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>APPEND</b>
+	 * <p>
+	 * Same as {@link #append(String, InputStream)}, but sends a {@code Content-Length} when
+	 * {@code length} is known.
+	 *
+	 * @param path The HDFS path to the file which should be appended to
+	 * @param is The InputStream to read data from
+	 * @param length The number of bytes {@code is} will supply, or {@link #UNKNOWN_LENGTH}
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse append(String path, InputStream is, long length) throws IOException, AuthenticationException ;
+
+	/**
+	 * <b>APPEND</b>
+	 * <p>
+	 * Same as {@link #append(String, InputStream, long)}, with every APPEND parameter.
+	 *
+	 * @param path The HDFS path to the file which should be appended to
+	 * @param is The InputStream to read data from
+	 * @param length The number of bytes {@code is} will supply, or {@link #UNKNOWN_LENGTH}
+	 * @param options The APPEND parameters, or null for the server defaults
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException, AuthenticationException ;
 /*
  * ========================================================================
  * DELETE	
@@ -276,8 +549,139 @@ public interface WebHDFSConnection {
 	 * @throws MalformedURLException 
 	 */
 	 WebHDFSResponse delete(String path) throws IOException, AuthenticationException ;
-	
-	
-	
-	
+/*
+ * ========================================================================
+ * TYPED
+ * ========================================================================
+ * The same operations, decoded straight from the response body into the
+ * model classes. Failures are thrown instead of returned: a missing path as
+ * java.io.FileNotFoundException, a server error as RemoteException.
+ */
+	/**
+	 * <b>GETHOMEDIRECTORY</b>
+	 *
+	 * @return the home directory of the user
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 String getHomeDirectoryTyped() throws IOException, AuthenticationException;
+
+	/**
+	 * <b>GETFILESTATUS</b>
+	 *
+	 * @param path The HDFS path to the file to the list the status of
+	 * @return the status, with {@link FileStatus#getPath()} set to {@code path}
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries, in the server's order
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Decodes the entries into a {@link FileStatusBatch}, which keeps a large listing in
+	 * primitive arrays instead of one object per entry.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries, in the server's order
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>
+	 *
+	 * @param path The HDFS path to the directory to summarise
+	 * @return the summary
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>GETFILECHECKSUM</b>
+	 *
+	 * @param path The HDFS path to the file to get a checksum for
+	 * @return the checksum
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>MKDIRS</b>
+	 *
+	 * @param path The path to the directory to make, including any missing parents
+	 * @return true if the directory exists afterwards
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 boolean mkdirsTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>RENAME</b>
+	 *
+	 * @param srcPath The HDFS path to be renamed
+	 * @param destPath The new HDFS path
+	 * @return true if the rename took place
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>DELETE</b>
+	 *
+	 * @param path The HDFS path to the object to be deleted
+	 * @return true if something was deleted
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 boolean deleteTyped(String path) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>GETDELEGATIONTOKEN</b>
+	 *
+	 * @param renewer The user allowed to renew the token, or null for none
+	 * @return the token, encoded for the {@code delegation} parameter, or null if the server has
+	 * 			security disabled
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 String getDelegationToken(String renewer) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>RENEWDELEGATIONTOKEN</b>
+	 *
+	 * @param token The token, as returned by {@link #getDelegationToken(String)}
+	 * @return the new expiry of the token, in milliseconds since the epoch
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 long renewDelegationToken(String token) throws IOException, AuthenticationException;
+
+	/**
+	 * <b>CANCELDELEGATIONTOKEN</b>
+	 *
+	 * @param token The token, as returned by {@link #getDelegationToken(String)}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	 void cancelDelegationToken(String token) throws IOException, AuthenticationException;
 }
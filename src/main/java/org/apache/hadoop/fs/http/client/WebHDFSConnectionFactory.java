@@ -1,15 +1,34 @@
 package org.apache.hadoop.fs.http.client;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.FailoverWebHDFSConnection.Strategy;
 import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
 import org.apache.hadoop.fs.http.client.util.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Creates the connections to one WebHDFS/HttpFS server, given by its host and port, or to
+ * several endpoints of a cluster, such as the NameNodes of an HA pair or a set of HttpFS gateways,
+ * given by {@link #setEndpoints(List)}. The requests to several endpoints are spread over them by
+ * a {@link FailoverWebHDFSConnection} with the {@linkplain #setStrategy(Strategy) strategy} of
+ * choice.
+ * <p>
+ * {@link #close()} closes the connections it created, which cancels the delegation tokens they
+ * obtained.
  * 
  * @author wesley
  */
-public class WebHDFSConnectionFactory {
+public class WebHDFSConnectionFactory implements Closeable {
 	
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 	
@@ -33,8 +52,14 @@ public class WebHDFSConnectionFactory {
 	private String host = DEFAULT_HOST;
 	private String username = DEFAULT_USERNAME;
 	private String password = DEFAULT_PASSWORD;
+	private String protocol = DEFAULT_PROTOCOL;
+	private List<String> endpoints;
+	private Strategy strategy = Strategy.ACTIVE_STANDBY;
 	private AuthenticationType authenticationType = AuthenticationType.KERBEROS;
+	private int connectTimeout = Timeouts.DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = Timeouts.DEFAULT_READ_TIMEOUT;
 	private WebHDFSConnection webHDFSConnection;
+	private AsyncWebHDFSConnection asyncWebHDFSConnection;
 	
 	/**
 	 * Creates a new WebHDFSConnectionFactory instance.
@@ -65,21 +90,91 @@ public class WebHDFSConnectionFactory {
 		this.authenticationType = authType;
 	}
 	
+	/**
+	 * @return the connection, created on the first call: a {@link FailoverWebHDFSConnection} over
+	 * 			the endpoints if there are any, a connection to the host and port otherwise
+	 */
 	public WebHDFSConnection getConnection() {
-		Assert.notNull(host, "Property <host> must not be null");
-		Assert.notNull(port, "Property <port> must not be null");
 		Assert.notNull(username, "Property <username> must not be null");
 		Assert.notNull(authenticationType, "Property <authenticationType> must not be null");
-		
-		String httpfsUrl = String.format("%s%s:%s", DEFAULT_PROTOCOL, host, port);
 
 		if(webHDFSConnection == null) {
-			webHDFSConnection = authenticationType.createConnection(httpfsUrl, username, password);
+			if(endpoints == null || endpoints.isEmpty()) {
+				webHDFSConnection = authenticationType.createConnection(getUrl(), username, password, createTransport());
+			}
+			else {
+				Map<String, WebHDFSConnection> connections = new LinkedHashMap<String, WebHDFSConnection>();
+				for(String endpoint : endpoints) {
+					String url = toUrl(endpoint);
+					connections.put(url, authenticationType.createConnection(url, username, password, createTransport()));
+				}
+				webHDFSConnection = new FailoverWebHDFSConnection(connections, strategy);
+			}
 		}
 
 		return webHDFSConnection;
 	}
 
+	/**
+	 * @return the asynchronous connection, created on the first call, to the host and port or, if
+	 * 			there are endpoints, to the first one; it does not fail over
+	 */
+	public AsyncWebHDFSConnection getAsyncConnection() {
+		Assert.notNull(username, "Property <username> must not be null");
+		Assert.notNull(authenticationType, "Property <authenticationType> must not be null");
+
+		if(asyncWebHDFSConnection == null) {
+			String httpfsUrl = endpoints == null || endpoints.isEmpty() ? getUrl() : toUrl(endpoints.get(0));
+			asyncWebHDFSConnection = authenticationType.createAsyncConnection(httpfsUrl, username, password,
+					connectTimeout, readTimeout);
+		}
+
+		return asyncWebHDFSConnection;
+	}
+
+	/**
+	 * Closes the connections created so far; the next call to {@link #getConnection()} or
+	 * {@link #getAsyncConnection()} creates a new one.
+	 *
+	 * @throws IOException
+	 * 			if a connection could not release what it holds, e.g. cancel its delegation token
+	 */
+	@Override
+	public void close() throws IOException {
+		WebHDFSConnection connection = webHDFSConnection;
+		AsyncWebHDFSConnection asyncConnection = asyncWebHDFSConnection;
+		webHDFSConnection = null;
+		asyncWebHDFSConnection = null;
+		try {
+			if(connection != null) {
+				connection.close();
+			}
+		}
+		finally {
+			if(asyncConnection != null) {
+				asyncConnection.close();
+			}
+		}
+	}
+
+	private PooledHttpTransport createTransport() {
+		return new PooledHttpTransport(PooledHttpTransport.DEFAULT_MAX_PER_ROUTE, PooledHttpTransport.DEFAULT_MAX_TOTAL,
+				PooledHttpTransport.DEFAULT_IDLE_TIMEOUT, PooledHttpTransport.DEFAULT_LEASE_TIMEOUT, connectTimeout,
+				readTimeout);
+	}
+
+	private String getUrl() {
+		Assert.notNull(host, "Property <host> must not be null");
+		return protocol + host + ":" + port;
+	}
+
+	/*
+	 * "host:port" with the protocol of the factory, or a URL as it is
+	 */
+	private String toUrl(String endpoint) {
+		return endpoint.contains("://") ? endpoint : protocol + endpoint;
+	}
+
 	public String getHost() {
 		return host;
 	}
@@ -112,6 +207,82 @@ public class WebHDFSConnectionFactory {
 		this.password = password;
 	}
 
+	public String getProtocol() {
+		return protocol;
+	}
+
+	/**
+	 * @param protocol
+	 * 			the protocol of the host and of the endpoints given without one, {@code http://} or
+	 * 			{@code https://}
+	 */
+	public void setProtocol(String protocol) {
+		Assert.notNull(protocol, "Property <protocol> must not be null");
+		this.protocol = protocol.endsWith("://") ? protocol : protocol + "://";
+	}
+
+	public List<String> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * @param endpoints
+	 * 			the endpoints of the cluster in order of preference, each a {@code host:port} or a
+	 * 			URL, or null to connect to the host and port
+	 */
+	public void setEndpoints(List<String> endpoints) {
+		this.endpoints = endpoints == null ? null : new ArrayList<String>(endpoints);
+	}
+
+	/**
+	 * @param endpoints
+	 * 			the endpoints of the cluster in order of preference, each a {@code host:port} or a
+	 * 			URL
+	 * @see #setEndpoints(List)
+	 */
+	public void setEndpoints(String... endpoints) {
+		setEndpoints(Arrays.asList(endpoints));
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @param strategy
+	 * 			how requests are spread over the endpoints, {@link Strategy#ACTIVE_STANDBY} by default
+	 */
+	public void setStrategy(Strategy strategy) {
+		Assert.notNull(strategy, "Property <strategy> must not be null");
+		this.strategy = strategy;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for data, 0 for no limit; a NameNode or DataNode
+	 * 			that stops answering for longer fails the request with a
+	 * 			{@link java.net.SocketTimeoutException}
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
 	public AuthenticationType getAuthenticationType() {
 		return authenticationType;
 	}
@@ -1,8 +1,9 @@
 package org.apache.hadoop.fs.http.client;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,28 +69,7 @@ public class WebHDFSResponse
 		{
 			throw new JsonParseException("Content type not application/json", null);
 		}
-		ObjectMapper mapper = new ObjectMapper();
 		logger.trace("Attempting parse the following response as JSON: '" + response + "'");
-		return mapper.readTree(response);
+		return SerializationUtils.readTree(response);
 	}
-
-	// It would be nice if this package only had one JSON library, GSON or Jackson.
-	// Unfortunately GSON it for deserializing into types, which measn you need to
-	// tell it a lot about the structure you are expecting. This isn't useful for
-	// a class like this where the response could contain lots of different JSON
-	// structures. Jackson on the other hand deserialises into a generic tree of
-	// JsonNodes and does a decent job of guessing primitive types. If we use GSON
-	// this library has to recognise the structure and sort it out (nicer for the#
-	// user), if we use Jackson the user using this library has to deal with it (faster
-	// for us).
-	//
-	// Some work on providing proper classes has been done in ContentSummary and FileStatus
-	// If in future we want it be nicer, we can go back to Gson. For now I'm doing
-	// it the quick way.
-	/*public static Map<String, Object> toMap(String json) {
-		Gson gson = new Gson();
-		Type type = new TypeToken<Map<String, Object>>() {}.getType();
-		return gson.fromJson(json, type);
-	}*/
-
 }
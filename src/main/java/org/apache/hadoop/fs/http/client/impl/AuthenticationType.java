@@ -1,20 +1,134 @@
 package org.apache.hadoop.fs.http.client.impl;
 
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
 import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.fs.http.client.transport.SimpleHttpTransport;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
 
 public enum AuthenticationType {
 	KERBEROS {
 		@Override
-		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
-			return new KerberosWebHDFSConnection(httpfsUrl, username, password);
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password,
+				HttpTransport transport) {
+			return new KerberosWebHDFSConnection(httpfsUrl, username, password, transport);
+		}
+
+		@Override
+		public AsyncWebHDFSConnection createAsyncConnection(String httpfsUrl, String username, String password,
+				int connectTimeout, int readTimeout) {
+			return new NioAsyncWebHDFSConnection(httpfsUrl, null,
+					KerberosWebHDFSConnection.tokenHolder(httpfsUrl, username, password), null, connectTimeout, readTimeout);
 		}
 	},
 	PSEUDO {
 		@Override
-		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
-			return new PseudoWebHDFSConnection(httpfsUrl, username, password);
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password,
+				HttpTransport transport) {
+			return new PseudoWebHDFSConnection(httpfsUrl, username, password, transport);
+		}
+
+		@Override
+		public AsyncWebHDFSConnection createAsyncConnection(String httpfsUrl, String username, String password,
+				int connectTimeout, int readTimeout) {
+			return new NioAsyncWebHDFSConnection(httpfsUrl, username,
+					PseudoWebHDFSConnection.tokenHolder(httpfsUrl, username, password), null, connectTimeout, readTimeout);
+		}
+	},
+	/**
+	 * Logs in with Kerberos once to obtain a delegation token, then authenticates every request
+	 * with the token, see {@link DelegationTokenWebHDFSConnection}. The asynchronous connection
+	 * obtains a token of its own, which is renewed until the connection is closed and cancelled
+	 * then.
+	 */
+	DELEGATION_TOKEN {
+		@Override
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password,
+				HttpTransport transport) {
+			WebHDFSConnection issuer = new KerberosWebHDFSConnection(httpfsUrl, username, password, transport);
+			return new DelegationTokenWebHDFSConnection(httpfsUrl, shortName(username), issuer,
+					new DelegationTokenRenewer(issuer, shortName(username)), transport);
+		}
+
+		@Override
+		public AsyncWebHDFSConnection createAsyncConnection(String httpfsUrl, String username, String password,
+				int connectTimeout, int readTimeout) {
+			// only a few requests obtain, renew and cancel the token, they need no pool
+			WebHDFSConnection issuer = new KerberosWebHDFSConnection(httpfsUrl, username, password,
+					new SimpleHttpTransport(connectTimeout, readTimeout));
+			return NioAsyncWebHDFSConnection.withDelegationToken(httpfsUrl,
+					new DelegationTokenRenewer(issuer, shortName(username)), issuer, null, connectTimeout, readTimeout);
 		}
 	};
+
+	/**
+	 * Connects with a delegation token obtained by another process, e.g. with
+	 * {@link DelegationTokenWebHDFSConnection#exportToken()}, so a worker never contacts the KDC.
+	 * The token is neither renewed nor cancelled by the returned connection.
+	 *
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param token
+	 * 			the exported token
+	 * @return the new connection
+	 */
+	public static WebHDFSConnection withDelegationToken(String httpfsUrl, String token) {
+		return new DelegationTokenWebHDFSConnection(httpfsUrl, token);
+	}
+
+	/**
+	 * @see #withDelegationToken(String, String)
+	 */
+	public static AsyncWebHDFSConnection withAsyncDelegationToken(String httpfsUrl, String token) {
+		return NioAsyncWebHDFSConnection.withDelegationToken(httpfsUrl, new DelegationTokenRenewer(token), null, null,
+				Timeouts.DEFAULT_CONNECT_TIMEOUT, Timeouts.DEFAULT_READ_TIMEOUT);
+	}
+
+	/*
+	 * user/host@REALM -> user
+	 */
+	static String shortName(String principal) {
+		int end = principal.length();
+		for(int i = 0; i < principal.length(); i++) {
+			char c = principal.charAt(i);
+			if(c == '/' || c == '@') {
+				end = i;
+				break;
+			}
+		}
+		return principal.substring(0, end);
+	}
 	
-	public abstract WebHDFSConnection createConnection(String httpfsUrl, String username, String password);
-}
\ No newline at end of file
+	/**
+	 * Creates a connection with a {@link PooledHttpTransport} of its own, with the default limits
+	 * and timeouts
+	 */
+	public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
+		return createConnection(httpfsUrl, username, password, new PooledHttpTransport());
+	}
+
+	/**
+	 * @param transport
+	 * 			opens the HTTP connections, and sets their limits and timeouts
+	 */
+	public abstract WebHDFSConnection createConnection(String httpfsUrl, String username, String password,
+			HttpTransport transport);
+
+	/**
+	 * Creates an asynchronous connection with the {@linkplain Timeouts default timeouts}
+	 */
+	public AsyncWebHDFSConnection createAsyncConnection(String httpfsUrl, String username, String password) {
+		return createAsyncConnection(httpfsUrl, username, password, Timeouts.DEFAULT_CONNECT_TIMEOUT,
+				Timeouts.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for the response headers of each request, 0 for no limit
+	 */
+	public abstract AsyncWebHDFSConnection createAsyncConnection(String httpfsUrl, String username, String password,
+			int connectTimeout, int readTimeout);
+}
@@ -0,0 +1,135 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Identifies a set of credentials, optionally at one endpoint, for the process-wide caches of
+ * {@link KerberosLoginCache} and {@link TokenHolder#shared(CredentialKey, java.util.function.Supplier)}.
+ * <p>
+ * The password is part of the key, so connections only share a login or a token when they would
+ * have obtained it with the same credentials. Only a salted hash of it is kept, since the caches
+ * live as long as the process; the salt is drawn once per process.
+ */
+final class CredentialKey {
+
+	private static final byte[] SALT = new byte[16];
+
+	static {
+		new SecureRandom().nextBytes(SALT);
+	}
+
+	private final String principal;
+	private final String realm;
+	private final String endpoint;
+	private final byte[] passwordHash;
+
+	private CredentialKey(String principal, String realm, String endpoint, String password) {
+		this.principal = principal;
+		this.realm = realm;
+		this.endpoint = endpoint;
+		this.passwordHash = hash(password);
+	}
+
+	/**
+	 * @param principal
+	 * 			the principal, e.g. {@code user@EXAMPLE.COM}
+	 * @param password
+	 * 			its password
+	 * @return a key for a login of {@code principal}, at any endpoint
+	 */
+	static CredentialKey forLogin(String principal, String password) {
+		return new CredentialKey(principal, realmOf(principal), null, password);
+	}
+
+	/**
+	 * @param endpoint
+	 * 			the URL of the server, only its scheme, host and port are used
+	 * @param principal
+	 * 			the principal, e.g. {@code user@EXAMPLE.COM}
+	 * @param password
+	 * 			its password
+	 * @return a key for the tokens {@code principal} is issued by {@code endpoint}
+	 */
+	static CredentialKey forEndpoint(String endpoint, String principal, String password) {
+		return new CredentialKey(principal, realmOf(principal), normalize(endpoint), password);
+	}
+
+	String getPrincipal() {
+		return principal;
+	}
+
+	String getRealm() {
+		return realm;
+	}
+
+	String getEndpoint() {
+		return endpoint;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof CredentialKey)) {
+			return false;
+		}
+
+		CredentialKey other = (CredentialKey) obj;
+		return Objects.equals(principal, other.principal) && Objects.equals(realm, other.realm)
+				&& Objects.equals(endpoint, other.endpoint) && Arrays.equals(passwordHash, other.passwordHash);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(principal, realm, endpoint, Arrays.hashCode(passwordHash));
+	}
+
+	@Override
+	public String toString() {
+		// never the password
+		return principal + (endpoint == null ? "" : "@" + endpoint);
+	}
+
+	private static byte[] hash(String password) {
+		if(password == null) {
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(SALT);
+			return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+		}
+		catch(NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String realmOf(String principal) {
+		int at = principal == null ? -1 : principal.lastIndexOf('@');
+		return at < 0 ? null : principal.substring(at + 1);
+	}
+
+	/*
+	 * http://NameNode:50070/ and http://namenode:50070 are the same endpoint
+	 */
+	static String normalize(String endpoint) {
+		try {
+			URL url = new URL(endpoint);
+			int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+			return url.getProtocol().toLowerCase(Locale.ROOT) + "://" + url.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+		}
+		catch(MalformedURLException e) {
+			return endpoint;
+		}
+	}
+}
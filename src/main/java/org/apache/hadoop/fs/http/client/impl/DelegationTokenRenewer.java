@@ -0,0 +1,269 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.apache.hadoop.fs.http.client.RemoteException;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Obtains a delegation token through an authenticated connection, the issuer, keeps it alive and
+ * cancels it when closed.
+ * <p>
+ * The token is fetched on first use and renewed once right away to learn its expiry. After that
+ * it is renewed in the background once {@link TokenHolder#REFRESH_FRACTION} of its remaining
+ * lifetime has passed. A failed renewal is logged and tried again after {@link #RETRY_DELAY}; the
+ * token keeps working in the meantime, until it expires. Once a renewal is rejected, or fails
+ * after the expiry, e.g. because the token reached its maximum lifetime, the token is dropped and
+ * the next request obtains a new one. So is a token that a request finds
+ * {@linkplain #invalidate(String) invalid}, e.g. because it was cancelled or the NameNode that
+ * issued it restarted or failed over.
+ * <p>
+ * A renewer created for a token obtained elsewhere, e.g. by the process that started a worker,
+ * neither renews nor cancels it: that is the job of the process holding the issuer.
+ */
+final class DelegationTokenRenewer implements Closeable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(DelegationTokenRenewer.class);
+
+	/** How long to wait before trying again when a renewal failed */
+	static final long RETRY_DELAY = 60 * 1000L;
+
+	private static final ScheduledExecutorService RENEW_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "webhdfs-delegation-token-renewer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final WebHDFSConnection issuer;
+	private final String renewer;
+	private final LongSupplier clock;
+	private final ScheduledExecutorService scheduler;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile String token;
+	private volatile long expiresAt = Long.MAX_VALUE;
+	private ScheduledFuture<?> scheduled;
+	private boolean closed;
+
+	/**
+	 * @param issuer
+	 * 			the authenticated connection that obtains, renews and cancels the token
+	 * @param renewer
+	 * 			the user allowed to renew the token, usually the short name of the issuer's principal
+	 */
+	DelegationTokenRenewer(WebHDFSConnection issuer, String renewer) {
+		this(issuer, renewer, System::currentTimeMillis, RENEW_EXECUTOR);
+	}
+
+	DelegationTokenRenewer(WebHDFSConnection issuer, String renewer, LongSupplier clock,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(issuer, "Property <issuer> must not be null");
+		this.issuer = issuer;
+		this.renewer = renewer;
+		this.clock = clock;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * @param token
+	 * 			a token obtained and renewed by another process
+	 */
+	DelegationTokenRenewer(String token) {
+		Assert.notNull(token, "Property <token> must not be null");
+		this.issuer = null;
+		this.renewer = null;
+		this.clock = System::currentTimeMillis;
+		this.scheduler = null;
+		this.token = token;
+	}
+
+	/**
+	 * @return the token, obtained first if there is none yet
+	 * @throws IOException
+	 * 			if the token could not be obtained or was rejected by its first renewal, or this
+	 * 			renewer is closed
+	 */
+	String get() throws IOException {
+		String current = token;
+		if(current != null) {
+			return current;
+		}
+
+		lock.lock();
+		try {
+			if(closed) {
+				throw new IOException("The delegation token has been cancelled");
+			}
+			current = token;
+			if(current == null) {
+				current = fetch();
+				token = current;
+				renew(current);
+				if(token == null) {
+					throw new IOException("The delegation token obtained was rejected when renewed");
+				}
+			}
+			return current;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the token, or null if there is none yet and {@link #get()} would have to obtain it
+	 */
+	String getIfPresent() {
+		return token;
+	}
+
+	/**
+	 * Drops {@code rejected}, which a request found invalid, so that the next {@link #get()}
+	 * obtains a new token.
+	 *
+	 * @param rejected
+	 * 			the token the server rejected
+	 * @return true if {@link #get()} returns another token, false if this renewer cannot obtain
+	 * 			one or is closed
+	 */
+	boolean invalidate(String rejected) {
+		if(issuer == null) {
+			return false;
+		}
+
+		lock.lock();
+		try {
+			if(closed) {
+				return false;
+			}
+			// another request may have replaced it already
+			if(rejected.equals(token)) {
+				logger.warn("The server rejected the delegation token, it will be obtained again");
+				token = null;
+				expiresAt = Long.MAX_VALUE;
+				if(scheduled != null) {
+					scheduled.cancel(false);
+					scheduled = null;
+				}
+			}
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the expiry of the token in milliseconds since the epoch, as of its last renewal,
+	 * 			or Long.MAX_VALUE if it is not known
+	 */
+	long getExpiresAt() {
+		return expiresAt;
+	}
+
+	private String fetch() throws IOException {
+		try {
+			String fetched = issuer.getDelegationToken(renewer);
+			if(fetched == null) {
+				throw new IOException("The server did not issue a delegation token, security is disabled");
+			}
+			logger.debug("Obtained a delegation token for renewer " + renewer);
+			return fetched;
+		}
+		catch(AuthenticationException e) {
+			throw new IOException("Could not obtain a delegation token", e);
+		}
+	}
+
+	/*
+	 * Renews the token and schedules the next renewal, or a retry if this one failed. Drops the
+	 * token instead if it can no longer be renewed.
+	 */
+	private void renew(String current) {
+		long delay;
+		try {
+			long expiry = issuer.renewDelegationToken(current);
+			expiresAt = expiry;
+			long now = clock.getAsLong();
+			delay = Math.max(0L, (long) ((expiry - now) * TokenHolder.REFRESH_FRACTION));
+			logger.debug("Renewed the delegation token, valid until " + expiry);
+		}
+		catch(IOException | AuthenticationException e) {
+			if(isInvalidToken(e) || clock.getAsLong() >= expiresAt) {
+				logger.warn("Could not renew the delegation token, it has expired and will be obtained again", e);
+				token = null;
+				expiresAt = Long.MAX_VALUE;
+				return;
+			}
+			logger.warn("Could not renew the delegation token, trying again in " + RETRY_DELAY + " ms", e);
+			delay = RETRY_DELAY;
+		}
+
+		if(!closed) {
+			scheduled = scheduler.schedule(this::renewScheduled, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/*
+	 * Whether the server rejected the token itself, e.g. because it expired or was cancelled
+	 */
+	private static boolean isInvalidToken(Exception e) {
+		return e instanceof RemoteException && "InvalidToken".equals(((RemoteException) e).getException());
+	}
+
+	private void renewScheduled() {
+		lock.lock();
+		try {
+			if(!closed && token != null) {
+				renew(token);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops renewing the token and, if it was obtained by this renewer, cancels it.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			if(scheduled != null) {
+				scheduled.cancel(false);
+			}
+			if(issuer == null || token == null) {
+				return;
+			}
+
+			try {
+				issuer.cancelDelegationToken(token);
+			}
+			catch(AuthenticationException e) {
+				throw new IOException("Could not cancel the delegation token", e);
+			}
+			finally {
+				token = null;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.security.authentication.client.Authenticator;
+
+/**
+ * A {@link WebHDFSConnection} that authenticates every request with a delegation token, sent as
+ * the {@code delegation} parameter instead of {@code user.name}.
+ * <p>
+ * The token is obtained once through an authenticated issuer, e.g. a Kerberos connection, so
+ * later requests cost no SPNEGO round trip and can be sent to any NameNode or DataNode that
+ * accepts the token. It is renewed in the background and cancelled on {@link #close()}, see
+ * {@link DelegationTokenRenewer}. A request without a body that the server rejects as carrying an
+ * invalid token obtains a new token and is sent once more.
+ * <p>
+ * {@link #exportToken()} hands the token to worker processes, which connect with
+ * {@link AuthenticationType#withDelegationToken(String, String)} and never contact the KDC.
+ */
+public class DelegationTokenWebHDFSConnection extends PseudoWebHDFSConnection {
+
+	/*
+	 * The token is sent as a parameter, there is nothing to authenticate
+	 */
+	private static final Authenticator NO_AUTHENTICATION = (url, token) -> {
+	};
+
+	private final DelegationTokenRenewer renewer;
+	private final WebHDFSConnection issuer;
+
+	/**
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param issuer
+	 * 			an authenticated connection to the same cluster, which obtains the token
+	 * @param renewer
+	 * 			the user allowed to renew the token, usually the short name of the issuer's principal
+	 */
+	DelegationTokenWebHDFSConnection(String httpfsUrl, WebHDFSConnection issuer, String renewer) {
+		this(httpfsUrl, renewer, issuer, new DelegationTokenRenewer(issuer, renewer), new PooledHttpTransport());
+	}
+
+	/**
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param token
+	 * 			a token exported by another process, which renews and eventually cancels it
+	 */
+	DelegationTokenWebHDFSConnection(String httpfsUrl, String token) {
+		this(httpfsUrl, "", null, new DelegationTokenRenewer(token), new PooledHttpTransport());
+	}
+
+	DelegationTokenWebHDFSConnection(String httpfsUrl, String principal, WebHDFSConnection issuer,
+			DelegationTokenRenewer renewer, HttpTransport transport) {
+		super(httpfsUrl, principal, "", transport, NO_AUTHENTICATION, TokenHolder.none());
+		this.issuer = issuer;
+		this.renewer = renewer;
+	}
+
+	/**
+	 * @return the delegation token, obtained first if there is none yet, for a worker to pass to
+	 * 			{@link AuthenticationType#withDelegationToken(String, String)}
+	 * @throws IOException
+	 * 			if the token could not be obtained
+	 */
+	public String exportToken() throws IOException {
+		return renewer.get();
+	}
+
+	/**
+	 * @return the expiry of the token in milliseconds since the epoch, as of its last renewal,
+	 * 			or Long.MAX_VALUE if it is not known
+	 */
+	public long getTokenExpiry() {
+		return renewer.getExpiresAt();
+	}
+
+	@Override
+	protected String authenticationParameter() {
+		return "delegation";
+	}
+
+	@Override
+	protected String authenticationValue() throws IOException {
+		return renewer.get();
+	}
+
+	@Override
+	protected boolean authenticationRejected(String value) {
+		return renewer.invalidate(value);
+	}
+
+	/**
+	 * Cancels the token if this connection obtained it, then closes the issuer.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			renewer.close();
+		}
+		finally {
+			if(issuer != null) {
+				issuer.close();
+			}
+		}
+	}
+}
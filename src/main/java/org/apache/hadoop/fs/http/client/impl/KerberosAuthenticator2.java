@@ -21,6 +21,7 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
@@ -34,6 +35,7 @@ import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
 import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.hadoop.security.authentication.client.Authenticator;
@@ -41,6 +43,7 @@ import org.apache.hadoop.security.authentication.client.KerberosAuthenticator;
 import org.apache.hadoop.security.authentication.client.PseudoAuthenticator;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
 import org.ietf.jgss.Oid;
@@ -137,14 +140,19 @@ class KerberosAuthenticator2 implements Authenticator {
 	private HttpURLConnection conn;
 	private Base64 base64;
 
+	// the SPNEGO sequence keeps its state in the fields above, so only one may run at a time
+	private final ReentrantLock lock = new ReentrantLock();
+
 	
 	private String username;
 	private String password;
+	private final CredentialKey loginKey;
 	
 	public KerberosAuthenticator2(String username, String password) {
 		super();
 		this.username = username;
 		this.password = password;
+		this.loginKey = CredentialKey.forLogin(username, password);
 	}
 
 	/**
@@ -168,17 +176,23 @@ class KerberosAuthenticator2 implements Authenticator {
 	@Override
 	public void authenticate(URL url, AuthenticatedURL.Token token)
 			throws IOException, AuthenticationException {
-		if (!token.isSet()) {
-			this.url = url;
-			base64 = new Base64(0);
-			conn = (HttpURLConnection) url.openConnection();
-			conn.setRequestMethod(AUTH_HTTP_METHOD);
-			conn.connect();
-			if (isNegotiate()) {
-				doSpnegoSequence(token);
-			} else {
-				getFallBackAuthenticator().authenticate(url, token);
+		lock.lock();
+		try {
+			if (!token.isSet()) {
+				this.url = url;
+				base64 = new Base64(0);
+				conn = (HttpURLConnection) url.openConnection();
+				Timeouts.configure(conn);
+				conn.setRequestMethod(AUTH_HTTP_METHOD);
+				conn.connect();
+				if (isNegotiate()) {
+					doSpnegoSequence(token);
+				} else {
+					getFallBackAuthenticator().authenticate(url, token);
+				}
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -234,15 +248,7 @@ class KerberosAuthenticator2 implements Authenticator {
 			}
 */
 			
-			LoginContext loginContext = new LoginContext("", null,
-					new KerberosClientCallbackHandler(username, password),
-					new LoginConfig(this.debug));
-			loginContext.login();
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Kerberos authenticated user: "
-						+ loginContext.getSubject());
-			}
-			Subject subject = loginContext.getSubject();
+			Subject subject = KerberosLoginCache.getInstance().getSubject(loginKey, this::login);
 			
 			Subject.doAs(subject, new PrivilegedExceptionAction<Void>() {
 
@@ -291,13 +297,58 @@ class KerberosAuthenticator2 implements Authenticator {
 				}
 			});
 		} catch (PrivilegedActionException ex) {
-			throw new AuthenticationException(ex.getException());
+			Exception cause = ex.getException();
+			if (isCredentialFailure(cause)) {
+				// the tickets expired or were revoked, log in again next time
+				KerberosLoginCache.getInstance().invalidate(loginKey);
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof AuthenticationException) {
+				throw (AuthenticationException) cause;
+			}
+			throw new AuthenticationException(cause);
 		} catch (LoginException ex) {
 			throw new AuthenticationException(ex);
 		}
 		AuthenticatedURL.extractToken(conn, token);
 	}
 
+	/*
+	 * Only a rejection of the tickets themselves is worth a new login; a server that cannot be
+	 * reached or answers out of sequence says nothing about them.
+	 */
+	static boolean isCredentialFailure(Exception e) {
+		if (!(e instanceof GSSException)) {
+			return false;
+		}
+		switch (((GSSException) e).getMajor()) {
+		case GSSException.NO_CRED:
+		case GSSException.CREDENTIALS_EXPIRED:
+		case GSSException.DEFECTIVE_CREDENTIAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/*
+	 * Logs in with the username and password; only called by KerberosLoginCache when it has no
+	 * Subject to reuse.
+	 */
+	private Subject login() throws LoginException {
+		LoginContext loginContext = new LoginContext("", null,
+				new KerberosClientCallbackHandler(username, password),
+				new LoginConfig(this.debug));
+		loginContext.login();
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Kerberos authenticated user: "
+					+ loginContext.getSubject());
+		}
+		return loginContext.getSubject();
+	}
+
 	/*
 	 * Sends the Kerberos token to the server.
 	 */
@@ -305,6 +356,7 @@ class KerberosAuthenticator2 implements Authenticator {
 			AuthenticationException {
 		String token = base64.encodeToString(outToken);
 		conn = (HttpURLConnection) url.openConnection();
+		Timeouts.configure(conn);
 		conn.setRequestMethod(AUTH_HTTP_METHOD);
 		conn.setRequestProperty(AUTHORIZATION, NEGOTIATE + " " + token);
 		conn.connect();
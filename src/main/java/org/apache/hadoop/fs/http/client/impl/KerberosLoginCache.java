@@ -0,0 +1,148 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the logged-in JAAS {@link Subject} of every principal, so that a new SPNEGO token does not
+ * cost a new login, i.e. a full AS exchange with the KDC.
+ * <p>
+ * A Subject is reused until {@link TokenHolder#REFRESH_FRACTION} of the lifetime of its ticket
+ * granting ticket has passed, then the next caller logs in again while the others keep using the
+ * old Subject, whose TGT is still valid. Subjects without a TGT, e.g. with an unexpected login
+ * module, are reused for {@link #DEFAULT_LIFETIME}.
+ * <p>
+ * The cache is process-wide and keyed by {@link CredentialKey}, so every connection of a
+ * principal shares one login, whichever endpoint it talks to.
+ */
+final class KerberosLoginCache {
+
+	protected static final Logger logger = LoggerFactory.getLogger(KerberosLoginCache.class);
+
+	/** How long a Subject without a TGT is reused */
+	static final long DEFAULT_LIFETIME = 60 * 60 * 1000L;
+
+	private static final KerberosLoginCache INSTANCE = new KerberosLoginCache(System::currentTimeMillis);
+
+	/**
+	 * Logs in, e.g. with a {@link javax.security.auth.login.LoginContext}.
+	 */
+	interface Login {
+		Subject login() throws LoginException;
+	}
+
+	private final ConcurrentHashMap<CredentialKey, Entry> entries = new ConcurrentHashMap<CredentialKey, Entry>();
+	private final LongSupplier clock;
+
+	KerberosLoginCache(LongSupplier clock) {
+		this.clock = clock;
+	}
+
+	static KerberosLoginCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param key
+	 * 			the credentials, see {@link CredentialKey#forLogin(String, String)}
+	 * @param login
+	 * 			logs in with these credentials if there is no Subject to reuse
+	 * @return the cached Subject, or a new one if none was cached or its TGT is due for renewal
+	 * @throws LoginException if the login failed and there is no valid Subject to fall back on
+	 */
+	Subject getSubject(CredentialKey key, Login login) throws LoginException {
+		Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+		Subject subject = entry.subject;
+		long now = clock.getAsLong();
+
+		if(subject != null && now < entry.renewAt) {
+			return subject;
+		}
+		if(subject != null && now < entry.expiresAt) {
+			if(!entry.lock.tryLock()) {
+				// another thread is logging in, the current TGT is still good
+				return subject;
+			}
+		}
+		else {
+			entry.lock.lock();
+		}
+
+		try {
+			if(entry.subject != null && clock.getAsLong() < entry.renewAt) {
+				return entry.subject;
+			}
+
+			try {
+				Subject fresh = login.login();
+				entry.update(fresh, clock.getAsLong());
+				logger.debug("Logged in " + key + ", renewing at " + entry.renewAt);
+				return fresh;
+			}
+			catch(LoginException e) {
+				if(entry.subject != null && clock.getAsLong() < entry.expiresAt) {
+					logger.warn("Could not renew the login of " + key + ", keeping the current one", e);
+					return entry.subject;
+				}
+				throw e;
+			}
+		}
+		finally {
+			entry.lock.unlock();
+		}
+	}
+
+	/**
+	 * Forgets the Subject of {@code key}, e.g. after the server rejected its tickets.
+	 *
+	 * @param key
+	 * 			the credentials
+	 */
+	void invalidate(CredentialKey key) {
+		entries.remove(key);
+	}
+
+	/*
+	 * A Subject and when to renew it; written under lock, read without
+	 */
+	private static final class Entry {
+		final ReentrantLock lock = new ReentrantLock();
+		volatile Subject subject;
+		volatile long renewAt;
+		volatile long expiresAt;
+
+		void update(Subject fresh, long now) {
+			long start = now;
+			long end = now + DEFAULT_LIFETIME;
+
+			KerberosTicket tgt = findTgt(fresh);
+			if(tgt != null && tgt.getEndTime() != null) {
+				Date startTime = tgt.getStartTime() != null ? tgt.getStartTime() : tgt.getAuthTime();
+				start = startTime != null ? Math.min(startTime.getTime(), now) : now;
+				end = tgt.getEndTime().getTime();
+			}
+
+			expiresAt = end;
+			renewAt = start + (long) ((end - start) * TokenHolder.REFRESH_FRACTION);
+			subject = fresh;
+		}
+	}
+
+	static KerberosTicket findTgt(Subject subject) {
+		for(KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+			if(ticket.getServer() != null && ticket.getServer().getName().startsWith("krbtgt/")) {
+				return ticket;
+			}
+		}
+		return null;
+	}
+}
@@ -1,6 +1,7 @@
 package org.apache.hadoop.fs.http.client.impl;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -8,19 +9,49 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.MessageFormat;
-import java.util.Date;
-
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.hadoop.fs.http.client.AppendOptions;
+import org.apache.hadoop.fs.http.client.ContentSummary;
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.DirectoryListing;
+import org.apache.hadoop.fs.http.client.FileChecksum;
+import org.apache.hadoop.fs.http.client.FileStatus;
+import org.apache.hadoop.fs.http.client.FileStatusBatch;
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.OpenOptions;
+import org.apache.hadoop.fs.http.client.PagedFileStatusIterator;
+import org.apache.hadoop.fs.http.client.SeekableWebHDFSInputStream;
+import org.apache.hadoop.fs.http.client.SetOwnerOptions;
+import org.apache.hadoop.fs.http.client.SetPermissionOptions;
+import org.apache.hadoop.fs.http.client.SetReplicationOptions;
+import org.apache.hadoop.fs.http.client.SetTimesOptions;
 import org.apache.hadoop.fs.http.client.WebHDFSConnection;
 import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
 import org.apache.hadoop.fs.http.client.WebHDFSResponse;
-import org.apache.hadoop.fs.http.client.util.URLUtil;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PoolStats;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder.Op;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils.Decoder;
+import org.apache.hadoop.fs.http.client.util.Streams;
 import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+
 /**
  * 
 ===== HTTP GET <br/>
@@ -52,31 +83,63 @@ APPEND (see FileSystem.append)
 DELETE (see FileSystem.delete)
 
  */
-public class KerberosWebHDFSConnection implements WebHDFSConnection {
+public class KerberosWebHDFSConnection implements WebHDFSConnection, TokenSource {
 
 	protected static final Logger logger = LoggerFactory.getLogger(KerberosWebHDFSConnection.class);
 
+	private static final int COPY_BUFFER_SIZE = 12288; // 8K=8192 12K=12288 64K=65536
+
 	private String httpfsUrl = WebHDFSConnectionFactory.DEFAULT_PROTOCOL 
 			+ WebHDFSConnectionFactory.DEFAULT_HOST + ":" + WebHDFSConnectionFactory.DEFAULT_PORT;
 	private String principal = WebHDFSConnectionFactory.DEFAULT_USERNAME;
 	private String password = WebHDFSConnectionFactory.DEFAULT_PASSWORD;
 
-	private Token token = new AuthenticatedURL.Token();
-	private AuthenticatedURL authenticatedURL = new AuthenticatedURL(new KerberosAuthenticator2(principal, password));
+	private TokenHolder tokens;
+	private AuthenticatedURL authenticatedURL;
+	private HttpTransport transport;
+	private RequestUrlBuilder urls;
 
 	public KerberosWebHDFSConnection(String httpfsUrl, String principal, String password) {
+		this(httpfsUrl, principal, password, new PooledHttpTransport());
+	}
+
+	public KerberosWebHDFSConnection(String httpfsUrl, String principal, String password, HttpTransport transport) {
 		this.httpfsUrl = httpfsUrl;
+		this.urls = new RequestUrlBuilder(httpfsUrl);
 		this.principal = principal;
 		this.password = password;
-		this.authenticatedURL = new AuthenticatedURL(new KerberosAuthenticator2(principal, password));
+		this.transport = transport;
+		resetAuthentication();
+	}
+
+	/*
+	 * Authenticates as the current principal at the current URL; the setters call it again
+	 */
+	private void resetAuthentication() {
+		final String url = httpfsUrl;
+		final String princ = principal;
+		final String passwd = password;
+		this.authenticatedURL = new AuthenticatedURL(new KerberosAuthenticator2(princ, passwd));
+		this.tokens = tokenHolder(url, princ, passwd);
+	}
+
+	/**
+	 * @return the tokens of {@code principal} at {@code httpfsUrl}, shared by all connections of
+	 * 			this principal to this endpoint; a client that only needs the token, such as an
+	 * 			asynchronous connection, can use them without a connection of its own
+	 */
+	static TokenHolder tokenHolder(final String httpfsUrl, final String principal, final String password) {
+		return TokenHolder.shared(CredentialKey.forEndpoint(httpfsUrl, principal, password),
+				() -> generateToken(httpfsUrl, principal, password));
 	}
 
-	public static synchronized Token generateToken(String srvUrl, String princ, String passwd) {
+	public static Token generateToken(String srvUrl, String princ, String passwd) {
 		AuthenticatedURL.Token newToken = new AuthenticatedURL.Token();
 		try {
 
 			HttpURLConnection conn = new AuthenticatedURL(new KerberosAuthenticator2(princ, passwd)).openConnection(
-					new URL(new URL(srvUrl), "/webhdfs/v1/?op=GETHOMEDIRECTORY"), newToken);
+					new RequestUrlBuilder(srvUrl).start(Op.GETHOMEDIRECTORY, null).toURL(), newToken);
+			Timeouts.configure(conn);
 
 			conn.connect();
 
@@ -95,13 +158,12 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	}
 
 	protected static long copy(InputStream input, OutputStream result) throws IOException {
-		byte[] buffer = new byte[12288]; // 8K=8192 12K=12288 64K=
+		byte[] buffer = new byte[COPY_BUFFER_SIZE];
 		long count = 0L;
 		int n;
 		while (-1 != (n = input.read(buffer))) {
 			result.write(buffer, 0, n);
 			count += n;
-			result.flush();
 		}
 		result.flush();
 		return count;
@@ -132,19 +194,48 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 		return new WebHDFSResponse(conn.getResponseCode(), conn.getResponseMessage(), conn.getContentType(), sb.toString());		
 	}
 
-	public void ensureValidToken() {
-		if (!token.isSet()) { // if token is null
-			token = generateToken(httpfsUrl, principal, password);
-		} else {
-			long currentTime = new Date().getTime();
-			long tokenExpired = Long.parseLong(token.toString().split("&")[3].split("=")[1]);
-			logger.trace("[currentTime vs. tokenExpired] " + currentTime + " " + tokenExpired);
-
-			if (currentTime > tokenExpired) { // if the token is expired
-				token = generateToken(httpfsUrl, principal, password);
+	/*
+	 * The response with its body, or with the error body, e.g. a RemoteException, if it failed
+	 */
+	private static WebHDFSResponse response(HttpURLConnection conn) throws IOException {
+		String data;
+		try {
+			data = Streams.toString(conn.getInputStream());
+		}
+		catch (IOException e) {
+			if (!hasResponse(conn)) {
+				throw e;
 			}
+			data = conn.getErrorStream() == null ? "" : Streams.toString(conn.getErrorStream());
 		}
+		return new WebHDFSResponse(conn.getResponseCode(), conn.getResponseMessage(), conn.getContentType(), data);
+	}
+
+	private static boolean hasResponse(HttpURLConnection conn) {
+		try {
+			return conn.getResponseCode() > 0;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
 
+	/**
+	 * Makes sure a token is set and has not expired.
+	 * <p>
+	 * Safe to call from many threads, see {@link TokenHolder}: a token nearing its expiry is
+	 * renewed in the background, so this only blocks when there is no valid token at all.
+	 */
+	public void ensureValidToken() {
+		tokens.get();
+	}
+
+	public Token getValidToken() {
+		return tokens.get();
+	}
+
+	public Token getTokenIfValid() {
+		return tokens.getIfValid();
 	}
 
 	/*
@@ -163,15 +254,10 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getHomeDirectory() throws IOException, AuthenticationException {
-		ensureValidToken();
-
-		HttpURLConnection conn = authenticatedURL.openConnection(new URL(new URL(httpfsUrl),
-				"/webhdfs/v1/?op=GETHOMEDIRECTORY"), token);
-		conn.connect();
+		Token token = tokens.get();
 
-		WebHDFSResponse resp = result(conn, true);
-		conn.disconnect();
-		return resp;
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, urls.start(Op.GETHOMEDIRECTORY, null).toURL(), token);
+		return execute(conn);
 	}
 
 	/**
@@ -187,22 +273,112 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException {
-		ensureValidToken();
+		return open(path, 0L, UNKNOWN_LENGTH, os);
+	}
+
+	public WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException,
+			AuthenticationException {
+		return open(path, os, new OpenOptions(offset, length));
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new OpenOptions() : options).toArguments();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=OPEN", URLUtil.encodePath(path))),
-				token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.OPEN, path).append(args).toURL(), token);
 		conn.setRequestMethod("GET");
 		conn.setRequestProperty("Content-Type", "application/octet-stream");
-		conn.connect();
-		InputStream is = conn.getInputStream();
-		copy(is, os);
-		is.close();
-		os.close();
-		WebHDFSResponse resp = result(conn, false);
-		conn.disconnect();
 
-		return resp;
+		try {
+			conn.connect();
+			failOnError(conn, "OPEN", path);
+			InputStream is = conn.getInputStream();
+			copy(is, os);
+			is.close();
+			os.close();
+			return result(conn, false);
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Opens a seekable stream over the file, see {@link SeekableWebHDFSInputStream}.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @return the stream, positioned at the start of the file
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public SeekableWebHDFSInputStream openStream(final String path) throws IOException, AuthenticationException {
+		long fileLength = fileLength(path);
+		return new SeekableWebHDFSInputStream((offset, length) -> openInputStream(path, offset, length), fileLength);
+	}
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Downloads the file into {@code localFile} through pooled direct buffers.
+	 *
+	 * @param path The HDFS path to the file to download
+	 * @param localFile The local file to write to, created if missing
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long download(String path, Path localFile) throws IOException, AuthenticationException {
+		return download(path, localFile, false);
+	}
+
+	public long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException {
+		long expected = preallocate ? fileLength(path) : UNKNOWN_LENGTH;
+
+		try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (expected > 0) {
+				// Java has no portable fallocate, writing the last byte sets the final length
+				channel.write(ByteBuffer.allocate(1), expected - 1);
+			}
+
+			long count = Streams.copy(openInputStream(path, 0L, UNKNOWN_LENGTH), channel, 0L);
+
+			if (channel.size() > count) {
+				channel.truncate(count);
+			}
+			return count;
+		}
+	}
+
+	private long fileLength(String path) throws IOException, AuthenticationException {
+		return getFileStatusTyped(path).getLength();
+	}
+
+	/*
+	 * The body of a ranged OPEN; closing it releases the connection
+	 */
+	private InputStream openInputStream(String path, long offset, long length) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.OPEN, path).range(offset, length).toURL(), token);
+		conn.setRequestMethod("GET");
+		boolean opened = false;
+
+		try {
+			conn.connect();
+			failOnError(conn, "OPEN", path);
+			InputStream is = new ReleasingInputStream(conn.getInputStream(), conn, transport);
+			opened = true;
+			return is;
+		}
+		finally {
+			if (!opened) {
+				transport.release(conn);
+			}
+		}
 	}
 
 	/**
@@ -217,18 +393,13 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getContentSummary(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=GETCONTENTSUMMARY",
-						URLUtil.encodePath(path))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETCONTENTSUMMARY, path).toURL(), token);
 		conn.setRequestMethod("GET");
 		// conn.setRequestProperty("Content-Type", "application/octet-stream");
-		conn.connect();
-		WebHDFSResponse resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/**
@@ -243,17 +414,137 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse listStatus(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=LISTSTATUS",
-						URLUtil.encodePath(path))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS, path).toURL(), token);
 		conn.setRequestMethod("GET");
-		conn.connect();
-		WebHDFSResponse resp = result(conn, true);
-		conn.disconnect();
+		return execute(conn);
+	}
 
-		return resp;
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Parses the entries incrementally from the response body.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries, which must be read to the end or closed to release the connection
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		boolean opened = false;
+
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code == 404) {
+				throw new FileNotFoundException(path);
+			}
+
+			// an error body holds a RemoteException, which the iterator reports
+			InputStream body = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+			if (body == null) {
+				throw ResponseUtil.toException("LISTSTATUS", path, code, conn.getResponseMessage(), "");
+			}
+
+			FileStatusIterator entries = new FileStatusIterator(new ReleasingInputStream(body, conn, transport));
+			opened = true;
+			return entries;
+		}
+		finally {
+			if (!opened) {
+				transport.release(conn);
+			}
+		}
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * 
+	 * curl -i  "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=LISTSTATUS_BATCH&startAfter=<CHILD>"
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param startAfter The last path suffix of the previous page, or null for the first page
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS_BATCH, path).argument("startAfter", startAfter).toURL(), token);
+		conn.setRequestMethod("GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * Pages through the directory, prefetching the next page while the current one is consumed,
+	 * and falls back to {@link #listStatusIterator(String)} on servers without LISTSTATUS_BATCH.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator listStatusBatchIterator(final String path) throws IOException, AuthenticationException {
+		return new PagedFileStatusIterator(startAfter -> listingPage(path, startAfter), () -> listStatusIterator(path));
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * Pages through the directory, prefetching the next page on {@code prefetch}, or fetching each
+	 * page when it is reached if that is null.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param prefetch The executor fetching the next page, or null
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator listStatusBatchIterator(final String path, Executor prefetch)
+			throws IOException, AuthenticationException {
+		return new PagedFileStatusIterator(startAfter -> listingPage(path, startAfter), () -> listStatusIterator(path), prefetch);
+	}
+
+	/*
+	 * One LISTSTATUS_BATCH page, or null if the server does not know the op
+	 */
+	private DirectoryListing listingPage(String path, String startAfter) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS_BATCH, path).argument("startAfter", startAfter).toURL(), token);
+		conn.setRequestMethod("GET");
+
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code == 404) {
+				throw new FileNotFoundException(path);
+			}
+			if (code >= 400) {
+				String error = conn.getErrorStream() == null ? "" : Streams.toString(conn.getErrorStream());
+				// e.g. HttpFS: Invalid value for webhdfs parameter "op": ... LISTSTATUS_BATCH
+				if (code == 400 && error.contains("LISTSTATUS_BATCH")) {
+					return null;
+				}
+				throw ResponseUtil.toException("LISTSTATUS_BATCH", path, code, conn.getResponseMessage(), error);
+			}
+			return DirectoryListing.read(conn.getInputStream());
+		}
+		finally {
+			transport.release(conn);
+		}
 	}
 
 	/**
@@ -268,17 +559,12 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getFileStatus(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=GETFILESTATUS",
-						URLUtil.encodePath(path))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETFILESTATUS, path).toURL(), token);
 		conn.setRequestMethod("GET");
-		conn.connect();
-		WebHDFSResponse resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/**
@@ -293,19 +579,13 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getFileCheckSum(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=GETFILECHECKSUM",
-						URLUtil.encodePath(path))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETFILECHECKSUM, path).toURL(), token);
 
 		conn.setRequestMethod("GET");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/*
@@ -330,50 +610,96 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 */
 	public WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException,
 			AuthenticationException {
+		return create(path, is, UNKNOWN_LENGTH, overwrite);
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException,
+			AuthenticationException {
+		return create(path, is, length, new CreateOptions(overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException,
+			AuthenticationException {
+		String arguments = (options == null ? new CreateOptions() : options).toArguments();
+		return create(path, arguments, length, os -> {
+			copy(is, os);
+			// Util.copyStream(is, os);
+			is.close();
+			os.close();
+		});
+	}
+
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Uploads {@code localFile} with a fixed {@code Content-Length}, reading it through pooled
+	 * direct buffers.
+	 *
+	 * @param localFile The local file to upload
+	 * @param path The HDFS path at which the file should be created
+	 * @param options The CREATE parameters, or null for the server defaults without overwriting
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException,
+			AuthenticationException {
+		String arguments = (options == null ? new CreateOptions() : options).toArguments();
+
+		try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+			long length = channel.size();
+			return create(path, arguments, length, os -> Streams.copy(channel, 0L, length, os));
+		}
+	}
+
+	private WebHDFSResponse create(String path, String arguments, long length, RequestBody body) throws IOException,
+			AuthenticationException {
 		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
 		String redirectUrl = null;
-		String arguments = overwrite ? "&overwrite=true" : "&overwrite=false";
-		URL end_url = new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=CREATE{1}",
-				URLUtil.encodePath(path), arguments));
+		URL end_url = urls.start(Op.CREATE, path).append(arguments).toURL();
 		logger.debug(end_url.toString());
-		HttpURLConnection conn = authenticatedURL.openConnection(end_url, token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, end_url, token);
 		conn.setRequestMethod("PUT");
 		conn.setInstanceFollowRedirects(false);
-		conn.connect();
-		logger.trace("Redirected to:" + conn.getHeaderField("Location"));
-		resp = result(conn, true);
-		if (conn.getResponseCode() == 307)
-			redirectUrl = conn.getHeaderField("Location");
-		conn.disconnect();
+		try {
+			conn.connect();
+			logger.trace("Redirected to:" + conn.getHeaderField("Location"));
+			resp = response(conn);
+			if (conn.getResponseCode() == 307)
+				redirectUrl = conn.getHeaderField("Location");
+		}
+		finally {
+			transport.release(conn);
+		}
 		if (redirectUrl != null)
 		{
-			conn = authenticatedURL.openConnection(new URL(redirectUrl), token);
+			conn = transport.openConnection(authenticatedURL, new URL(redirectUrl), token);
 			conn.setRequestMethod("PUT");
 			conn.setDoOutput(true);
 			conn.setDoInput(true);
 			conn.setUseCaches(false);
 			conn.setRequestProperty("Content-Type", "application/octet-stream");
-			// conn.setRequestProperty("Transfer-Encoding", "chunked");
-			final int _SIZE = is.available();
-			conn.setRequestProperty("Content-Length", "" + _SIZE);
-			conn.setFixedLengthStreamingMode(_SIZE);
-			conn.connect();
-			OutputStream os = conn.getOutputStream();
+			setStreamingMode(conn, length);
 			try
 			{
-				copy(is, os);
-				// Util.copyStream(is, os);
-				is.close();
-				os.close();
-				resp = result(conn, false);
+				conn.connect();
+				try {
+					body.writeTo(conn.getOutputStream());
+				}
+				catch (IOException e) {
+					// the DataNode may answer, e.g. with a 403, before it has read the whole body
+					if (!hasResponse(conn)) {
+						throw e;
+					}
+				}
+				resp = response(conn);
 			}
-			catch (IOException e)
+			finally
 			{
-				resp = new WebHDFSResponse(conn.getResponseCode(), conn.getResponseMessage(), null, null);
+				transport.release(conn);
 			}
-			conn.disconnect();
 		}
 
 		return resp;
@@ -392,17 +718,12 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse mkdirs(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
-		URL end_url = new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=MKDIRS",	URLUtil.encodePath(path)));
-		HttpURLConnection conn = authenticatedURL.openConnection(end_url, token);
+		URL end_url = urls.start(Op.MKDIRS, path).toURL();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, end_url, token);
 		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/**
@@ -420,18 +741,12 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 */
 	public WebHDFSResponse createSymLink(String srcPath, String destPath) throws IOException,
 			AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=CREATESYMLINK&destination={1}",
-						URLUtil.encodePath(srcPath), URLUtil.encodePath(destPath))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.CREATESYMLINK, srcPath).pathArgument("destination", destPath).toURL(), token);
 		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/**
@@ -449,18 +764,12 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 */
 	public WebHDFSResponse rename(String srcPath, String destPath) throws IOException,
 			AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=RENAME&destination={1}",
-						URLUtil.encodePath(srcPath), URLUtil.encodePath(destPath))), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.RENAME, srcPath).pathArgument("destination", destPath).toURL(), token);
 		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
-
-		return resp;
+		return execute(conn);
 	}
 
 	/**
@@ -469,8 +778,6 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETPERMISSION
 	 * [&permission=<OCTAL>]"
 	 *
-	 * TODO: Does this make any sense without new permissions?
-	 *
 	 * @param path The HDFS path to the object upon which permissions should be set
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -478,18 +785,17 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		return setPermission(path, null);
+	}
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=SETPERMISSION",
-						URLUtil.encodePath(path))), token);
-		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
+	public WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetPermissionOptions() : options).toArguments();
+		Token token = tokens.get();
 
-		return resp;
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.SETPERMISSION, path).append(args).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return execute(conn);
 	}
 
 	/**
@@ -498,8 +804,6 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETOWNER
 	 * [&owner=<USER>][&group=<GROUP>]"
 	 *
-	 * TODO: Does this make any sense without a new owner?
-	 *
 	 * @param path The HDFS path to the object of which the owner should be set
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -507,18 +811,17 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		return setOwner(path, null);
+	}
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=SETOWNER",
-						URLUtil.encodePath(path))), token);
-		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
+	public WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetOwnerOptions() : options).toArguments();
+		Token token = tokens.get();
 
-		return resp;
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.SETOWNER, path).append(args).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return execute(conn);
 	}
 
 	/**
@@ -527,8 +830,6 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETREPLICATION
 	 * [&replication=<SHORT>]"
 	 *
-	 * TODO: Does this make any sense without a replication factor?
-	 *
 	 * @param path The HDFS path to the object for which replication should be set.
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -536,18 +837,17 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		return setReplication(path, null);
+	}
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=SETREPLICATION",
-						URLUtil.encodePath(path))), token);
-		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
+	public WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetReplicationOptions() : options).toArguments();
+		Token token = tokens.get();
 
-		return resp;
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.SETREPLICATION, path).append(args).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return execute(conn);
 	}
 
 	/**
@@ -556,8 +856,6 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETTIMES
 	 * [&modificationtime=<TIME>][&accesstime=<TIME>]"
 	 *
-	 * TODO: Does this make any sense without the times?
-	 *
 	 * @param path The HDFS path to the object for which to set the times
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -565,18 +863,17 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		return setTimes(path, null);
+	}
 
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=SETTIMES",
-						URLUtil.encodePath(path))), token);
-		conn.setRequestMethod("PUT");
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
+	public WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetTimesOptions() : options).toArguments();
+		Token token = tokens.get();
 
-		return resp;
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.SETTIMES, path).append(args).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return execute(conn);
 	}
 
 	/*
@@ -597,40 +894,63 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 */
 	public WebHDFSResponse append(String path, InputStream is) throws IOException,
 			AuthenticationException {
+		return append(path, is, UNKNOWN_LENGTH);
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length) throws IOException,
+			AuthenticationException {
+		return append(path, is, length, null);
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException,
+			AuthenticationException {
 		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
 		String redirectUrl = null;
-		HttpURLConnection conn = authenticatedURL.openConnection(
-				new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=APPEND", path)), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.APPEND, path).append(options == null ? "" : options.toArguments()).toURL(), token);
 		conn.setRequestMethod("POST");
 		conn.setInstanceFollowRedirects(false);
-		conn.connect();
-		logger.trace("Redirected to:" + conn.getHeaderField("Location"));
-		resp = result(conn, true);
-		if (conn.getResponseCode() == 307)
-			redirectUrl = conn.getHeaderField("Location");
-		conn.disconnect();
+		try {
+			conn.connect();
+			logger.trace("Redirected to:" + conn.getHeaderField("Location"));
+			resp = response(conn);
+			if (conn.getResponseCode() == 307)
+				redirectUrl = conn.getHeaderField("Location");
+		}
+		finally {
+			transport.release(conn);
+		}
 
 		if (redirectUrl != null) {
-			conn = authenticatedURL.openConnection(new URL(redirectUrl), token);
+			conn = transport.openConnection(authenticatedURL, new URL(redirectUrl), token);
 			conn.setRequestMethod("POST");
 			conn.setDoOutput(true);
 			conn.setDoInput(true);
 			conn.setUseCaches(false);
 			conn.setRequestProperty("Content-Type", "application/octet-stream");
-			// conn.setRequestProperty("Transfer-Encoding", "chunked");
-			final int _SIZE = is.available();
-			conn.setRequestProperty("Content-Length", "" + _SIZE);
-			conn.setFixedLengthStreamingMode(_SIZE);
-			conn.connect();
-			OutputStream os = conn.getOutputStream();
-			copy(is, os);
-			// Util.copyStream(is, os);
-			is.close();
-			os.close();
-			resp = result(conn, true);
-			conn.disconnect();
+			setStreamingMode(conn, length);
+			try {
+				conn.connect();
+				try {
+					OutputStream os = conn.getOutputStream();
+					copy(is, os);
+					// Util.copyStream(is, os);
+					is.close();
+					os.close();
+				}
+				catch (IOException e) {
+					// the DataNode may answer, e.g. with a 503, before it has read the whole body
+					if (!hasResponse(conn)) {
+						throw e;
+					}
+				}
+				resp = response(conn);
+			}
+			finally {
+				transport.release(conn);
+			}
 		}
 
 		return resp;
@@ -654,20 +974,213 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse delete(String path) throws IOException, AuthenticationException {
-		WebHDFSResponse resp;
-		ensureValidToken();
+		Token token = tokens.get();
 
-		HttpURLConnection conn = authenticatedURL
-				.openConnection(
-						new URL(new URL(httpfsUrl), MessageFormat.format("/webhdfs/v1/{0}?op=DELETE",
-								URLUtil.encodePath(path))), token);
+		HttpURLConnection conn = transport
+				.openConnection(authenticatedURL,
+						urls.start(Op.DELETE, path).toURL(), token);
 		conn.setRequestMethod("DELETE");
 		conn.setInstanceFollowRedirects(false);
-		conn.connect();
-		resp = result(conn, true);
-		conn.disconnect();
+		return execute(conn);
+	}
 
-		return resp;
+	/*
+	 * ========================================================================
+	 * TYPED
+	 * ========================================================================
+	 */
+	/**
+	 * <b>GETHOMEDIRECTORY</b>
+	 * <p>
+	 * Decodes the path straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getHomeDirectoryTyped
+	 */
+	public String getHomeDirectoryTyped() throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, urls.start(Op.GETHOMEDIRECTORY, null).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETHOMEDIRECTORY", "/", "Path", JsonParser::getValueAsString);
+	}
+
+	/**
+	 * <b>GETFILESTATUS</b>
+	 * <p>
+	 * Decodes the status straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getFileStatusTyped
+	 */
+	public FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETFILESTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		FileStatus status = decode(conn, "GETFILESTATUS", path, "FileStatus", FileStatus::read);
+		status.setPath(path);
+		return status;
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Decodes the entries straight from the response body.
+	 *
+	 * @see WebHDFSConnection#listStatusTyped
+	 */
+	public List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "LISTSTATUS", path, "FileStatuses", SerializationUtils::readFileStatuses);
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Decodes the entries straight from the response body into the columns of the batch.
+	 *
+	 * @see WebHDFSConnection#listStatusColumnar
+	 */
+	public FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "LISTSTATUS", path, "FileStatuses", FileStatusBatch::read);
+	}
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>
+	 * <p>
+	 * Decodes the summary straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getContentSummaryTyped
+	 */
+	public ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETCONTENTSUMMARY, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETCONTENTSUMMARY", path, "ContentSummary", ContentSummary::read);
+	}
+
+	/**
+	 * <b>GETFILECHECKSUM</b>
+	 * <p>
+	 * Decodes the checksum straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getFileChecksumTyped
+	 */
+	public FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETFILECHECKSUM, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETFILECHECKSUM", path, "FileChecksum", FileChecksum::read);
+	}
+
+	/**
+	 * <b>MKDIRS</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#mkdirsTyped
+	 */
+	public boolean mkdirsTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.MKDIRS, path).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "MKDIRS", path, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>RENAME</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#renameTyped
+	 */
+	public boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.RENAME, srcPath).pathArgument("destination", destPath).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "RENAME", srcPath, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>DELETE</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#deleteTyped
+	 */
+	public boolean deleteTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.DELETE, path).toURL(), token);
+		conn.setRequestMethod("DELETE");
+		conn.setInstanceFollowRedirects(false);
+		return decode(conn, "DELETE", path, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>GETDELEGATIONTOKEN</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/?op=GETDELEGATIONTOKEN&renewer=<USER>"
+	 *
+	 * @see WebHDFSConnection#getDelegationToken
+	 */
+	public String getDelegationToken(String renewer) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.GETDELEGATIONTOKEN, null).argument("renewer", renewer).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETDELEGATIONTOKEN", "/", "Token", SerializationUtils::readToken);
+	}
+
+	/**
+	 * <b>RENEWDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=RENEWDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @see WebHDFSConnection#renewDelegationToken
+	 */
+	public long renewDelegationToken(String delegationToken) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.RENEWDELEGATIONTOKEN, null).argument("token", delegationToken).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "RENEWDELEGATIONTOKEN", "/", "long", SerializationUtils::readLong);
+	}
+
+	/**
+	 * <b>CANCELDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=CANCELDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @see WebHDFSConnection#cancelDelegationToken
+	 */
+	public void cancelDelegationToken(String delegationToken) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				urls.start(Op.CANCELDELEGATIONTOKEN, null).argument("token", delegationToken).toURL(), token);
+		conn.setRequestMethod("PUT");
+		complete(conn, "CANCELDELEGATIONTOKEN", "/");
 	}
 
 	// Begin Getter & Setter
@@ -677,6 +1190,8 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 
 	public void setHttpfsUrl(String httpfsUrl) {
 		this.httpfsUrl = httpfsUrl;
+		this.urls = new RequestUrlBuilder(httpfsUrl);
+		resetAuthentication();
 	}
 
 	public String getPrincipal() {
@@ -685,6 +1200,7 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 
 	public void setPrincipal(String principal) {
 		this.principal = principal;
+		resetAuthentication();
 	}
 
 	public String getPassword() {
@@ -693,7 +1209,90 @@ public class KerberosWebHDFSConnection implements WebHDFSConnection {
 
 	public void setPassword(String password) {
 		this.password = password;
+		resetAuthentication();
+	}
+
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
 	}
 
 	// End Getter & Setter
+
+	/**
+	 * @return a snapshot of the connection usage of the underlying {@link HttpTransport}
+	 */
+	public PoolStats getPoolStats() {
+		return transport.getStats();
+	}
+
+	protected WebHDFSResponse execute(HttpURLConnection conn) throws IOException {
+		try {
+			conn.connect();
+			return response(conn);
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/*
+	 * Runs the request and decodes the property named wrapper straight from the response body
+	 */
+	private <T> T decode(HttpURLConnection conn, String op, String path, String wrapper, Decoder<T> decoder) throws IOException {
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code >= 400) {
+				throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+			}
+			return SerializationUtils.decode(conn.getInputStream(), wrapper, decoder);
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/*
+	 * Throws the error of a failed request, e.g. the RemoteException in its body, which
+	 * getInputStream() would drop
+	 */
+	private static void failOnError(HttpURLConnection conn, String op, String path) throws IOException {
+		int code = conn.getResponseCode();
+		if (code >= 400) {
+			throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+		}
+	}
+
+	/*
+	 * Runs a request whose response has no body
+	 */
+	private void complete(HttpURLConnection conn, String op, String path) throws IOException {
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code >= 400) {
+				throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+			}
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/*
+	 * Streams the request body straight to the socket: fixed-length when the size is known,
+	 * chunked otherwise, so HttpURLConnection never buffers the whole body in memory.
+	 */
+	private static void setStreamingMode(HttpURLConnection conn, long length) {
+		if (length >= 0) {
+			conn.setFixedLengthStreamingMode(length);
+		}
+		else {
+			conn.setChunkedStreamingMode(COPY_BUFFER_SIZE);
+		}
+	}
 }
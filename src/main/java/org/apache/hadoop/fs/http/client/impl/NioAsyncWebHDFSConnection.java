@@ -0,0 +1,500 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSResponse;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder.Op;
+import org.apache.hadoop.fs.http.client.util.URLUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AsyncWebHDFSConnection} backed by the JDK's non-blocking {@link HttpClient}.
+ * <p>
+ * All requests share one selector thread, so hundreds of requests can be in flight without
+ * a thread per request. Authentication piggybacks on a blocking connection: its token is
+ * sent as the {@code hadoop.auth} cookie, and for pseudo authentication {@code user.name}
+ * is added to every request. Each call resolves its authentication once and reuses it for the
+ * redirect. A valid token is used right away; only a call that has to wait for a token to be
+ * obtained, or for an expired one to be refreshed, waits for it on the executor, so that blocks
+ * neither the calling thread nor the selector thread.
+ * <p>
+ * Connecting is bounded by the connect timeout, and each request by the read timeout, counted
+ * until its response headers arrive; a request that times out completes exceptionally with an
+ * {@link java.net.http.HttpTimeoutException}.
+ */
+class NioAsyncWebHDFSConnection implements AsyncWebHDFSConnection {
+
+	protected static final Logger logger = LoggerFactory.getLogger(NioAsyncWebHDFSConnection.class);
+
+	/*
+	 * Requests authenticated by a query argument alone send no cookie
+	 */
+	private static final TokenSource NO_TOKEN = new TokenSource() {
+
+		public Token getValidToken() {
+			return null;
+		}
+
+		public Token getTokenIfValid() {
+			return new AuthenticatedURL.Token();
+		}
+	};
+
+	private static final ExecutorService AUTH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "webhdfs-async-auth");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final URI base;
+	private final RequestUrlBuilder urls;
+	private final Supplier<String> authArgument;
+	private final Supplier<String> presentAuthArgument;
+	private final TokenSource tokenSource;
+	private final Closeable resources;
+	private final Executor authExecutor;
+	private final HttpClient client;
+	private final Duration readTimeout;
+
+	/**
+	 * Creates a new NioAsyncWebHDFSConnection instance.
+	 *
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param userName
+	 * 			the value of the {@code user.name} parameter, or null to omit it
+	 * @param tokenSource
+	 * 			supplies the authentication token
+	 * @param executor
+	 * 			the executor that resolves the authentication and completes the futures, or null for
+	 * 			the defaults
+	 */
+	NioAsyncWebHDFSConnection(String httpfsUrl, String userName, TokenSource tokenSource, Executor executor) {
+		this(httpfsUrl, userName, tokenSource, executor, Timeouts.DEFAULT_CONNECT_TIMEOUT, Timeouts.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new NioAsyncWebHDFSConnection instance.
+	 *
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param userName
+	 * 			the value of the {@code user.name} parameter, or null to omit it
+	 * @param tokenSource
+	 * 			supplies the authentication token
+	 * @param executor
+	 * 			the executor that resolves the authentication and completes the futures, or null for
+	 * 			the defaults
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for the response headers of each request, 0 for no limit
+	 */
+	NioAsyncWebHDFSConnection(String httpfsUrl, String userName, TokenSource tokenSource, Executor executor,
+			int connectTimeout, int readTimeout) {
+		this(httpfsUrl, () -> URLUtil.argument("user.name", userName), () -> URLUtil.argument("user.name", userName),
+				tokenSource, null, executor, connectTimeout, readTimeout);
+	}
+
+	/**
+	 * @param authArgument
+	 * 			supplies the query argument that authenticates each request, e.g.
+	 * 			{@code &delegation=...}, or an empty String for none; an
+	 * 			{@link UncheckedIOException} it throws completes the future exceptionally
+	 * @param presentAuthArgument
+	 * 			supplies the same argument without blocking, or null if {@code authArgument} would
+	 * 			block
+	 * @param resources
+	 * 			released by {@link #close()}, or null for none
+	 */
+	private NioAsyncWebHDFSConnection(String httpfsUrl, Supplier<String> authArgument,
+			Supplier<String> presentAuthArgument, TokenSource tokenSource, Closeable resources, Executor executor,
+			int connectTimeout, int readTimeout) {
+		if(connectTimeout < 0 || readTimeout < 0) {
+			throw new IllegalArgumentException("Timeouts must not be negative");
+		}
+		this.base = URI.create(httpfsUrl);
+		this.urls = new RequestUrlBuilder(httpfsUrl);
+		this.authArgument = authArgument;
+		this.presentAuthArgument = presentAuthArgument;
+		this.tokenSource = tokenSource;
+		this.resources = resources;
+		this.authExecutor = executor != null ? executor : AUTH_EXECUTOR;
+		this.readTimeout = readTimeout == 0 ? null : Duration.ofMillis(readTimeout);
+
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NEVER);
+		if(connectTimeout > 0) {
+			builder.connectTimeout(Duration.ofMillis(connectTimeout));
+		}
+		if(executor != null) {
+			builder.executor(executor);
+		}
+		this.client = builder.build();
+	}
+
+	/**
+	 * Creates a connection that authenticates every request with a delegation token. Closing it
+	 * closes the renewer, which cancels the token if it obtained it, then the issuer.
+	 *
+	 * @param httpfsUrl
+	 * 			the WebHDFS/HttpFS base URL
+	 * @param renewer
+	 * 			supplies the token
+	 * @param issuer
+	 * 			the connection the renewer obtains the token through, or null for a token obtained
+	 * 			elsewhere
+	 * @param executor
+	 * 			the executor that resolves the authentication and completes the futures, or null for
+	 * 			the defaults
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for the response headers of each request, 0 for no limit
+	 * @return the new connection
+	 */
+	static NioAsyncWebHDFSConnection withDelegationToken(String httpfsUrl, final DelegationTokenRenewer renewer,
+			final WebHDFSConnection issuer, Executor executor, int connectTimeout, int readTimeout) {
+		return new NioAsyncWebHDFSConnection(httpfsUrl, () -> {
+			try {
+				return URLUtil.argument("delegation", renewer.get());
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, () -> {
+			String token = renewer.getIfPresent();
+			return token == null ? null : URLUtil.argument("delegation", token);
+		}, NO_TOKEN, () -> {
+			try {
+				renewer.close();
+			}
+			finally {
+				if(issuer != null) {
+					issuer.close();
+				}
+			}
+		}, executor, connectTimeout, readTimeout);
+	}
+
+	/*
+	 * ========================================================================
+	 * GET
+	 * ========================================================================
+	 */
+	public CompletableFuture<WebHDFSResponse> getHomeDirectory() {
+		return execute("GET", spec(Op.GETHOMEDIRECTORY, null).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> open(String path, OutputStream os) {
+		return open(path, 0L, WebHDFSConnection.UNKNOWN_LENGTH, os);
+	}
+
+	public CompletableFuture<WebHDFSResponse> open(final String path, long offset, long length, final OutputStream os) {
+		try {
+			final String spec = spec(Op.OPEN, path).range(offset, length).toString();
+			final BodyHandler<String> handler = responseInfo -> {
+				if(responseInfo.statusCode() / 100 != 2) {
+					return BodySubscribers.ofString(StandardCharsets.UTF_8);
+				}
+				return BodySubscribers.mapping(BodySubscribers.ofByteArrayConsumer(chunk -> write(os, chunk)), v -> "");
+			};
+
+			// OPEN through a NameNode is redirected to a DataNode
+			return credentials().thenCompose(credentials -> {
+				HttpRequest request = request(uri(spec + credentials.argument), credentials).GET().build();
+				return client.sendAsync(request, handler).thenCompose(response -> {
+					Optional<String> location = redirectLocation(response);
+					if(!location.isPresent()) {
+						return CompletableFuture.completedFuture(response);
+					}
+					return client.sendAsync(request(URI.create(location.get()), credentials).GET().build(), handler);
+				});
+			}).thenApply(NioAsyncWebHDFSConnection::toWebHDFSResponse);
+		}
+		catch(RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	public CompletableFuture<WebHDFSResponse> getContentSummary(String path) {
+		return execute("GET", spec(Op.GETCONTENTSUMMARY, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> listStatus(String path) {
+		return execute("GET", spec(Op.LISTSTATUS, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> getFileStatus(String path) {
+		return execute("GET", spec(Op.GETFILESTATUS, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> getFileCheckSum(String path) {
+		return execute("GET", spec(Op.GETFILECHECKSUM, path).toString());
+	}
+
+	/*
+	 * ========================================================================
+	 * PUT
+	 * ========================================================================
+	 */
+	public CompletableFuture<WebHDFSResponse> create(String path, InputStream is, boolean overwrite) {
+		return create(path, is, WebHDFSConnection.UNKNOWN_LENGTH, overwrite);
+	}
+
+	public CompletableFuture<WebHDFSResponse> create(String path, InputStream is, long length, boolean overwrite) {
+		return upload("PUT", spec(Op.CREATE, path).append(overwrite ? "&overwrite=true" : "&overwrite=false").toString(), is, length);
+	}
+
+	public CompletableFuture<WebHDFSResponse> mkdirs(String path) {
+		return execute("PUT", spec(Op.MKDIRS, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> createSymLink(String srcPath, String destPath) {
+		return execute("PUT", spec(Op.CREATESYMLINK, srcPath).pathArgument("destination", destPath).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> rename(String srcPath, String destPath) {
+		return execute("PUT", spec(Op.RENAME, srcPath).pathArgument("destination", destPath).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> setPermission(String path) {
+		return execute("PUT", spec(Op.SETPERMISSION, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> setOwner(String path) {
+		return execute("PUT", spec(Op.SETOWNER, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> setReplication(String path) {
+		return execute("PUT", spec(Op.SETREPLICATION, path).toString());
+	}
+
+	public CompletableFuture<WebHDFSResponse> setTimes(String path) {
+		return execute("PUT", spec(Op.SETTIMES, path).toString());
+	}
+
+	/*
+	 * ========================================================================
+	 * POST
+	 * ========================================================================
+	 */
+	public CompletableFuture<WebHDFSResponse> append(String path, InputStream is) {
+		return append(path, is, WebHDFSConnection.UNKNOWN_LENGTH);
+	}
+
+	public CompletableFuture<WebHDFSResponse> append(String path, InputStream is, long length) {
+		return upload("POST", spec(Op.APPEND, path).toString(), is, length);
+	}
+
+	/*
+	 * ========================================================================
+	 * DELETE
+	 * ========================================================================
+	 */
+	public CompletableFuture<WebHDFSResponse> delete(String path) {
+		return execute("DELETE", spec(Op.DELETE, path).toString());
+	}
+
+	public String getHttpfsUrl() {
+		return urls.getBaseUrl();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(resources != null) {
+			resources.close();
+		}
+	}
+
+	private CompletableFuture<WebHDFSResponse> execute(final String method, final String spec) {
+		return credentials().thenCompose(credentials -> {
+			HttpRequest request = request(uri(spec + credentials.argument), credentials)
+					.method(method, BodyPublishers.noBody())
+					.build();
+			return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+		}).thenApply(NioAsyncWebHDFSConnection::toWebHDFSResponse);
+	}
+
+	/*
+	 * The two-step CREATE/APPEND: the NameNode (or HttpFS) answers the first, empty, request
+	 * with a 307 pointing at the node that accepts the data.
+	 */
+	private CompletableFuture<WebHDFSResponse> upload(final String method, final String spec, final InputStream is, final long length) {
+		return credentials().thenCompose(credentials -> {
+			HttpRequest request = request(uri(spec + credentials.argument), credentials)
+					.method(method, BodyPublishers.noBody())
+					.build();
+			return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+					.thenCompose(response -> {
+						Optional<String> location = redirectLocation(response);
+						if(!location.isPresent()) {
+							return CompletableFuture.completedFuture(toWebHDFSResponse(response));
+						}
+
+						logger.info("Redirecting to => " + location.get());
+						BodyPublisher body = bodyPublisher(is, length);
+						HttpRequest redirect = request(URI.create(location.get()), credentials)
+								.header("Content-Type", "application/octet-stream")
+								.method(method, body)
+								.build();
+						return client.sendAsync(redirect, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+								.thenApply(NioAsyncWebHDFSConnection::toWebHDFSResponse);
+					});
+		}).whenComplete((response, t) -> Closeables.closeQuietly(is));
+	}
+
+	/*
+	 * ofInputStream() alone is sent chunked; wrapping it with a known length makes HttpClient
+	 * send a Content-Length instead. Either way the stream is read as the data is sent.
+	 */
+	private static BodyPublisher bodyPublisher(final InputStream is, long length) {
+		if(length == 0) {
+			return BodyPublishers.noBody();
+		}
+		BodyPublisher body = BodyPublishers.ofInputStream(() -> is);
+		return length > 0 ? BodyPublishers.fromPublisher(body, length) : body;
+	}
+
+	/*
+	 * The authentication is appended by the caller once its Credentials are resolved
+	 */
+	private RequestUrlBuilder.Request spec(Op op, String path) {
+		return urls.start(op, path);
+	}
+
+	/*
+	 * A valid token is used at once. Obtaining a delegation token or refreshing an expired one
+	 * blocks, so that runs on the executor; an exception it throws completes the future
+	 * exceptionally.
+	 */
+	private CompletableFuture<Credentials> credentials() {
+		try {
+			String argument = presentAuthArgument.get();
+			Token token = argument == null ? null : tokenSource.getTokenIfValid();
+			if(token != null) {
+				return CompletableFuture.completedFuture(new Credentials(argument, token));
+			}
+		}
+		catch(RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return CompletableFuture.supplyAsync(() -> new Credentials(authArgument.get(), tokenSource.getValidToken()), authExecutor);
+	}
+
+	private URI uri(String spec) {
+		return base.resolve(spec);
+	}
+
+	private HttpRequest.Builder request(URI uri, Credentials credentials) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+		if(readTimeout != null) {
+			builder.timeout(readTimeout);
+		}
+		if(credentials.cookie != null) {
+			builder.header("Cookie", credentials.cookie);
+		}
+		return builder;
+	}
+
+	private static Optional<String> redirectLocation(HttpResponse<?> response) {
+		if(response.statusCode() != 307) {
+			return Optional.empty();
+		}
+		return response.headers().firstValue("Location");
+	}
+
+	private static void write(OutputStream os, Optional<byte[]> chunk) {
+		try {
+			if(chunk.isPresent()) {
+				os.write(chunk.get());
+			}
+			else {
+				os.close();
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static WebHDFSResponse toWebHDFSResponse(HttpResponse<String> response) {
+		int code = response.statusCode();
+		String contentType = response.headers().firstValue("Content-Type").orElse(null);
+		return new WebHDFSResponse(code, reasonPhrase(code), contentType, response.body());
+	}
+
+	/*
+	 * The authentication of one call, shared by its request and the redirect that follows it
+	 */
+	private static final class Credentials {
+
+		final String argument;
+		final String cookie;
+
+		Credentials(String argument, Token token) {
+			this.argument = argument;
+			if(token != null && token.isSet()) {
+				// same format as AuthenticatedURL.injectToken()
+				String value = token.toString();
+				if(!value.startsWith("\"")) {
+					value = "\"" + value + "\"";
+				}
+				this.cookie = AuthenticatedURL.AUTH_COOKIE + "=" + value;
+			}
+			else {
+				this.cookie = null;
+			}
+		}
+	}
+
+	/*
+	 * HttpClient does not expose the status line's reason phrase, so rebuild it for the codes
+	 * WebHDFS uses.
+	 */
+	static String reasonPhrase(int code) {
+		switch(code) {
+		case 200: return "OK";
+		case 201: return "Created";
+		case 204: return "No Content";
+		case 307: return "Temporary Redirect";
+		case 400: return "Bad Request";
+		case 401: return "Unauthorized";
+		case 403: return "Forbidden";
+		case 404: return "Not Found";
+		case 409: return "Conflict";
+		case 500: return "Internal Server Error";
+		case 503: return "Service Unavailable";
+		default: return null;
+		}
+	}
+}
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
 import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.hadoop.security.authentication.client.Authenticator;
@@ -69,6 +70,7 @@ class PseudoAuthenticator2 implements Authenticator {
 		String paramSeparator = (strUrl.contains("?")) ? "&" : "?";
 		url = new URL(String.format("%s%s%s%s", strUrl, paramSeparator, USER_NAME_EQ, getUsername()));
 		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		Timeouts.configure(conn);
 		conn.setRequestMethod("OPTIONS");
 		conn.connect();
 		AuthenticatedURL.extractToken(conn, token);
@@ -1,16 +1,48 @@
 package org.apache.hadoop.fs.http.client.impl;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.MessageFormat;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executor;
 
+import org.apache.hadoop.fs.http.client.AppendOptions;
+import org.apache.hadoop.fs.http.client.ContentSummary;
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.DirectoryListing;
+import org.apache.hadoop.fs.http.client.FileChecksum;
+import org.apache.hadoop.fs.http.client.FileStatus;
+import org.apache.hadoop.fs.http.client.FileStatusBatch;
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.OpenOptions;
+import org.apache.hadoop.fs.http.client.PagedFileStatusIterator;
+import org.apache.hadoop.fs.http.client.RemoteException;
+import org.apache.hadoop.fs.http.client.SeekableWebHDFSInputStream;
+import org.apache.hadoop.fs.http.client.SetOwnerOptions;
+import org.apache.hadoop.fs.http.client.SetPermissionOptions;
+import org.apache.hadoop.fs.http.client.SetReplicationOptions;
+import org.apache.hadoop.fs.http.client.SetTimesOptions;
 import org.apache.hadoop.fs.http.client.WebHDFSConnection;
 import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
 import org.apache.hadoop.fs.http.client.WebHDFSResponse;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PoolStats;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.fs.http.client.transport.Timeouts;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder;
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder.Op;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils.Decoder;
 import org.apache.hadoop.fs.http.client.util.Streams;
 import org.apache.hadoop.fs.http.client.util.URLUtil;
 import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
@@ -20,6 +52,8 @@ import org.apache.hadoop.security.authentication.client.Authenticator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+
 /**
  * 
 ===== HTTP GET <br/>
@@ -51,7 +85,7 @@ APPEND (see FileSystem.append)
 DELETE (see FileSystem.delete)
 
  */
-class PseudoWebHDFSConnection implements WebHDFSConnection {
+class PseudoWebHDFSConnection implements WebHDFSConnection, TokenSource {
 
 	protected static final Logger logger = LoggerFactory.getLogger(PseudoWebHDFSConnection.class);
 
@@ -59,23 +93,79 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	private String principal = WebHDFSConnectionFactory.DEFAULT_USERNAME;
 	private String password = WebHDFSConnectionFactory.DEFAULT_PASSWORD;
 
-	private Token token = new AuthenticatedURL.Token();
-	private AuthenticatedURL authenticatedURL = new AuthenticatedURL(new PseudoAuthenticator2(principal));
+	private TokenHolder tokens;
+	private AuthenticatedURL authenticatedURL;
+	private final boolean pseudoAuthentication;
+	private HttpTransport transport;
+	private RequestUrlBuilder urls;
 
 	PseudoWebHDFSConnection(String httpfsUrl, String principal, String password) {
+		this(httpfsUrl, principal, password, new PooledHttpTransport());
+	}
+
+	PseudoWebHDFSConnection(String httpfsUrl, String principal, String password, HttpTransport transport) {
+		this(httpfsUrl, principal, password, transport, null, null);
+	}
+
+	/**
+	 * For subclasses that authenticate requests differently.
+	 *
+	 * @param authenticator
+	 * 			authenticates connections that have no token, or null for pseudo authentication as
+	 * 			the principal
+	 * @param tokens
+	 * 			supplies the token sent as the {@code hadoop.auth} cookie, ignored if
+	 * 			{@code authenticator} is null
+	 */
+	PseudoWebHDFSConnection(String httpfsUrl, String principal, String password, HttpTransport transport,
+			Authenticator authenticator, TokenHolder tokens) {
 		this.httpfsUrl = httpfsUrl;
+		this.urls = new RequestUrlBuilder(httpfsUrl);
 		this.principal = principal;
 		this.password = password;
-		this.authenticatedURL = new AuthenticatedURL(new PseudoAuthenticator2(principal));
+		this.transport = transport;
+		this.pseudoAuthentication = authenticator == null;
+		if (pseudoAuthentication) {
+			resetAuthentication();
+		}
+		else {
+			this.authenticatedURL = new AuthenticatedURL(authenticator);
+			this.tokens = tokens;
+		}
 	}
 
-	public static synchronized Token generateToken(String srvUrl, String princ, String passwd) {
+	/*
+	 * Authenticates as the current principal at the current URL; the setters call it again. The
+	 * authentication of a subclass does not depend on them.
+	 */
+	private void resetAuthentication() {
+		if (!pseudoAuthentication) {
+			return;
+		}
+		final String url = httpfsUrl;
+		final String princ = principal;
+		final String passwd = password;
+		this.authenticatedURL = new AuthenticatedURL(new PseudoAuthenticator2(princ));
+		this.tokens = tokenHolder(url, princ, passwd);
+	}
+
+	/**
+	 * @return new tokens of {@code principal} at {@code httpfsUrl}, for a client that only needs
+	 * 			the token, such as an asynchronous connection
+	 */
+	static TokenHolder tokenHolder(final String httpfsUrl, final String principal, final String password) {
+		return new TokenHolder(() -> generateToken(httpfsUrl, principal, password));
+	}
+
+	public static Token generateToken(String srvUrl, String princ, String passwd) {
 		AuthenticatedURL.Token newToken = new AuthenticatedURL.Token();
 		Authenticator authenticator = new PseudoAuthenticator2(princ);
 		
 		try {
-			String spec = MessageFormat.format("/webhdfs/v1/?op=GETHOMEDIRECTORY&user.name={0}", princ);
-			HttpURLConnection conn = new AuthenticatedURL(authenticator).openConnection(createQualifiedUrl(srvUrl, spec), newToken);
+			URL url = new RequestUrlBuilder(srvUrl).start(Op.GETHOMEDIRECTORY, null)
+					.argument(PseudoAuthenticator2.USER_NAME, princ).toURL();
+			HttpURLConnection conn = new AuthenticatedURL(authenticator).openConnection(url, newToken);
+			Timeouts.configure(conn);
 
 			conn.connect();
 			conn.disconnect();
@@ -93,19 +183,22 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 		return newToken;
 	}
 
+	/**
+	 * Makes sure a token is set and has not expired.
+	 * <p>
+	 * Safe to call from many threads, see {@link TokenHolder}: a token nearing its expiry is
+	 * renewed in the background, so this only blocks when there is no valid token at all.
+	 */
 	public void ensureValidToken() {
-		if (!token.isSet()) { // if token is null
-			token = generateToken(httpfsUrl, principal, password);
-		} else {
-			long currentTime = System.currentTimeMillis();
-			long tokenExpired = Long.parseLong(token.toString().split("&")[3].split("=")[1]);
-			logger.debug("[currentTime vs. tokenExpired] " + currentTime + " " + tokenExpired);
-
-			if (currentTime > tokenExpired) { // if the token is expired
-				token = generateToken(httpfsUrl, principal, password);
-			}
-		}
+		tokens.get();
+	}
+
+	public Token getValidToken() {
+		return tokens.get();
+	}
 
+	public Token getTokenIfValid() {
+		return tokens.getIfValid();
 	}
 
 	/*
@@ -124,9 +217,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getHomeDirectory() throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/?op=GETHOMEDIRECTORY&user.name={0}", this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETHOMEDIRECTORY, null).toURL(), token);
 		return execute(conn);
 	}
 
@@ -144,21 +236,106 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse open(String path, OutputStream os) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=OPEN&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		return open(path, 0L, UNKNOWN_LENGTH, os);
+	}
+
+	public WebHDFSResponse open(String path, long offset, long length, OutputStream os) throws IOException, AuthenticationException {
+		return open(path, os, new OpenOptions(offset, length));
+	}
+
+	public WebHDFSResponse open(String path, OutputStream os, OpenOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new OpenOptions() : options).toArguments();
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.OPEN, path).append(args).toURL(), token);
 		conn.setRequestMethod("GET");
 		conn.setRequestProperty("Content-Type", "application/octet-stream");
 		
 		try {
 			conn.connect();
+			failOnError(conn, "OPEN", path);
 	
 			Streams.copy(conn.getInputStream(), os);
 			
 			return result(conn, false);
 		}
 		finally {
-			conn.disconnect();
+			transport.release(conn);
+		}
+	}
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Opens a seekable stream over the file, see {@link SeekableWebHDFSInputStream}.
+	 *
+	 * @param path The HDFS path to the file to be opened
+	 * @return the stream, positioned at the start of the file
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public SeekableWebHDFSInputStream openStream(final String path) throws IOException, AuthenticationException {
+		long fileLength = fileLength(path);
+		return new SeekableWebHDFSInputStream((offset, length) -> openInputStream(path, offset, length), fileLength);
+	}
+
+	/**
+	 * <b>OPEN</b>
+	 * <p>
+	 * Downloads the file into {@code localFile} through pooled direct buffers.
+	 *
+	 * @param path The HDFS path to the file to download
+	 * @param localFile The local file to write to, created if missing
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long download(String path, Path localFile) throws IOException, AuthenticationException {
+		return download(path, localFile, false);
+	}
+
+	public long download(String path, Path localFile, boolean preallocate) throws IOException, AuthenticationException {
+		long expected = preallocate ? fileLength(path) : UNKNOWN_LENGTH;
+
+		try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (expected > 0) {
+				// Java has no portable fallocate, writing the last byte sets the final length
+				channel.write(ByteBuffer.allocate(1), expected - 1);
+			}
+
+			long count = Streams.copy(openInputStream(path, 0L, UNKNOWN_LENGTH), channel, 0L);
+
+			if (channel.size() > count) {
+				channel.truncate(count);
+			}
+			return count;
+		}
+	}
+
+	private long fileLength(String path) throws IOException, AuthenticationException {
+		return getFileStatusTyped(path).getLength();
+	}
+
+	/*
+	 * The body of a ranged OPEN; closing it releases the connection
+	 */
+	private InputStream openInputStream(String path, long offset, long length) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.OPEN, path).range(offset, length).toURL(), token);
+		conn.setRequestMethod("GET");
+		boolean opened = false;
+
+		try {
+			conn.connect();
+			failOnError(conn, "OPEN", path);
+			InputStream is = new ReleasingInputStream(conn.getInputStream(), conn, transport);
+			opened = true;
+			return is;
+		}
+		finally {
+			if (!opened) {
+				transport.release(conn);
+			}
 		}
 	}
 
@@ -174,9 +351,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getContentSummary(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=GETCONTENTSUMMARY&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETCONTENTSUMMARY, path).toURL(), token);
 		conn.setRequestMethod("GET");
 		return execute(conn);
 	}
@@ -193,13 +369,136 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse listStatus(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=LISTSTATUS&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Parses the entries incrementally from the response body.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries, which must be read to the end or closed to release the connection
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public FileStatusIterator listStatusIterator(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		boolean opened = false;
+
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code == 404) {
+				throw new FileNotFoundException(path);
+			}
+
+			// an error body holds a RemoteException, which the iterator reports
+			InputStream body = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+			if (body == null) {
+				throw ResponseUtil.toException("LISTSTATUS", path, code, conn.getResponseMessage(), "");
+			}
+
+			FileStatusIterator entries = new FileStatusIterator(new ReleasingInputStream(body, conn, transport));
+			opened = true;
+			return entries;
+		}
+		finally {
+			if (!opened) {
+				transport.release(conn);
+			}
+		}
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * 
+	 * curl -i  "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=LISTSTATUS_BATCH&startAfter=<CHILD>"
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param startAfter The last path suffix of the previous page, or null for the first page
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public WebHDFSResponse listStatusBatch(String path, String startAfter) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.LISTSTATUS_BATCH, path).argument("startAfter", startAfter).toURL(), token);
 		conn.setRequestMethod("GET");
 		return execute(conn);
 	}
 
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * Pages through the directory, prefetching the next page while the current one is consumed,
+	 * and falls back to {@link #listStatusIterator(String)} on servers without LISTSTATUS_BATCH.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator listStatusBatchIterator(final String path) throws IOException, AuthenticationException {
+		return new PagedFileStatusIterator(startAfter -> listingPage(path, startAfter), () -> listStatusIterator(path));
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 * <p>
+	 * Pages through the directory, prefetching the next page on {@code prefetch}, or fetching each
+	 * page when it is reached if that is null.
+	 *
+	 * @param path The HDFS path to the directory to list the contents of
+	 * @param prefetch The executor fetching the next page, or null
+	 * @return the entries
+	 * @throws java.io.FileNotFoundException if there is nothing at {@code path}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public PagedFileStatusIterator listStatusBatchIterator(final String path, Executor prefetch)
+			throws IOException, AuthenticationException {
+		return new PagedFileStatusIterator(startAfter -> listingPage(path, startAfter), () -> listStatusIterator(path), prefetch);
+	}
+
+	/*
+	 * One LISTSTATUS_BATCH page, or null if the server does not know the op
+	 */
+	private DirectoryListing listingPage(String path, String startAfter) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.LISTSTATUS_BATCH, path).argument("startAfter", startAfter).toURL(), token);
+		conn.setRequestMethod("GET");
+
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code == 404) {
+				throw new FileNotFoundException(path);
+			}
+			if (code >= 400) {
+				String error = conn.getErrorStream() == null ? "" : Streams.toString(conn.getErrorStream());
+				// e.g. HttpFS: Invalid value for webhdfs parameter "op": ... LISTSTATUS_BATCH
+				if (code == 400 && error.contains("LISTSTATUS_BATCH")) {
+					return null;
+				}
+				throw ResponseUtil.toException("LISTSTATUS_BATCH", path, code, conn.getResponseMessage(), error);
+			}
+			return DirectoryListing.read(conn.getInputStream());
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
 
 
 	/**
@@ -214,9 +513,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getFileStatus(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=GETFILESTATUS&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETFILESTATUS, path).toURL(), token);
 		conn.setRequestMethod("GET");
 		return execute(conn);
 	}
@@ -233,9 +531,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse getFileCheckSum(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=GETFILECHECKSUM&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETFILECHECKSUM, path).toURL(), token);
 		conn.setRequestMethod("GET");
 		return execute(conn);
 	}
@@ -261,43 +558,79 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse create(String path, InputStream is, boolean overwrite) throws IOException, AuthenticationException {
+		return create(path, is, UNKNOWN_LENGTH, overwrite);
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, boolean overwrite) throws IOException, AuthenticationException {
+		return create(path, is, length, new CreateOptions(overwrite));
+	}
+
+	public WebHDFSResponse create(String path, InputStream is, long length, CreateOptions options) throws IOException, AuthenticationException {
+		String arguments = (options == null ? new CreateOptions() : options).toArguments();
+		return create(path, arguments, length, os -> Streams.copy(is, os));
+	}
+
+	/**
+	 * <b>CREATE</b>
+	 * <p>
+	 * Uploads {@code localFile} with a fixed {@code Content-Length}, reading it through pooled
+	 * direct buffers.
+	 *
+	 * @param localFile The local file to upload
+	 * @param path The HDFS path at which the file should be created
+	 * @param options The CREATE parameters, or null for the server defaults without overwriting
+	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public WebHDFSResponse upload(Path localFile, String path, CreateOptions options) throws IOException, AuthenticationException {
+		String arguments = (options == null ? new CreateOptions() : options).toArguments();
+
+		try (FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+			long length = channel.size();
+			return create(path, arguments, length, os -> Streams.copy(channel, 0L, length, os));
+		}
+	}
+
+	private WebHDFSResponse create(String path, String arguments, long length, RequestBody body) throws IOException, AuthenticationException {
 		WebHDFSResponse resp;
-		ensureValidToken();
-		String arguments = overwrite ? "&overwrite=true" : "&overwrite=false";
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=CREATE&user.name={1}{2}", URLUtil.encodePath(path), this.principal, arguments);
+		Token token = tokens.get();
 		String redirectUrl = null;
 		
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.CREATE, path).append(arguments).toURL(), token);
 		conn.setRequestMethod("PUT");
 		conn.setInstanceFollowRedirects(false);
-		conn.connect();
 
-		resp = result(conn, true);
+		try {
+			conn.connect();
+			resp = result(conn, true);
 
-		if (conn.getResponseCode() == 307) {
-			logger.info("Redirecting to => " + conn.getHeaderField("Location"));
-			redirectUrl = conn.getHeaderField("Location");
+			if (conn.getResponseCode() == 307) {
+				logger.info("Redirecting to => " + conn.getHeaderField("Location"));
+				redirectUrl = conn.getHeaderField("Location");
+			}
+		}
+		finally {
+			transport.release(conn);
 		}
-
-		conn.disconnect();
 
 		if (redirectUrl != null) {
-			conn = authenticatedURL.openConnection(new URL(redirectUrl), token);
+			conn = transport.openConnection(authenticatedURL, new URL(redirectUrl), token);
 			conn.setRequestMethod("PUT");
 			conn.setDoOutput(true);
 			conn.setDoInput(true);
 			conn.setUseCaches(false);
 			conn.setRequestProperty("Content-Type", "application/octet-stream");
-			// conn.setRequestProperty("Transfer-Encoding", "chunked");
-			final int _SIZE = is.available();
-			conn.setRequestProperty("Content-Length", "" + _SIZE);
-			conn.setFixedLengthStreamingMode(_SIZE);
-			conn.connect();
-
-			Streams.copy(is, conn.getOutputStream());
+			setStreamingMode(conn, length);
 
-			resp = result(conn, false);
-			conn.disconnect();
+			try {
+				conn.connect();
+				body.writeTo(conn.getOutputStream());
+				resp = result(conn, false);
+			}
+			finally {
+				transport.release(conn);
+			}
 		}
 
 		return resp;
@@ -316,9 +649,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse mkdirs(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=MKDIRS&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.MKDIRS, path).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -337,10 +669,9 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse createSymLink(String srcPath, String destPath) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=CREATESYMLINK&destination={1}&user.name={2}",
-				URLUtil.encodePath(srcPath), URLUtil.encodePath(destPath), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.CREATESYMLINK, srcPath).pathArgument("destination", destPath).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -359,10 +690,9 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse rename(String srcPath, String destPath) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=RENAME&destination={1}&user.name={2}",
-				URLUtil.encodePath(srcPath), URLUtil.encodePath(destPath), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.RENAME, srcPath).pathArgument("destination", destPath).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -380,9 +710,13 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setPermission(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=SETPERMISSION&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		return setPermission(path, null);
+	}
+
+	public WebHDFSResponse setPermission(String path, SetPermissionOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetPermissionOptions() : options).toArguments();
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.SETPERMISSION, path).append(args).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -400,9 +734,13 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setOwner(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=SETOWNER&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		return setOwner(path, null);
+	}
+
+	public WebHDFSResponse setOwner(String path, SetOwnerOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetOwnerOptions() : options).toArguments();
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.SETOWNER, path).append(args).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -413,8 +751,6 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETREPLICATION
 	 * [&replication=<SHORT>]"
 	 *
-	 * TODO: Does this make any sense without a replication factor?
-	 *
 	 * @param path The HDFS path to the object for which replication should be set.
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -422,9 +758,13 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setReplication(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=SETREPLICATION&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		return setReplication(path, null);
+	}
+
+	public WebHDFSResponse setReplication(String path, SetReplicationOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetReplicationOptions() : options).toArguments();
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.SETREPLICATION, path).append(args).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -435,8 +775,6 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETTIMES
 	 * [&modificationtime=<TIME>][&accesstime=<TIME>]"
 	 *
-	 * TODO: Does this make any sense without the times?
-	 *
 	 * @param path The HDFS path to the object for which to set the times
 	 * @return The response from the endpoint, wrapped in an {@link WebHDFSResponse}
 	 * @throws AuthenticationException
@@ -444,9 +782,13 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse setTimes(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=SETTIMES&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		return setTimes(path, null);
+	}
+
+	public WebHDFSResponse setTimes(String path, SetTimesOptions options) throws IOException, AuthenticationException {
+		String args = (options == null ? new SetTimesOptions() : options).toArguments();
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.SETTIMES, path).append(args).toURL(), token);
 		conn.setRequestMethod("PUT");
 		return execute(conn);
 	}
@@ -468,11 +810,18 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public WebHDFSResponse append(String path, InputStream is) throws IOException, AuthenticationException {
+		return append(path, is, UNKNOWN_LENGTH);
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length) throws IOException, AuthenticationException {
+		return append(path, is, length, null);
+	}
+
+	public WebHDFSResponse append(String path, InputStream is, long length, AppendOptions options) throws IOException, AuthenticationException {
 		WebHDFSResponse resp;
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=APPEND&user.name={1}", URLUtil.encodePath(path), this.principal);
+		Token token = tokens.get();
 		String redirectUrl = null;
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.APPEND, path).append(options == null ? "" : options.toArguments()).toURL(), token);
 		conn.setRequestMethod("POST");
 		conn.setInstanceFollowRedirects(false);
 		
@@ -486,26 +835,26 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 			}
 		}
 		finally {
-			conn.disconnect();
+			transport.release(conn);
 		}
 
 		if (redirectUrl != null) {
-			conn = authenticatedURL.openConnection(new URL(redirectUrl), token);
+			conn = transport.openConnection(authenticatedURL, new URL(redirectUrl), token);
 			conn.setRequestMethod("POST");
 			conn.setDoOutput(true);
 			conn.setDoInput(true);
 			conn.setUseCaches(false);
 			conn.setRequestProperty("Content-Type", "application/octet-stream");
-			// conn.setRequestProperty("Transfer-Encoding", "chunked");
-			final int _SIZE = is.available();
-			conn.setRequestProperty("Content-Length", "" + _SIZE);
-			conn.setFixedLengthStreamingMode(_SIZE);
-			conn.connect();
-			
-			Streams.copy(is, conn.getOutputStream());
+			setStreamingMode(conn, length);
 
-			resp = result(conn, true);
-			conn.disconnect();
+			try {
+				conn.connect();
+				Streams.copy(is, conn.getOutputStream());
+				resp = result(conn, true);
+			}
+			finally {
+				transport.release(conn);
+			}
 		}
 
 		return resp;
@@ -529,14 +878,193 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 	 * @throws MalformedURLException
 	 */
 	public WebHDFSResponse delete(String path) throws IOException, AuthenticationException {
-		ensureValidToken();
-		String spec = MessageFormat.format("/webhdfs/v1/{0}?op=DELETE&user.name={1}", URLUtil.encodePath(path), this.principal);
-		HttpURLConnection conn = authenticatedURL.openConnection(createQualifiedUrl(spec), token);
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.DELETE, path).toURL(), token);
 		conn.setRequestMethod("DELETE");
 		conn.setInstanceFollowRedirects(false);
 		return execute(conn);
 	}
 
+	/*
+	 * ========================================================================
+	 * TYPED
+	 * ========================================================================
+	 */
+	/**
+	 * <b>GETHOMEDIRECTORY</b>
+	 * <p>
+	 * Decodes the path straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getHomeDirectoryTyped
+	 */
+	public String getHomeDirectoryTyped() throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETHOMEDIRECTORY, null).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETHOMEDIRECTORY", "/", "Path", JsonParser::getValueAsString);
+	}
+
+	/**
+	 * <b>GETFILESTATUS</b>
+	 * <p>
+	 * Decodes the status straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getFileStatusTyped
+	 */
+	public FileStatus getFileStatusTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETFILESTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		FileStatus status = decode(conn, "GETFILESTATUS", path, "FileStatus", FileStatus::read);
+		status.setPath(path);
+		return status;
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Decodes the entries straight from the response body.
+	 *
+	 * @see WebHDFSConnection#listStatusTyped
+	 */
+	public List<FileStatus> listStatusTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "LISTSTATUS", path, "FileStatuses", SerializationUtils::readFileStatuses);
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 * <p>
+	 * Decodes the entries straight from the response body into the columns of the batch.
+	 *
+	 * @see WebHDFSConnection#listStatusColumnar
+	 */
+	public FileStatusBatch listStatusColumnar(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.LISTSTATUS, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "LISTSTATUS", path, "FileStatuses", FileStatusBatch::read);
+	}
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>
+	 * <p>
+	 * Decodes the summary straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getContentSummaryTyped
+	 */
+	public ContentSummary getContentSummaryTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETCONTENTSUMMARY, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETCONTENTSUMMARY", path, "ContentSummary", ContentSummary::read);
+	}
+
+	/**
+	 * <b>GETFILECHECKSUM</b>
+	 * <p>
+	 * Decodes the checksum straight from the response body.
+	 *
+	 * @see WebHDFSConnection#getFileChecksumTyped
+	 */
+	public FileChecksum getFileChecksumTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.GETFILECHECKSUM, path).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETFILECHECKSUM", path, "FileChecksum", FileChecksum::read);
+	}
+
+	/**
+	 * <b>MKDIRS</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#mkdirsTyped
+	 */
+	public boolean mkdirsTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.MKDIRS, path).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "MKDIRS", path, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>RENAME</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#renameTyped
+	 */
+	public boolean renameTyped(String srcPath, String destPath) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.RENAME, srcPath).pathArgument("destination", destPath).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "RENAME", srcPath, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>DELETE</b>
+	 * <p>
+	 * Decodes the result straight from the response body.
+	 *
+	 * @see WebHDFSConnection#deleteTyped
+	 */
+	public boolean deleteTyped(String path) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, request(Op.DELETE, path).toURL(), token);
+		conn.setRequestMethod("DELETE");
+		conn.setInstanceFollowRedirects(false);
+		return decode(conn, "DELETE", path, "boolean", SerializationUtils::readBoolean);
+	}
+
+	/**
+	 * <b>GETDELEGATIONTOKEN</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/?op=GETDELEGATIONTOKEN&renewer=<USER>"
+	 *
+	 * @see WebHDFSConnection#getDelegationToken
+	 */
+	public String getDelegationToken(String renewer) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.GETDELEGATIONTOKEN, null).argument("renewer", renewer).toURL(), token);
+		conn.setRequestMethod("GET");
+		return decode(conn, "GETDELEGATIONTOKEN", "/", "Token", SerializationUtils::readToken);
+	}
+
+	/**
+	 * <b>RENEWDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=RENEWDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @see WebHDFSConnection#renewDelegationToken
+	 */
+	public long renewDelegationToken(String delegationToken) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.RENEWDELEGATIONTOKEN, null).argument("token", delegationToken).toURL(), token);
+		conn.setRequestMethod("PUT");
+		return decode(conn, "RENEWDELEGATIONTOKEN", "/", "long", SerializationUtils::readLong);
+	}
+
+	/**
+	 * <b>CANCELDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=CANCELDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @see WebHDFSConnection#cancelDelegationToken
+	 */
+	public void cancelDelegationToken(String delegationToken) throws IOException, AuthenticationException {
+		Token token = tokens.get();
+		HttpURLConnection conn = transport.openConnection(authenticatedURL,
+				request(Op.CANCELDELEGATIONTOKEN, null).argument("token", delegationToken).toURL(), token);
+		conn.setRequestMethod("PUT");
+		complete(conn, "CANCELDELEGATIONTOKEN", "/");
+	}
+
 	// Begin Getter & Setter
 	public String getHttpfsUrl() {
 		return httpfsUrl;
@@ -544,6 +1072,8 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 
 	public void setHttpfsUrl(String httpfsUrl) {
 		this.httpfsUrl = httpfsUrl;
+		this.urls = new RequestUrlBuilder(httpfsUrl);
+		resetAuthentication();
 	}
 
 	public String getPrincipal() {
@@ -552,6 +1082,7 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 
 	public void setPrincipal(String principal) {
 		this.principal = principal;
+		resetAuthentication();
 	}
 
 	public String getPassword() {
@@ -560,26 +1091,181 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 
 	public void setPassword(String password) {
 		this.password = password;
+		resetAuthentication();
+	}
+
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
 	}
 
 	// End Getter & Setter
 
+	/**
+	 * @return a snapshot of the connection usage of the underlying {@link HttpTransport}
+	 */
+	public PoolStats getPoolStats() {
+		return transport.getStats();
+	}
+
 	protected WebHDFSResponse execute(HttpURLConnection conn) throws IOException {
+		WebHDFSResponse response = send(conn);
+		if (response.getResponseCode() >= 400) {
+			HttpURLConnection again = reauthenticate(conn, SerializationUtils.getRemoteException(response.getRawResponse()));
+			if (again != null) {
+				response = send(again);
+			}
+		}
+		return response;
+	}
+
+	private WebHDFSResponse send(HttpURLConnection conn) throws IOException {
 		try {
 			conn.connect();
 			return result(conn, true);
 		}
 		finally {
-			conn.disconnect();
+			transport.release(conn);
 		}
 	}
-	
-	private URL createQualifiedUrl(String spec) throws MalformedURLException {
-		return createQualifiedUrl(httpfsUrl, spec);
+
+	/*
+	 * Runs the request and decodes the property named wrapper straight from the response body
+	 */
+	private <T> T decode(HttpURLConnection conn, String op, String path, String wrapper, Decoder<T> decoder) throws IOException {
+		try {
+			return decodeOnce(conn, op, path, wrapper, decoder);
+		}
+		catch(RemoteException e) {
+			HttpURLConnection again = reauthenticate(conn, e);
+			if (again == null) {
+				throw e;
+			}
+			return decodeOnce(again, op, path, wrapper, decoder);
+		}
+	}
+
+	private <T> T decodeOnce(HttpURLConnection conn, String op, String path, String wrapper, Decoder<T> decoder) throws IOException {
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code >= 400) {
+				throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+			}
+			return SerializationUtils.decode(conn.getInputStream(), wrapper, decoder);
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/*
+	 * Runs a request whose response has no body
+	 */
+	private void complete(HttpURLConnection conn, String op, String path) throws IOException {
+		try {
+			completeOnce(conn, op, path);
+		}
+		catch(RemoteException e) {
+			HttpURLConnection again = reauthenticate(conn, e);
+			if (again == null) {
+				throw e;
+			}
+			completeOnce(again, op, path);
+		}
+	}
+
+	private void completeOnce(HttpURLConnection conn, String op, String path) throws IOException {
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code >= 400) {
+				throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+			}
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+
+	/*
+	 * A new connection for a request without a body that the server rejected as carrying an
+	 * invalid token, with the value of authenticationParameter() replaced, or null if there is no
+	 * other value to send
+	 */
+	private HttpURLConnection reauthenticate(HttpURLConnection conn, RemoteException remote) throws IOException {
+		if (remote == null || !"InvalidToken".equals(remote.getException())) {
+			return null;
+		}
+
+		String url = conn.getURL().toString();
+		String argument = "&" + authenticationParameter() + "=";
+		int start = url.indexOf(argument);
+		if (start < 0) {
+			return null;
+		}
+		int end = url.indexOf('&', start + argument.length());
+		if (end < 0) {
+			end = url.length();
+		}
+		if (!authenticationRejected(URLDecoder.decode(url.substring(start + argument.length(), end), "UTF-8"))) {
+			return null;
+		}
+
+		URL retry = new URL(url.substring(0, start) + URLUtil.argument(authenticationParameter(), authenticationValue())
+				+ url.substring(end));
+		HttpURLConnection again;
+		try {
+			again = transport.openConnection(authenticatedURL, retry, tokens.get());
+		}
+		catch(AuthenticationException e) {
+			throw new IOException(e);
+		}
+		again.setRequestMethod(conn.getRequestMethod());
+		again.setInstanceFollowRedirects(conn.getInstanceFollowRedirects());
+		return again;
+	}
+
+	/**
+	 * Called when the server rejected the value of {@link #authenticationParameter()} that a
+	 * request without a body carried as an invalid token. The request is sent once more with
+	 * {@link #authenticationValue()} if this returns true.
+	 *
+	 * @param value
+	 * 			the rejected value
+	 * @return true if {@link #authenticationValue()} now returns another value; the default,
+	 * 			for a principal, returns false
+	 * @throws IOException
+	 */
+	protected boolean authenticationRejected(String value) throws IOException {
+		return false;
 	}
 	
-	private static URL createQualifiedUrl(String baseUrl, String spec) throws MalformedURLException {
-		return new URL(new URL(baseUrl), spec);
+	/*
+	 * Starts the URL of a request, authenticated as the principal
+	 */
+	private RequestUrlBuilder.Request request(Op op, String path) throws IOException {
+		// before start(): obtaining the value may build a URL of its own
+		String value = authenticationValue();
+		return urls.start(op, path).argument(authenticationParameter(), value);
+	}
+
+	/**
+	 * @return the query parameter that authenticates each request, {@code user.name}
+	 */
+	protected String authenticationParameter() {
+		return PseudoAuthenticator2.USER_NAME;
+	}
+
+	/**
+	 * @return the value of {@link #authenticationParameter()}, the principal
+	 * @throws IOException
+	 */
+	protected String authenticationValue() throws IOException {
+		return principal;
 	}
 	
 	/*
@@ -604,4 +1290,28 @@ class PseudoWebHDFSConnection implements WebHDFSConnection {
 
 		return new WebHDFSResponse(conn.getResponseCode(), conn.getResponseMessage(), conn.getContentType(), data.toString());
 	}
+
+	/*
+	 * Throws the error of a failed request, e.g. the RemoteException in its body, which
+	 * getInputStream() would drop
+	 */
+	private static void failOnError(HttpURLConnection conn, String op, String path) throws IOException {
+		int code = conn.getResponseCode();
+		if (code >= 400) {
+			throw ResponseUtil.toException(op, path, code, conn.getResponseMessage(), conn.getErrorStream());
+		}
+	}
+
+	/*
+	 * Streams the request body straight to the socket: fixed-length when the size is known,
+	 * chunked otherwise, so HttpURLConnection never buffers the whole body in memory.
+	 */
+	private static void setStreamingMode(HttpURLConnection conn, long length) {
+		if (length >= 0) {
+			conn.setFixedLengthStreamingMode(length);
+		}
+		else {
+			conn.setChunkedStreamingMode(Streams.TWELVE_K);
+		}
+	}
 }
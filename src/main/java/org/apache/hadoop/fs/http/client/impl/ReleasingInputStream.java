@@ -0,0 +1,39 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+
+/**
+ * The body of a response that hands its connection back to the {@link HttpTransport} when closed.
+ */
+class ReleasingInputStream extends FilterInputStream {
+
+	private final HttpURLConnection conn;
+	private final HttpTransport transport;
+	private boolean closed;
+
+	ReleasingInputStream(InputStream in, HttpURLConnection conn, HttpTransport transport) {
+		super(in);
+		this.conn = conn;
+		this.transport = transport;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			super.close();
+		}
+		finally {
+			transport.release(conn);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the body of an upload to the DataNode once the NameNode has redirected the request.
+ */
+interface RequestBody {
+
+	/**
+	 * Writes the whole body to {@code os} and closes it.
+	 *
+	 * @param os
+	 * 			the request body of the DataNode connection
+	 * @throws IOException
+	 */
+	void writeTo(OutputStream os) throws IOException;
+}
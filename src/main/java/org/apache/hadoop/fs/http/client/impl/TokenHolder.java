@@ -0,0 +1,330 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the authentication token of a connection and renews it before it expires.
+ * <p>
+ * The expiry of a token is parsed once, when it is generated. {@link #get()} then costs a
+ * volatile read and a clock read as long as the token is in the first
+ * {@link #REFRESH_FRACTION} of its lifetime. After that the first caller schedules a refresh on
+ * a background thread and every caller keeps using the current token, which is still valid,
+ * until the new one replaces it. Only if the token has actually expired, e.g. because the
+ * connection was idle, do callers wait, and then only one of them generates the new token.
+ * <p>
+ * If generating a token fails, the failure is kept for {@link #RETRY_DELAY}: callers get the
+ * unset token at once instead of each authenticating in turn, and once the delay has passed one
+ * caller tries again while the others keep failing fast.
+ * <p>
+ * A {@link ReentrantLock} is used rather than {@code synchronized} so that virtual threads
+ * waiting for a token do not pin their carrier thread.
+ */
+class TokenHolder implements TokenSource {
+
+	protected static final Logger logger = LoggerFactory.getLogger(TokenHolder.class);
+
+	/** The part of a token's lifetime after which it is refreshed in the background */
+	static final double REFRESH_FRACTION = 0.8;
+
+	/** How long to wait before trying again when generating a token failed */
+	static final long RETRY_DELAY = 5000L;
+
+	private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "webhdfs-token-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// a holder stays shared while a connection uses it, and its entry is dropped once it is collected
+	private static final ConcurrentHashMap<CredentialKey, SharedReference> SHARED = new ConcurrentHashMap<CredentialKey, SharedReference>();
+	private static final ReferenceQueue<TokenHolder> COLLECTED = new ReferenceQueue<TokenHolder>();
+
+	private final Supplier<Token> generator;
+	private final LongSupplier clock;
+	private final Executor executor;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private volatile State state = State.EXPIRED;
+
+	/**
+	 * @param generator
+	 * 			authenticates against the server and returns a new token, which is not set if
+	 * 			authentication failed
+	 */
+	TokenHolder(Supplier<Token> generator) {
+		this(generator, System::currentTimeMillis, REFRESH_EXECUTOR);
+	}
+
+	TokenHolder(Supplier<Token> generator, LongSupplier clock, Executor executor) {
+		this.generator = generator;
+		this.clock = clock;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return a holder that never has a token, for connections authenticated by other means
+	 */
+	static TokenHolder none() {
+		TokenHolder holder = new TokenHolder(AuthenticatedURL.Token::new);
+		holder.state = State.NONE;
+		return holder;
+	}
+
+	/**
+	 * Returns the process-wide holder for {@code key}, so that all connections of one principal to
+	 * one endpoint share a token and only one of them authenticates when it is due. The holder is
+	 * only kept for as long as a connection references it.
+	 *
+	 * @param key
+	 * 			the credentials and endpoint, see {@link CredentialKey#forEndpoint(String, String, String)}
+	 * @param generator
+	 * 			generates tokens for {@code key}; only used if there is no holder for it yet, so it
+	 * 			must not depend on anything but the key
+	 * @return the shared holder
+	 */
+	static TokenHolder shared(CredentialKey key, Supplier<Token> generator) {
+		expungeCollected();
+
+		TokenHolder created = null;
+		while(true) {
+			SharedReference existing = SHARED.get(key);
+			TokenHolder holder = existing == null ? null : existing.get();
+			if(holder != null) {
+				return holder;
+			}
+
+			if(created == null) {
+				created = new TokenHolder(generator);
+			}
+			SharedReference reference = new SharedReference(key, created);
+			if(existing == null ? SHARED.putIfAbsent(key, reference) == null : SHARED.replace(key, existing, reference)) {
+				return created;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * 			the credentials and endpoint
+	 * @return whether a holder is shared for {@code key}
+	 */
+	static boolean isShared(CredentialKey key) {
+		expungeCollected();
+		return SHARED.containsKey(key);
+	}
+
+	private static void expungeCollected() {
+		SharedReference collected;
+		while((collected = (SharedReference) COLLECTED.poll()) != null) {
+			SHARED.remove(collected.key, collected);
+		}
+	}
+
+	/**
+	 * @return the current token, generated first if there is none or it has expired
+	 */
+	Token get() {
+		Token current = getIfValid();
+		return current != null ? current : refresh();
+	}
+
+	/**
+	 * Same as {@link #get()}, without ever waiting: a token nearing its expiry is still returned
+	 * and refreshed in the background.
+	 *
+	 * @return the current token, or null if {@link #get()} would have to generate one first
+	 */
+	Token getIfValid() {
+		State current = state;
+		long now = clock.getAsLong();
+
+		if(now < current.refreshAt) {
+			return current.token;
+		}
+		if(now <= current.expiresAt) {
+			refreshInBackground(current);
+			return current.token;
+		}
+		return null;
+	}
+
+	public Token getValidToken() {
+		return get();
+	}
+
+	public Token getTokenIfValid() {
+		return getIfValid();
+	}
+
+	/*
+	 * Generates a new token unless another thread did so while this one waited for the lock
+	 */
+	private Token refresh() {
+		if(!lock.tryLock()) {
+			State seen = state;
+			if(seen.failed) {
+				return seen.token; // another caller is trying again after a failure
+			}
+			lock.lock();
+		}
+		try {
+			State current = state;
+			long now = clock.getAsLong();
+			if(now < current.refreshAt || now <= current.expiresAt) {
+				return current.token;
+			}
+
+			current = generate();
+			state = current;
+			return current.token;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void refreshInBackground(final State seen) {
+		if(!refreshing.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			executor.execute(() -> {
+				lock.lock();
+				try {
+					if(state != seen) {
+						return; // renewed by a caller that found it expired
+					}
+
+					State fresh = generate();
+					if(!fresh.failed) {
+						state = fresh;
+					}
+					else {
+						// keep the old token while it lasts, and try again a little later
+						long retryAt = Math.min(clock.getAsLong() + RETRY_DELAY, seen.expiresAt);
+						state = new State(seen.token, seen.expiresAt, retryAt);
+					}
+				}
+				finally {
+					lock.unlock();
+					refreshing.set(false);
+				}
+			});
+		}
+		catch(RejectedExecutionException e) {
+			refreshing.set(false);
+		}
+	}
+
+	private State generate() {
+		long now = clock.getAsLong();
+		Token token = generator.get();
+		State generated = State.of(token, now);
+		if(generated.failed) {
+			logger.debug("Could not generate a token, trying again in " + RETRY_DELAY + " ms");
+		}
+		else {
+			logger.debug("Generated token, valid until " + generated.expiresAt);
+		}
+		return generated;
+	}
+
+	/**
+	 * @param token
+	 * 			a token, whose String form is the signed {@code hadoop.auth} cookie,
+	 * 			{@code u=...&p=...&t=...&e=<expiry millis>&s=...}
+	 * @return the expiry of {@code token} in milliseconds since the epoch, Long.MIN_VALUE if
+	 * 			it is not set and Long.MAX_VALUE if it has no expiry
+	 */
+	static long expiryOf(Token token) {
+		if(token == null || !token.isSet()) {
+			return Long.MIN_VALUE;
+		}
+
+		String value = token.toString();
+		int start;
+		if(value.startsWith("e=")) {
+			start = 2;
+		}
+		else {
+			int field = value.indexOf("&e=");
+			if(field < 0) {
+				return Long.MAX_VALUE;
+			}
+			start = field + 3;
+		}
+
+		int end = value.indexOf('&', start);
+		try {
+			return Long.parseLong(value.substring(start, end < 0 ? value.length() : end));
+		}
+		catch(NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	private static final class SharedReference extends WeakReference<TokenHolder> {
+
+		final CredentialKey key;
+
+		SharedReference(CredentialKey key, TokenHolder holder) {
+			super(holder, COLLECTED);
+			this.key = key;
+		}
+	}
+
+	/*
+	 * A token with its expiry and the time to start refreshing it, swapped as a whole. A failed
+	 * state has no token and has already expired; its refreshAt is the time to try again.
+	 */
+	private static final class State {
+
+		static final State EXPIRED = new State(new AuthenticatedURL.Token(), Long.MIN_VALUE, Long.MIN_VALUE, false);
+
+		static final State NONE = new State(new AuthenticatedURL.Token(), Long.MAX_VALUE, Long.MAX_VALUE, false);
+
+		final Token token;
+		final long expiresAt;
+		final long refreshAt;
+		final boolean failed;
+
+		State(Token token, long expiresAt, long refreshAt) {
+			this(token, expiresAt, refreshAt, false);
+		}
+
+		private State(Token token, long expiresAt, long refreshAt, boolean failed) {
+			this.token = token;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+			this.failed = failed;
+		}
+
+		static State of(Token token, long now) {
+			long expiresAt = expiryOf(token);
+			if(expiresAt == Long.MIN_VALUE) {
+				return new State(token == null ? new AuthenticatedURL.Token() : token, Long.MIN_VALUE,
+						now + RETRY_DELAY, true);
+			}
+			if(expiresAt == Long.MAX_VALUE || expiresAt <= now) {
+				return new State(token, expiresAt, expiresAt);
+			}
+			return new State(token, expiresAt, now + (long) ((expiresAt - now) * REFRESH_FRACTION));
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+
+/**
+ * Supplies the authentication token used to sign requests that do not go through
+ * {@link org.apache.hadoop.security.authentication.client.AuthenticatedURL}.
+ */
+interface TokenSource {
+
+	/**
+	 * @return a valid authentication token, refreshed first if it has expired
+	 */
+	Token getValidToken();
+
+	/**
+	 * @return the token if it is valid and can be had without blocking, e.g. while it is
+	 * 			refreshed in the background, or null if {@link #getValidToken()} would have to wait
+	 * 			for a new one; the default always returns null
+	 */
+	default Token getTokenIfValid() {
+		return null;
+	}
+}
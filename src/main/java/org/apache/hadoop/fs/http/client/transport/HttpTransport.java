@@ -0,0 +1,70 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Opens and releases the HTTP connections used by a {@link org.apache.hadoop.fs.http.client.WebHDFSConnection}.
+ * <p>
+ * Every connection obtained from {@link #openConnection(AuthenticatedURL, URL, AuthenticatedURL.Token)}
+ * must be handed back to exactly one of {@link #release(HttpURLConnection)} or
+ * {@link #abort(HttpURLConnection)}.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Opens a connection to {@code url}, authenticating it through {@code authenticatedURL}
+	 * 
+	 * @param authenticatedURL
+	 * 			the {@link AuthenticatedURL} used to authenticate the connection
+	 * @param url
+	 * 			the URL to connect to
+	 * @param token
+	 * 			the authentication token
+	 * @return a new, unconnected {@link HttpURLConnection}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	HttpURLConnection openConnection(AuthenticatedURL authenticatedURL, URL url, AuthenticatedURL.Token token)
+			throws IOException, AuthenticationException;
+
+	/**
+	 * Hands {@code conn} back once its response has been read, allowing the underlying
+	 * socket to be kept alive for the next request to the same host
+	 * 
+	 * @param conn
+	 * 			the connection to release, may be null
+	 */
+	void release(HttpURLConnection conn);
+
+	/**
+	 * Hands {@code conn} back and closes the underlying socket
+	 * 
+	 * @param conn
+	 * 			the connection to abort, may be null
+	 */
+	void abort(HttpURLConnection conn);
+
+	/**
+	 * @return a snapshot of the connection usage of this transport
+	 */
+	PoolStats getStats();
+}
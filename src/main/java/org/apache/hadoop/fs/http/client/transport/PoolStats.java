@@ -0,0 +1,104 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+/**
+ * Immutable snapshot of the connection usage of an {@link HttpTransport}.
+ * <p>
+ * A limit of {@code 0} means the transport is unbounded.
+ */
+public class PoolStats {
+
+	private final int leased;
+	private final int pending;
+	private final int routes;
+	private final int maxPerRoute;
+	private final int maxTotal;
+	private final long leaseCount;
+	private final long keptAliveCount;
+	private final long discardedCount;
+	private final long timeoutCount;
+	private final long evictedRouteCount;
+
+	public PoolStats(int leased, int pending, int routes, int maxPerRoute, int maxTotal, long leaseCount,
+			long keptAliveCount, long discardedCount, long timeoutCount, long evictedRouteCount) {
+		this.leased = leased;
+		this.pending = pending;
+		this.routes = routes;
+		this.maxPerRoute = maxPerRoute;
+		this.maxTotal = maxTotal;
+		this.leaseCount = leaseCount;
+		this.keptAliveCount = keptAliveCount;
+		this.discardedCount = discardedCount;
+		this.timeoutCount = timeoutCount;
+		this.evictedRouteCount = evictedRouteCount;
+	}
+
+	/** @return the number of connections currently in use */
+	public int getLeased() {
+		return leased;
+	}
+
+	/** @return the number of callers currently waiting for a connection */
+	public int getPending() {
+		return pending;
+	}
+
+	/** @return the number of hosts the transport currently tracks */
+	public int getRoutes() {
+		return routes;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/** @return the total number of connections handed out */
+	public long getLeaseCount() {
+		return leaseCount;
+	}
+
+	/** @return the number of connections released with their socket left open for reuse */
+	public long getKeptAliveCount() {
+		return keptAliveCount;
+	}
+
+	/** @return the number of connections released with their socket closed */
+	public long getDiscardedCount() {
+		return discardedCount;
+	}
+
+	/** @return the number of callers that gave up waiting for a connection */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	/** @return the number of routes dropped after being idle */
+	public long getEvictedRouteCount() {
+		return evictedRouteCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats [leased=" + leased + ", pending=" + pending + ", routes=" + routes
+				+ ", maxPerRoute=" + maxPerRoute + ", maxTotal=" + maxTotal + ", leaseCount=" + leaseCount
+				+ ", keptAliveCount=" + keptAliveCount + ", discardedCount=" + discardedCount
+				+ ", timeoutCount=" + timeoutCount + ", evictedRouteCount=" + evictedRouteCount + "]";
+	}
+}
@@ -0,0 +1,426 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.lang.ref.Cleaner;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keep-alive {@link HttpTransport} with a bounded number of connections per route
+ * (scheme, host and port) and in total.
+ * <p>
+ * {@link AuthenticatedURL} only works with {@link HttpURLConnection}, so the sockets themselves
+ * live in the JDK keep-alive cache, which validates a cached socket before handing it out again
+ * and caps the number of idle sockets per host at {@code http.maxConnections}. This transport makes
+ * that cache effective by never calling {@link HttpURLConnection#disconnect()} on a healthy
+ * connection, bounds the number of concurrent requests per route so the cache is not flooded, and
+ * forgets routes (typically DataNodes reached through a redirect) once they have been idle for
+ * longer than the idle timeout.
+ * <p>
+ * Every connection, and every connection the authenticator opens for it, gets the connect and
+ * read timeouts of the transport, capped by the deadline of the calling thread, see
+ * {@link Timeouts}, so a host that stops answering fails the request with a
+ * {@link java.net.SocketTimeoutException} instead of blocking it.
+ * <p>
+ * Callers must consume or close the response body before calling {@link #release(HttpURLConnection)}.
+ * Every connection must be released or aborted, which is why the iterators and streams built on
+ * one, such as {@link org.apache.hadoop.fs.http.client.FileStatusIterator} and
+ * {@link org.apache.hadoop.fs.http.client.SeekableWebHDFSInputStream}, must be closed. The permit
+ * of a connection that becomes unreachable without either is reclaimed once it has been garbage
+ * collected, and the leak is logged, but until then it counts against the limits.
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+	protected static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+	private static final Cleaner LEAK_CLEANER = Cleaner.create();
+
+	/** The default maximum number of concurrent connections to a single host */
+	public static final int DEFAULT_MAX_PER_ROUTE = 20;
+
+	/** The default maximum number of concurrent connections to all hosts */
+	public static final int DEFAULT_MAX_TOTAL = 200;
+
+	/** The default time after which an unused route is forgotten */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+	/** The default time to wait for a free connection */
+	public static final long DEFAULT_LEASE_TIMEOUT = 60000L;
+
+	/** Error bodies larger than this are not drained, the socket is closed instead */
+	public static final int DEFAULT_DRAIN_LIMIT = 64 * 1024;
+
+	private final int maxPerRoute;
+	private final int maxTotal;
+	private final long idleTimeout;
+	private final long leaseTimeout;
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	private final Semaphore totalPermits;
+	private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+	// weak keys, so that a connection that is never released can be collected and its permit reclaimed
+	private final Map<HttpURLConnection, Lease> leases = Collections.synchronizedMap(new WeakHashMap<HttpURLConnection, Lease>());
+
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final AtomicLong keptAliveCount = new AtomicLong();
+	private final AtomicLong discardedCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong evictedRouteCount = new AtomicLong();
+	private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * Creates a new PooledHttpTransport instance with the default limits.
+	 */
+	public PooledHttpTransport() {
+		this(DEFAULT_MAX_PER_ROUTE, DEFAULT_MAX_TOTAL, DEFAULT_IDLE_TIMEOUT, DEFAULT_LEASE_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new PooledHttpTransport instance.
+	 *
+	 * @param maxPerRoute
+	 * 			the maximum number of concurrent connections to a single host
+	 * @param maxTotal
+	 * 			the maximum number of concurrent connections to all hosts
+	 * @param idleTimeout
+	 * 			the time in milliseconds after which an unused route is forgotten
+	 * @param leaseTimeout
+	 * 			the time in milliseconds to wait for a free connection
+	 */
+	public PooledHttpTransport(int maxPerRoute, int maxTotal, long idleTimeout, long leaseTimeout) {
+		this(maxPerRoute, maxTotal, idleTimeout, leaseTimeout, Timeouts.DEFAULT_CONNECT_TIMEOUT, Timeouts.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new PooledHttpTransport instance.
+	 *
+	 * @param maxPerRoute
+	 * 			the maximum number of concurrent connections to a single host
+	 * @param maxTotal
+	 * 			the maximum number of concurrent connections to all hosts
+	 * @param idleTimeout
+	 * 			the time in milliseconds after which an unused route is forgotten
+	 * @param leaseTimeout
+	 * 			the time in milliseconds to wait for a free connection
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for data on an open connection, 0 for no limit
+	 */
+	public PooledHttpTransport(int maxPerRoute, int maxTotal, long idleTimeout, long leaseTimeout, int connectTimeout,
+			int readTimeout) {
+		if(maxPerRoute <= 0 || maxTotal <= 0) {
+			throw new IllegalArgumentException("Connection limits must be positive");
+		}
+		if(connectTimeout < 0 || readTimeout < 0) {
+			throw new IllegalArgumentException("Timeouts must not be negative");
+		}
+		this.maxPerRoute = maxPerRoute;
+		this.maxTotal = maxTotal;
+		this.idleTimeout = idleTimeout;
+		this.leaseTimeout = leaseTimeout;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.totalPermits = new Semaphore(maxTotal, true);
+	}
+
+	public HttpURLConnection openConnection(AuthenticatedURL authenticatedURL, URL url, AuthenticatedURL.Token token)
+			throws IOException, AuthenticationException {
+		Route route = acquire(url);
+		boolean leased = false;
+		int[] previous = Timeouts.enter(connectTimeout, readTimeout);
+
+		try {
+			HttpURLConnection conn = authenticatedURL.openConnection(url, token);
+			Timeouts.configure(conn, connectTimeout, readTimeout);
+			Lease lease = new Lease(route, route.key + url.getPath());
+			leases.put(conn, lease);
+			LEAK_CLEANER.register(conn, lease);
+			leaseCount.incrementAndGet();
+			leased = true;
+			return conn;
+		}
+		finally {
+			Timeouts.exit(previous);
+			if(!leased) {
+				free(route);
+			}
+		}
+	}
+
+	public void release(HttpURLConnection conn) {
+		if(conn == null) {
+			return;
+		}
+
+		Lease lease = leases.remove(conn);
+
+		try {
+			if(drainErrorStream(conn)) {
+				keptAliveCount.incrementAndGet();
+			}
+			else {
+				conn.disconnect();
+				discardedCount.incrementAndGet();
+			}
+		}
+		finally {
+			if(lease != null) {
+				lease.free();
+			}
+		}
+	}
+
+	public void abort(HttpURLConnection conn) {
+		if(conn == null) {
+			return;
+		}
+
+		Lease lease = leases.remove(conn);
+
+		try {
+			conn.disconnect();
+			discardedCount.incrementAndGet();
+		}
+		finally {
+			if(lease != null) {
+				lease.free();
+			}
+		}
+	}
+
+	public PoolStats getStats() {
+		return new PoolStats(leases.size(), pending.get(), routes.size(), maxPerRoute, maxTotal, leaseCount.get(),
+				keptAliveCount.get(), discardedCount.get(), timeoutCount.get(), evictedRouteCount.get());
+	}
+
+	/**
+	 * Forgets every route that has no connection in use and has not been used for longer
+	 * than the idle timeout
+	 *
+	 * @return the number of routes forgotten
+	 */
+	public int evictIdleRoutes() {
+		long now = System.currentTimeMillis();
+		int evicted = 0;
+		lastEviction.set(now);
+
+		for(Iterator<Route> it = routes.values().iterator(); it.hasNext(); ) {
+			Route route = it.next();
+
+			if(route.isIdle(now - idleTimeout) && routes.remove(route.key, route)) {
+				evicted++;
+			}
+		}
+
+		if(evicted > 0) {
+			evictedRouteCount.addAndGet(evicted);
+			logger.debug("Evicted " + evicted + " idle route(s)");
+		}
+
+		return evicted;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public long getLeaseTimeout() {
+		return leaseTimeout;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	private Route acquire(URL url) throws IOException {
+		long now = System.currentTimeMillis();
+		long last = lastEviction.get();
+
+		if(now - last > idleTimeout && lastEviction.compareAndSet(last, now)) {
+			evictIdleRoutes();
+		}
+
+		Route route = route(url);
+		long deadline = now + leaseTimeout;
+		pending.incrementAndGet();
+
+		try {
+			// route first, then total, so a busy host cannot starve the others of total permits
+			if(!route.permits.tryAcquire(leaseTimeout, TimeUnit.MILLISECONDS)) {
+				throw timeout(route);
+			}
+			if(!totalPermits.tryAcquire(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+				route.permits.release();
+				throw timeout(route);
+			}
+			route.touch();
+			return route;
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection to " + route.key);
+		}
+		finally {
+			pending.decrementAndGet();
+		}
+	}
+
+	private Route route(URL url) {
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		String key = url.getProtocol() + "://" + url.getHost() + ":" + port;
+		Route route = routes.get(key);
+
+		if(route == null) {
+			Route created = new Route(key, maxPerRoute);
+			route = routes.putIfAbsent(key, created);
+			if(route == null) {
+				route = created;
+			}
+		}
+
+		return route;
+	}
+
+	private IOException timeout(Route route) {
+		timeoutCount.incrementAndGet();
+		return new IOException("Timed out after " + leaseTimeout + "ms waiting for a connection to " + route.key
+				+ " " + getStats());
+	}
+
+	private void free(Route route) {
+		if(route != null) {
+			route.touch();
+			route.permits.release();
+			totalPermits.release();
+		}
+	}
+
+	/*
+	 * Reads and closes the body of an error response so that the socket can go back to the
+	 * keep-alive cache. Returns false if the socket should be closed instead.
+	 */
+	private boolean drainErrorStream(HttpURLConnection conn) {
+		InputStream es = conn.getErrorStream();
+
+		if(es == null) {
+			return true;
+		}
+
+		try {
+			byte[] buffer = new byte[4096];
+			int total = 0;
+			int n;
+
+			while(-1 != (n = es.read(buffer))) {
+				total += n;
+				if(total > DEFAULT_DRAIN_LIMIT) {
+					return false;
+				}
+			}
+			es.close();
+			return true;
+		}
+		catch(IOException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * The permits held by one connection, handed back once: by release or abort, or by the
+	 * cleaner when the connection was collected without either. It must not refer to the
+	 * connection, or the connection would never be collected.
+	 */
+	private class Lease implements Runnable {
+		final Route route;
+		final String target;
+		final AtomicBoolean freed = new AtomicBoolean();
+
+		Lease(Route route, String target) {
+			this.route = route;
+			this.target = target;
+		}
+
+		boolean free() {
+			if(!freed.compareAndSet(false, true)) {
+				return false;
+			}
+			PooledHttpTransport.this.free(route);
+			return true;
+		}
+
+		public void run() {
+			if(free()) {
+				logger.warn("A connection to " + target + " was garbage collected without being released, its permit "
+						+ "has been reclaimed; close every iterator and stream that reads a response");
+			}
+		}
+	}
+
+	private static class Route {
+		final String key;
+		final Semaphore permits;
+		final int maxPerRoute;
+		volatile long lastUsed = System.currentTimeMillis();
+
+		Route(String key, int maxPerRoute) {
+			this.key = key;
+			this.maxPerRoute = maxPerRoute;
+			this.permits = new Semaphore(maxPerRoute, true);
+		}
+
+		void touch() {
+			lastUsed = System.currentTimeMillis();
+		}
+
+		boolean isIdle(long idleSince) {
+			return lastUsed < idleSince && permits.availablePermits() == maxPerRoute;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Unpooled {@link HttpTransport}: every connection is disconnected once it has been used,
+ * so each request pays for a fresh TCP (and TLS) handshake, but nothing is held between
+ * requests. Connections, and the connections the authenticator opens for them, get the
+ * {@linkplain Timeouts default timeouts} or those given.
+ */
+public class SimpleHttpTransport implements HttpTransport {
+
+	private final AtomicInteger leased = new AtomicInteger();
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	/**
+	 * Creates a new SimpleHttpTransport instance with the default timeouts.
+	 */
+	public SimpleHttpTransport() {
+		this(Timeouts.DEFAULT_CONNECT_TIMEOUT, Timeouts.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new SimpleHttpTransport instance.
+	 *
+	 * @param connectTimeout
+	 * 			the time in milliseconds to wait for a TCP connection, 0 for no limit
+	 * @param readTimeout
+	 * 			the time in milliseconds to wait for data on an open connection, 0 for no limit
+	 */
+	public SimpleHttpTransport(int connectTimeout, int readTimeout) {
+		if(connectTimeout < 0 || readTimeout < 0) {
+			throw new IllegalArgumentException("Timeouts must not be negative");
+		}
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public HttpURLConnection openConnection(AuthenticatedURL authenticatedURL, URL url, AuthenticatedURL.Token token)
+			throws IOException, AuthenticationException {
+		int[] previous = Timeouts.enter(connectTimeout, readTimeout);
+		try {
+			HttpURLConnection conn = authenticatedURL.openConnection(url, token);
+			Timeouts.configure(conn, connectTimeout, readTimeout);
+			leased.incrementAndGet();
+			leaseCount.incrementAndGet();
+			return conn;
+		}
+		finally {
+			Timeouts.exit(previous);
+		}
+	}
+
+	public void release(HttpURLConnection conn) {
+		abort(conn);
+	}
+
+	public void abort(HttpURLConnection conn) {
+		if(conn != null) {
+			conn.disconnect();
+			leased.decrementAndGet();
+		}
+	}
+
+	public PoolStats getStats() {
+		long count = leaseCount.get();
+		return new PoolStats(leased.get(), 0, 0, 0, 0, count, 0L, count - leased.get(), 0L, 0L);
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connect and read timeouts of the connections opened by the current thread.
+ * <p>
+ * A transport {@linkplain #enter(int, int) enters} its timeouts while it opens a connection, so
+ * that the connections an authenticator opens on its own, such as the pseudo authentication
+ * handshake, are bounded like the request itself; outside of a transport the defaults apply. A
+ * caller with a deadline, such as {@link org.apache.hadoop.fs.http.client.RetryingWebHDFSConnection},
+ * {@linkplain #enterDeadline(long) enters} it around each call, and every timeout is then capped to
+ * the time left before it. A caller that must notice a host that hangs sooner than the transport
+ * would, such as {@link org.apache.hadoop.fs.http.client.FailoverWebHDFSConnection}, caps every
+ * timeout with a {@linkplain #enterLimit(int) limit}.
+ */
+public final class Timeouts {
+
+	/** The default time to wait for a TCP connection, as {@code dfs.webhdfs.socket.connect-timeout} */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 60000;
+
+	/** The default time to wait for data on an open connection, as {@code dfs.webhdfs.socket.read-timeout} */
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+	private static final ThreadLocal<int[]> TIMEOUTS = new ThreadLocal<int[]>();
+	private static final ThreadLocal<long[]> DEADLINE = new ThreadLocal<long[]>();
+	private static final ThreadLocal<int[]> LIMIT = new ThreadLocal<int[]>();
+
+	private Timeouts() {
+	}
+
+	/**
+	 * Makes the connections opened by this thread use the given timeouts, until {@link #exit(int[])}
+	 *
+	 * @param connectTimeout
+	 * 			the connect timeout in milliseconds, 0 for none
+	 * @param readTimeout
+	 * 			the read timeout in milliseconds, 0 for none
+	 * @return the timeouts to restore with {@link #exit(int[])}
+	 */
+	public static int[] enter(int connectTimeout, int readTimeout) {
+		int[] previous = TIMEOUTS.get();
+		TIMEOUTS.set(new int[] { connectTimeout, readTimeout });
+		return previous;
+	}
+
+	/**
+	 * @param previous
+	 * 			what {@link #enter(int, int)} returned
+	 */
+	public static void exit(int[] previous) {
+		if(previous == null) {
+			TIMEOUTS.remove();
+		}
+		else {
+			TIMEOUTS.set(previous);
+		}
+	}
+
+	/**
+	 * Caps the timeouts of the connections opened by this thread to the time left before
+	 * {@code deadlineNanos}, until {@link #exitDeadline(long[])}. An earlier deadline already
+	 * entered is kept.
+	 *
+	 * @param deadlineNanos
+	 * 			the deadline, as a {@link System#nanoTime()} value
+	 * @return the deadline to restore with {@link #exitDeadline(long[])}
+	 */
+	public static long[] enterDeadline(long deadlineNanos) {
+		long[] previous = DEADLINE.get();
+		if(previous == null || deadlineNanos - previous[0] < 0) {
+			DEADLINE.set(new long[] { deadlineNanos });
+		}
+		return previous;
+	}
+
+	/**
+	 * @param previous
+	 * 			what {@link #enterDeadline(long)} returned
+	 */
+	public static void exitDeadline(long[] previous) {
+		if(previous == null) {
+			DEADLINE.remove();
+		}
+		else {
+			DEADLINE.set(previous);
+		}
+	}
+
+	/**
+	 * Caps the timeouts of the connections opened by this thread to {@code limitMillis}, until
+	 * {@link #exitLimit(int)}. A lower limit already entered is kept.
+	 *
+	 * @param limitMillis
+	 * 			the longest connect and read timeout in milliseconds, 0 for no limit
+	 * @return the limit to restore with {@link #exitLimit(int)}
+	 */
+	public static int enterLimit(int limitMillis) {
+		int[] previous = LIMIT.get();
+		if(previous == null) {
+			if(limitMillis > 0) {
+				LIMIT.set(new int[] { limitMillis });
+			}
+			return 0;
+		}
+		if(limitMillis > 0 && limitMillis < previous[0]) {
+			LIMIT.set(new int[] { limitMillis });
+		}
+		return previous[0];
+	}
+
+	/**
+	 * @param previous
+	 * 			what {@link #enterLimit(int)} returned
+	 */
+	public static void exitLimit(int previous) {
+		if(previous == 0) {
+			LIMIT.remove();
+		}
+		else {
+			LIMIT.set(new int[] { previous });
+		}
+	}
+
+	/**
+	 * Sets the timeouts entered by this thread, or the defaults, on {@code conn}
+	 *
+	 * @param conn
+	 * 			an unconnected connection
+	 */
+	public static void configure(HttpURLConnection conn) {
+		int[] timeouts = TIMEOUTS.get();
+		if(timeouts == null) {
+			configure(conn, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+		}
+		else {
+			configure(conn, timeouts[0], timeouts[1]);
+		}
+	}
+
+	/**
+	 * Sets the given timeouts, capped to the limit and the deadline of this thread, on {@code conn}
+	 *
+	 * @param conn
+	 * 			an unconnected connection
+	 * @param connectTimeout
+	 * 			the connect timeout in milliseconds, 0 for none
+	 * @param readTimeout
+	 * 			the read timeout in milliseconds, 0 for none
+	 */
+	public static void configure(HttpURLConnection conn, int connectTimeout, int readTimeout) {
+		conn.setConnectTimeout(cap(connectTimeout));
+		conn.setReadTimeout(cap(readTimeout));
+	}
+
+	/**
+	 * @param timeoutMillis
+	 * 			a timeout in milliseconds, 0 for none
+	 * @return the timeout capped to the limit of this thread and to the time left before its
+	 * 			deadline, and at least 1 as 0 would mean none
+	 */
+	public static int cap(int timeoutMillis) {
+		int[] limit = LIMIT.get();
+		if(limit != null && (timeoutMillis == 0 || limit[0] < timeoutMillis)) {
+			timeoutMillis = limit[0];
+		}
+
+		long[] deadline = DEADLINE.get();
+		if(deadline == null) {
+			return timeoutMillis;
+		}
+
+		long left = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline[0] - System.nanoTime()));
+		return timeoutMillis == 0 || left < timeoutMillis ? (int) Math.min(left, Integer.MAX_VALUE) : timeoutMillis;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream, e.g. to tell whether an upload body can still be sent
+ * again. Mark and reset are not supported.
+ */
+public final class CountingInputStream extends FilterInputStream {
+
+	private long count;
+
+	/**
+	 * @param in
+	 * 			the stream to count the bytes of
+	 */
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return the number of bytes read or skipped so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return whether nothing has been read or skipped yet
+	 */
+	public boolean isUntouched() {
+		return count == 0;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if(b >= 0) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, len);
+		if(n > 0) {
+			count += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readlimit) {
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized direct {@link ByteBuffer}s.
+ * <p>
+ * Direct buffers are expensive to allocate and are only freed by the garbage collector, so they are
+ * kept for reuse. Buffers released when the pool is full are left to the garbage collector.
+ */
+public class DirectBufferPool {
+
+	/** The size of the buffers in the shared pool */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	/** The number of idle buffers the shared pool keeps */
+	public static final int DEFAULT_MAX_POOLED = 16;
+
+	private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Creates a new DirectBufferPool instance.
+	 *
+	 * @param bufferSize
+	 * 			the capacity of every buffer
+	 * @param maxPooled
+	 * 			the maximum number of idle buffers kept
+	 */
+	public DirectBufferPool(int bufferSize, int maxPooled) {
+		if(bufferSize <= 0) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * @return the pool shared by all downloads
+	 */
+	public static DirectBufferPool getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return a cleared buffer, from the pool if one is idle
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+
+		if(buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns {@code buffer} to the pool. It must not be used afterwards.
+	 *
+	 * @param buffer
+	 * 			a buffer obtained from {@link #acquire()}
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+			return;
+		}
+
+		if(pooled.incrementAndGet() <= maxPooled) {
+			buffers.offer(buffer);
+		}
+		else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return the number of idle buffers in the pool
+	 */
+	public int getPooledCount() {
+		return pooled.get();
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link OutputStream} that writes to a {@link FileChannel} at an explicit position, so several
+ * of them can fill different regions of the same file concurrently.
+ * <p>
+ * Closing the stream does not close the channel.
+ */
+public class FileChannelOutputStream extends OutputStream {
+
+	private final FileChannel channel;
+	private final long start;
+	private long position;
+
+	/**
+	 * Creates a new FileChannelOutputStream instance.
+	 *
+	 * @param channel
+	 * 			the channel to write to
+	 * @param position
+	 * 			the position in {@code channel} of the first byte written
+	 */
+	public FileChannelOutputStream(FileChannel channel, long position) {
+		Assert.notNull(channel, "Property <channel> must not be null");
+		this.channel = channel;
+		this.start = position;
+		this.position = position;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * @return the position in the channel of the next byte written
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public long getCount() {
+		return position - start;
+	}
+}
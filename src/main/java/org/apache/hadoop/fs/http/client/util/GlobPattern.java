@@ -0,0 +1,163 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Translates one path component of a glob into a regular expression.
+ * <p>
+ * Supported are {@code *} (any characters), {@code ?} (one character), {@code [abc]},
+ * {@code [a-z]} and {@code [!a]} or {@code [^a]} (character classes), {@code {a,b}}
+ * (alternatives, which may nest and contain wildcards) and {@code \} to escape the next
+ * character. A component never matches {@code /}.
+ */
+public class GlobPattern {
+
+	/**
+	 * @param component
+	 * 			a path component of a glob
+	 * @return true if {@code component} contains an unescaped wildcard, and so matches more
+	 * 			than the one name it spells
+	 */
+	public static boolean hasWildcard(String component) {
+		for(int i = 0; i < component.length(); i++) {
+			char c = component.charAt(i);
+
+			if(c == '\\') {
+				i++;
+			}
+			else if(c == '*' || c == '?' || c == '[' || c == '{') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param component
+	 * 			a path component without wildcards
+	 * @return the name {@code component} spells, with escapes removed
+	 */
+	public static String unescape(String component) {
+		StringBuilder name = new StringBuilder(component.length());
+
+		for(int i = 0; i < component.length(); i++) {
+			char c = component.charAt(i);
+			if(c == '\\' && i + 1 < component.length()) {
+				c = component.charAt(++i);
+			}
+			name.append(c);
+		}
+		return name.toString();
+	}
+
+	/**
+	 * @param component
+	 * 			a path component of a glob
+	 * @return the equivalent regular expression
+	 * @throws IllegalArgumentException if a character class or alternative is not closed
+	 */
+	public static Pattern compile(String component) {
+		StringBuilder regex = new StringBuilder(component.length() * 2);
+		int braces = 0;
+
+		for(int i = 0; i < component.length(); i++) {
+			char c = component.charAt(i);
+
+			switch(c) {
+			case '\\':
+				if(i + 1 < component.length()) {
+					regex.append(Pattern.quote(String.valueOf(component.charAt(++i))));
+				}
+				else {
+					regex.append("\\\\");
+				}
+				break;
+			case '*':
+				regex.append("[^/]*");
+				break;
+			case '?':
+				regex.append("[^/]");
+				break;
+			case '[':
+				i = characterClass(component, i, regex);
+				break;
+			case '{':
+				regex.append("(?:");
+				braces++;
+				break;
+			case ',':
+				regex.append(braces > 0 ? "|" : ",");
+				break;
+			case '}':
+				if(braces > 0) {
+					regex.append(')');
+					braces--;
+				}
+				else {
+					regex.append("\\}");
+				}
+				break;
+			default:
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+
+		if(braces > 0) {
+			throw new IllegalArgumentException("Unclosed { in glob: " + component);
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	/*
+	 * Copies the class starting at component[start] into regex, returns the index of its ]
+	 */
+	private static int characterClass(String component, int start, StringBuilder regex) {
+		int i = start + 1;
+		regex.append('[');
+
+		if(i < component.length() && (component.charAt(i) == '!' || component.charAt(i) == '^')) {
+			regex.append('^');
+			i++;
+		}
+
+		boolean empty = true;
+		for(; i < component.length(); i++) {
+			char c = component.charAt(i);
+
+			if(c == ']' && !empty) {
+				regex.append(']');
+				return i;
+			}
+			if(c == '\\' && i + 1 < component.length()) {
+				c = component.charAt(++i);
+			}
+
+			if(c == '-' && !empty && i + 1 < component.length() && component.charAt(i + 1) != ']') {
+				regex.append('-');
+			}
+			else if(c == '[' || c == ']' || c == '\\' || c == '^' || c == '&' || c == '-') {
+				regex.append('\\').append(c);
+			}
+			else {
+				regex.append(c);
+			}
+			empty = false;
+		}
+
+		throw new IllegalArgumentException("Unclosed [ in glob: " + component);
+	}
+}
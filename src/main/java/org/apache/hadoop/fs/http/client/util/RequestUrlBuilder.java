@@ -0,0 +1,317 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Builds the URLs of WebHDFS requests against one server.
+ * <p>
+ * The server URL is parsed once, when the builder is created, and the path and query of each
+ * request are written into a per-thread {@link StringBuilder} that is reused from call to call:
+ *
+ * <pre>
+ * URL url = urls.start(Op.LISTSTATUS_BATCH, path).argument("user.name", user).argument("startAfter", last).toURL();
+ * </pre>
+ *
+ * Paths are percent-encoded like {@link URLUtil#encodePath(String)} and query values like
+ * {@link URLUtil#argument(String, String)}, straight from the characters to UTF-8 through a lookup
+ * table, without an intermediate encoder or byte array.
+ */
+public final class RequestUrlBuilder {
+
+	/**
+	 * A WebHDFS operation, with its {@code ?op=} query precomputed
+	 */
+	public enum Op {
+		OPEN, GETFILESTATUS, LISTSTATUS, LISTSTATUS_BATCH, GETCONTENTSUMMARY, GETFILECHECKSUM,
+		GETHOMEDIRECTORY, GETDELEGATIONTOKEN, CREATE, MKDIRS, CREATESYMLINK, RENAME, SETREPLICATION,
+		SETOWNER, SETPERMISSION, SETTIMES, RENEWDELEGATIONTOKEN, CANCELDELEGATIONTOKEN, APPEND, DELETE;
+
+		final String query = "?op=" + name();
+	}
+
+	static final String PATH_PREFIX = "/webhdfs/v1/";
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/** ASCII characters left as they are in a path, see {@link URLUtil#encodePath(String)} */
+	private static final boolean[] PATH_SAFE = new boolean[128];
+
+	/** ASCII characters left as they are in a query value, as by {@link java.net.URLEncoder} */
+	private static final boolean[] VALUE_SAFE = new boolean[128];
+
+	static {
+		for(char c = 'a'; c <= 'z'; c++) {
+			PATH_SAFE[c] = VALUE_SAFE[c] = true;
+		}
+		for(char c = 'A'; c <= 'Z'; c++) {
+			PATH_SAFE[c] = VALUE_SAFE[c] = true;
+		}
+		for(char c = '0'; c <= '9'; c++) {
+			PATH_SAFE[c] = VALUE_SAFE[c] = true;
+		}
+		for(char c : "$-_.+!*'(),/:@&=".toCharArray()) {
+			PATH_SAFE[c] = true;
+		}
+		for(char c : ".-*_".toCharArray()) {
+			VALUE_SAFE[c] = true;
+		}
+	}
+
+	private static final ThreadLocal<Request> REQUESTS = ThreadLocal.withInitial(Request::new);
+
+	private final String baseUrl;
+	private final URL base;
+	private final MalformedURLException malformed;
+
+	/**
+	 * @param baseUrl
+	 * 			the WebHDFS/HttpFS base URL; only its scheme, user info, host and port are used
+	 */
+	public RequestUrlBuilder(String baseUrl) {
+		Assert.notNull(baseUrl, "Property <baseUrl> must not be null");
+		URL parsed = null;
+		MalformedURLException error = null;
+		try {
+			parsed = new URL(baseUrl);
+		}
+		catch(MalformedURLException e) {
+			// reported by every request, as before
+			error = e;
+		}
+		this.baseUrl = baseUrl;
+		this.base = parsed;
+		this.malformed = error;
+	}
+
+	/**
+	 * Starts the URL of a request. The returned builder belongs to the calling thread and is reset
+	 * by its next call to this method, on any {@code RequestUrlBuilder}, so finish one URL before
+	 * starting the next and do not keep the builder.
+	 *
+	 * @param op
+	 * 			the operation
+	 * @param path
+	 * 			the HDFS path, or null for operations on no path such as GETHOMEDIRECTORY
+	 * @return the builder of the request, holding {@code /webhdfs/v1/<path>?op=<op>}
+	 */
+	public Request start(Op op, String path) {
+		Request request = REQUESTS.get();
+		request.owner = this;
+		StringBuilder spec = request.spec;
+		spec.setLength(0);
+		spec.append(PATH_PREFIX);
+		if(path != null) {
+			encodePath(path, spec);
+		}
+		spec.append(op.query);
+		return request;
+	}
+
+	/**
+	 * @return the base URL this builder was created with
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/*
+	 * Only the scheme, user info, host and port of the base URL are kept: the spec starts with
+	 * /webhdfs/v1, so a path prefix of the base URL, e.g. of a gateway behind a proxy, is dropped
+	 * for every request alike.
+	 */
+	URL toURL(CharSequence spec) throws MalformedURLException {
+		if(malformed != null) {
+			throw new MalformedURLException(malformed.getMessage());
+		}
+
+		String file = spec.toString();
+		if(base.getUserInfo() != null) {
+			// the host-and-port constructor cannot carry user info
+			return new URL(base, file);
+		}
+		return new URL(base.getProtocol(), base.getHost(), base.getPort(), file);
+	}
+
+	/**
+	 * Percent-encodes {@code path} as UTF-8, leaving {@code /} and the other characters that are
+	 * safe in a path as they are.
+	 *
+	 * @param path
+	 * 			the path to encode
+	 * @param out
+	 * 			receives the encoded path
+	 */
+	public static void encodePath(CharSequence path, StringBuilder out) {
+		encode(path, out, PATH_SAFE);
+	}
+
+	/**
+	 * Percent-encodes {@code value} as UTF-8 for a query, like {@link java.net.URLEncoder} but
+	 * with a space as {@code %20}.
+	 *
+	 * @param value
+	 * 			the value to encode
+	 * @param out
+	 * 			receives the encoded value
+	 */
+	public static void encodeValue(CharSequence value, StringBuilder out) {
+		encode(value, out, VALUE_SAFE);
+	}
+
+	private static void encode(CharSequence s, StringBuilder out, boolean[] safe) {
+		int length = s.length();
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				if(safe[c]) {
+					out.append(c);
+				}
+				else {
+					appendByte(out, c);
+				}
+			}
+			else if(c < 0x800) {
+				appendByte(out, 0xC0 | (c >> 6));
+				appendByte(out, 0x80 | (c & 0x3F));
+			}
+			else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				appendByte(out, 0xF0 | (codePoint >> 18));
+				appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendByte(out, 0x80 | (codePoint & 0x3F));
+			}
+			else if(Character.isSurrogate(c)) {
+				// unpaired, replaced like the UTF-8 encoder does
+				appendByte(out, '?');
+			}
+			else {
+				appendByte(out, 0xE0 | (c >> 12));
+				appendByte(out, 0x80 | ((c >> 6) & 0x3F));
+				appendByte(out, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static void appendByte(StringBuilder out, int b) {
+		out.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+	}
+
+	/**
+	 * The path and query of one request, see {@link RequestUrlBuilder#start(Op, String)}
+	 */
+	public static final class Request {
+
+		private final StringBuilder spec = new StringBuilder(256);
+		private RequestUrlBuilder owner;
+
+		private Request() {
+		}
+
+		/**
+		 * @param name
+		 * 			the parameter name
+		 * @param value
+		 * 			the value, encoded here, or null to omit the argument
+		 * @return this
+		 */
+		public Request argument(String name, String value) {
+			if(value != null) {
+				spec.append('&').append(name).append('=');
+				encodeValue(value, spec);
+			}
+			return this;
+		}
+
+		/**
+		 * @param name
+		 * 			the parameter name
+		 * @param value
+		 * 			the value
+		 * @return this
+		 */
+		public Request argument(String name, long value) {
+			spec.append('&').append(name).append('=').append(value);
+			return this;
+		}
+
+		/**
+		 * @param name
+		 * 			the parameter name, e.g. {@code destination}
+		 * @param path
+		 * 			an HDFS path, encoded like the path of the request
+		 * @return this
+		 */
+		public Request pathArgument(String name, String path) {
+			spec.append('&').append(name).append('=');
+			encodePath(path, spec);
+			return this;
+		}
+
+		/**
+		 * Adds the {@code offset} and {@code length} arguments of a ranged OPEN, see
+		 * {@link URLUtil#rangeArguments(long, long)}.
+		 *
+		 * @param offset
+		 * 			the position of the first byte, omitted if 0
+		 * @param length
+		 * 			the number of bytes, negative to read to the end of the file
+		 * @return this
+		 */
+		public Request range(long offset, long length) {
+			if(offset < 0) {
+				throw new IllegalArgumentException("offset must not be negative: " + offset);
+			}
+			if(offset > 0) {
+				argument("offset", offset);
+			}
+			if(length >= 0) {
+				argument("length", length);
+			}
+			return this;
+		}
+
+		/**
+		 * @param arguments
+		 * 			arguments that are already encoded, each starting with {@code &}
+		 * @return this
+		 */
+		public Request append(String arguments) {
+			spec.append(arguments);
+			return this;
+		}
+
+		/**
+		 * @return the URL of the request, at the host and port of the base URL; a path of the base
+		 * 			URL is not kept
+		 * @throws MalformedURLException
+		 * 			if the base URL of the builder is malformed
+		 */
+		public URL toURL() throws MalformedURLException {
+			return owner.toURL(spec);
+		}
+
+		/**
+		 * @return the path and query of the request
+		 */
+		@Override
+		public String toString() {
+			return spec.toString();
+		}
+	}
+}
@@ -14,11 +14,13 @@
  */
 package org.apache.hadoop.fs.http.client.util;
 
-import java.lang.reflect.Type;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.fs.http.client.HttpStatusException;
+import org.apache.hadoop.fs.http.client.RemoteException;
 
 public class ResponseUtil {
 
@@ -40,10 +42,66 @@ public class ResponseUtil {
 	 * @param json
 	 * 			the JSON representation of the response
 	 * @return a {@link Map} containing the 
+	 * @throws IOException if {@code json} is not a JSON object
 	 */
-	public static Map<String, Object> toMap(String json) {
-		Gson gson = new Gson();
-		Type type = new TypeToken<Map<String, Object>>() {}.getType();
-		return gson.fromJson(json, type);
+	public static Map<String, Object> toMap(String json) throws IOException {
+		return SerializationUtils.readMap(json);
+	}
+
+	/**
+	 * Builds the exception for a failed request from its error body.
+	 * 
+	 * @param op
+	 * 			the WebHDFS operation, e.g. {@code GETFILESTATUS}
+	 * @param path
+	 * 			the HDFS path of the request
+	 * @param code
+	 * 			the HTTP status code
+	 * @param message
+	 * 			the HTTP status message
+	 * @param error
+	 * 			the error body, or null; it is closed
+	 * @return the exception to throw
+	 * @see #toException(String, String, int, String, String)
+	 */
+	public static IOException toException(String op, String path, int code, String message, InputStream error) {
+		String body = "";
+		if(error != null) {
+			try {
+				body = Streams.toString(error);
+			}
+			catch(IOException e) {
+				// report the status line alone
+			}
+		}
+		return toException(op, path, code, message, body);
+	}
+
+	/**
+	 * Builds the exception for a failed request: {@link FileNotFoundException} for a 404, the
+	 * {@link RemoteException} held by the error body if there is one, or an
+	 * {@link HttpStatusException} otherwise.
+	 * 
+	 * @param op
+	 * 			the WebHDFS operation, e.g. {@code GETFILESTATUS}
+	 * @param path
+	 * 			the HDFS path of the request
+	 * @param code
+	 * 			the HTTP status code
+	 * @param message
+	 * 			the HTTP status message
+	 * @param body
+	 * 			the error body
+	 * @return the exception to throw
+	 */
+	public static IOException toException(String op, String path, int code, String message, String body) {
+		RemoteException remote = SerializationUtils.getRemoteException(body);
+		if(code == 404) {
+			return new FileNotFoundException(remote == null ? path : remote.getMessage());
+		}
+		if(remote != null) {
+			return remote;
+		}
+		return new HttpStatusException(code, op + " " + path + " failed: " + code + " " + message);
 	}
 }
@@ -10,55 +10,391 @@
  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
- * 
+ *
  */
 package org.apache.hadoop.fs.http.client.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.hadoop.fs.http.client.ContentSummary;
+import org.apache.hadoop.fs.http.client.FileChecksum;
 import org.apache.hadoop.fs.http.client.FileStatus;
+import org.apache.hadoop.fs.http.client.FileStatusBatch;
+import org.apache.hadoop.fs.http.client.RemoteException;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
+/**
+ * Decodes WebHDFS JSON responses.
+ * <p>
+ * All parsing in this library goes through the shared, immutable and thread-safe Jackson
+ * instances held here, so no mapper or factory is ever built per call. The typed decoders
+ * stream straight into the model classes without building a tree; a response holding a
+ * {@code RemoteException} instead of the expected object is thrown as a
+ * {@link RemoteException}.
+ */
 public class SerializationUtils {
-	
-	private static final Gson gson = new GsonBuilder()
-		.registerTypeAdapter(FileStatus.class, FileStatus.adapter())
-		.registerTypeAdapter(ContentSummary.class, ContentSummary.adapter())
-		.create();
-	
+
+	private static final JsonFactory factory = new JsonFactory();
+
+	private static final ObjectMapper mapper = new ObjectMapper(factory);
+
+	private static final ObjectReader treeReader = mapper.reader();
+
+	private static final ObjectReader mapReader = mapper.readerFor(Map.class);
+
+	/**
+	 * Reads one value from a parser positioned on its first token.
+	 */
+	public interface Decoder<T> {
+
+		T read(JsonParser p) throws IOException;
+	}
+
+	/**
+	 * @param is
+	 * 			a JSON document, closed when the parser is closed
+	 * @return a new streaming parser on the shared factory
+	 * @throws IOException
+	 */
+	public static JsonParser createParser(InputStream is) throws IOException {
+		return factory.createParser(is);
+	}
+
+	/**
+	 * @param data
+	 * 			a JSON document
+	 * @return a new streaming parser on the shared factory
+	 * @throws IOException
+	 */
+	public static JsonParser createParser(String data) throws IOException {
+		return factory.createParser(data);
+	}
+
+	/**
+	 * @param data
+	 * 			a JSON document
+	 * @return the document as a tree
+	 * @throws IOException
+	 */
+	public static JsonNode readTree(String data) throws IOException {
+		return treeReader.readTree(data);
+	}
+
+	/**
+	 * @param data
+	 * 			a JSON object
+	 * @return the object as nested {@link Map}s, {@link List}s and values
+	 * @throws IOException
+	 */
+	public static Map<String, Object> readMap(String data) throws IOException {
+		return mapReader.readValue(data);
+	}
+
+	/**
+	 * Decodes a response straight from its body, without an intermediate String or tree.
+	 *
+	 * @param is
+	 * 			the response body, closed when done
+	 * @param wrapper
+	 * 			the top-level property holding the value, e.g. {@code FileStatus}
+	 * @param decoder
+	 * 			reads the value, e.g. {@code FileStatus::read}
+	 * @return the decoded value
+	 * @throws RemoteException if the body holds a RemoteException instead
+	 * @throws IOException
+	 */
+	public static <T> T decode(InputStream is, String wrapper, Decoder<T> decoder) throws IOException {
+		try (JsonParser p = open(createParser(is), wrapper)) {
+			return decoder.read(p);
+		}
+	}
+
 	/**
 	 * Convenience method to convert a JSON data String into a {@link ContentSummary}
-	 * 
+	 *
 	 * @param data
 	 * 			the JSON String
 	 * @return a new {@link ContentSummary} instance
+	 * @throws IOException
 	 */
-	public static ContentSummary getContentSummary(final String data) {
-		return deserialize(data, ContentSummary.class);
+	public static ContentSummary getContentSummary(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "ContentSummary")) {
+			return ContentSummary.read(p);
+		}
 	}
 
 	/**
 	 * Convenience method to convert a JSON data String into a {@link FileStatus}
-	 * 
+	 *
 	 * @param data
 	 * 			the JSON String
 	 * @return a new {@link FileStatus} instance
+	 * @throws IOException
 	 */
-	public static FileStatus getFileStatus(final String data) {
-		return deserialize(data, FileStatus.class);
+	public static FileStatus getFileStatus(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "FileStatus")) {
+			return FileStatus.read(p);
+		}
 	}
 
 	/**
-	 * Common method to convert a JSON data String into a {@code T}
-	 * 
+	 * Convenience method to convert the JSON data String of a LISTSTATUS response into
+	 * {@link FileStatus} instances
+	 *
 	 * @param data
 	 * 			the JSON String
-	 * @param clazz
-	 * 			the target {@link Class}
-	 * @return a new instance of {@code clazz}
+	 * @return the entries, in the server's order
+	 * @throws IOException
 	 */
-	public static <T> T deserialize(final String data, Class<T> clazz) {
-		return gson.fromJson(data, clazz);
+	public static List<FileStatus> getFileStatuses(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "FileStatuses")) {
+			return readFileStatuses(p);
+		}
+	}
+
+	/**
+	 * Convenience method to convert the JSON data String of a LISTSTATUS response into a
+	 * {@link FileStatusBatch}
+	 *
+	 * @param data
+	 * 			the JSON String
+	 * @return a new {@link FileStatusBatch} instance
+	 * @throws IOException
+	 */
+	public static FileStatusBatch getFileStatusBatch(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "FileStatuses")) {
+			return FileStatusBatch.read(p);
+		}
+	}
+
+	/**
+	 * Convenience method to convert a JSON data String into a {@link FileChecksum}
+	 *
+	 * @param data
+	 * 			the JSON String
+	 * @return a new {@link FileChecksum} instance
+	 * @throws IOException
+	 */
+	public static FileChecksum getFileChecksum(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "FileChecksum")) {
+			return FileChecksum.read(p);
+		}
+	}
+
+	/**
+	 * Convenience method to read the result of e.g. MKDIRS, RENAME or DELETE
+	 *
+	 * @param data
+	 * 			the JSON String, {@code {"boolean":true}}
+	 * @return the boolean
+	 * @throws IOException
+	 */
+	public static boolean getBoolean(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "boolean")) {
+			return readBoolean(p);
+		}
+	}
+
+	/**
+	 * Convenience method to read the result of e.g. RENEWDELEGATIONTOKEN
+	 *
+	 * @param data
+	 * 			the JSON String, {@code {"long":1352084683097}}
+	 * @return the long
+	 * @throws IOException
+	 */
+	public static long getLong(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "long")) {
+			return p.getLongValue();
+		}
+	}
+
+	/**
+	 * Convenience method to read the result of GETHOMEDIRECTORY
+	 *
+	 * @param data
+	 * 			the JSON String, {@code {"Path":"/user/test"}}
+	 * @return the path
+	 * @throws IOException
+	 */
+	public static String getPath(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "Path")) {
+			return p.getValueAsString();
+		}
+	}
+
+	/**
+	 * Convenience method to read the result of GETDELEGATIONTOKEN
+	 *
+	 * @param data
+	 * 			the JSON String, {@code {"Token":{"urlString":"..."}}}
+	 * @return the encoded token, or null if the server returned none
+	 * @throws IOException
+	 */
+	public static String getToken(final String data) throws IOException {
+		try (JsonParser p = open(createParser(data), "Token")) {
+			return readToken(p);
+		}
+	}
+
+	/**
+	 * Convenience method to convert the JSON error body of a failed request into a
+	 * {@link RemoteException}
+	 *
+	 * @param data
+	 * 			the JSON String, {@code {"RemoteException":{...}}}
+	 * @return a new {@link RemoteException} instance, or null if {@code data} holds none
+	 */
+	public static RemoteException getRemoteException(final String data) {
+		try (JsonParser p = createParser(data)) {
+			if(p.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String name = p.getCurrentName();
+				p.nextToken();
+
+				if(name.equals("RemoteException") && p.getCurrentToken() == JsonToken.START_OBJECT) {
+					return RemoteException.read(p);
+				}
+				p.skipChildren();
+			}
+		}
+		catch(IOException e) {
+			// not JSON, e.g. an HTML error page from a proxy
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the {@code FileStatus} array of a {@code FileStatuses} object.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the start of the {@code FileStatuses} object
+	 * @return the entries, in the server's order
+	 * @throws IOException
+	 */
+	public static List<FileStatus> readFileStatuses(JsonParser p) throws IOException {
+		List<FileStatus> entries = new ArrayList<FileStatus>();
+		if(p.getCurrentToken() != JsonToken.START_OBJECT) {
+			p.skipChildren();
+			return entries;
+		}
+
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String name = p.getCurrentName();
+			p.nextToken();
+
+			if(name.equals("FileStatus") && p.getCurrentToken() == JsonToken.START_ARRAY) {
+				while(p.nextToken() == JsonToken.START_OBJECT) {
+					entries.add(FileStatus.read(p));
+				}
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads the {@code Token} object of a GETDELEGATIONTOKEN response.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the {@code Token} value
+	 * @return the encoded token, or null if the value is null or has no {@code urlString}
+	 * @throws IOException
+	 */
+	public static String readToken(JsonParser p) throws IOException {
+		String token = null;
+
+		if(p.getCurrentToken() == JsonToken.START_OBJECT) {
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String name = p.getCurrentName();
+				p.nextToken();
+
+				if(name.equals("urlString")) {
+					token = p.getValueAsString();
+				}
+				else {
+					p.skipChildren();
+				}
+			}
+		}
+		return token;
+	}
+
+	/**
+	 * Reads a JSON number as a long.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the value
+	 * @return the long
+	 * @throws IOException if the value is not a number
+	 */
+	public static long readLong(JsonParser p) throws IOException {
+		if(p.getCurrentToken() == null || !p.getCurrentToken().isNumeric()) {
+			throw new IOException("Expected a number, not " + p.getText());
+		}
+		return p.getLongValue();
+	}
+
+	/**
+	 * Reads a JSON boolean.
+	 *
+	 * @param p
+	 * 			the parser, positioned on the value
+	 * @return the boolean
+	 * @throws IOException if the value is not a boolean
+	 */
+	public static boolean readBoolean(JsonParser p) throws IOException {
+		if(p.getCurrentToken() == null || !p.getCurrentToken().isBoolean()) {
+			throw new IOException("Expected a boolean, not " + p.getText());
+		}
+		return p.getBooleanValue();
+	}
+
+	/*
+	 * Moves p to the value of the top-level property named wrapper
+	 */
+	private static JsonParser open(JsonParser p, String wrapper) throws IOException {
+		boolean found = false;
+
+		try {
+			if(p.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a JSON object");
+			}
+
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String name = p.getCurrentName();
+				p.nextToken();
+
+				if(name.equals(wrapper)) {
+					found = true;
+					return p;
+				}
+				if(name.equals("RemoteException") && p.getCurrentToken() == JsonToken.START_OBJECT) {
+					throw RemoteException.read(p);
+				}
+				p.skipChildren();
+			}
+			throw new IOException("No " + wrapper + " in response");
+		}
+		finally {
+			if(!found) {
+				p.close();
+			}
+		}
 	}
 }
@@ -15,10 +15,16 @@
 package org.apache.hadoop.fs.http.client.util;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 public class Streams {
 	
@@ -83,7 +89,6 @@ public class Streams {
 			while(-1 != (n = instream.read(buffer))) {
 				outstream.write(buffer, 0, n);
 				count += n;
-				outstream.flush();
 			}
 	
 			outstream.flush();
@@ -95,4 +100,105 @@ public class Streams {
 		
 		return count;
 	}
+
+	/**
+	 * Copies {@code instream} into {@code channel} starting at {@code position}, through a direct
+	 * buffer from the {@link DirectBufferPool#getShared() shared pool}. Each write to the channel
+	 * is a full buffer, so a large file costs one write call per megabyte rather than per read.
+	 * <p>
+	 * {@code instream} is closed, {@code channel} is not.
+	 * 
+	 * @param instream
+	 * 			the {@link InputStream}
+	 * @param channel
+	 * 			the {@link FileChannel}
+	 * @param position
+	 * 			the position in {@code channel} of the first byte
+	 * @return A long containing the number of bytes that were copied
+	 * @throws IOException
+	 */
+	public static long copy(InputStream instream, FileChannel channel, long position) throws IOException {
+		DirectBufferPool pool = DirectBufferPool.getShared();
+		ByteBuffer buffer = pool.acquire();
+		ReadableByteChannel source = Channels.newChannel(instream);
+		long count = 0L;
+
+		try {
+			while(-1 != source.read(buffer)) {
+				if(!buffer.hasRemaining()) {
+					count += drain(buffer, channel, position + count);
+				}
+			}
+			count += drain(buffer, channel, position + count);
+		}
+		finally {
+			pool.release(buffer);
+			Closeables.closeQuietly(instream);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Copies {@code length} bytes of {@code channel}, starting at {@code position}, into
+	 * {@code outstream} through a direct buffer from the {@link DirectBufferPool#getShared() shared
+	 * pool}, so no heap buffer is allocated per copy and {@code available()} is never consulted.
+	 * <p>
+	 * {@code outstream} is closed, {@code channel} is not.
+	 * 
+	 * @param channel
+	 * 			the {@link FileChannel}
+	 * @param position
+	 * 			the position in {@code channel} of the first byte
+	 * @param length
+	 * 			the number of bytes to copy
+	 * @param outstream
+	 * 			the {@link OutputStream}
+	 * @return A long containing the number of bytes that were copied
+	 * @throws EOFException if {@code channel} ends before {@code length} bytes were read
+	 * @throws IOException
+	 */
+	public static long copy(FileChannel channel, long position, long length, OutputStream outstream) throws IOException {
+		DirectBufferPool pool = DirectBufferPool.getShared();
+		ByteBuffer buffer = pool.acquire();
+		WritableByteChannel target = Channels.newChannel(outstream);
+		long count = 0L;
+
+		try {
+			while(count < length) {
+				buffer.limit((int) Math.min(buffer.capacity(), length - count));
+				int n = channel.read(buffer, position + count);
+				if(n < 0) {
+					throw new EOFException("Expected " + length + " bytes, but the file ended after " + count);
+				}
+
+				buffer.flip();
+				while(buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+				buffer.clear();
+				count += n;
+			}
+
+			outstream.flush();
+		}
+		finally {
+			pool.release(buffer);
+			Closeables.closeQuietly(outstream);
+		}
+
+		return count;
+	}
+
+	private static long drain(ByteBuffer buffer, FileChannel channel, long position) throws IOException {
+		long written = 0L;
+		buffer.flip();
+
+		while(buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+
+		buffer.clear();
+		return written;
+	}
 }
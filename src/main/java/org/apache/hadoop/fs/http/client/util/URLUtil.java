@@ -1,60 +1,6 @@
 package org.apache.hadoop.fs.http.client.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.BitSet;
-
 public class URLUtil {
-	/**
-	 * Array containing the safe characters set as defined by RFC 1738
-	 */
-	private static BitSet		safeCharacters;
-
-	private static final char[]	hexadecimal	= { 
-		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 
-		'A', 'B', 'C', 'D', 'E', 'F'
-	};
-
-	static {
-		safeCharacters = new BitSet(256);
-		int i;
-		// 'lowalpha' rule
-		for(i = 'a'; i <= 'z'; i++) {
-			safeCharacters.set(i);
-		}
-		// 'hialpha' rule
-		for(i = 'A'; i <= 'Z'; i++) {
-			safeCharacters.set(i);
-		}
-		// 'digit' rule
-		for(i = '0'; i <= '9'; i++) {
-			safeCharacters.set(i);
-		}
-
-		// 'safe' rule
-		safeCharacters.set('$');
-		safeCharacters.set('-');
-		safeCharacters.set('_');
-		safeCharacters.set('.');
-		safeCharacters.set('+');
-
-		// 'extra' rule
-		safeCharacters.set('!');
-		safeCharacters.set('*');
-		safeCharacters.set('\'');
-		safeCharacters.set('(');
-		safeCharacters.set(')');
-		safeCharacters.set(',');
-
-		// special characters common to http: file: and ftp: URLs ('fsegment' and 'hsegment' rules)
-		safeCharacters.set('/');
-		safeCharacters.set(':');
-		safeCharacters.set('@');
-		safeCharacters.set('&');
-		safeCharacters.set('=');
-	}
-
 	/**
 	 * Encode a path as required by the URL specification (<a href="http://www.ietf.org/rfc/rfc1738.txt"> RFC 1738</a>).
 	 * This differs from <code>java.net.URLEncoder.encode()</code> which encodes according to the
@@ -65,57 +11,69 @@ public class URLUtil {
 	 * @return the encoded path
 	 */
 	public static String encodePath(String path) {
-		// stolen from org.apache.catalina.servlets.DefaultServlet ;)
+		// ' ' is encoded as "%20" and '/' is not encoded
+		StringBuilder rewrittenPath = new StringBuilder(path.length() + 16);
+		RequestUrlBuilder.encodePath(path, rewrittenPath);
+		return rewrittenPath.toString();
+	}
 
-		/**
-		 * Note: Here, ' ' should be encoded as "%20" and '/' shouldn't be encoded.
-		 */
-		int maxBytesPerChar = 10;
-		StringBuilder rewrittenPath = new StringBuilder(path.length());
-		ByteArrayOutputStream buf = new ByteArrayOutputStream(maxBytesPerChar);
-		OutputStreamWriter writer = createWriter(buf);
+	/**
+	 * Builds the {@code offset} and {@code length} arguments of a ranged OPEN
+	 * 
+	 * @param offset
+	 *            the position of the first byte, arguments for 0 are omitted
+	 * @param length
+	 *            the number of bytes, negative to read to the end of the file
+	 * @return the arguments, each starting with {@code &}, or an empty string
+	 */
+	public static String rangeArguments(long offset, long length) {
+		if(offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative: " + offset);
+		}
 
-		for(int i = 0; i < path.length(); i++) {
-			int c = path.charAt(i);
-			if(safeCharacters.get(c)) {
-				rewrittenPath.append((char) c);
-			}
-			else {
-				// convert to external encoding before hex conversion
-				try {
-					writer.write(c);
-					writer.flush();
-				}
-				catch(IOException e) {
-					buf.reset();
-					continue;
-				}
-				byte[] ba = buf.toByteArray();
-				for(int j = 0; j < ba.length; j++) {
-					// Converting each byte in the buffer
-					byte toEncode = ba[j];
-					rewrittenPath.append('%');
-					int low = (toEncode & 0x0f);
-					int high = ((toEncode & 0xf0) >> 4);
-					rewrittenPath.append(hexadecimal[high]);
-					rewrittenPath.append(hexadecimal[low]);
-				}
-				buf.reset();
-			}
+		StringBuilder arguments = new StringBuilder();
+		if(offset > 0) {
+			arguments.append("&offset=").append(offset);
 		}
-		return rewrittenPath.toString();
+		if(length >= 0) {
+			arguments.append("&length=").append(length);
+		}
+		return arguments.toString();
 	}
 
-	private static OutputStreamWriter createWriter(ByteArrayOutputStream buf) {
-		OutputStreamWriter writer;
-		try {
-			writer = new OutputStreamWriter(buf, "UTF8");
+	/**
+	 * Builds the {@code startAfter} argument of a LISTSTATUS_BATCH
+	 * 
+	 * @param startAfter
+	 *            the last path suffix of the previous page, or null for the first page
+	 * @return the argument, starting with {@code &}, or an empty string
+	 */
+	public static String startAfterArgument(String startAfter) {
+		if(startAfter == null) {
+			return "";
 		}
-		catch(Exception e) {
-			e.printStackTrace();
-			writer = new OutputStreamWriter(buf);
+
+		// unlike a path, a query value must not contain a literal & = or +
+		return argument("startAfter", startAfter);
+	}
+
+	/**
+	 * Builds a query argument
+	 * 
+	 * @param name
+	 *            the parameter name, e.g. {@code renewer}
+	 * @param value
+	 *            the value, encoded here, or null to omit the argument
+	 * @return the argument, starting with {@code &}, or an empty string
+	 */
+	public static String argument(String name, String value) {
+		if(value == null) {
+			return "";
 		}
-		return writer;
+
+		StringBuilder argument = new StringBuilder(name.length() + value.length() + 8).append('&').append(name).append('=');
+		RequestUrlBuilder.encodeValue(value, argument);
+		return argument.toString();
 	}
 
 	public static void main(String[] args) {
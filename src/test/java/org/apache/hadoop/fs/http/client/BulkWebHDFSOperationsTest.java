@@ -0,0 +1,138 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkWebHDFSOperationsTest {
+
+	MockWebHDFSServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void getFileStatusForManyPaths() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for(int i = 0; i < 300; i++) {
+			server.putFile("/user/test/f" + i, new byte[i]);
+			paths.add("user/test/f" + i);
+		}
+
+		WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+		BulkWebHDFSOperations bulk = new BulkWebHDFSOperations(conn, 16);
+		try {
+			Map<String, CompletableFuture<WebHDFSResponse>> results = bulk.getFileStatus(paths);
+			assertEquals(300, results.size());
+
+			int i = 0;
+			for(Map.Entry<String, CompletableFuture<WebHDFSResponse>> entry : results.entrySet()) {
+				assertEquals("user/test/f" + i, entry.getKey());
+				WebHDFSResponse response = entry.getValue().get();
+				assertEquals(200, response.getResponseCode());
+				assertTrue(response.getRawResponse().contains("\"length\":" + i));
+				i++;
+			}
+		}
+		finally {
+			bulk.close();
+		}
+
+		// the token is fetched at most once and shared by every thread
+		assertTrue(server.getRequestCount("GETHOMEDIRECTORY") <= 1);
+	}
+
+	@Test
+	public void concurrencyIsCapped() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		WebHDFSConnection conn = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					int n = inFlight.incrementAndGet();
+					peak.accumulateAndGet(n, Math::max);
+					Thread.sleep(5);
+					inFlight.decrementAndGet();
+					return new WebHDFSResponse(200, "OK", "application/json", "{}");
+				});
+
+		List<String> paths = new ArrayList<String>();
+		for(int i = 0; i < 200; i++) {
+			paths.add("p" + i);
+		}
+
+		BulkWebHDFSOperations bulk = new BulkWebHDFSOperations(conn, 4);
+		try {
+			Map<String, CompletableFuture<WebHDFSResponse>> results = bulk.delete(paths);
+			CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0])).get();
+		}
+		finally {
+			bulk.close();
+		}
+
+		assertTrue("peak " + peak.get(), peak.get() <= 4);
+	}
+
+	@Test
+	public void failuresCompleteExceptionally() throws Exception {
+		BulkWebHDFSOperations bulk = new BulkWebHDFSOperations(
+				AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""), 2);
+		try {
+			bulk.submit(c -> {
+				throw new IOException("boom");
+			}).get();
+			throw new AssertionError("expected an ExecutionException");
+		}
+		catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		finally {
+			bulk.close();
+		}
+	}
+
+	@Test
+	public void sumContentSummariesOfManyPaths() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for(int i = 0; i < 20; i++) {
+			server.putFile("/data/d" + i + "/part-0", new byte[i]);
+			server.putFile("/data/d" + i + "/part-1", new byte[1]);
+			paths.add("/data/d" + i);
+		}
+
+		WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+		BulkWebHDFSOperations bulk = new BulkWebHDFSOperations(conn, 8);
+		try {
+			ContentSummary total = bulk.sumContentSummaries(paths).get();
+
+			assertEquals(20, total.getDirectoryCount());
+			assertEquals(40, total.getFileCount());
+			assertEquals(190 + 20, total.getLength());
+			assertEquals(3 * (190 + 20), total.getSpaceConsumed());
+			assertEquals(ContentSummary.QUOTA_NOT_SET, total.getQuota());
+			assertEquals(20, server.getRequestCount("GETCONTENTSUMMARY"));
+		}
+		finally {
+			bulk.close();
+		}
+	}
+}
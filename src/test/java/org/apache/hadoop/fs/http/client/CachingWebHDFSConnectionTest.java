@@ -0,0 +1,116 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingWebHDFSConnectionTest {
+
+	MockWebHDFSServer server;
+	CachingWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		server.putFile("/user/test/dir/a", new byte[] { 1 });
+		conn = new CachingWebHDFSConnection(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""), 3, 60000);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void repeatedLookupsAreServedFromTheCache() throws Exception {
+		WebHDFSResponse first = conn.getFileStatus("user/test/dir/a");
+		assertSame(first, conn.getFileStatus("/user/test/dir/a"));
+		assertSame(first, conn.getFileStatus("user//test/dir/a/"));
+		conn.listStatus("user/test/dir");
+		conn.listStatus("user/test/dir");
+
+		assertEquals(1, server.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, server.getRequestCount("LISTSTATUS"));
+		CacheStats stats = conn.getStats();
+		assertEquals(3, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(2, stats.getSize());
+	}
+
+	@Test
+	public void typedLookupsShareTheCache() throws Exception {
+		assertEquals(1L, conn.getFileStatusTyped("user/test/dir/a").getLength());
+		assertEquals(1L, conn.getFileStatusTyped("user/test/dir/a").getLength());
+		assertEquals(1, conn.listStatusTyped("user/test/dir").size());
+		conn.listStatus("user/test/dir");
+
+		assertEquals(1, server.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, server.getRequestCount("LISTSTATUS"));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void typedLookupOfMissingPathThrows() throws Exception {
+		conn.getFileStatusTyped("user/test/dir/b");
+	}
+
+	@Test
+	public void notFoundIsCached() throws Exception {
+		assertEquals(404, conn.getFileStatus("user/test/dir/b").getResponseCode());
+		assertEquals(404, conn.getFileStatus("user/test/dir/b").getResponseCode());
+		assertEquals(1, server.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, conn.getStats().getNegativeHitCount());
+
+		conn.setNegativeTtlMillis(0);
+		conn.invalidateAll();
+		conn.getFileStatus("user/test/dir/b");
+		conn.getFileStatus("user/test/dir/b");
+		assertEquals(3, server.getRequestCount("GETFILESTATUS"));
+	}
+
+	@Test
+	public void writesInvalidateThePathAndItsParents() throws Exception {
+		conn.getFileStatus("user/test/dir/b");
+		conn.listStatus("user/test/dir");
+		assertEquals(1, conn.listStatus("user/test/dir").getJSONResponse().get("FileStatuses").get("FileStatus").size());
+
+		conn.create("user/test/dir/b", new ByteArrayInputStream(new byte[] { 2 }), false);
+
+		assertEquals(200, conn.getFileStatus("user/test/dir/b").getResponseCode());
+		assertEquals(2, conn.listStatus("user/test/dir").getJSONResponse().get("FileStatuses").get("FileStatus").size());
+		assertEquals(2, conn.getStats().getInvalidationCount());
+	}
+
+	@Test
+	public void deleteInvalidatesDescendants() throws Exception {
+		conn.getFileStatus("user/test/dir/a");
+		conn.delete("user/test");
+
+		assertEquals(404, conn.getFileStatus("user/test/dir/a").getResponseCode());
+		assertEquals(2, server.getRequestCount("GETFILESTATUS"));
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() throws Exception {
+		conn.getFileStatus("user/test/dir/a");
+		conn.getFileStatus("user/test/dir");
+		conn.getFileStatus("user/test");
+		conn.getFileStatus("user/test/dir/a");
+		conn.getFileStatus("user");
+
+		assertEquals(3, conn.getStats().getSize());
+		assertEquals(1, conn.getStats().getEvictionCount());
+
+		// "user/test/dir" was the least recently used
+		conn.getFileStatus("user/test/dir/a");
+		assertEquals(4, server.getRequestCount("GETFILESTATUS"));
+		conn.getFileStatus("user/test/dir");
+		assertEquals(5, server.getRequestCount("GETFILESTATUS"));
+	}
+}
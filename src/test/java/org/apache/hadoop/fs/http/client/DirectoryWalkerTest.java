@@ -0,0 +1,144 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryWalkerTest {
+
+	MockWebHDFSServer server;
+	WebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+
+		// 10 directories of 10 subdirectories of 5 files each
+		for(int i = 0; i < 10; i++) {
+			for(int j = 0; j < 10; j++) {
+				for(int k = 0; k < 5; k++) {
+					server.putFile("/warehouse/t" + i + "/p" + j + "/part-" + k, new byte[k]);
+				}
+			}
+		}
+		server.putFile("/warehouse/_SUCCESS", new byte[0]);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void walksTheWholeTreeWithFullPaths() throws Exception {
+		Set<String> paths = ConcurrentHashMap.newKeySet();
+		DirectoryWalker walker = new DirectoryWalker(conn, 8);
+		try {
+			long count = walker.walk("/warehouse", DirectoryWalker.UNLIMITED_DEPTH, null, s -> paths.add(s.getPath()));
+
+			assertEquals(10 + 100 + 500 + 1, count);
+			assertEquals(count, paths.size());
+			assertTrue(paths.contains("/warehouse/t3/p7/part-4"));
+			assertTrue(paths.contains("/warehouse/t9"));
+			assertTrue(paths.contains("/warehouse/_SUCCESS"));
+			assertEquals(1 + 10 + 100, server.getRequestCount("LISTSTATUS_BATCH"));
+		}
+		finally {
+			walker.close();
+		}
+	}
+
+	@Test
+	public void depthAndFilterPruneTheWalk() throws Exception {
+		DirectoryWalker walker = new DirectoryWalker(conn, 4);
+		try {
+			assertEquals(11, walker.walk("/warehouse", 1, null, s -> {}));
+			assertEquals(111, walker.walk("/warehouse/", 2, null, s -> {}));
+
+			// only t0 is walked into, and only its files are collected
+			Set<String> files = ConcurrentHashMap.newKeySet();
+			walker.walk("/warehouse", DirectoryWalker.UNLIMITED_DEPTH,
+					s -> s.getType() == FileType.FILE || s.getPath().startsWith("/warehouse/t0"),
+					s -> {
+						if(s.getType() == FileType.FILE) {
+							files.add(s.getPath());
+						}
+					});
+			assertEquals(51, files.size());
+		}
+		finally {
+			walker.close();
+		}
+	}
+
+	@Test
+	public void concurrencyIsCapped() throws Exception {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		WebHDFSConnection slow = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(5);
+						return method.invoke(conn, args);
+					}
+					catch(InvocationTargetException e) {
+						throw e.getCause();
+					}
+					finally {
+						active.decrementAndGet();
+					}
+				});
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		try {
+			DirectoryWalker walker = new DirectoryWalker(slow, executor, 3);
+			assertEquals(611, walker.walk("/warehouse", DirectoryWalker.UNLIMITED_DEPTH, null, s -> {}));
+			assertTrue("peak " + peak.get(), peak.get() <= 3);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void pagesCountAgainstTheConcurrencyCap() throws Exception {
+		// every directory takes several pages, which must not be fetched beside other listings
+		server.setListingBatchSize(2);
+		server.setLatencyMillis(10);
+
+		DirectoryWalker walker = new DirectoryWalker(conn, 4);
+		try {
+			assertEquals(611, walker.walk("/warehouse", DirectoryWalker.UNLIMITED_DEPTH, null, s -> {}));
+			assertTrue("peak " + server.getPeakConcurrency(), server.getPeakConcurrency() <= 4);
+		}
+		finally {
+			walker.close();
+		}
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingRoot() throws Exception {
+		DirectoryWalker walker = new DirectoryWalker(conn);
+		try {
+			walker.walk("/missing", DirectoryWalker.UNLIMITED_DEPTH, null, s -> {});
+		}
+		finally {
+			walker.close();
+		}
+	}
+}
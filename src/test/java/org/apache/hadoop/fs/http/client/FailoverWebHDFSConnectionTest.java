@@ -0,0 +1,222 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.FailoverWebHDFSConnection.Strategy;
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FailoverWebHDFSConnectionTest {
+
+	MockWebHDFSServer first;
+	MockWebHDFSServer second;
+	FailoverWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		first = new MockWebHDFSServer();
+		second = new MockWebHDFSServer();
+		for(MockWebHDFSServer server : new MockWebHDFSServer[] { first, second }) {
+			server.putFile("/user/test/a", new byte[] { 1, 2, 3 });
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if(conn != null) {
+			conn.close();
+		}
+		first.stop();
+		second.stop();
+	}
+
+	private FailoverWebHDFSConnection connect(Strategy strategy, long probeIntervalMillis) {
+		return connect(AuthenticationType.PSEUDO, strategy, probeIntervalMillis);
+	}
+
+	private FailoverWebHDFSConnection connect(AuthenticationType type, Strategy strategy, long probeIntervalMillis) {
+		Map<String, WebHDFSConnection> endpoints = new LinkedHashMap<String, WebHDFSConnection>();
+		endpoints.put(first.getUrl(), type.createConnection(first.getUrl(), "test", ""));
+		endpoints.put(second.getUrl(), type.createConnection(second.getUrl(), "test", ""));
+		return new FailoverWebHDFSConnection(endpoints, strategy, new RetryPolicy(), 60000L, probeIntervalMillis);
+	}
+
+	@Test
+	public void activeStandbyFollowsTheActiveNameNode() throws Exception {
+		conn = connect(Strategy.ACTIVE_STANDBY, 0L);
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		assertEquals(first.getUrl(), conn.getActiveUrl());
+
+		first.failNameNode("*", 100, 403, "StandbyException");
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		assertTrue(conn.mkdirsTyped("/user/test/dir"));
+
+		// the standby is asked once, then the new active is used directly
+		assertEquals(second.getUrl(), conn.getActiveUrl());
+		assertEquals(2, first.getRequestCount("GETFILESTATUS"));
+		assertEquals(0, first.getRequestCount("MKDIRS"));
+		assertEquals(1, second.getRequestCount("MKDIRS"));
+
+		EndpointStats standby = conn.getStats().get(0);
+		assertTrue(standby.isStandby());
+		assertTrue(standby.isEjected());
+		assertEquals(1, standby.getEjectionCount());
+	}
+
+	@Test
+	public void kerberosEndpointsFailOverOnlyWhenRejected() throws Exception {
+		// the mock servers do not ask for SPNEGO, so the connections fall back to pseudo authentication
+		conn = connect(AuthenticationType.KERBEROS, Strategy.ACTIVE_STANDBY, 0L);
+
+		first.failNameNode("GETFILESTATUS", 1, 403, "AccessControlException");
+		assertEquals(403, conn.getFileStatus("/user/test/a").getResponseCode());
+		first.failNameNode("OPEN", 1, 403, "AccessControlException");
+		try {
+			conn.open("/user/test/a", new ByteArrayOutputStream());
+			fail("a forbidden OPEN succeeded");
+		}
+		catch(RemoteException e) {
+			assertEquals("AccessControlException", e.getException());
+		}
+		assertEquals(first.getUrl(), conn.getActiveUrl());
+		assertFalse(conn.getStats().get(0).isEjected());
+		assertEquals(0, second.getRequestCount("GETFILESTATUS"));
+
+		first.failNameNode("*", 100, 403, "StandbyException");
+		assertEquals(200, conn.getFileStatus("/user/test/a").getResponseCode());
+		assertEquals(second.getUrl(), conn.getActiveUrl());
+		assertTrue(conn.getStats().get(0).isStandby());
+		assertEquals(1, second.getRequestCount("GETFILESTATUS"));
+	}
+
+	@Test
+	public void roundRobinSpreadsRequestsAndSkipsDeadGateways() throws Exception {
+		conn = connect(Strategy.ROUND_ROBIN, 0L);
+		for(int i = 0; i < 10; i++) {
+			conn.getFileStatusTyped("/user/test/a");
+		}
+		assertEquals(5, first.getRequestCount("GETFILESTATUS"));
+		assertEquals(5, second.getRequestCount("GETFILESTATUS"));
+
+		first.stop();
+		for(int i = 0; i < 10; i++) {
+			assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		}
+		assertEquals(15, second.getRequestCount("GETFILESTATUS"));
+
+		List<EndpointStats> stats = conn.getStats();
+		assertTrue(stats.get(0).isEjected());
+		assertEquals(1, stats.get(0).getFailureCount());
+		assertFalse(stats.get(1).isEjected());
+	}
+
+	@Test
+	public void leastOutstandingSpreadsIdleRequests() throws Exception {
+		conn = connect(Strategy.LEAST_OUTSTANDING, 0L);
+		for(int i = 0; i < 10; i++) {
+			conn.listStatusTyped("/user/test");
+		}
+		assertEquals(5, first.getRequestCount("LISTSTATUS"));
+		assertEquals(5, second.getRequestCount("LISTSTATUS"));
+		assertEquals(0, conn.getStats().get(0).getOutstanding());
+	}
+
+	@Test
+	public void requestsThatMayHaveRunAreNotSentElsewhere() throws Exception {
+		conn = connect(Strategy.ACTIVE_STANDBY, 0L);
+		first.failNameNode("DELETE", 1, 504, null);
+		assertEquals(504, conn.delete("/user/test/a").getResponseCode());
+		assertEquals(0, second.getRequestCount("DELETE"));
+		assertTrue(conn.getStats().get(0).isEjected());
+	}
+
+	@Test
+	public void probesBringBackRecoveredEndpoints() throws Exception {
+		conn = connect(Strategy.ROUND_ROBIN, 20L);
+		first.failNameNode("LISTSTATUS", 1, 503, null);
+		for(int i = 0; i < 2; i++) {
+			assertEquals(200, conn.listStatus("/user/test").getResponseCode());
+		}
+		assertEquals(1, conn.getStats().get(0).getEjectionCount());
+
+		long deadline = System.currentTimeMillis() + 5000L;
+		while(conn.getStats().get(0).isEjected() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		assertFalse(conn.getStats().get(0).isEjected());
+	}
+
+	@Test
+	public void hungActiveNameNodeIsEjected() throws Exception {
+		// accepts connections in its backlog but never answers
+		try (ServerSocket silent = new ServerSocket(0)) {
+			String hungUrl = "http://localhost:" + silent.getLocalPort();
+			Map<String, WebHDFSConnection> endpoints = new LinkedHashMap<String, WebHDFSConnection>();
+			endpoints.put(hungUrl, AuthenticationType.PSEUDO.createConnection(hungUrl, "test", ""));
+			endpoints.put(second.getUrl(), AuthenticationType.PSEUDO.createConnection(second.getUrl(), "test", ""));
+			conn = new FailoverWebHDFSConnection(endpoints, Strategy.ACTIVE_STANDBY, new RetryPolicy(), 60000L, 0L, 200, 200);
+
+			try {
+				conn.getFileStatusTyped("/user/test/a");
+				fail("a NameNode that never answers answered");
+			}
+			catch(SocketTimeoutException e) {
+				// may have run, so not sent elsewhere
+			}
+			assertTrue(conn.getStats().get(0).isEjected());
+
+			assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+			assertEquals(second.getUrl(), conn.getActiveUrl());
+		}
+	}
+
+	@Test
+	public void hungEndpointDoesNotHoldUpTheProbesOfOthers() throws Exception {
+		try (ServerSocket silent = new ServerSocket(0)) {
+			String hungUrl = "http://localhost:" + silent.getLocalPort();
+			Map<String, WebHDFSConnection> endpoints = new LinkedHashMap<String, WebHDFSConnection>();
+			endpoints.put(hungUrl, AuthenticationType.PSEUDO.createConnection(hungUrl, "test", ""));
+			endpoints.put(second.getUrl(), AuthenticationType.PSEUDO.createConnection(second.getUrl(), "test", ""));
+			// the first probe of the second endpoint ejects it, the next one brings it back
+			second.failNameNode("GETFILESTATUS", 1, 503, null);
+			conn = new FailoverWebHDFSConnection(endpoints, Strategy.ROUND_ROBIN, new RetryPolicy(), 60000L, 20L, 200, 10000);
+
+			long deadline = System.currentTimeMillis() + 2000L;
+			while((conn.getStats().get(1).getEjectionCount() == 0 || conn.getStats().get(1).isEjected())
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+			assertEquals(1, conn.getStats().get(1).getEjectionCount());
+			assertFalse(conn.getStats().get(1).isEjected());
+		}
+	}
+
+	@Test
+	public void factoryConnectsToEndpoints() throws Exception {
+		WebHDFSConnectionFactory factory = new WebHDFSConnectionFactory();
+		factory.setAuthenticationType(AuthenticationType.PSEUDO);
+		factory.setUsername("test");
+		factory.setEndpoints(first.getUrl().substring("http://".length()), second.getUrl());
+		factory.setStrategy(Strategy.ROUND_ROBIN);
+
+		WebHDFSConnection connection = factory.getConnection();
+		assertTrue(connection instanceof FailoverWebHDFSConnection);
+		connection.getFileStatusTyped("/user/test/a");
+		connection.getFileStatusTyped("/user/test/a");
+		assertEquals(1, first.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, second.getRequestCount("GETFILESTATUS"));
+		connection.close();
+	}
+}
@@ -0,0 +1,130 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.junit.Test;
+
+public class FileStatusBatchTest {
+
+	private static final String LISTING = "{\"FileStatuses\":{\"FileStatus\":["
+			+ "{\"accessTime\":1,\"blockSize\":134217728,\"group\":\"supergroup\",\"length\":24930,"
+			+ "\"modificationTime\":10,\"owner\":\"webuser\",\"pathSuffix\":\"a.patch\",\"permission\":\"644\","
+			+ "\"replication\":3,\"type\":\"FILE\",\"fileId\":16387,\"childrenNum\":0},"
+			+ "{\"accessTime\":0,\"blockSize\":0,\"group\":\"supergroup\",\"length\":0,"
+			+ "\"modificationTime\":20,\"owner\":\"hdfs\",\"pathSuffix\":\"bar\",\"permission\":\"711\","
+			+ "\"replication\":0,\"type\":\"DIRECTORY\"},"
+			+ "{\"accessTime\":2,\"blockSize\":134217728,\"group\":\"supergroup\",\"length\":7,"
+			+ "\"modificationTime\":30,\"owner\":\"webuser\",\"pathSuffix\":\"c\",\"permission\":\"644\","
+			+ "\"replication\":2,\"type\":\"FILE\"}"
+			+ "]}}";
+
+	@Test
+	public void decodesColumns() throws Exception {
+		FileStatusBatch batch = SerializationUtils.getFileStatusBatch(LISTING);
+
+		assertEquals(3, batch.size());
+		assertEquals("a.patch", batch.getSuffix(0));
+		assertEquals("bar", batch.getSuffix(1));
+		assertEquals(24930L, batch.getLength(0));
+		assertEquals(134217728L, batch.getBlockSize(2));
+		assertEquals(30L, batch.getModificationTime(2));
+		assertEquals(2, batch.getReplication(2));
+		assertEquals(FileType.DIRECTORY, batch.getType(1));
+		assertEquals("711", batch.getPermission(1));
+
+		// owners and groups are interned
+		assertEquals(2, batch.getOwners().size());
+		assertEquals(1, batch.getGroups().size());
+		assertSame(batch.getOwner(0), batch.getOwner(2));
+
+		FileStatus status = batch.toFileStatus(0);
+		assertEquals("a.patch", status.getSuffix());
+		assertEquals("webuser", status.getOwner());
+		assertEquals(FileType.FILE, status.getType());
+	}
+
+	@Test
+	public void filtersAndSortsByIndex() throws Exception {
+		FileStatusBatch batch = SerializationUtils.getFileStatusBatch(LISTING);
+
+		int[] files = batch.filter(i -> batch.getType(i) == FileType.FILE);
+		assertEquals("[0, 2]", Arrays.toString(files));
+
+		batch.sort(files, (i, j) -> Long.compare(batch.getLength(i), batch.getLength(j)));
+		assertEquals("[2, 0]", Arrays.toString(files));
+
+		int[] bySuffix = batch.sort(batch.indices(), (i, j) -> batch.compareSuffixes(j, i));
+		assertEquals("[2, 1, 0]", Arrays.toString(bySuffix));
+	}
+
+	@Test
+	public void sortIsStableOnLargeBatches() {
+		FileStatusBatch batch = new FileStatusBatch(0);
+		for(int i = 0; i < 1000; i++) {
+			FileStatus status = new FileStatus();
+			status.setSuffix("f" + i);
+			status.setLength(i % 10);
+			batch.add(status);
+		}
+
+		int[] sorted = batch.sort(batch.indices(), (i, j) -> Long.compare(batch.getLength(i), batch.getLength(j)));
+		for(int k = 1; k < sorted.length; k++) {
+			long previous = batch.getLength(sorted[k - 1]);
+			long current = batch.getLength(sorted[k]);
+			assertTrue(previous < current || (previous == current && sorted[k - 1] < sorted[k]));
+		}
+		assertEquals("f999", batch.getSuffix(999));
+		assertNull(batch.getOwner(0));
+	}
+
+	@Test
+	public void cursorScansEntries() throws Exception {
+		FileStatusBatch batch = SerializationUtils.getFileStatusBatch(LISTING);
+		FileStatusBatch.Cursor cursor = batch.cursor();
+
+		long total = cursor.getLength();
+		while(cursor.next()) {
+			total += cursor.getLength();
+		}
+		assertEquals(24937L, total);
+		assertEquals(2, cursor.getIndex());
+		assertFalse(cursor.next());
+		assertEquals("bar", cursor.moveTo(1).getSuffix());
+	}
+
+	@Test
+	public void listsFromServer() throws Exception {
+		MockWebHDFSServer server = new MockWebHDFSServer();
+		try {
+			server.putFile("/user/test/dir/a", new byte[] { 1, 2, 3 });
+			server.putFile("/user/test/dir/b", new byte[0]);
+			WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+
+			FileStatusBatch batch = conn.listStatusColumnar("/user/test/dir");
+			assertEquals(2, batch.size());
+			assertEquals("a", batch.getSuffix(0));
+			assertEquals(3L, batch.getLength(0));
+			assertEquals(FileType.FILE, batch.getType(1));
+
+			try {
+				conn.listStatusColumnar("/user/test/missing");
+				throw new AssertionError("Expected FileNotFoundException");
+			}
+			catch(FileNotFoundException e) {
+				// expected
+			}
+		}
+		finally {
+			server.stop();
+		}
+	}
+}
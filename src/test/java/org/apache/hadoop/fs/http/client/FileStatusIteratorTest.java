@@ -0,0 +1,95 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.Test;
+
+public class FileStatusIteratorTest {
+
+	static final String ENTRY = "{\"accessTime\":0,\"blockSize\":0,\"childrenNum\":2,\"fileId\":16389,\"group\":\"supergroup\","
+			+ "\"length\":24930,\"modificationTime\":1320173277227,\"owner\":\"webuser\",\"pathSuffix\":\"%s\","
+			+ "\"permission\":\"644\",\"replication\":1,\"storagePolicy\":0,\"type\":\"FILE\"}";
+
+	@Test
+	public void readsEntriesAndSkipsUnknownProperties() throws Exception {
+		String json = "{\"FileStatuses\":{\"FileStatus\":[" + String.format(ENTRY, "a") + "," + String.format(ENTRY, "b") + "]}}";
+		FileStatusIterator entries = new FileStatusIterator(new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+		assertTrue(entries.hasNext());
+		FileStatus a = entries.next();
+		assertEquals("a", a.getSuffix());
+		assertEquals(24930, a.getLength());
+		assertEquals("webuser", a.getOwner());
+		assertEquals(FileType.FILE, a.getType());
+		assertEquals("b", entries.next().getSuffix());
+		assertFalse(entries.hasNext());
+	}
+
+	@Test
+	public void entriesAreAvailableBeforeTheBodyEnds() throws Exception {
+		PipedOutputStream server = new PipedOutputStream();
+		PipedInputStream body = new PipedInputStream(server, 64 * 1024);
+
+		server.write(("{\"FileStatuses\":{\"FileStatus\":[" + String.format(ENTRY, "first") + ",").getBytes("UTF-8"));
+		server.flush();
+
+		FileStatusIterator entries = new FileStatusIterator(body);
+		assertEquals("first", entries.next().getSuffix());
+
+		// the rest of the listing only arrives now
+		server.write((String.format(ENTRY, "second") + "]}}").getBytes("UTF-8"));
+		server.close();
+
+		assertEquals("second", entries.next().getSuffix());
+		assertFalse(entries.hasNext());
+	}
+
+	@Test(expected = IOException.class)
+	public void remoteExceptionIsThrown() throws Exception {
+		String json = "{\"RemoteException\":{\"exception\":\"AccessControlException\","
+				+ "\"javaClassName\":\"org.apache.hadoop.security.AccessControlException\",\"message\":\"Permission denied\"}}";
+		new FileStatusIterator(new ByteArrayInputStream(json.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void listsLargeDirectoryFromServer() throws Exception {
+		MockWebHDFSServer server = new MockWebHDFSServer();
+		try {
+			for(int i = 0; i < 2000; i++) {
+				server.putFile("/user/test/big/f" + i, new byte[i % 7]);
+			}
+			WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+
+			try (Stream<FileStatus> entries = conn.listStatusIterator("user/test/big").stream()) {
+				assertEquals(2000, entries.filter(s -> s.getType() == FileType.FILE).count());
+			}
+
+			// abandoning a listing early releases the connection
+			FileStatusIterator entries = conn.listStatusIterator("user/test/big");
+			entries.next();
+			entries.close();
+			assertFalse(entries.hasNext());
+
+			try {
+				conn.listStatusIterator("user/test/missing");
+				throw new AssertionError("expected a FileNotFoundException");
+			}
+			catch(FileNotFoundException e) {
+				// expected
+			}
+		}
+		finally {
+			server.stop();
+		}
+	}
+}
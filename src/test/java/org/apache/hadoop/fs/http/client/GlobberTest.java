@@ -0,0 +1,78 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlobberTest {
+
+	MockWebHDFSServer server;
+	Globber globber;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		globber = new Globber(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""), 4);
+
+		for(String year : new String[] { "2025", "2026" }) {
+			for(int month = 1; month <= 3; month++) {
+				String dir = "/data/" + year + "/0" + month;
+				server.putFile(dir + "/events-0.parquet", new byte[1]);
+				server.putFile(dir + "/events-1.parquet", new byte[1]);
+				server.putFile(dir + "/_SUCCESS", new byte[0]);
+			}
+		}
+		server.putFile("/data/2026/README", new byte[0]);
+	}
+
+	@After
+	public void tearDown() {
+		globber.close();
+		server.stop();
+	}
+
+	List<String> glob(String pattern) throws Exception {
+		return globber.globStatus(pattern).map(FileStatus::getPath).collect(Collectors.toList());
+	}
+
+	@Test
+	public void listsOnlyDirectoriesThatCanMatch() throws Exception {
+		List<String> paths = glob("/data/2026/*/events-*.parquet");
+
+		assertEquals(6, paths.size());
+		assertEquals("/data/2026/01/events-0.parquet", paths.get(0));
+		assertEquals("/data/2026/03/events-1.parquet", paths.get(5));
+		// /data/2026 and its three subdirectories, never /data or /data/2025
+		assertEquals(4, server.getRequestCount("LISTSTATUS_BATCH"));
+		assertEquals(0, server.getRequestCount("GETFILESTATUS"));
+	}
+
+	@Test
+	public void literalLastComponentIsLookedUp() throws Exception {
+		assertEquals(Arrays.asList("/data/2025/02/_SUCCESS", "/data/2026/02/_SUCCESS"), glob("data/*/02/_SUCCESS"));
+		assertEquals(1, server.getRequestCount("LISTSTATUS_BATCH"));
+		assertEquals(2, server.getRequestCount("GETFILESTATUS"));
+	}
+
+	@Test
+	public void alternativesAndClasses() throws Exception {
+		assertEquals(Arrays.asList("/data/2025/01", "/data/2025/03", "/data/2026/01", "/data/2026/03"),
+				glob("/data/202[5-6]/0{1,3}"));
+		assertEquals(Arrays.asList("/data/2026/README"), glob("/data/2026/[!0]*"));
+	}
+
+	@Test
+	public void noMatchIsEmpty() throws Exception {
+		assertEquals(Collections.emptyList(), glob("/data/2027/*/events-*"));
+		assertEquals(Collections.emptyList(), glob("/data/*/04/*"));
+		assertEquals(Collections.emptyList(), glob("/data/2026/01/missing"));
+	}
+}
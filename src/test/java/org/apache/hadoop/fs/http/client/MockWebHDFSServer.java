@@ -0,0 +1,652 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-memory WebHDFS endpoint for unit tests.
+ * <p>
+ * Answers NameNode style requests under {@code /webhdfs/v1} and redirects OPEN, CREATE and
+ * APPEND to a fake DataNode under {@code /datanode/webhdfs/v1} on the same port.
+ */
+public class MockWebHDFSServer {
+
+	public static final long BLOCK_SIZE = 134217728L;
+
+	private volatile long blockSize = BLOCK_SIZE;
+	private volatile int listingBatchSize = 1000;
+	private volatile long latencyMillis;
+
+	private final HttpServer server;
+	private final TreeMap<String, byte[]> files = new TreeMap<String, byte[]>();
+	private final Map<String, Long> modificationTimes = new HashMap<String, Long>();
+	private final TreeMap<String, Boolean> directories = new TreeMap<String, Boolean>();
+	private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+	private volatile Headers lastDataNodeHeaders;
+	private volatile Map<String, String> lastDataNodeQuery;
+	private volatile Map<String, String> lastNameNodeQuery;
+	private final Set<String> delegationTokens = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger nextDelegationToken = new AtomicInteger();
+	private final Map<String, InjectedFailure> failures = new ConcurrentHashMap<String, InjectedFailure>();
+	private final Map<String, AtomicInteger> breaks = new ConcurrentHashMap<String, AtomicInteger>();
+	private final AtomicInteger activeRequests = new AtomicInteger();
+	private final AtomicInteger peakRequests = new AtomicInteger();
+
+	public MockWebHDFSServer() throws IOException {
+		directories.put("/", Boolean.TRUE);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/webhdfs/v1", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleNameNode(exchange);
+			}
+		});
+		server.createContext("/datanode/webhdfs/v1", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleDataNode(exchange);
+			}
+		});
+		server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public synchronized void putFile(String path, byte[] data) {
+		putFile(path, data, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param path the path of the file
+	 * @param data its content
+	 * @param modificationTime its modification time in milliseconds since the epoch
+	 */
+	public synchronized void putFile(String path, byte[] data, long modificationTime) {
+		files.put(normalize(path), data);
+		modificationTimes.put(normalize(path), modificationTime);
+		mkdirs(parent(normalize(path)));
+	}
+
+	public synchronized byte[] getFile(String path) {
+		return files.get(normalize(path));
+	}
+
+	public synchronized void mkdirs(String path) {
+		String p = normalize(path);
+		while(!directories.containsKey(p)) {
+			directories.put(p, Boolean.TRUE);
+			p = parent(p);
+		}
+	}
+
+	/**
+	 * @param op the WebHDFS operation, e.g. {@code LISTSTATUS}, or {@code OPTIONS} for the
+	 * 			authentication handshake
+	 * @return the number of NameNode requests received for {@code op}
+	 */
+	public int getRequestCount(String op) {
+		AtomicInteger count = requestCounts.get(op);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @param blockSize the block size reported for files, {@link #BLOCK_SIZE} by default
+	 */
+	public void setBlockSize(long blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @param listingBatchSize the number of entries per LISTSTATUS_BATCH page, or 0 to reject
+	 * 			the op like an HttpFS server that does not support it
+	 */
+	public void setListingBatchSize(int listingBatchSize) {
+		this.listingBatchSize = listingBatchSize;
+	}
+
+	/**
+	 * @param latencyMillis the time the NameNode takes for every request, 0 by default
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @return the largest number of NameNode requests that were being handled at once
+	 */
+	public int getPeakConcurrency() {
+		return peakRequests.get();
+	}
+
+	/**
+	 * @return the request headers of the last request received by the DataNode, or null
+	 */
+	public Headers getLastDataNodeHeaders() {
+		return lastDataNodeHeaders;
+	}
+
+	/**
+	 * @return the query parameters of the last request received by the DataNode, or null
+	 */
+	public Map<String, String> getLastDataNodeQuery() {
+		return lastDataNodeQuery;
+	}
+
+	/**
+	 * @return the query parameters of the last request received by the NameNode, or null
+	 */
+	public Map<String, String> getLastNameNodeQuery() {
+		return lastNameNodeQuery;
+	}
+
+	/**
+	 * @return the delegation tokens issued and not cancelled
+	 */
+	public Set<String> getDelegationTokens() {
+		return delegationTokens;
+	}
+
+	/**
+	 * Makes the NameNode answer the next {@code times} requests for {@code op} with an error,
+	 * without running them.
+	 *
+	 * @param op the WebHDFS operation, e.g. {@code GETFILESTATUS}, or {@code *} for every operation
+	 * @param times the number of requests to fail
+	 * @param code the HTTP status, e.g. 503
+	 * @param exception the simple name of the server-side exception, e.g. {@code StandbyException},
+	 * 			or null for an empty body
+	 */
+	public void failNameNode(String op, int times, int code, String exception) {
+		failures.put("namenode:" + op, new InjectedFailure(times, code, exception));
+	}
+
+	/**
+	 * Makes the DataNode answer the next {@code times} requests for {@code op} with an error, after
+	 * reading their body and without running them.
+	 *
+	 * @see #failNameNode(String, int, int, String)
+	 */
+	public void failDataNode(String op, int times, int code, String exception) {
+		failures.put("datanode:" + op, new InjectedFailure(times, code, exception));
+	}
+
+	/**
+	 * Makes the DataNode keep only the first byte of the next {@code times} requests for {@code op}
+	 * and then answer with a 500, like a stream that broke after the file was created.
+	 *
+	 * @param op the WebHDFS operation, e.g. {@code CREATE}
+	 * @param times the number of requests to break
+	 */
+	public void breakDataNode(String op, int times) {
+		breaks.put(op, new AtomicInteger(times));
+	}
+
+	private void handleNameNode(HttpExchange exchange) throws IOException {
+		if(handshake(exchange)) {
+			return;
+		}
+
+		// only counted while the latency passes: once the response is out, the client may send its
+		// next request before this thread gets to decrement
+		peakRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+		try {
+			if(latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		finally {
+			activeRequests.decrementAndGet();
+		}
+
+		String path = normalize(exchange.getRequestURI().getRawPath().substring("/webhdfs/v1".length()));
+		Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+		String op = query.get("op");
+		count(op);
+		lastNameNodeQuery = query;
+		if(injectFailure(exchange, "namenode:" + op) || injectFailure(exchange, "namenode:*") || !checkDelegation(exchange, query)) {
+			return;
+		}
+
+		synchronized(this) {
+			if("GETHOMEDIRECTORY".equals(op)) {
+				send(exchange, 200, "{\"Path\":\"/user/test\"}");
+			}
+			else if("GETFILESTATUS".equals(op)) {
+				if(!exists(path)) {
+					notFound(exchange, path);
+				}
+				else {
+					send(exchange, 200, "{\"FileStatus\":" + status(path, "") + "}");
+				}
+			}
+			else if("LISTSTATUS".equals(op)) {
+				listStatus(exchange, path);
+			}
+			else if("LISTSTATUS_BATCH".equals(op) && listingBatchSize > 0) {
+				listStatusBatch(exchange, path, query.get("startAfter"));
+			}
+			else if("GETCONTENTSUMMARY".equals(op)) {
+				contentSummary(exchange, path);
+			}
+			else if("GETFILECHECKSUM".equals(op)) {
+				fileChecksum(exchange, path);
+			}
+			else if("MKDIRS".equals(op)) {
+				mkdirs(path);
+				send(exchange, 200, "{\"boolean\":true}");
+			}
+			else if("DELETE".equals(op)) {
+				boolean existed = files.remove(path) != null;
+				if(!existed && directories.containsKey(path)) {
+					directories.subMap(path + "/", path + "0").clear();
+					files.subMap(path + "/", path + "0").clear();
+					existed = directories.remove(path) != null;
+				}
+				send(exchange, 200, "{\"boolean\":" + existed + "}");
+			}
+			else if("RENAME".equals(op)) {
+				String destination = normalize(query.get("destination"));
+				byte[] data = files.remove(path);
+				if(data != null) {
+					files.put(destination, data);
+					modificationTimes.put(destination, modificationTimes.remove(path));
+				}
+				send(exchange, 200, "{\"boolean\":" + (data != null) + "}");
+			}
+			else if("SETPERMISSION".equals(op) || "SETOWNER".equals(op) || "SETREPLICATION".equals(op)
+					|| "SETTIMES".equals(op)) {
+				if(!exists(path)) {
+					notFound(exchange, path);
+				}
+				else if("SETREPLICATION".equals(op)) {
+					send(exchange, 200, "{\"boolean\":" + files.containsKey(path) + "}");
+				}
+				else {
+					send(exchange, 200, null);
+				}
+			}
+			else if("GETDELEGATIONTOKEN".equals(op)) {
+				String token = "token-" + nextDelegationToken.incrementAndGet();
+				delegationTokens.add(token);
+				send(exchange, 200, "{\"Token\":{\"urlString\":\"" + token + "\"}}");
+			}
+			else if("RENEWDELEGATIONTOKEN".equals(op) || "CANCELDELEGATIONTOKEN".equals(op)) {
+				String token = query.get("token");
+				if(!delegationTokens.contains(token)) {
+					invalidToken(exchange, token);
+				}
+				else if("RENEWDELEGATIONTOKEN".equals(op)) {
+					send(exchange, 200, "{\"long\":" + (System.currentTimeMillis() + 86400000L) + "}");
+				}
+				else {
+					delegationTokens.remove(token);
+					send(exchange, 200, null);
+				}
+			}
+			else if("OPEN".equals(op) || "CREATE".equals(op) || "APPEND".equals(op)) {
+				if(("OPEN".equals(op) || "APPEND".equals(op)) && !files.containsKey(path)) {
+					notFound(exchange, path);
+				}
+				else {
+					exchange.getResponseHeaders().add("Location", getUrl() + "/datanode" + exchange.getRequestURI().toString());
+					send(exchange, 307, null);
+				}
+			}
+			else {
+				send(exchange, 400, "{\"RemoteException\":{\"exception\":\"IllegalArgumentException\","
+						+ "\"javaClassName\":\"java.lang.IllegalArgumentException\",\"message\":\"Invalid value for webhdfs parameter \\\"op\\\": "
+						+ op + "\"}}");
+			}
+		}
+	}
+
+	/**
+	 * Answers the OPTIONS request that the pseudo authenticator sends before every request, to the
+	 * NameNode and the DataNode alike.
+	 */
+	private boolean handshake(HttpExchange exchange) throws IOException {
+		if(!"OPTIONS".equals(exchange.getRequestMethod())) {
+			return false;
+		}
+
+		count("OPTIONS");
+		exchange.getResponseHeaders().add("Set-Cookie", "hadoop.auth=\"u=test&p=test&t=simple&e="
+				+ (System.currentTimeMillis() + 3600000L) + "&s=signature\"; Path=/");
+		send(exchange, 200, null);
+		return true;
+	}
+
+	private void handleDataNode(HttpExchange exchange) throws IOException {
+		if(handshake(exchange)) {
+			return;
+		}
+
+		String path = normalize(exchange.getRequestURI().getRawPath().substring("/datanode/webhdfs/v1".length()));
+		Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+		String op = query.get("op");
+		lastDataNodeHeaders = exchange.getRequestHeaders();
+		lastDataNodeQuery = query;
+		byte[] body = read(exchange.getRequestBody());
+		if(injectFailure(exchange, "datanode:" + op) || !checkDelegation(exchange, query)) {
+			return;
+		}
+		AtomicInteger broken = breaks.get(op);
+		if(broken != null && broken.getAndDecrement() > 0) {
+			synchronized(this) {
+				putFile(path, Arrays.copyOf(body, Math.min(1, body.length)));
+			}
+			send(exchange, 500, "{\"RemoteException\":{\"exception\":\"IOException\","
+					+ "\"javaClassName\":\"java.io.IOException\",\"message\":\"Broken pipe\"}}");
+			return;
+		}
+
+		synchronized(this) {
+			if("CREATE".equals(op)) {
+				if(files.containsKey(path) && !"true".equals(query.get("overwrite"))) {
+					send(exchange, 403, "{\"RemoteException\":{\"exception\":\"FileAlreadyExistsException\","
+							+ "\"javaClassName\":\"org.apache.hadoop.fs.FileAlreadyExistsException\",\"message\":\"" + path + " already exists\"}}");
+					return;
+				}
+				putFile(path, body);
+				send(exchange, 201, null);
+			}
+			else if("APPEND".equals(op)) {
+				byte[] existing = files.get(path);
+				byte[] combined = new byte[existing.length + body.length];
+				System.arraycopy(existing, 0, combined, 0, existing.length);
+				System.arraycopy(body, 0, combined, existing.length, body.length);
+				files.put(path, combined);
+				modificationTimes.put(path, System.currentTimeMillis());
+				send(exchange, 200, null);
+			}
+			else if("OPEN".equals(op)) {
+				byte[] data = files.get(path);
+				int offset = query.containsKey("offset") ? (int) Math.min(Long.parseLong(query.get("offset")), data.length) : 0;
+				int length = query.containsKey("length") ? (int) Math.min(Long.parseLong(query.get("length")), data.length - offset) : data.length - offset;
+				exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+				exchange.sendResponseHeaders(200, length == 0 ? -1 : length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(data, offset, length);
+				os.close();
+			}
+		}
+	}
+
+	private void listStatus(HttpExchange exchange, String path) throws IOException {
+		if(files.containsKey(path)) {
+			send(exchange, 200, "{\"FileStatuses\":{\"FileStatus\":[" + status(path, "") + "]}}");
+			return;
+		}
+		if(!directories.containsKey(path)) {
+			notFound(exchange, path);
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("{\"FileStatuses\":{\"FileStatus\":[");
+		boolean first = true;
+		for(String child : children(path)) {
+			if(!first) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append(status(child, child.substring(child.lastIndexOf('/') + 1)));
+		}
+		sb.append("]}}");
+		send(exchange, 200, sb.toString());
+	}
+
+	private void listStatusBatch(HttpExchange exchange, String path, String startAfter) throws IOException {
+		if(!directories.containsKey(path)) {
+			notFound(exchange, path);
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("{\"DirectoryListing\":{\"partialListing\":{\"FileStatuses\":{\"FileStatus\":[");
+		int count = 0;
+		int remaining = 0;
+		for(String child : children(path)) {
+			String suffix = child.substring(child.lastIndexOf('/') + 1);
+			if(startAfter != null && suffix.compareTo(startAfter) <= 0) {
+				continue;
+			}
+			if(count == listingBatchSize) {
+				remaining++;
+				continue;
+			}
+			sb.append(count++ == 0 ? "" : ",").append(status(child, suffix));
+		}
+		sb.append("]}},\"remainingEntries\":").append(remaining).append("}}");
+		send(exchange, 200, sb.toString());
+	}
+
+	private void contentSummary(HttpExchange exchange, String path) throws IOException {
+		if(!exists(path)) {
+			notFound(exchange, path);
+			return;
+		}
+
+		long length = 0L;
+		int fileCount = 0;
+		int directoryCount = files.containsKey(path) ? 0 : 1;
+		String prefix = "/".equals(path) ? "/" : path + "/";
+
+		for(Map.Entry<String, byte[]> entry : files.entrySet()) {
+			if(entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+				length += entry.getValue().length;
+				fileCount++;
+			}
+		}
+		for(String directory : directories.keySet()) {
+			if(!directory.equals(path) && directory.startsWith(prefix)) {
+				directoryCount++;
+			}
+		}
+
+		send(exchange, 200, "{\"ContentSummary\":{\"directoryCount\":" + directoryCount + ",\"fileCount\":" + fileCount
+				+ ",\"length\":" + length + ",\"quota\":-1,\"spaceConsumed\":" + (length * 3) + ",\"spaceQuota\":-1}}");
+	}
+
+	private void fileChecksum(HttpExchange exchange, String path) throws IOException {
+		if(!files.containsKey(path)) {
+			notFound(exchange, path);
+			return;
+		}
+
+		StringBuilder hex = new StringBuilder();
+		try {
+			for(byte b : MessageDigest.getInstance("MD5").digest(files.get(path))) {
+				hex.append(String.format("%02x", b));
+			}
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+
+		send(exchange, 200, "{\"FileChecksum\":{\"algorithm\":\"MD5-of-0MD5-of-512CRC32C\",\"bytes\":\"" + hex
+				+ "\",\"length\":16}}");
+	}
+
+	private Iterable<String> children(String path) {
+		TreeMap<String, Boolean> children = new TreeMap<String, Boolean>();
+		String prefix = "/".equals(path) ? "/" : path + "/";
+
+		for(String file : files.keySet()) {
+			if(file.startsWith(prefix) && file.indexOf('/', prefix.length()) < 0) {
+				children.put(file, Boolean.TRUE);
+			}
+		}
+		for(String directory : directories.keySet()) {
+			if(directory.length() > prefix.length() && directory.startsWith(prefix) && directory.indexOf('/', prefix.length()) < 0) {
+				children.put(directory, Boolean.TRUE);
+			}
+		}
+		return children.keySet();
+	}
+
+	private boolean exists(String path) {
+		return files.containsKey(path) || directories.containsKey(path);
+	}
+
+	private String status(String path, String suffix) {
+		byte[] data = files.get(path);
+		boolean file = data != null;
+		return "{\"accessTime\":" + (file ? 1320171722771L : 0) + ",\"blockSize\":" + (file ? blockSize : 0)
+				+ ",\"group\":\"supergroup\",\"length\":" + (file ? data.length : 0)
+				+ ",\"modificationTime\":" + (file ? modificationTimes.get(path) : 1320173277227L) + ",\"owner\":\"test\",\"pathSuffix\":\"" + suffix
+				+ "\",\"permission\":\"" + (file ? "644" : "755") + "\",\"replication\":" + (file ? 3 : 0)
+				+ ",\"type\":\"" + (file ? "FILE" : "DIRECTORY") + "\"}";
+	}
+
+	/*
+	 * Rejects requests carrying a delegation token that was not issued or has been cancelled
+	 */
+	private boolean checkDelegation(HttpExchange exchange, Map<String, String> query) throws IOException {
+		String token = query.get("delegation");
+		if(token == null || delegationTokens.contains(token)) {
+			return true;
+		}
+		invalidToken(exchange, token);
+		return false;
+	}
+
+	private void invalidToken(HttpExchange exchange, String token) throws IOException {
+		send(exchange, 403, "{\"RemoteException\":{\"exception\":\"InvalidToken\","
+				+ "\"javaClassName\":\"org.apache.hadoop.security.token.SecretManager$InvalidToken\",\"message\":\"token ("
+				+ token + ") can't be found in cache\"}}");
+	}
+
+	private boolean injectFailure(HttpExchange exchange, String key) throws IOException {
+		InjectedFailure failure = failures.get(key);
+		if(failure == null || failure.remaining.getAndDecrement() <= 0) {
+			return false;
+		}
+		send(exchange, failure.code, failure.exception == null ? null : "{\"RemoteException\":{\"exception\":\""
+				+ failure.exception + "\",\"javaClassName\":\"org.apache.hadoop.ipc." + failure.exception
+				+ "\",\"message\":\"injected\"}}");
+		return true;
+	}
+
+	private void notFound(HttpExchange exchange, String path) throws IOException {
+		send(exchange, 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\","
+				+ "\"javaClassName\":\"java.io.FileNotFoundException\",\"message\":\"File does not exist: " + path + "\"}}");
+	}
+
+	private void count(String op) {
+		requestCounts.computeIfAbsent(op, k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	private static void send(HttpExchange exchange, int code, String json) throws IOException {
+		if(json == null) {
+			// an empty chunked body: with -1 the JDK server closes the socket after advertising
+			// Content-length: 0, leaving a dead socket in the client's keep-alive cache, which
+			// streaming uploads cannot silently retry
+			exchange.sendResponseHeaders(code, 0);
+		}
+		else {
+			byte[] body = json.getBytes("UTF-8");
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(code, body.length);
+			exchange.getResponseBody().write(body);
+		}
+		exchange.close();
+	}
+
+	private static byte[] read(InputStream is) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while(-1 != (n = is.read(buffer))) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Map<String, String> query(String rawQuery) throws UnsupportedEncodingException {
+		Map<String, String> query = new HashMap<String, String>();
+		if(rawQuery != null) {
+			for(String pair : rawQuery.split("&")) {
+				int eq = pair.indexOf('=');
+				if(eq > 0) {
+					query.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+				}
+			}
+		}
+		return query;
+	}
+
+	static String normalize(String path) {
+		String p = path.replaceAll("/+", "/");
+		try {
+			p = URLDecoder.decode(p.replace("+", "%2B"), "UTF-8");
+		}
+		catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		if(!p.startsWith("/")) {
+			p = "/" + p;
+		}
+		if(p.length() > 1 && p.endsWith("/")) {
+			p = p.substring(0, p.length() - 1);
+		}
+		return p;
+	}
+
+	private static String parent(String path) {
+		int slash = path.lastIndexOf('/');
+		return slash <= 0 ? "/" : path.substring(0, slash);
+	}
+
+	private static class InjectedFailure {
+		final AtomicInteger remaining;
+		final int code;
+		final String exception;
+
+		InjectedFailure(int times, int code, String exception) {
+			this.remaining = new AtomicInteger(times);
+			this.code = code;
+			this.exception = exception;
+		}
+	}
+}
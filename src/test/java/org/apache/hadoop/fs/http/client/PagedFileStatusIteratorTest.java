@@ -0,0 +1,123 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PagedFileStatusIteratorTest {
+
+	MockWebHDFSServer server;
+	WebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+		for(int i = 0; i < 250; i++) {
+			server.putFile("/user/test/dir/file " + String.format("%03d", i) + "&x=y", new byte[i]);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void pagesThroughTheDirectory() throws Exception {
+		server.setListingBatchSize(100);
+
+		PagedFileStatusIterator entries = conn.listStatusBatchIterator("user/test/dir");
+		List<String> names = entries.stream().map(FileStatus::getSuffix).collect(Collectors.toList());
+
+		assertEquals(250, names.size());
+		assertEquals("file 000&x=y", names.get(0));
+		assertEquals("file 249&x=y", names.get(249));
+		assertEquals(3, entries.getPageCount());
+		assertEquals(3, server.getRequestCount("LISTSTATUS_BATCH"));
+		assertFalse(entries.isFallback());
+	}
+
+	@Test
+	public void fallsBackWithoutListStatusBatch() throws Exception {
+		server.setListingBatchSize(0);
+
+		PagedFileStatusIterator entries = conn.listStatusBatchIterator("user/test/dir");
+		assertTrue(entries.isFallback());
+		assertEquals(250, entries.stream().count());
+		assertEquals(1, server.getRequestCount("LISTSTATUS"));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingDirectory() throws Exception {
+		conn.listStatusBatchIterator("user/test/missing");
+	}
+
+	@Test
+	public void nextPageIsFetchedWhileTheCurrentOneIsConsumed() throws Exception {
+		final CountDownLatch secondPageRequested = new CountDownLatch(1);
+		PagedFileStatusIterator.PageSource source = startAfter -> {
+			if(startAfter == null) {
+				return page(0, 2, 2);
+			}
+			secondPageRequested.countDown();
+			return page(2, 2, 0);
+		};
+
+		PagedFileStatusIterator entries = new PagedFileStatusIterator(source, () -> {
+			throw new AssertionError("no fallback expected");
+		});
+
+		// requested before anything of the first page was consumed
+		assertTrue(secondPageRequested.await(5, TimeUnit.SECONDS));
+		List<String> names = new ArrayList<String>();
+		entries.forEachRemaining(s -> names.add(s.getSuffix()));
+		assertEquals(Arrays.asList("f0", "f1", "f2", "f3"), names);
+	}
+
+	@Test
+	public void failedPageIsReported() throws Exception {
+		PagedFileStatusIterator entries = new PagedFileStatusIterator(startAfter -> {
+			if(startAfter == null) {
+				return page(0, 1, 5);
+			}
+			throw new IOException("NameNode went away");
+		}, () -> null, null);
+
+		entries.next();
+		try {
+			entries.hasNext();
+			throw new AssertionError("expected an UncheckedIOException");
+		}
+		catch(UncheckedIOException e) {
+			assertEquals("NameNode went away", e.getCause().getMessage());
+		}
+		assertFalse(entries.hasNext());
+	}
+
+	private static DirectoryListing page(int first, int count, long remaining) {
+		List<FileStatus> entries = new ArrayList<FileStatus>();
+		for(int i = first; i < first + count; i++) {
+			FileStatus status = new FileStatus();
+			status.setSuffix("f" + i);
+			status.setType(FileType.FILE);
+			entries.add(status);
+		}
+		return new DirectoryListing(entries, remaining);
+	}
+}
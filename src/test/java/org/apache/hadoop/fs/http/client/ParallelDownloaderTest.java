@@ -0,0 +1,154 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelDownloaderTest {
+
+	MockWebHDFSServer server;
+	File file;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		file = File.createTempFile("download", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+		file.delete();
+	}
+
+	@Test
+	public void rangesAreAlignedToBlocks() {
+		List<long[]> ranges = ParallelDownloader.split(1000, 100, 4, 1);
+		assertEquals(4, ranges.size());
+		assertArrayEquals(new long[] { 0, 300 }, ranges.get(0));
+		assertArrayEquals(new long[] { 300, 300 }, ranges.get(1));
+		assertArrayEquals(new long[] { 600, 300 }, ranges.get(2));
+		assertArrayEquals(new long[] { 900, 100 }, ranges.get(3));
+
+		// smaller than a block: split evenly, but not below the minimum range size
+		assertEquals(4, ParallelDownloader.split(1000, 4096, 4, 1).size());
+		assertEquals(2, ParallelDownloader.split(1000, 4096, 4, 500).size());
+		assertEquals(1, ParallelDownloader.split(0, 4096, 4, 1).size());
+	}
+
+	@Test
+	public void downloadsRangesInParallel() throws Exception {
+		byte[] data = new byte[1000003];
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251);
+		}
+		server.putFile("/user/test/big.bin", data);
+		server.setBlockSize(65536);
+
+		ParallelDownloader downloader = new ParallelDownloader(
+				AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""), 4);
+		downloader.setMinRangeSize(1);
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+			// stale content past the end of the file is truncated
+			channel.write(ByteBuffer.wrap(new byte[data.length + 10]));
+
+			assertEquals(data.length, downloader.download("user/test/big.bin", channel));
+			assertEquals(data.length, channel.size());
+
+			ByteBuffer contents = ByteBuffer.allocate(data.length);
+			channel.read(contents, 0);
+			assertArrayEquals(data, contents.array());
+		}
+		finally {
+			downloader.close();
+		}
+
+		assertEquals(4, server.getRequestCount("OPEN"));
+	}
+
+	@Test
+	public void failedRangeLeavesTheChannelOpen() throws Exception {
+		server.putFile("/user/test/big.bin", new byte[8 * 1024 * 1024]);
+		server.setBlockSize(65536);
+
+		// the first range fails while the others are still writing, slowly
+		final WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+		WebHDFSConnection failing = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					if("open".equals(method.getName()) && args.length == 4) {
+						if((Long) args[1] == 0L) {
+							Thread.sleep(50);
+							throw new IOException("connection reset");
+						}
+						args[3] = new FilterOutputStream((OutputStream) args[3]) {
+							@Override
+							public void write(byte[] b, int off, int len) throws IOException {
+								out.write(b, off, len);
+								try {
+									Thread.sleep(5);
+								}
+								catch(InterruptedException e) {
+									Thread.currentThread().interrupt();
+								}
+							}
+						};
+					}
+					try {
+						return method.invoke(conn, args);
+					}
+					catch(InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+
+		ParallelDownloader downloader = new ParallelDownloader(failing, 4);
+		downloader.setMinRangeSize(1);
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+			try {
+				downloader.download("user/test/big.bin", channel);
+				fail("failed range ignored");
+			}
+			catch(IOException e) {
+				assertEquals("connection reset", e.getMessage());
+				// a range still writing after an interrupt would close the channel
+				Thread.sleep(100);
+				assertTrue(channel.isOpen());
+				assertEquals(1, channel.write(ByteBuffer.wrap(new byte[] { 1 }), 0));
+			}
+		}
+		finally {
+			downloader.close();
+		}
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void missingFileFails() throws Exception {
+		ParallelDownloader downloader = new ParallelDownloader(
+				AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""), 2);
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			downloader.download("user/test/missing.bin", channel);
+		}
+		finally {
+			downloader.close();
+		}
+	}
+}
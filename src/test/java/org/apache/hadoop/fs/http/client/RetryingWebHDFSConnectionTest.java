@@ -0,0 +1,203 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryingWebHDFSConnectionTest {
+
+	MockWebHDFSServer server;
+	RetryingWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		server.putFile("/user/test/a", new byte[] { 1, 2, 3 });
+		conn = new RetryingWebHDFSConnection(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", ""),
+				new RetryPolicy(4, 1L, 5L, 60000L));
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void readsAreRetriedThroughFailover() throws Exception {
+		server.failNameNode("GETFILESTATUS", 2, 403, "StandbyException");
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		assertEquals(3, server.getRequestCount("GETFILESTATUS"));
+
+		server.failNameNode("LISTSTATUS", 1, 503, null);
+		assertEquals(200, conn.listStatus("/user/test").getResponseCode());
+
+		RetryStats stats = conn.getStats();
+		assertEquals(2, stats.getCallCount());
+		assertEquals(3, stats.getRetryCount());
+		assertEquals(2, stats.getRecoveredCount());
+		assertEquals(Long.valueOf(2), stats.getRetriesByOp().get("GETFILESTATUS"));
+		assertEquals(Long.valueOf(1), stats.getRetriesByOp().get("LISTSTATUS"));
+	}
+
+	@Test
+	public void nonIdempotentOpsAreOnlyRetriedWhenRejected() throws Exception {
+		server.failNameNode("DELETE", 1, 504, null);
+		assertEquals(504, conn.delete("/user/test/a").getResponseCode());
+		assertEquals(1, server.getRequestCount("DELETE"));
+		assertEquals(1, conn.getStats().getUnsafeCount());
+
+		server.failNameNode("DELETE", 1, 403, "RetriableException");
+		assertTrue(conn.deleteTyped("/user/test/a"));
+		assertEquals(3, server.getRequestCount("DELETE"));
+
+		server.failNameNode("MKDIRS", 1, 504, null);
+		assertTrue(conn.mkdirsTyped("/user/test/dir"));
+		assertEquals(2, server.getRequestCount("MKDIRS"));
+	}
+
+	@Test
+	public void appendIsNotRetriedOnceItsBodyWasSent() throws Exception {
+		server.failDataNode("APPEND", 1, 503, null);
+		assertEquals(503, conn.append("/user/test/a", new ByteArrayInputStream(new byte[] { 4 }), 1L).getResponseCode());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, server.getFile("/user/test/a"));
+
+		server.failNameNode("APPEND", 1, 403, "StandbyException");
+		assertEquals(200, conn.append("/user/test/a", new ByteArrayInputStream(new byte[] { 4 }), 1L).getResponseCode());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, server.getFile("/user/test/a"));
+
+		RetryStats stats = conn.getStats();
+		assertEquals(1, stats.getUnsafeCount());
+		assertEquals(1, stats.getRetryCount());
+	}
+
+	@Test
+	public void createIsRetriedWhenItOverwrites() throws Exception {
+		server.failNameNode("CREATE", 1, 504, null);
+		assertEquals(201, conn.create("/user/test/b", new ByteArrayInputStream(new byte[] { 5 }), 1L, true).getResponseCode());
+		assertArrayEquals(new byte[] { 5 }, server.getFile("/user/test/b"));
+
+		server.failNameNode("CREATE", 1, 504, null);
+		assertEquals(504, conn.create("/user/test/c", new ByteArrayInputStream(new byte[] { 6 }), 1L, false).getResponseCode());
+		assertEquals(3, server.getRequestCount("CREATE"));
+	}
+
+	@Test
+	public void kerberosRejectionsAreRetried() throws Exception {
+		RetryingWebHDFSConnection kerberos = new RetryingWebHDFSConnection(
+				AuthenticationType.KERBEROS.createConnection(server.getUrl(), "test", ""), new RetryPolicy(4, 1L, 5L, 60000L));
+
+		server.failNameNode("DELETE", 1, 403, "StandbyException");
+		assertEquals(200, kerberos.delete("/user/test/a").getResponseCode());
+		assertEquals(2, server.getRequestCount("DELETE"));
+
+		server.putFile("/user/test/b", new byte[] { 1 });
+		server.failNameNode("APPEND", 1, 403, "StandbyException");
+		assertEquals(200, kerberos.append("/user/test/b", new ByteArrayInputStream(new byte[] { 2 }), 1L).getResponseCode());
+		assertArrayEquals(new byte[] { 1, 2 }, server.getFile("/user/test/b"));
+
+		RetryStats stats = kerberos.getStats();
+		assertEquals(0, stats.getUnsafeCount());
+		assertEquals(2, stats.getRecoveredCount());
+	}
+
+	@Test
+	public void kerberosClientErrorsAreNotRetried() throws Exception {
+		RetryingWebHDFSConnection kerberos = new RetryingWebHDFSConnection(
+				AuthenticationType.KERBEROS.createConnection(server.getUrl(), "test", ""), new RetryPolicy(4, 1L, 5L, 60000L));
+
+		server.failNameNode("GETFILESTATUS", 1, 403, "AccessControlException");
+		assertEquals(403, kerberos.getFileStatus("/user/test/a").getResponseCode());
+		assertEquals(1, server.getRequestCount("GETFILESTATUS"));
+
+		server.failNameNode("GETFILESTATUS", 1, 403, null);
+		try {
+			kerberos.getFileStatusTyped("/user/test/a");
+			fail("a forbidden request succeeded");
+		}
+		catch(HttpStatusException e) {
+			assertEquals(403, e.getStatusCode());
+		}
+		assertEquals(2, server.getRequestCount("GETFILESTATUS"));
+
+		RetryStats stats = kerberos.getStats();
+		assertEquals(0, stats.getRetryCount());
+		assertEquals(0, stats.getRecoveredCount());
+	}
+
+	@Test
+	public void givesUpAfterMaxAttempts() throws Exception {
+		server.failNameNode("GETFILESTATUS", 10, 403, "StandbyException");
+		try {
+			conn.getFileStatusTyped("/user/test/a");
+			fail("no error after the last attempt");
+		}
+		catch(RemoteException e) {
+			assertEquals("StandbyException", e.getException());
+		}
+		assertEquals(4, server.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, conn.getStats().getExhaustedCount());
+	}
+
+	@Test
+	public void givesUpAtTheDeadline() throws Exception {
+		// attempts at about 0, 200 and 400 ms; a fourth would start after the deadline
+		RetryingWebHDFSConnection slow = new RetryingWebHDFSConnection(conn.getDelegate(), new RetryPolicy(10, 200L, 200L, 500L));
+		server.failNameNode("GETFILESTATUS", 10, 503, null);
+		assertEquals(503, slow.getFileStatus("/user/test/a").getResponseCode());
+		assertEquals(3, server.getRequestCount("GETFILESTATUS"));
+		assertEquals(1, slow.getStats().getDeadlineExceededCount());
+	}
+
+	@Test
+	public void refusedConnectionsAreRetried() throws Exception {
+		server.stop();
+		try {
+			conn.deleteTyped("/user/test/a");
+			fail("connected to a stopped server");
+		}
+		catch(ConnectException e) {
+			// expected
+		}
+		assertEquals(3, conn.getStats().getRetryCount());
+	}
+
+	@Test
+	public void hungServerFailsAtTheDeadline() throws Exception {
+		// accepts connections in its backlog but never answers, like a NameNode stuck in a GC pause
+		try (ServerSocket silent = new ServerSocket(0)) {
+			RetryingWebHDFSConnection hung = new RetryingWebHDFSConnection(AuthenticationType.PSEUDO.createConnection(
+					"http://localhost:" + silent.getLocalPort(), "test", ""), new RetryPolicy(10, 1L, 5L, 300L));
+			long start = System.currentTimeMillis();
+			try {
+				hung.getFileStatus("/user/test/a");
+				fail("a server that never answers answered");
+			}
+			catch(SocketTimeoutException e) {
+				// expected
+			}
+			assertTrue(System.currentTimeMillis() - start < 2000L);
+		}
+	}
+
+	@Test
+	public void delaysAreJitteredWithinBounds() {
+		RetryPolicy policy = new RetryPolicy(5, 100L, 1000L, 60000L);
+		long delay = 0L;
+		for(int i = 0; i < 1000; i++) {
+			long previous = delay;
+			delay = policy.nextDelayMillis(previous);
+			assertTrue(delay >= 100L && delay <= Math.min(1000L, Math.max(100L, previous) * 3));
+		}
+	}
+}
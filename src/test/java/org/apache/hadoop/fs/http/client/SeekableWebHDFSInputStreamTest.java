@@ -0,0 +1,172 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.Test;
+
+public class SeekableWebHDFSInputStreamTest {
+
+	static final byte[] DATA = new byte[3 * 1024 * 1024 + 5];
+
+	static {
+		for(int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) (i * 7 + i / 251);
+		}
+	}
+
+	/*
+	 * Serves ranges of DATA and records the requested ranges
+	 */
+	static class Source implements SeekableWebHDFSInputStream.RangeSource {
+		final List<long[]> requests = new CopyOnWriteArrayList<long[]>();
+
+		public InputStream open(long offset, long length) {
+			requests.add(new long[] { offset, length });
+			return new ByteArrayInputStream(DATA, (int) offset, (int) Math.min(length, DATA.length - offset));
+		}
+	}
+
+	@Test
+	public void sequentialReadUsesOneRequest() throws Exception {
+		Source source = new Source();
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(source, DATA.length);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[10000];
+		int n;
+		while(-1 != (n = in.read(buffer))) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+
+		assertArrayEquals(DATA, out.toByteArray());
+		assertEquals(1, source.requests.size());
+		assertEquals(DATA.length, source.requests.get(0)[1]);
+	}
+
+	@Test
+	public void readAheadGrowsWhileSequential() throws Exception {
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(new Source(), DATA.length, null);
+		assertEquals(SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD, in.getReadAhead());
+
+		byte[] buffer = new byte[SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD];
+		in.read(buffer);
+		in.read(buffer);
+		assertTrue(in.getReadAhead() > SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD);
+
+		in.seek(3000000);
+		in.read();
+		assertEquals(SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD, in.getReadAhead());
+		in.close();
+	}
+
+	@Test
+	public void randomReadsOnlyFetchWhatIsNeeded() throws Exception {
+		Source source = new Source();
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(source, DATA.length, null);
+
+		// footer first
+		in.seek(DATA.length - 100);
+		byte[] footer = new byte[100];
+		assertEquals(100, in.read(footer));
+		assertArrayEquals(Arrays.copyOfRange(DATA, DATA.length - 100, DATA.length), footer);
+
+		// then a chunk in the middle
+		in.seek(1000000);
+		byte[] chunk = new byte[5000];
+		assertEquals(5000, in.read(chunk));
+		assertArrayEquals(Arrays.copyOfRange(DATA, 1000000, 1005000), chunk);
+		in.close();
+
+		assertEquals(2, source.requests.size());
+		for(long[] request : source.requests) {
+			assertTrue(request[1] <= SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD);
+		}
+	}
+
+	@Test
+	public void forwardSeekWithinWindowReusesRequest() throws Exception {
+		Source source = new Source();
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(source, DATA.length, null);
+
+		in.read();
+		in.seek(SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD + 5000);
+		assertEquals(DATA[SeekableWebHDFSInputStream.DEFAULT_MIN_READ_AHEAD + 5000], (byte) in.read());
+		in.close();
+
+		assertEquals(1, source.requests.size());
+	}
+
+	@Test
+	public void positionalReadKeepsPosition() throws Exception {
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(new Source(), DATA.length);
+		in.seek(42);
+
+		byte[] b = new byte[16];
+		in.readFully(2000000, b);
+		assertArrayEquals(Arrays.copyOfRange(DATA, 2000000, 2000016), b);
+		assertEquals(42, in.getPos());
+		assertEquals(DATA[42], (byte) in.read());
+		in.close();
+	}
+
+	@Test
+	public void endOfFile() throws Exception {
+		SeekableWebHDFSInputStream in = new SeekableWebHDFSInputStream(new Source(), DATA.length);
+		in.seek(DATA.length);
+		assertEquals(-1, in.read());
+		assertEquals(-1, in.read(DATA.length, new byte[1], 0, 1));
+
+		try {
+			in.seek(DATA.length + 1);
+			throw new AssertionError("expected an EOFException");
+		}
+		catch(EOFException e) {
+			// expected
+		}
+		in.close();
+
+		try {
+			in.read();
+			throw new AssertionError("expected an IOException");
+		}
+		catch(IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void openStreamReadsFromServer() throws Exception {
+		MockWebHDFSServer server = new MockWebHDFSServer();
+		try {
+			server.putFile("/user/test/data.bin", DATA);
+			WebHDFSConnection conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+
+			SeekableWebHDFSInputStream in = conn.openStream("user/test/data.bin");
+			assertEquals(DATA.length, in.length());
+
+			byte[] b = new byte[1000];
+			in.readFully(DATA.length - 1000, b);
+			assertArrayEquals(Arrays.copyOfRange(DATA, DATA.length - 1000, DATA.length), b);
+
+			in.seek(123456);
+			assertEquals(DATA[123456], (byte) in.read());
+			in.close();
+		}
+		finally {
+			server.stop();
+		}
+	}
+}
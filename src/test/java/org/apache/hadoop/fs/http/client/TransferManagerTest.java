@@ -0,0 +1,229 @@
+package org.apache.hadoop.fs.http.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferManagerTest {
+
+	MockWebHDFSServer server;
+	WebHDFSConnection conn;
+	Path local;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "test", "");
+		local = Files.createTempDirectory("transfer");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		server.stop();
+		try (Stream<Path> paths = Files.walk(local)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void directoryRoundTrip() throws Exception {
+		Path source = Files.createDirectories(local.resolve("source/nested"));
+		Files.createDirectories(local.resolve("source/empty"));
+		for(int i = 0; i < 40; i++) {
+			Files.write(local.resolve("source/file" + i), ("file " + i).getBytes("UTF-8"));
+		}
+		Files.write(source.resolve("deep.bin"), new byte[70000]);
+
+		TransferManager manager = new TransferManager(conn, 8, 1024 * 1024);
+		try {
+			TransferManager.Transfer upload = manager.uploadDirectory(local.resolve("source"), "user/test/copy").await();
+			assertTrue(upload.getFailures().toString(), upload.getFailures().isEmpty());
+			assertEquals(42, upload.getFileCount());
+			assertEquals(42, upload.getCompletedFiles());
+			assertArrayEquals("file 7".getBytes("UTF-8"), server.getFile("/user/test/copy/file7"));
+			assertEquals(70000, server.getFile("/user/test/copy/nested/deep.bin").length);
+			assertEquals(200, conn.getFileStatus("user/test/copy/empty").getResponseCode());
+
+			TransferManager.Transfer download = manager.downloadDirectory("user/test/copy", local.resolve("target")).await();
+			assertTrue(download.getFailures().isEmpty());
+			assertEquals(41, download.getCompletedFiles());
+			assertEquals(upload.getBytesTransferred(), download.getBytesTransferred());
+			assertArrayEquals("file 39".getBytes("UTF-8"), Files.readAllBytes(local.resolve("target/file39")));
+			assertEquals(70000, Files.size(local.resolve("target/nested/deep.bin")));
+			assertTrue(Files.isDirectory(local.resolve("target/empty")));
+			assertTrue(download.getThroughput() > 0);
+		}
+		finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void failedFilesAreRetriedOnTheirOwn() throws Exception {
+		final AtomicInteger uploads = new AtomicInteger();
+		WebHDFSConnection flaky = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					if("upload".equals(method.getName()) && args[1].toString().endsWith("a") && uploads.incrementAndGet() < 3) {
+						throw new IOException("connection reset");
+					}
+					try {
+						return method.invoke(conn, args);
+					}
+					catch(InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		server.putFile("/user/test/out/c", new byte[] { 1 });
+
+		List<Path> files = new ArrayList<Path>();
+		for(String name : new String[] { "a", "b", "c" }) {
+			files.add(Files.write(local.resolve(name), name.getBytes("UTF-8")));
+		}
+
+		TransferManager manager = new TransferManager(flaky);
+		manager.setRetryBackoffMillis(0);
+		try {
+			TransferManager.Transfer transfer = manager.upload(files, "user/test/out").await();
+
+			assertEquals(3, uploads.get());
+			assertEquals(2, transfer.getCompletedFiles());
+			assertArrayEquals("a".getBytes("UTF-8"), server.getFile("/user/test/out/a"));
+			// an existing file is a client error and is not retried
+			assertEquals(1, transfer.getFailures().size());
+			assertTrue(transfer.getFailures().containsKey(local.resolve("c").toString()));
+			assertEquals(3, server.getRequestCount("CREATE"));
+		}
+		finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void brokenUploadIsReplacedByItsRetry() throws Exception {
+		Path file = Files.write(local.resolve("broken"), "the whole file".getBytes("UTF-8"));
+		server.breakDataNode("CREATE", 1);
+
+		TransferManager manager = new TransferManager(conn);
+		manager.setRetryBackoffMillis(0);
+		try {
+			TransferManager.Transfer transfer = manager.upload(Collections.singletonList(file), "user/test/out").await();
+
+			assertTrue(transfer.getFailures().toString(), transfer.getFailures().isEmpty());
+			assertEquals(1, transfer.getCompletedFiles());
+			assertArrayEquals("the whole file".getBytes("UTF-8"), server.getFile("/user/test/out/broken"));
+			assertEquals(2, server.getRequestCount("CREATE"));
+		}
+		finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void retryKeepsAFileThatWasThereBefore() throws Exception {
+		final AtomicInteger uploads = new AtomicInteger();
+		WebHDFSConnection refused = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					if("upload".equals(method.getName()) && uploads.incrementAndGet() == 1) {
+						throw new ConnectException("Connection refused");
+					}
+					try {
+						return method.invoke(conn, args);
+					}
+					catch(InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		server.putFile("/user/test/out/kept", "old".getBytes("UTF-8"), System.currentTimeMillis() - 60000L);
+		Path file = Files.write(local.resolve("kept"), "new".getBytes("UTF-8"));
+
+		TransferManager manager = new TransferManager(refused);
+		manager.setRetryBackoffMillis(0);
+		try {
+			TransferManager.Transfer transfer = manager.upload(Collections.singletonList(file), "user/test/out").await();
+
+			assertEquals(2, uploads.get());
+			assertEquals(1, transfer.getFailures().size());
+			assertArrayEquals("old".getBytes("UTF-8"), server.getFile("/user/test/out/kept"));
+		}
+		finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void kerberosPermissionErrorsAreNotRetried() throws Exception {
+		WebHDFSConnection kerberos = AuthenticationType.KERBEROS.createConnection(server.getUrl(), "test", "");
+		server.putFile("/user/test/in/a", new byte[] { 1 });
+		server.failNameNode("OPEN", 10, 403, "AccessControlException");
+		server.failNameNode("MKDIRS", 10, 403, null);
+		Files.createDirectories(local.resolve("source/empty"));
+
+		TransferManager manager = new TransferManager(kerberos);
+		manager.setRetryBackoffMillis(0);
+		try {
+			TransferManager.Transfer download = manager.downloadDirectory("user/test/in", local.resolve("target")).await();
+			assertEquals(1, download.getFailures().size());
+			assertEquals(1, server.getRequestCount("OPEN"));
+
+			TransferManager.Transfer upload = manager.uploadDirectory(local.resolve("source"), "user/test/copy").await();
+			assertEquals(1, upload.getFailures().size());
+			assertEquals(1, server.getRequestCount("MKDIRS"));
+		}
+		finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void inFlightBytesAreBounded() throws Exception {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		WebHDFSConnection slow = (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebHDFSConnection.class }, (proxy, method, args) -> {
+					peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(20);
+						return method.invoke(conn, args);
+					}
+					finally {
+						active.decrementAndGet();
+					}
+				});
+
+		List<Path> files = new ArrayList<Path>();
+		for(int i = 0; i < 8; i++) {
+			files.add(Files.write(local.resolve("f" + i), new byte[1000]));
+		}
+
+		// room for two files at a time, despite a parallelism of eight
+		TransferManager manager = new TransferManager(slow, 8, 2500);
+		try {
+			TransferManager.Transfer transfer = manager.upload(files, "user/test/bounded").await();
+			assertEquals(8, transfer.getCompletedFiles());
+			assertEquals(8000, transfer.getBytesTransferred());
+			assertEquals(2, peak.get());
+		}
+		finally {
+			manager.close();
+		}
+	}
+}
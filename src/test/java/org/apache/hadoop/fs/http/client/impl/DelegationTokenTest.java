@@ -0,0 +1,198 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.RemoteException;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelegationTokenTest {
+
+	MockWebHDFSServer server;
+	DelegationTokenWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		server.putFile("/user/test/a", new byte[] { 1, 2, 3 });
+		conn = new DelegationTokenWebHDFSConnection(server.getUrl(),
+				new PseudoWebHDFSConnection(server.getUrl(), "test", ""), "test");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		conn.close();
+		server.stop();
+	}
+
+	@Test
+	public void sendsTokenInsteadOfUserName() throws Exception {
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		assertTrue(conn.mkdirsTyped("/user/test/dir"));
+
+		Map<String, String> query = server.getLastNameNodeQuery();
+		assertEquals(conn.exportToken(), query.get("delegation"));
+		assertFalse(query.containsKey("user.name"));
+
+		// obtained once and renewed once to learn its expiry
+		assertEquals(1, server.getRequestCount("GETDELEGATIONTOKEN"));
+		assertEquals(1, server.getRequestCount("RENEWDELEGATIONTOKEN"));
+		assertTrue(conn.getTokenExpiry() > System.currentTimeMillis());
+	}
+
+	@Test
+	public void dataNodeRequestsCarryToken() throws Exception {
+		conn.create("/user/test/b", new ByteArrayInputStream(new byte[] { 4, 5 }), 2L, false);
+		assertEquals(conn.exportToken(), server.getLastDataNodeQuery().get("delegation"));
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		conn.open("/user/test/b", os);
+		assertEquals(2, os.size());
+		assertEquals(conn.exportToken(), server.getLastDataNodeQuery().get("delegation"));
+	}
+
+	@Test
+	public void workersShareExportedToken() throws Exception {
+		String token = conn.exportToken();
+		WebHDFSConnection worker = AuthenticationType.withDelegationToken(server.getUrl(), token);
+		assertEquals(3L, worker.getFileStatusTyped("/user/test/a").getLength());
+
+		AsyncWebHDFSConnection async = AuthenticationType.withAsyncDelegationToken(server.getUrl(), token);
+		assertEquals(200, async.getFileStatus("/user/test/a").get().getResponseCode());
+
+		// closing a worker neither renews nor cancels the token
+		worker.close();
+		assertEquals(1, server.getRequestCount("GETDELEGATIONTOKEN"));
+		assertTrue(server.getDelegationTokens().contains(token));
+	}
+
+	@Test
+	public void closeCancelsToken() throws Exception {
+		String token = conn.exportToken();
+		conn.close();
+		assertEquals(1, server.getRequestCount("CANCELDELEGATIONTOKEN"));
+		assertFalse(server.getDelegationTokens().contains(token));
+
+		try {
+			AuthenticationType.withDelegationToken(server.getUrl(), token).getFileStatusTyped("/user/test/a");
+			fail("cancelled token accepted");
+		}
+		catch(RemoteException e) {
+			assertEquals("InvalidToken", e.getException());
+		}
+	}
+
+	@Test
+	public void closingTheFactoryCancelsTheAsyncToken() throws Exception {
+		WebHDFSConnectionFactory factory = new WebHDFSConnectionFactory();
+		factory.setEndpoints(server.getUrl());
+		factory.setUsername("test");
+		factory.setAuthenticationType(AuthenticationType.DELEGATION_TOKEN);
+
+		AsyncWebHDFSConnection async = factory.getAsyncConnection();
+		assertEquals(200, async.getFileStatus("/user/test/a").get().getResponseCode());
+		String token = server.getLastNameNodeQuery().get("delegation");
+		assertTrue(server.getDelegationTokens().contains(token));
+
+		factory.close();
+		assertEquals(1, server.getRequestCount("CANCELDELEGATIONTOKEN"));
+		assertFalse(server.getDelegationTokens().contains(token));
+	}
+
+	@Test
+	public void expiredTokenIsObtainedAgain() throws Exception {
+		AtomicLong now = new AtomicLong(0);
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+		DelegationTokenRenewer renewer = new DelegationTokenRenewer(new PseudoWebHDFSConnection(server.getUrl(), "test", ""),
+				"test", now::get, scheduler);
+		try {
+			String first = renewer.get();
+
+			// a failed renewal before the expiry keeps the token
+			server.failNameNode("RENEWDELEGATIONTOKEN", 1, 503, null);
+			runScheduled(scheduler);
+			assertEquals(first, renewer.get());
+
+			// once past its expiry it is dropped, and the next call obtains a new one
+			server.failNameNode("RENEWDELEGATIONTOKEN", 1, 503, null);
+			now.set(renewer.getExpiresAt());
+			runScheduled(scheduler);
+			String second = renewer.get();
+			assertFalse(first.equals(second));
+			assertEquals(2, server.getRequestCount("GETDELEGATIONTOKEN"));
+
+			// so is a token the server rejects, e.g. after its maximum lifetime
+			server.getDelegationTokens().remove(second);
+			runScheduled(scheduler);
+			assertFalse(second.equals(renewer.get()));
+			assertEquals(3, server.getRequestCount("GETDELEGATIONTOKEN"));
+		}
+		finally {
+			renewer.close();
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void rejectedTokenIsReplacedAndRequestSentAgain() throws Exception {
+		String first = conn.exportToken();
+
+		// e.g. a NameNode restarted without its token store
+		server.getDelegationTokens().remove(first);
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		String second = conn.exportToken();
+		assertFalse(first.equals(second));
+		assertEquals(second, server.getLastNameNodeQuery().get("delegation"));
+
+		// the same for an operation that hands back its response
+		server.getDelegationTokens().remove(second);
+		assertEquals(200, conn.getFileStatus("/user/test/a").getResponseCode());
+		assertEquals(3, server.getRequestCount("GETDELEGATIONTOKEN"));
+	}
+
+	@Test
+	public void tokenRejectedByItsFirstRenewalIsNotUsed() throws Exception {
+		server.failNameNode("RENEWDELEGATIONTOKEN", 1, 403, "InvalidToken");
+		try {
+			conn.exportToken();
+			fail("rejected token returned");
+		}
+		catch(IOException e) {
+			assertEquals(1, server.getRequestCount("GETDELEGATIONTOKEN"));
+		}
+
+		assertEquals(3L, conn.getFileStatusTyped("/user/test/a").getLength());
+		assertEquals(2, server.getRequestCount("GETDELEGATIONTOKEN"));
+	}
+
+	/*
+	 * Runs the pending renewal at once, whatever its delay
+	 */
+	private static void runScheduled(ScheduledThreadPoolExecutor scheduler) {
+		assertEquals(1, scheduler.getQueue().size());
+		Runnable task = scheduler.getQueue().peek();
+		assertTrue(scheduler.remove(task));
+		task.run();
+	}
+
+	@Test
+	public void renewerIsShortName() {
+		assertEquals("alice", AuthenticationType.shortName("alice/host.example.com@EXAMPLE.COM"));
+		assertEquals("bob", AuthenticationType.shortName("bob"));
+	}
+}
@@ -0,0 +1,69 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DownloadTest {
+
+	MockWebHDFSServer server;
+	PseudoWebHDFSConnection conn;
+	File file;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "test", "");
+		file = File.createTempFile("download", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+		file.delete();
+	}
+
+	@Test
+	public void downloadReplacesLocalFile() throws Exception {
+		// several pooled buffers' worth, not a multiple of the buffer size
+		byte[] data = new byte[3 * 1024 * 1024 + 12345];
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 253);
+		}
+		server.putFile("/user/test/big.bin", data);
+		Files.write(file.toPath(), new byte[data.length * 2]);
+
+		assertEquals(data.length, conn.download("user/test/big.bin", file.toPath()));
+		assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void downloadWithPreallocation() throws Exception {
+		byte[] data = "preallocated".getBytes("UTF-8");
+		server.putFile("/user/test/small.txt", data);
+
+		assertEquals(data.length, conn.download("user/test/small.txt", file.toPath(), true));
+		assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void emptyFile() throws Exception {
+		server.putFile("/user/test/empty", new byte[0]);
+
+		assertEquals(0, conn.download("user/test/empty", file.toPath(), true));
+		assertEquals(0, file.length());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingFile() throws Exception {
+		conn.download("user/test/missing", file.toPath());
+	}
+}
@@ -0,0 +1,90 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ConnectException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginException;
+
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.ietf.jgss.GSSException;
+import org.junit.Test;
+
+public class KerberosLoginCacheTest {
+
+	final AtomicLong now = new AtomicLong(0);
+	final AtomicInteger logins = new AtomicInteger();
+	final KerberosLoginCache cache = new KerberosLoginCache(now::get);
+
+	final KerberosLoginCache.Login login = () -> {
+		logins.incrementAndGet();
+		return new Subject();
+	};
+
+	@Test
+	public void reusesSubjectUntilRenewalIsDue() throws Exception {
+		CredentialKey key = CredentialKey.forLogin("user@EXAMPLE.COM", "secret");
+		Subject first = cache.getSubject(key, login);
+		assertSame(first, cache.getSubject(CredentialKey.forLogin("user@EXAMPLE.COM", "secret"), login));
+		assertEquals(1, logins.get());
+
+		// without a TGT the default lifetime applies
+		now.set((long) (KerberosLoginCache.DEFAULT_LIFETIME * TokenHolder.REFRESH_FRACTION));
+		assertNotSame(first, cache.getSubject(key, login));
+		assertEquals(2, logins.get());
+	}
+
+	@Test
+	public void keysByCredentials() throws Exception {
+		cache.getSubject(CredentialKey.forLogin("user@EXAMPLE.COM", "secret"), login);
+		cache.getSubject(CredentialKey.forLogin("user@OTHER.COM", "secret"), login);
+		cache.getSubject(CredentialKey.forLogin("user@EXAMPLE.COM", "changed"), login);
+		assertEquals(3, logins.get());
+	}
+
+	@Test
+	public void keepsValidSubjectWhenRenewalFails() throws Exception {
+		CredentialKey key = CredentialKey.forLogin("user@EXAMPLE.COM", "secret");
+		Subject first = cache.getSubject(key, login);
+
+		now.set(KerberosLoginCache.DEFAULT_LIFETIME - 1);
+		assertSame(first, cache.getSubject(key, () -> {
+			throw new LoginException("KDC unreachable");
+		}));
+	}
+
+	@Test(expected = LoginException.class)
+	public void failsWithoutValidSubject() throws Exception {
+		CredentialKey key = CredentialKey.forLogin("user@EXAMPLE.COM", "secret");
+		cache.getSubject(key, login);
+		cache.invalidate(key);
+
+		cache.getSubject(key, () -> {
+			throw new LoginException("KDC unreachable");
+		});
+	}
+
+	@Test
+	public void onlyRejectedTicketsNeedANewLogin() {
+		assertTrue(KerberosAuthenticator2.isCredentialFailure(new GSSException(GSSException.CREDENTIALS_EXPIRED)));
+		assertTrue(KerberosAuthenticator2.isCredentialFailure(new GSSException(GSSException.NO_CRED)));
+		assertFalse(KerberosAuthenticator2.isCredentialFailure(new GSSException(GSSException.BAD_MECH)));
+		assertFalse(KerberosAuthenticator2.isCredentialFailure(new ConnectException("Connection refused")));
+		assertFalse(KerberosAuthenticator2.isCredentialFailure(new AuthenticationException("Invalid SPNEGO sequence")));
+	}
+
+	@Test
+	public void normalizesEndpoints() {
+		assertEquals(CredentialKey.forEndpoint("http://NameNode:50070/", "user", "secret"),
+				CredentialKey.forEndpoint("http://namenode:50070", "user", "secret"));
+		assertEquals("http://namenode:80", CredentialKey.normalize("http://namenode/webhdfs"));
+		assertEquals("EXAMPLE.COM", CredentialKey.forLogin("user@EXAMPLE.COM", "secret").getRealm());
+	}
+}
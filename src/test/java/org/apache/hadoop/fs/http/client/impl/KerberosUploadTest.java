@@ -0,0 +1,68 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.RetryPolicy;
+import org.apache.hadoop.fs.http.client.RetryPolicy.Failure;
+import org.apache.hadoop.fs.http.client.RetryingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSResponse;
+import org.apache.hadoop.fs.http.client.util.SerializationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * The mock server does not ask for SPNEGO, so the connection falls back to pseudo authentication
+ */
+public class KerberosUploadTest {
+
+	MockWebHDFSServer server;
+	KerberosWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = new KerberosWebHDFSConnection(server.getUrl(), "test", "");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void nameNodeRejectionKeepsItsBody() throws Exception {
+		server.failNameNode("CREATE", 1, 403, "StandbyException");
+		WebHDFSResponse response = conn.create("/user/test/a", new ByteArrayInputStream(new byte[] { 1 }), 1L, true);
+		assertEquals(403, response.getResponseCode());
+		assertEquals("StandbyException", SerializationUtils.getRemoteException(response.getRawResponse()).getException());
+		assertEquals(Failure.REJECTED, new RetryPolicy().classify(response));
+	}
+
+	@Test
+	public void dataNodeRejectionKeepsItsBody() throws Exception {
+		server.failDataNode("CREATE", 1, 503, "RetriableException");
+		WebHDFSResponse response = conn.create("/user/test/a", new ByteArrayInputStream(new byte[] { 1 }), 1L, true);
+		assertEquals(503, response.getResponseCode());
+		assertEquals("RetriableException", SerializationUtils.getRemoteException(response.getRawResponse()).getException());
+
+		server.putFile("/user/test/b", new byte[] { 2 });
+		response = conn.create("/user/test/b", new ByteArrayInputStream(new byte[] { 3 }), 1L, false);
+		assertEquals(403, response.getResponseCode());
+		assertEquals("FileAlreadyExistsException", SerializationUtils.getRemoteException(response.getRawResponse()).getException());
+	}
+
+	@Test
+	public void rejectedCreateIsRetried() throws Exception {
+		server.failNameNode("CREATE", 2, 403, "StandbyException");
+		RetryingWebHDFSConnection retrying = new RetryingWebHDFSConnection(conn, new RetryPolicy(3, 1L, 5L, 60000L));
+		WebHDFSResponse response = retrying.create("/user/test/a", new ByteArrayInputStream(new byte[] { 1 }), 1L, false);
+		assertEquals(201, response.getResponseCode());
+		assertArrayEquals(new byte[] { 1 }, server.getFile("/user/test/a"));
+		assertEquals(2, retrying.getStats().getRetryCount());
+	}
+}
@@ -0,0 +1,183 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.ServerSocket;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.WebHDFSResponse;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioAsyncWebHDFSConnectionTest {
+
+	MockWebHDFSServer server;
+	NioAsyncWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = new NioAsyncWebHDFSConnection(server.getUrl(), "test", () -> new AuthenticatedURL.Token(), null);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void createFollowsRedirectAndOpenReadsBack() throws Exception {
+		WebHDFSResponse response = conn.create("user/test/a.txt", new ByteArrayInputStream("hello".getBytes("UTF-8")), false).get();
+		assertEquals(201, response.getResponseCode());
+		assertEquals("Created", response.getResponseMessage());
+
+		response = conn.create("user/test/a.txt", new ByteArrayInputStream("again".getBytes("UTF-8")), false).get();
+		assertEquals(403, response.getResponseCode());
+
+		response = conn.append("user/test/a.txt", new ByteArrayInputStream(" world".getBytes("UTF-8"))).get();
+		assertEquals(200, response.getResponseCode());
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		response = conn.open("user/test/a.txt", os).get();
+		assertEquals(200, response.getResponseCode());
+		assertEquals("hello world", os.toString("UTF-8"));
+	}
+
+	@Test
+	public void silentServerTimesOut() throws Exception {
+		try (ServerSocket silent = new ServerSocket(0)) {
+			NioAsyncWebHDFSConnection hung = new NioAsyncWebHDFSConnection("http://localhost:" + silent.getLocalPort(),
+					"test", () -> new AuthenticatedURL.Token(), null, 1000, 200);
+			try {
+				hung.getFileStatus("user/test/a").get();
+				fail("a server that never answers answered");
+			}
+			catch(ExecutionException e) {
+				assertTrue(e.getCause() instanceof HttpTimeoutException);
+			}
+		}
+	}
+
+	@Test
+	public void manyRequestsInFlight() throws Exception {
+		server.putFile("/user/test/b.txt", new byte[42]);
+		List<CompletableFuture<WebHDFSResponse>> futures = new ArrayList<CompletableFuture<WebHDFSResponse>>();
+
+		for(int i = 0; i < 200; i++) {
+			futures.add(conn.getFileStatus("user/test/b.txt"));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+		for(CompletableFuture<WebHDFSResponse> future : futures) {
+			assertEquals(200, future.get().getResponseCode());
+			assertEquals(42, future.get().getJSONResponse().get("FileStatus").get("length").asInt());
+		}
+	}
+
+	@Test
+	public void createWithKnownLength() throws Exception {
+		WebHDFSResponse response = conn.create("user/test/c.txt", new ByteArrayInputStream("hello".getBytes("UTF-8")), 5, false).get();
+		assertEquals(201, response.getResponseCode());
+		assertEquals("5", server.getLastDataNodeHeaders().getFirst("Content-Length"));
+		assertEquals("hello", new String(server.getFile("/user/test/c.txt"), "UTF-8"));
+	}
+
+	@Test
+	public void errorResponsesCompleteNormally() throws Exception {
+		WebHDFSResponse response = conn.getFileStatus("does/not/exist").get();
+		assertEquals(404, response.getResponseCode());
+		assertEquals("FileNotFoundException", response.getJSONResponse().get("RemoteException").get("exception").asText());
+	}
+
+	@Test
+	public void redirectReusesTheTokenOfItsCall() throws Exception {
+		final AtomicInteger lookups = new AtomicInteger();
+		NioAsyncWebHDFSConnection counting = new NioAsyncWebHDFSConnection(server.getUrl(), "test", () -> {
+			lookups.incrementAndGet();
+			return new AuthenticatedURL.Token();
+		}, null);
+
+		assertEquals(201, counting.create("user/test/d.txt", new ByteArrayInputStream("hello".getBytes("UTF-8")), false).get().getResponseCode());
+		assertEquals(1, lookups.get());
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		assertEquals(200, counting.open("user/test/d.txt", os).get().getResponseCode());
+		assertEquals(2, lookups.get());
+	}
+
+	@Test
+	public void validTokenIsUsedOnTheCallingThread() throws Exception {
+		final AtomicInteger waits = new AtomicInteger();
+		final List<Thread> lookups = new ArrayList<Thread>();
+		NioAsyncWebHDFSConnection valid = new NioAsyncWebHDFSConnection(server.getUrl(), "test", new TokenSource() {
+
+			public Token getValidToken() {
+				waits.incrementAndGet();
+				return new AuthenticatedURL.Token();
+			}
+
+			public Token getTokenIfValid() {
+				lookups.add(Thread.currentThread());
+				return new AuthenticatedURL.Token();
+			}
+		}, null);
+
+		server.putFile("/user/test/f.txt", new byte[3]);
+		assertEquals(200, valid.getFileStatus("user/test/f.txt").get().getResponseCode());
+		assertEquals(0, waits.get());
+		assertEquals(1, lookups.size());
+		assertSame(Thread.currentThread(), lookups.get(0));
+	}
+
+	@Test
+	public void kerberosConnectionsShareTheirToken() throws Exception {
+		server.putFile("/user/test/g.txt", new byte[3]);
+		KerberosWebHDFSConnection blocking = new KerberosWebHDFSConnection(server.getUrl(), "async@EXAMPLE.COM", "secret");
+		assertEquals(3L, blocking.getFileStatusTyped("/user/test/g.txt").getLength());
+		int handshakes = server.getRequestCount("OPTIONS");
+
+		AsyncWebHDFSConnection async = AuthenticationType.KERBEROS.createAsyncConnection(server.getUrl(),
+				"async@EXAMPLE.COM", "secret");
+		assertEquals(200, async.getFileStatus("user/test/g.txt").get().getResponseCode());
+		assertEquals(handshakes, server.getRequestCount("OPTIONS"));
+	}
+
+	@Test
+	public void slowTokenDoesNotBlockTheCaller() throws Exception {
+		final CountDownLatch refreshed = new CountDownLatch(1);
+		NioAsyncWebHDFSConnection slow = new NioAsyncWebHDFSConnection(server.getUrl(), "test", () -> {
+			try {
+				refreshed.await();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new AuthenticatedURL.Token();
+		}, null);
+
+		server.putFile("/user/test/e.txt", new byte[7]);
+		CompletableFuture<WebHDFSResponse> future = slow.getFileStatus("user/test/e.txt");
+		assertFalse(future.isDone());
+
+		refreshed.countDown();
+		assertEquals(200, future.get(10, TimeUnit.SECONDS).getResponseCode());
+	}
+}
@@ -0,0 +1,103 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.AppendOptions;
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.OpenOptions;
+import org.apache.hadoop.fs.http.client.SetOwnerOptions;
+import org.apache.hadoop.fs.http.client.SetPermissionOptions;
+import org.apache.hadoop.fs.http.client.SetReplicationOptions;
+import org.apache.hadoop.fs.http.client.SetTimesOptions;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OperationOptionsTest {
+
+	MockWebHDFSServer server;
+	PseudoWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		server.putFile("/user/test/a", new byte[] { 1, 2, 3, 4, 5 });
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "test", "");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void dataOperationsSendOptions() throws Exception {
+		CreateOptions create = new CreateOptions();
+		create.setBlockSize(536870912L);
+		create.setReplication((short) 1);
+		create.setBufferSize(65536);
+		assertEquals(201, conn.create("/user/test/b", new ByteArrayInputStream(new byte[] { 9 }), 1L, create).getResponseCode());
+		Map<String, String> query = server.getLastDataNodeQuery();
+		assertEquals("false", query.get("overwrite"));
+		assertEquals("536870912", query.get("blocksize"));
+		assertEquals("1", query.get("replication"));
+		assertEquals("65536", query.get("buffersize"));
+
+		AppendOptions append = new AppendOptions();
+		append.setBufferSize(4096);
+		assertEquals(200, conn.append("/user/test/b", new ByteArrayInputStream(new byte[] { 8 }), 1L, append).getResponseCode());
+		assertEquals("4096", server.getLastDataNodeQuery().get("buffersize"));
+
+		OpenOptions open = new OpenOptions(1L, 3L);
+		open.setBufferSize(8192);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		conn.open("/user/test/a", os, open);
+		assertEquals("[2, 3, 4]", Arrays.toString(os.toByteArray()));
+		assertEquals("8192", server.getLastDataNodeQuery().get("buffersize"));
+	}
+
+	@Test
+	public void metadataOperationsSendOptions() throws Exception {
+		assertEquals(200, conn.setPermission("/user/test/a", new SetPermissionOptions("640")).getResponseCode());
+		assertEquals("640", server.getLastNameNodeQuery().get("permission"));
+
+		assertEquals(200, conn.setOwner("/user/test/a", new SetOwnerOptions("etl user", null)).getResponseCode());
+		Map<String, String> query = server.getLastNameNodeQuery();
+		assertEquals("etl user", query.get("owner"));
+		assertFalse(query.containsKey("group"));
+
+		assertEquals(200, conn.setReplication("/user/test/a", new SetReplicationOptions((short) 2)).getResponseCode());
+		assertEquals("2", server.getLastNameNodeQuery().get("replication"));
+
+		assertEquals(200, conn.setTimes("/user/test/a", new SetTimesOptions(1000L, null)).getResponseCode());
+		query = server.getLastNameNodeQuery();
+		assertEquals("1000", query.get("modificationtime"));
+		assertNull(query.get("accesstime"));
+
+		// without options nothing but the op is sent, as before
+		conn.setTimes("/user/test/a");
+		assertFalse(server.getLastNameNodeQuery().containsKey("modificationtime"));
+	}
+
+	@Test
+	public void optionsRenderArguments() {
+		assertEquals("", new OpenOptions().toArguments());
+		assertEquals("&offset=10", new OpenOptions(10L, WebHDFSConnection.UNKNOWN_LENGTH).toArguments());
+		assertEquals("&owner=a%26b&group=g", new SetOwnerOptions("a&b", "g").toArguments());
+		assertEquals("", new AppendOptions().toArguments());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void replicationMustBePositive() {
+		new SetReplicationOptions((short) 0);
+	}
+}
@@ -85,7 +85,7 @@ public class PseudoWebHDFSConnectionTest {
 		assertThat(response, is(notNullValue()));
 
 		Map<String, Object> responseMap = ResponseUtil.toMap(response);
-		int actualCode = ((Double)responseMap.get(ResponseUtil.CODE)).intValue();
+		int actualCode = ((Number)responseMap.get(ResponseUtil.CODE)).intValue();
 
 		assertThat(String.format("WebHDFS request failed: %s", responseMap.get(ResponseUtil.MESSAGE)), actualCode, is(equalTo(expectedCode)));
 
@@ -0,0 +1,127 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.WebHDFSResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingUploadTest {
+
+	MockWebHDFSServer server;
+	PseudoWebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "test", "");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void unknownLengthIsSentChunked() throws Exception {
+		byte[] data = bytes(8 * 1024 * 1024 + 17);
+
+		WebHDFSResponse response = conn.create("user/test/big.bin", new NoAvailableInputStream(data), false);
+		assertEquals(201, response.getResponseCode());
+		assertEquals("chunked", server.getLastDataNodeHeaders().getFirst("Transfer-Encoding"));
+		assertArrayEquals(data, server.getFile("/user/test/big.bin"));
+
+		response = conn.append("user/test/big.bin", new NoAvailableInputStream(new byte[] { 1, 2, 3 }));
+		assertEquals(200, response.getResponseCode());
+		assertEquals(data.length + 3, server.getFile("/user/test/big.bin").length);
+	}
+
+	@Test
+	public void knownLengthIsSentWithContentLength() throws Exception {
+		byte[] data = bytes(100000);
+
+		WebHDFSResponse response = conn.create("user/test/a.bin", new NoAvailableInputStream(data), data.length, false);
+		assertEquals(201, response.getResponseCode());
+		assertEquals("100000", server.getLastDataNodeHeaders().getFirst("Content-Length"));
+		assertNull(server.getLastDataNodeHeaders().getFirst("Transfer-Encoding"));
+		assertArrayEquals(data, server.getFile("/user/test/a.bin"));
+
+		response = conn.append("user/test/a.bin", new ByteArrayInputStream(new byte[] { 9 }), 1);
+		assertEquals(200, response.getResponseCode());
+		assertEquals(100001, server.getFile("/user/test/a.bin").length);
+	}
+
+	@Test
+	public void uploadLocalFile() throws Exception {
+		// larger than a pooled buffer and not a multiple of its size
+		byte[] data = bytes(2 * 1024 * 1024 + 99);
+		File file = File.createTempFile("upload", ".bin");
+
+		try {
+			Files.write(file.toPath(), data);
+
+			CreateOptions options = new CreateOptions(true);
+			options.setBlockSize(268435456L);
+			options.setReplication((short) 1);
+			options.setPermission("640");
+
+			WebHDFSResponse response = conn.upload(file.toPath(), "user/test/local.bin", options);
+			assertEquals(201, response.getResponseCode());
+			assertEquals(String.valueOf(data.length), server.getLastDataNodeHeaders().getFirst("Content-Length"));
+			assertArrayEquals(data, server.getFile("/user/test/local.bin"));
+
+			Map<String, String> query = server.getLastDataNodeQuery();
+			assertEquals("true", query.get("overwrite"));
+			assertEquals("268435456", query.get("blocksize"));
+			assertEquals("1", query.get("replication"));
+			assertEquals("640", query.get("permission"));
+			assertNull(query.get("buffersize"));
+
+			// without options an existing file is not overwritten
+			response = conn.upload(file.toPath(), "user/test/local.bin", null);
+			assertEquals(403, response.getResponseCode());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void permissionMustBeOctal() {
+		new CreateOptions().setPermission("rw-r--r--");
+	}
+
+	private static byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		for(int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		return data;
+	}
+
+	/*
+	 * Like a socket or pipe: available() says nothing about the remaining length
+	 */
+	static class NoAvailableInputStream extends FilterInputStream {
+		NoAvailableInputStream(byte[] data) {
+			super(new ByteArrayInputStream(data));
+		}
+
+		@Override
+		public int available() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.junit.Test;
+
+public class TokenHolderTest {
+
+	final AtomicLong now = new AtomicLong(0);
+	final AtomicInteger generated = new AtomicInteger();
+	final List<Runnable> scheduled = new ArrayList<Runnable>();
+
+	/*
+	 * Tokens valid for 1000 ms from the current time
+	 */
+	final Supplier<Token> generator = () -> {
+		generated.incrementAndGet();
+		return token(now.get() + 1000);
+	};
+
+	final TokenHolder holder = new TokenHolder(generator, now::get, scheduled::add);
+
+	static Token token(long expires) {
+		return new AuthenticatedURL.Token("u=test&p=test&t=simple&e=" + expires + "&s=c2lnbmF0dXJl");
+	}
+
+	@Test
+	public void parsesExpiry() {
+		assertEquals(1352084683097L, TokenHolder.expiryOf(token(1352084683097L)));
+		assertEquals(42L, TokenHolder.expiryOf(new AuthenticatedURL.Token("e=42&s=x")));
+		assertEquals(Long.MAX_VALUE, TokenHolder.expiryOf(new AuthenticatedURL.Token("u=test&s=x")));
+		assertEquals(Long.MIN_VALUE, TokenHolder.expiryOf(new AuthenticatedURL.Token()));
+	}
+
+	@Test
+	public void generatesOnceWhileFresh() {
+		Token first = holder.get();
+		now.set(799);
+		assertSame(first, holder.get());
+		assertEquals(1, generated.get());
+		assertEquals(0, scheduled.size());
+	}
+
+	@Test
+	public void refreshesInBackgroundBeforeExpiry() {
+		Token first = holder.get();
+
+		now.set(800);
+		assertSame(first, holder.get());
+		assertSame(first, holder.get());
+		// only one refresh is scheduled, and callers keep the valid token meanwhile
+		assertEquals(1, scheduled.size());
+		assertEquals(1, generated.get());
+
+		scheduled.get(0).run();
+		assertEquals(2, generated.get());
+		Token second = holder.get();
+		assertEquals(1800L, TokenHolder.expiryOf(second));
+	}
+
+	@Test
+	public void getIfValidNeverGenerates() {
+		assertNull(holder.getIfValid());
+		assertEquals(0, generated.get());
+
+		Token first = holder.get();
+		now.set(800);
+		assertSame(first, holder.getIfValid());
+		assertEquals(1, scheduled.size());
+
+		now.set(5000);
+		assertNull(holder.getIfValid());
+		assertEquals(1, generated.get());
+	}
+
+	@Test
+	public void regeneratesExpiredTokenInline() {
+		holder.get();
+		now.set(5000);
+		assertEquals(6000L, TokenHolder.expiryOf(holder.get()));
+		assertEquals(2, generated.get());
+		assertEquals(0, scheduled.size());
+	}
+
+	@Test
+	public void keepsTokenWhenBackgroundRefreshFails() {
+		AtomicInteger calls = new AtomicInteger();
+		TokenHolder failing = new TokenHolder(() -> calls.getAndIncrement() == 0 ? token(now.get() + 100000)
+				: new AuthenticatedURL.Token(), now::get, scheduled::add);
+
+		Token first = failing.get();
+		now.set(80000);
+		failing.get();
+		scheduled.get(0).run();
+
+		// the old token is kept, and the next attempt waits for the retry delay
+		assertSame(first, failing.get());
+		assertEquals(1, scheduled.size());
+		now.set(80000 + TokenHolder.RETRY_DELAY);
+		failing.get();
+		assertEquals(2, scheduled.size());
+	}
+
+	@Test
+	public void backsOffAfterFailedGeneration() {
+		AtomicInteger calls = new AtomicInteger();
+		TokenHolder failing = new TokenHolder(() -> calls.getAndIncrement() < 2 ? new AuthenticatedURL.Token()
+				: token(now.get() + 100000), now::get, scheduled::add);
+
+		for(int i = 0; i < 10; i++) {
+			assertFalse(failing.get().isSet());
+		}
+		now.set(TokenHolder.RETRY_DELAY - 1);
+		assertFalse(failing.get().isSet());
+		assertEquals(1, calls.get());
+
+		now.set(TokenHolder.RETRY_DELAY);
+		assertFalse(failing.get().isSet());
+		assertFalse(failing.get().isSet());
+		assertEquals(2, calls.get());
+
+		now.set(2 * TokenHolder.RETRY_DELAY);
+		assertTrue(failing.get().isSet());
+		assertTrue(failing.get().isSet());
+		assertEquals(3, calls.get());
+		assertEquals(0, scheduled.size());
+	}
+
+	@Test(timeout = 5000)
+	public void failsFastWhileAnotherCallerRetries() throws Exception {
+		CountDownLatch retrying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		TokenHolder failing = new TokenHolder(() -> {
+			if(calls.getAndIncrement() == 1) {
+				retrying.countDown();
+				try {
+					release.await();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return new AuthenticatedURL.Token();
+		}, now::get, scheduled::add);
+
+		failing.get();
+		now.set(TokenHolder.RETRY_DELAY);
+		Thread retry = new Thread(failing::get);
+		retry.start();
+		retrying.await();
+
+		// the retry holds the lock, the others return at once instead of queueing behind it
+		assertFalse(failing.get().isSet());
+		release.countDown();
+		retry.join();
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void sharesHoldersPerEndpointAndCredentials() {
+		TokenHolder shared = TokenHolder.shared(CredentialKey.forEndpoint("http://nn:50070", "user", "secret"), generator);
+
+		assertSame(shared, TokenHolder.shared(CredentialKey.forEndpoint("http://NN:50070/", "user", "secret"), generator));
+		assertNotSame(shared, TokenHolder.shared(CredentialKey.forEndpoint("http://nn:50070", "other", "secret"), generator));
+		assertNotSame(shared, TokenHolder.shared(CredentialKey.forEndpoint("http://nn2:50070", "user", "secret"), generator));
+	}
+
+	@Test
+	public void sharedHoldersAreReleasedOnceUnused() throws Exception {
+		CredentialKey key = CredentialKey.forEndpoint("http://released:50070", "user", "secret");
+		WeakReference<TokenHolder> shared = new WeakReference<TokenHolder>(TokenHolder.shared(key, generator));
+		assertTrue(TokenHolder.isShared(key));
+
+		long deadline = System.currentTimeMillis() + 10000L;
+		while(TokenHolder.isShared(key) && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(10L);
+		}
+		assertNull(shared.get());
+		assertFalse(TokenHolder.isShared(key));
+	}
+
+	@Test
+	public void settersAuthenticateAgain() throws Exception {
+		MockWebHDFSServer first = new MockWebHDFSServer();
+		MockWebHDFSServer second = new MockWebHDFSServer();
+		try {
+			KerberosWebHDFSConnection conn = new KerberosWebHDFSConnection(first.getUrl(), "test", "");
+			assertEquals(200, conn.getHomeDirectory().getResponseCode());
+			assertTrue(first.getRequestCount("OPTIONS") > 0);
+
+			conn.setHttpfsUrl(second.getUrl());
+			assertEquals(200, conn.getHomeDirectory().getResponseCode());
+			assertTrue(second.getRequestCount("OPTIONS") > 0);
+
+			int authenticated = second.getRequestCount("OPTIONS");
+			conn.setPassword("other");
+			assertEquals(200, conn.getHomeDirectory().getResponseCode());
+			assertTrue(second.getRequestCount("OPTIONS") > authenticated);
+		}
+		finally {
+			first.stop();
+			second.stop();
+		}
+	}
+}
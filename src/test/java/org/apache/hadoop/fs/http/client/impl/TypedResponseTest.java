@@ -0,0 +1,73 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+
+import org.apache.hadoop.fs.http.client.ContentSummary;
+import org.apache.hadoop.fs.http.client.FileChecksum;
+import org.apache.hadoop.fs.http.client.FileStatus;
+import org.apache.hadoop.fs.http.client.FileType;
+import org.apache.hadoop.fs.http.client.MockWebHDFSServer;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TypedResponseTest {
+
+	MockWebHDFSServer server;
+	WebHDFSConnection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new MockWebHDFSServer();
+		server.putFile("/user/test/dir/a", new byte[] { 1, 2, 3 });
+		server.putFile("/user/test/dir/b", new byte[0]);
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "test", "");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void metadataIsDecoded() throws Exception {
+		assertEquals("/user/test", conn.getHomeDirectoryTyped());
+
+		FileStatus status = conn.getFileStatusTyped("/user/test/dir/a");
+		assertEquals(3L, status.getLength());
+		assertEquals(FileType.FILE, status.getType());
+		assertEquals("/user/test/dir/a", status.getPath());
+
+		List<FileStatus> entries = conn.listStatusTyped("/user/test/dir");
+		assertEquals(2, entries.size());
+		assertEquals("b", entries.get(1).getSuffix());
+
+		ContentSummary summary = conn.getContentSummaryTyped("/user/test");
+		assertEquals(2, summary.getFileCount());
+		assertEquals(3, summary.getLength());
+
+		FileChecksum checksum = conn.getFileChecksumTyped("/user/test/dir/b");
+		assertEquals("d41d8cd98f00b204e9800998ecf8427e", checksum.getBytes());
+		assertEquals(16, checksum.getLength());
+	}
+
+	@Test
+	public void writesReturnBooleans() throws Exception {
+		assertTrue(conn.mkdirsTyped("/user/test/new"));
+		assertTrue(conn.renameTyped("/user/test/dir/a", "/user/test/new/a"));
+		assertFalse(conn.renameTyped("/user/test/dir/a", "/user/test/new/a"));
+		assertTrue(conn.deleteTyped("/user/test/new/a"));
+		assertFalse(conn.deleteTyped("/user/test/new/a"));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingPathThrows() throws Exception {
+		conn.getFileStatusTyped("/user/test/missing");
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * 
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledHttpTransportTest {
+
+	// a set token means AuthenticatedURL does not need to talk to the server to open a connection
+	AuthenticatedURL authenticatedURL = new AuthenticatedURL();
+	AuthenticatedURL.Token token = new AuthenticatedURL.Token("u=test&p=test&t=simple&e=0&s=x");
+	PooledHttpTransport transport;
+	// unreleased leases, kept reachable so that they are not reclaimed
+	List<HttpURLConnection> held = new ArrayList<HttpURLConnection>();
+
+	@Before
+	public void setUp() {
+		transport = new PooledHttpTransport(2, 3, 60000L, 50L);
+	}
+
+	@Test
+	public void leasesAreBoundedPerRoute() throws Exception {
+		URL url = new URL("http://namenode:50070/webhdfs/v1/?op=GETHOMEDIRECTORY");
+		HttpURLConnection first = transport.openConnection(authenticatedURL, url, token);
+		held.add(transport.openConnection(authenticatedURL, url, token));
+
+		try {
+			transport.openConnection(authenticatedURL, url, token);
+			fail("Expected the third lease on the same route to time out");
+		}
+		catch(IOException e) {
+			// expected
+		}
+
+		assertThat(transport.getStats().getLeased(), equalTo(2));
+		assertThat(transport.getStats().getTimeoutCount(), equalTo(1L));
+
+		transport.release(first);
+		held.add(transport.openConnection(authenticatedURL, url, token));
+		assertThat(transport.getStats().getLeased(), equalTo(2));
+		assertThat(transport.getStats().getKeptAliveCount(), equalTo(1L));
+	}
+
+	@Test
+	public void leasesAreBoundedInTotal() throws Exception {
+		held.add(transport.openConnection(authenticatedURL, new URL("http://datanode-1:50075/webhdfs/v1/a"), token));
+		held.add(transport.openConnection(authenticatedURL, new URL("http://datanode-2:50075/webhdfs/v1/a"), token));
+		HttpURLConnection third = transport.openConnection(authenticatedURL, new URL("http://datanode-3:50075/webhdfs/v1/a"), token);
+
+		try {
+			transport.openConnection(authenticatedURL, new URL("http://datanode-4:50075/webhdfs/v1/a"), token);
+			fail("Expected the fourth lease to time out");
+		}
+		catch(IOException e) {
+			// expected
+		}
+
+		transport.abort(third);
+		held.add(transport.openConnection(authenticatedURL, new URL("http://datanode-4:50075/webhdfs/v1/a"), token));
+
+		PoolStats stats = transport.getStats();
+		assertThat(stats.getLeased(), equalTo(3));
+		assertThat(stats.getRoutes(), equalTo(4));
+		assertThat(stats.getDiscardedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void silentServerTimesOut() throws Exception {
+		transport = new PooledHttpTransport(2, 3, 60000L, 50L, 1000, 100);
+		try (ServerSocket silent = new ServerSocket(0)) {
+			HttpURLConnection conn = transport.openConnection(authenticatedURL,
+					new URL("http://localhost:" + silent.getLocalPort() + "/webhdfs/v1/?op=GETHOMEDIRECTORY"), token);
+			assertThat(conn.getReadTimeout(), equalTo(100));
+			try {
+				conn.getResponseCode();
+				fail("a server that never answers answered");
+			}
+			catch(SocketTimeoutException e) {
+				transport.abort(conn);
+			}
+		}
+		assertThat(transport.getStats().getLeased(), equalTo(0));
+	}
+
+	@Test
+	public void unreleasedLeasesAreReclaimedOnceCollected() throws Exception {
+		URL url = new URL("http://namenode:50070/webhdfs/v1/?op=LISTSTATUS");
+		transport.openConnection(authenticatedURL, url, token);
+		transport.openConnection(authenticatedURL, url, token);
+
+		// both were dropped without release, e.g. by an abandoned iterator
+		for(int i = 0; held.size() < 2 && i < 100; i++) {
+			System.gc();
+			try {
+				held.add(transport.openConnection(authenticatedURL, url, token));
+			}
+			catch(IOException e) {
+				// not collected yet
+			}
+		}
+		assertThat(held.size(), equalTo(2));
+		assertThat(transport.getStats().getLeased(), equalTo(2));
+	}
+
+	@Test
+	public void idleRoutesAreEvicted() throws Exception {
+		transport = new PooledHttpTransport(2, 3, 0L, 50L);
+		HttpURLConnection conn = transport.openConnection(authenticatedURL, new URL("http://datanode-1:50075/webhdfs/v1/a"), token);
+		held.add(transport.openConnection(authenticatedURL, new URL("http://datanode-2:50075/webhdfs/v1/a"), token));
+		transport.release(conn);
+		Thread.sleep(5L);
+
+		assertThat(transport.evictIdleRoutes(), equalTo(1));
+		assertThat(transport.getStats().getRoutes(), equalTo(1));
+	}
+}
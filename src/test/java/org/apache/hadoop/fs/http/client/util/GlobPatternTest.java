@@ -0,0 +1,41 @@
+package org.apache.hadoop.fs.http.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GlobPatternTest {
+
+	boolean matches(String glob, String name) {
+		return GlobPattern.compile(glob).matcher(name).matches();
+	}
+
+	@Test
+	public void wildcards() {
+		assertTrue(matches("events-*.parquet", "events-0.parquet"));
+		assertFalse(matches("events-*.parquet", "events-0.parquet.tmp"));
+		assertTrue(matches("p?", "p1"));
+		assertFalse(matches("p?", "p12"));
+		assertTrue(matches("{a,b*}.log", "bc.log"));
+		assertFalse(matches("{a,b*}.log", "c.log"));
+		assertTrue(matches("[a-c]x", "bx"));
+		assertFalse(matches("[!a-c]x", "bx"));
+		assertTrue(matches("a.b(c)", "a.b(c)"));
+		assertFalse(matches("a.b", "axb"));
+	}
+
+	@Test
+	public void escapes() {
+		assertFalse(GlobPattern.hasWildcard("a\\*b"));
+		assertEquals("a*b", GlobPattern.unescape("a\\*b"));
+		assertTrue(matches("a\\*b", "a*b"));
+		assertFalse(matches("a\\*b", "axb"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unclosedClass() {
+		GlobPattern.compile("a[bc");
+	}
+}
@@ -0,0 +1,64 @@
+package org.apache.hadoop.fs.http.client.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Random;
+
+import org.apache.hadoop.fs.http.client.util.RequestUrlBuilder.Op;
+import org.junit.Test;
+
+public class RequestUrlBuilderTest {
+
+	@Test
+	public void encodesPaths() {
+		assertEquals("zen/%E6%88%91%E7%9A%84%E5%9B%BE%E7%89%87", URLUtil.encodePath("zen/我的图片"));
+		assertEquals("/a%20b/c+d/e%25f%3Fg%23h/%C3%A9", URLUtil.encodePath("/a b/c+d/e%f?g#h/é"));
+		assertEquals("/%F0%9F%98%80/%3F", URLUtil.encodePath("/😀/\uD800"));
+	}
+
+	@Test
+	public void encodesValuesLikeUrlEncoder() throws Exception {
+		Random random = new Random(42);
+		for(int i = 0; i < 1000; i++) {
+			char[] chars = new char[random.nextInt(12)];
+			for(int j = 0; j < chars.length; j++) {
+				chars[j] = (char) (random.nextBoolean() ? random.nextInt(128) : random.nextInt(0xD800));
+			}
+			String value = new String(chars);
+			assertEquals(value, "&v=" + URLEncoder.encode(value, "UTF-8").replace("+", "%20"), URLUtil.argument("v", value));
+		}
+	}
+
+	@Test
+	public void buildsSameUrlsAsResolving() throws Exception {
+		for(String base : new String[] { "http://namenode:50070", "https://namenode/webhdfs/", "http://user@[::1]:14000" }) {
+			RequestUrlBuilder urls = new RequestUrlBuilder(base);
+
+			URL url = urls.start(Op.LISTSTATUS_BATCH, "/data/a b").argument("user.name", "test")
+					.argument("startAfter", "x&y").toURL();
+			assertEquals(new URL(new URL(base), "/webhdfs/v1//data/a%20b?op=LISTSTATUS_BATCH&user.name=test&startAfter=x%26y"), url);
+
+			url = urls.start(Op.GETHOMEDIRECTORY, null).toURL();
+			assertEquals(new URL(new URL(base), "/webhdfs/v1/?op=GETHOMEDIRECTORY"), url);
+		}
+	}
+
+	@Test
+	public void appendsArguments() {
+		RequestUrlBuilder urls = new RequestUrlBuilder("http://namenode:50070");
+		assertEquals("/webhdfs/v1/a?op=OPEN&length=10",
+				urls.start(Op.OPEN, "a").range(0L, 10L).toString());
+		assertEquals("/webhdfs/v1/a?op=RENAME&destination=/b%20c&user.name=test",
+				urls.start(Op.RENAME, "a").pathArgument("destination", "/b c").argument("user.name", "test").toString());
+		assertEquals("/webhdfs/v1/a?op=CREATE&overwrite=true",
+				urls.start(Op.CREATE, "a").argument("renewer", null).append("&overwrite=true").toString());
+	}
+
+	@Test(expected = MalformedURLException.class)
+	public void reportsMalformedBaseOnBuild() throws Exception {
+		new RequestUrlBuilder("namenode:50070/no-scheme").start(Op.OPEN, "a").toURL();
+	}
+}
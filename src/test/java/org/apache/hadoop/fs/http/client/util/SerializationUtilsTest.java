@@ -15,17 +15,23 @@
 package org.apache.hadoop.fs.http.client.util;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
 
 import org.apache.hadoop.fs.http.client.ContentSummary;
+import org.apache.hadoop.fs.http.client.FileChecksum;
 import org.apache.hadoop.fs.http.client.FileStatus;
 import org.apache.hadoop.fs.http.client.FileType;
+import org.apache.hadoop.fs.http.client.RemoteException;
 import org.junit.Test;
 
 public class SerializationUtilsTest {
 
 	@Test
-	public void deserializeFileStatus() {
+	public void deserializeFileStatus() throws Exception {
 		FileStatus status = SerializationUtils.getFileStatus("{\"FileStatus\":{\"pathSuffix\":\"temporary\",\"type\":\"DIRECTORY\",\"length\":0,\"owner\":\"test\",\"group\":\"supergroup\",\"permission\":\"755\",\"accessTime\":0,\"modificationTime\":1352084683097,\"blockSize\":0,\"replication\":0}}");
 	
 		assertThat(status.getSuffix(), equalTo("temporary"));
@@ -41,14 +47,74 @@ public class SerializationUtilsTest {
 	}
 	
 	@Test
-	public void deserializeContentSummary() {
+	public void deserializeContentSummary() throws Exception {
 		ContentSummary summary = SerializationUtils.getContentSummary("{\"ContentSummary\":{\"directoryCount\":2,\"fileCount\":1,\"length\":139372,\"quota\":-1,\"spaceConsumed\":139372,\"spaceQuota\":-1}}");
 		
-		assertThat(summary.getDirectoryCount(), equalTo(2));
-		assertThat(summary.getFileCount(), equalTo(1));
-		assertThat(summary.getLength(), equalTo(139372));
-		assertThat(summary.getQuota(), equalTo(-1));
-		assertThat(summary.getSpaceQuota(), equalTo(-1));
-		assertThat(summary.getSpaceConsumed(), equalTo(139372));
+		assertThat(summary.getDirectoryCount(), equalTo(2L));
+		assertThat(summary.getFileCount(), equalTo(1L));
+		assertThat(summary.getLength(), equalTo(139372L));
+		assertThat(summary.getQuota(), equalTo(-1L));
+		assertThat(summary.getSpaceQuota(), equalTo(-1L));
+		assertThat(summary.getSpaceConsumed(), equalTo(139372L));
+		assertThat(summary.isQuotaSet(), equalTo(false));
+	}
+
+	@Test
+	public void deserializeLargeContentSummary() throws Exception {
+		ContentSummary summary = SerializationUtils.getContentSummary("{\"ContentSummary\":{\"directoryCount\":3000000000,\"fileCount\":5000000000,\"length\":1125899906842624,\"quota\":10000000000,\"spaceConsumed\":3377699720527872,\"spaceQuota\":4503599627370496,\"typeQuota\":{\"DISK\":{\"consumed\":1,\"quota\":-1}}}}");
+
+		assertThat(summary.getDirectoryCount(), equalTo(3000000000L));
+		assertThat(summary.getFileCount(), equalTo(5000000000L));
+		assertThat(summary.getLength(), equalTo(1125899906842624L));
+		assertThat(summary.getQuota(), equalTo(10000000000L));
+		assertThat(summary.getSpaceConsumed(), equalTo(3377699720527872L));
+		assertThat(summary.getSpaceQuota(), equalTo(4503599627370496L));
+		assertThat(summary.isSpaceQuotaSet(), equalTo(true));
+	}
+	
+	@Test
+	public void deserializeFileStatuses() throws Exception {
+		List<FileStatus> statuses = SerializationUtils.getFileStatuses("{\"FileStatuses\":{\"FileStatus\":[{\"pathSuffix\":\"a\",\"type\":\"FILE\",\"length\":3,\"fileId\":16387,\"acl\":{\"x\":[1,2]}},{\"pathSuffix\":\"b\",\"type\":\"DIRECTORY\"}]}}");
+
+		assertThat(statuses.size(), equalTo(2));
+		assertThat(statuses.get(0).getLength(), equalTo(3L));
+		assertThat(statuses.get(1).getType(), equalTo(FileType.DIRECTORY));
+	}
+
+	@Test
+	public void deserializeFileChecksum() throws Exception {
+		FileChecksum checksum = SerializationUtils.getFileChecksum("{\"FileChecksum\":{\"algorithm\":\"MD5-of-1MD5-of-512CRC32\",\"bytes\":\"eadb10de24aa315748930df6e185c0d\",\"length\":28}}");
+
+		assertThat(checksum.getAlgorithm(), equalTo("MD5-of-1MD5-of-512CRC32"));
+		assertThat(checksum.getBytes(), equalTo("eadb10de24aa315748930df6e185c0d"));
+		assertThat(checksum.getLength(), equalTo(28));
+	}
+
+	@Test
+	public void deserializeScalars() throws Exception {
+		assertThat(SerializationUtils.getBoolean("{\"boolean\":true}"), equalTo(true));
+		assertThat(SerializationUtils.getLong("{\"long\":1352084683097}"), equalTo(1352084683097L));
+		assertThat(SerializationUtils.getPath("{\"Path\":\"/user/test\"}"), equalTo("/user/test"));
+		assertThat(SerializationUtils.getToken("{\"Token\":{\"urlString\":\"JQAIaG9y\"}}"), equalTo("JQAIaG9y"));
+		assertThat(SerializationUtils.getToken("{\"Token\":null}"), nullValue());
+	}
+
+	@Test
+	public void remoteExceptionIsThrown() throws Exception {
+		String error = "{\"RemoteException\":{\"exception\":\"FileNotFoundException\",\"javaClassName\":\"java.io.FileNotFoundException\",\"message\":\"File does not exist: /x\"}}";
+
+		RemoteException e = SerializationUtils.getRemoteException(error);
+		assertThat(e.getException(), equalTo("FileNotFoundException"));
+		assertThat(e.getMessage(), equalTo("File does not exist: /x"));
+		assertThat(SerializationUtils.getRemoteException("<html>"), nullValue());
+
+		try {
+			SerializationUtils.getFileStatus(error);
+		}
+		catch(RemoteException thrown) {
+			assertThat(thrown.getJavaClassName(), equalTo("java.io.FileNotFoundException"));
+			return;
+		}
+		fail("no RemoteException");
 	}
 }